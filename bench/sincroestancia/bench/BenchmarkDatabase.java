@@ -0,0 +1,98 @@
+package sincroestancia.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.services.DatabaseService;
+
+/**
+ * Base de datos temporal con datos generados para los benchmarks.
+ * * Apunta 'user.home' a una carpeta temporal antes de que se cargue DatabaseManager, de modo que
+ * la carpeta de datos (y con ella el archivo SQLite o la base de datos del servidor H2) queda
+ * fuera de la del usuario. Por eso debe crearse una sola vez por JVM, antes de cualquier otro uso
+ * de la base de datos: JMH arranca una JVM nueva para cada benchmark y combinación de parámetros.
+ * * Los datos los genera WorkloadGenerator con una semilla fija: 'vuts' viviendas con 'years' años
+ * de historia más el año siguiente, reservas, check-ins, huéspedes y check-outs.
+ * * @author Carlos Padilla Labella
+ */
+public final class BenchmarkDatabase implements AutoCloseable {
+
+    private static final long SEED = 20240601L;
+
+    private final Path home;
+    private final DatabaseService db;
+    private final List<Integer> vutIds;
+    private final LocalDate firstDay;
+    private final LocalDate lastDay;
+
+    private BenchmarkDatabase(Path home, DatabaseService db, List<Integer> vutIds, LocalDate firstDay, LocalDate lastDay) {
+        this.home = home;
+        this.db = db;
+        this.vutIds = vutIds;
+        this.firstDay = firstDay;
+        this.lastDay = lastDay;
+    }
+
+    /**
+     * Crea la base de datos temporal y la rellena.
+     * * @param vuts Número de viviendas.
+     * @param years Años de historia (el actual incluido).
+     */
+    public static BenchmarkDatabase create(int vuts, int years) throws IOException {
+
+        Path home = Files.createTempDirectory("sincroestancia-bench");
+        System.setProperty("user.home", home.toString());
+
+        DatabaseService db = new DatabaseService();
+
+        WorkloadGenerator.Summary summary;
+        try {
+            summary = new WorkloadGenerator(SEED, vuts, years, LocalDate.now()).generate(DatabaseManager.get_connection());
+        } catch (SQLException e) {
+            throw new IOException("Could not generate the benchmark database", e);
+        }
+
+        System.out.printf("[info] Benchmark database: %d VUTs, %s..%s, %d reservations, %d rows in %.1f s (%s)%n",
+            vuts, summary.firstDay(), summary.lastDay(), summary.reservations(), summary.rows(), summary.millis() / 1e3, home);
+
+        return new BenchmarkDatabase(home, db, summary.vutIds(), summary.firstDay(), summary.lastDay());
+    }
+
+    public DatabaseService service() {
+        return db;
+    }
+
+    public List<Integer> vutIds() {
+        return vutIds;
+    }
+
+    public LocalDate firstDay() {
+        return firstDay;
+    }
+
+    public LocalDate lastDay() {
+        return lastDay;
+    }
+
+    /**
+     * Cierra la conexión y borra la carpeta temporal.
+     */
+    @Override
+    public void close() throws IOException {
+
+        DatabaseManager.disconnect();
+
+        try (Stream<Path> files = Files.walk(home)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
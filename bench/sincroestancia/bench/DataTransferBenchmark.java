@@ -0,0 +1,157 @@
+package sincroestancia.bench;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sincroestancia.src.models.Season;
+import sincroestancia.src.services.DataExportService;
+import sincroestancia.src.services.DataExportService.ExportOptions;
+import sincroestancia.src.services.DataExportService.Format;
+import sincroestancia.src.services.DataExportService.Table;
+import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.ReservationImportService;
+import sincroestancia.src.services.ReservationImportService.ImportReport;
+
+/**
+ * Benchmarks JMH de la exportación de datos (DataExportService) y de la importación masiva de
+ * reservas (ReservationImportService).
+ * * - exportDays: tabla 'days' completa (todas las viviendas) en CSV y JSON Lines, con y sin gzip.
+ * Con vuts=700 y years=3 la tabla tiene ~1,02 millones de filas. Para comprobar que la memoria no
+ * crece con las filas se lanza con un heap pequeño, p.ej. -Dbench.jvmargs="-Xmx64m".
+ * - importCsv: 'rows' reservas consecutivas en CSV sobre una vivienda vacía, en simulación y con
+ * escritura. La vivienda se vuelve a crear antes de cada iteración, así que todas las filas son válidas.
+ * * Cada llamada tarda segundos, así que se mide una a una (SingleShotTime) en lugar de por tiempo.
+ * * @author Carlos Padilla Labella
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DataTransferBenchmark {
+
+    /**
+     * Base de datos generada y carpeta temporal de los archivos exportados.
+     */
+    @State(Scope.Benchmark)
+    public static class Export {
+
+        @Param({"10", "700"})
+        public int vuts;
+
+        @Param({"3"})
+        public int years;
+
+        @Param({"CSV", "JSONL"})
+        public Format format;
+
+        @Param({"false", "true"})
+        public boolean gzip;
+
+        BenchmarkDatabase data;
+        DataExportService service;
+        Path target;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            data = BenchmarkDatabase.create(vuts, years);
+            service = new DataExportService();
+            target = Files.createTempDirectory("sincroestancia-export").resolve("days");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(target.getParent());
+            data.close();
+        }
+    }
+
+    /**
+     * CSV de reservas y vivienda vacía en la que importarlo.
+     */
+    @State(Scope.Benchmark)
+    public static class Import {
+
+        private static final LocalDate FIRST_CHECK_IN = LocalDate.of(2090, 1, 1);
+
+        @Param({"5000"})
+        public int rows;
+
+        @Param({"true", "false"})
+        public boolean dryRun;
+
+        BenchmarkDatabase data;
+        DatabaseService db;
+        String csv;
+        int vutId = -1;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+
+            data = BenchmarkDatabase.create(1, 1);
+            db = data.service();
+
+            StringBuilder text = new StringBuilder("guest_name,guest_dni,check_in_date,check_out_date,pax_count,is_paid\n");
+            for (int i = 0; i < rows; i++) {
+                LocalDate checkIn = FIRST_CHECK_IN.plusDays(3L * i);
+                text.append("Bench guest ").append(i).append(",00000000T,").append(checkIn).append(',')
+                    .append(checkIn.plusDays(2)).append(',').append(1 + i % 4).append(',').append(i % 2 == 0).append('\n');
+            }
+            csv = text.toString();
+        }
+
+        @Setup(Level.Iteration)
+        public void newVut() {
+            if (vutId > 0) db.delete_vut(vutId);
+            vutId = db.register_vut("Bench import", "", "", "bench-import");
+            db.update_price_range(vutId, FIRST_CHECK_IN, FIRST_CHECK_IN.plusDays(3L * rows), 9000, Season.AVERAGE);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            data.close();
+        }
+    }
+
+    @Benchmark
+    public long exportDays(Export export) {
+        long rows = export.service.export(Table.DAYS, new ExportOptions(export.format, export.gzip, -1, null, null), export.target);
+        if (rows < 0) throw new IllegalStateException("Export failed");
+        return rows;
+    }
+
+    @Benchmark
+    public ImportReport importCsv(Import source) {
+        ImportReport report = new ReservationImportService().importCsv(source.vutId, new StringReader(source.csv), source.dryRun);
+        if (report.getImported() != source.rows) throw new IllegalStateException("Import rejected rows: " + report.summary());
+        return report;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package sincroestancia.bench;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import sincroestancia.src.models.DaySyncData;
+import sincroestancia.src.models.FullDayInfo;
+import sincroestancia.src.models.MonthSnapshot;
+import sincroestancia.src.models.OperationSyncData;
+import sincroestancia.src.models.Season;
+import sincroestancia.src.models.YearlyReport;
+import sincroestancia.src.services.DatabaseService;
+
+/**
+ * Benchmarks JMH de las operaciones más frecuentes de DatabaseService.
+ * * Cada combinación de parámetros se ejecuta en su propia JVM (@Fork) sobre una base de datos
+ * temporal generada por BenchmarkDatabase, nunca sobre la del usuario:
+ * - Lecturas del calendario: get_month_data y get_full_day_details.
+ * - Escrituras: register_reservation y update_price_range, sobre una vivienda aparte que se
+ * vuelve a crear en cada iteración para que las lecturas globales no dependan de ellas.
+ * - Sincronización con Google: getUnsyncedFutureDays y getOperationsToSync.
+ * - Informes anuales: getYearlyReport, getYearlyRevenueCents y getTotalYearlyRevenueCents.
+ * * Se lanzan con 'ant bench' (ver build.xml), que guarda los resultados en JSON para comparar
+ * entre versiones. El motor se elige como en la aplicación, p.ej. -Dsincroestancia.db=h2.
+ * * @author Carlos Padilla Labella
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DatabaseServiceBenchmark {
+
+    /**
+     * Base de datos generada, compartida por todos los benchmarks de una JVM.
+     */
+    @State(Scope.Benchmark)
+    public static class Dataset {
+
+        @Param({"1", "10"})
+        public int vuts;
+
+        @Param({"1", "3"})
+        public int years;
+
+        BenchmarkDatabase data;
+        DatabaseService db;
+        List<Integer> vutIds;
+        int days;
+        int year;
+        long cursor;
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            data = BenchmarkDatabase.create(vuts, years);
+            db = data.service();
+            vutIds = data.vutIds();
+            days = (int) ChronoUnit.DAYS.between(data.firstDay(), data.lastDay()) + 1;
+            year = LocalDate.now().getYear();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            data.close();
+        }
+
+        /** Vivienda de la siguiente llamada (rota entre todas). */
+        int nextVut() {
+            return vutIds.get((int) (cursor++ % vutIds.size()));
+        }
+
+        /** Día de la siguiente llamada (recorre todo el rango generado con un paso primo). */
+        LocalDate nextDay() {
+            return data.firstDay().plusDays((cursor++ * 37) % days);
+        }
+    }
+
+    /**
+     * Vivienda sin datos para los benchmarks de escritura, con las fechas que se van a reservar.
+     */
+    @State(Scope.Benchmark)
+    public static class Scratch {
+
+        private static final LocalDate FIRST_CHECK_IN = LocalDate.of(2090, 1, 1);
+
+        int vutId = -1;
+        LocalDate checkIn;
+        long price;
+
+        @Setup(Level.Iteration)
+        public void setUp(Dataset dataset) {
+            if (vutId > 0) dataset.db.delete_vut(vutId);
+            vutId = dataset.db.register_vut("Bench scratch", "", "", "bench-scratch");
+            dataset.db.update_price_range(vutId, FIRST_CHECK_IN, FIRST_CHECK_IN.plusYears(20), 9000, Season.AVERAGE);
+            checkIn = FIRST_CHECK_IN;
+            price = 9000;
+        }
+    }
+
+    @Benchmark
+    public MonthSnapshot getMonthData(Dataset dataset) {
+        LocalDate day = dataset.nextDay();
+        return dataset.db.get_month_data(dataset.nextVut(), day.getYear(), day.getMonthValue() - 1);
+    }
+
+    @Benchmark
+    public FullDayInfo getFullDayDetails(Dataset dataset) {
+        return dataset.db.get_full_day_details(dataset.nextVut(), Date.valueOf(dataset.nextDay()));
+    }
+
+    @Benchmark
+    public boolean registerReservation(Dataset dataset, Scratch scratch) {
+        LocalDate checkIn = scratch.checkIn;
+        scratch.checkIn = checkIn.plusDays(3);
+        return dataset.db.register_reservation(scratch.vutId, "Bench guest", "00000000T", null, null,
+            checkIn.toString(), checkIn.plusDays(2).toString(), 2, false);
+    }
+
+    @Benchmark
+    public boolean updatePriceRange(Dataset dataset, Scratch scratch) {
+        scratch.price = scratch.price == 9000 ? 9500 : 9000;
+        LocalDate start = Scratch.FIRST_CHECK_IN.plusYears(21);
+        return dataset.db.update_price_range(scratch.vutId, start, start.plusDays(29), scratch.price, Season.HIGH);
+    }
+
+    @Benchmark
+    public List<DaySyncData> getUnsyncedFutureDays(Dataset dataset) {
+        return dataset.db.getUnsyncedFutureDays();
+    }
+
+    @Benchmark
+    public List<OperationSyncData> getOperationsToSync(Dataset dataset) {
+        return dataset.db.getOperationsToSync();
+    }
+
+    @Benchmark
+    public YearlyReport getYearlyReport(Dataset dataset) {
+        return dataset.db.getYearlyReport(dataset.nextVut(), dataset.year);
+    }
+
+    @Benchmark
+    public long[] getYearlyRevenueCents(Dataset dataset) {
+        return dataset.db.getYearlyRevenueCents(dataset.nextVut(), dataset.year);
+    }
+
+    @Benchmark
+    public long getTotalYearlyRevenueCents(Dataset dataset) {
+        return dataset.db.getTotalYearlyRevenueCents(dataset.nextVut(), dataset.year);
+    }
+}
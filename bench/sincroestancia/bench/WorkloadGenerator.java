@@ -0,0 +1,692 @@
+package sincroestancia.bench;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import sincroestancia.src.database.ConnectionPool;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.Transactions;
+import sincroestancia.src.models.DayStatus;
+import sincroestancia.src.models.Season;
+import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestProfiles;
+import sincroestancia.src.services.MonthlyStats;
+
+/**
+ * Generador determinista de datos sintéticos a escala de cartera, para pruebas de carga.
+ * * Con la misma semilla, el mismo número de viviendas y años y la misma fecha de referencia ('hoy')
+ * produce exactamente los mismos datos:
+ * - Días con precio y temporada para todo el rango (años de historia más el año siguiente): temporada
+ * alta en julio y agosto, media en junio, septiembre y diciembre, baja el resto, y un 15% más los
+ * viernes y sábados.
+ * - Reservas sin solapes, con ocupación, duración de la estancia y antelación según la temporada. Las
+ * reservas cuya fecha de creación sería posterior a 'hoy' no se generan (aún no existirían), así que
+ * la ocupación futura baja con la distancia, como en una vivienda real.
+ * - Las estancias pasadas tienen check-in (pago, huéspedes de nacionalidades variadas, menores con su
+ * tutor) y check-out; la que está en curso, solo check-in. Un 8% de los titulares repite estancia.
+ * * Escribe por la vía rápida: inserciones por lotes en una transacción por vivienda, sin pasar por
+ * DatabaseService fila a fila. Al terminar cada vivienda recalcula sus agregados mensuales
+ * (MonthlyStats.refreshRange), escribe los de nacionalidades ya contados y, al final, enlaza los
+ * huéspedes con sus fichas (GuestProfiles). El
+ * índice de búsqueda se mantiene con sus propios triggers. No se anotan cambios en el registro
+ * (change_log): los consumidores de una base de datos recién generada hacen una carga completa.
+ * * Desde la línea de comandos ('ant workload', ver build.xml) genera los datos en una carpeta de
+ * usuario aparte y después reproduce una carga mixta con WorkloadReplay.
+ * * @author Carlos Padilla Labella
+ */
+public final class WorkloadGenerator {
+
+    private static final int BATCH_SIZE = 2_000;
+    private static final int RETURNING_POOL = 20_000;
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FORM_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final String SQL_INSERT_DAY = "INSERT INTO days (vut_id, day_date, price_cents, status, season, is_synced, version) " +
+        "VALUES (?, ?, ?, ?, ?, ?, 0)";
+
+    private static final String SQL_INSERT_RESERVATION = "INSERT INTO reservations (vut_id, guest_name, guest_dni, guest_email, guest_phone, " +
+        "check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout, is_synced, created_at) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_CHECKIN = "INSERT INTO checkins (reservation_id, payment_method, payment_identifier, payment_holder, " +
+        "card_expiry_date, payment_date, rules_accepted, gdpr_accepted, is_synced, signed_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_GUEST = "INSERT INTO guests (checkin_id, fullname, surname1, surname2, sex, birth_date, nationality, " +
+        "id_document_type, id_document_number, address_country, phone, email, is_minor) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_CHECKOUT = "INSERT INTO checkouts (reservation_id, actual_exit_time, keys_returned, damage_detected, " +
+        "damage_description, is_synced, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_NATIONALITY = "INSERT INTO monthly_nationality_stats (vut_id, year, month, nationality, guests) " +
+        "VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_LINK_GUARDIANS = "UPDATE guests SET guardian_id = (SELECT MIN(a.id) FROM guests a " +
+        "WHERE a.checkin_id = guests.checkin_id AND a.is_minor = 0) " +
+        "WHERE is_minor = 1 AND guardian_id IS NULL AND checkin_id IN " +
+        "(SELECT c.id FROM checkins c JOIN reservations r ON r.id = c.reservation_id WHERE r.vut_id = ?)";
+
+    /** Nacionalidades (ISO 3166-1 alfa-2) y su peso en la clientela de una vivienda turística española. */
+    private static final String[] NATIONALITIES = {
+        "ES", "GB", "FR", "DE", "IT", "NL", "US", "PT", "BE", "IE", "SE", "CH", "MX", "AR", "BR", "NO", "DK"
+    };
+    private static final int[] NATIONALITY_WEIGHTS = { 40, 10, 9, 8, 6, 4, 4, 3, 3, 2, 2, 2, 2, 2, 1, 1, 1 };
+
+    private static final Map<String, String> PHONE_PREFIXES = Map.ofEntries(
+        Map.entry("ES", "+34"), Map.entry("GB", "+44"), Map.entry("FR", "+33"), Map.entry("DE", "+49"), Map.entry("IT", "+39"),
+        Map.entry("NL", "+31"), Map.entry("US", "+1"), Map.entry("PT", "+351"), Map.entry("BE", "+32"), Map.entry("IE", "+353"),
+        Map.entry("SE", "+46"), Map.entry("CH", "+41"), Map.entry("MX", "+52"), Map.entry("AR", "+54"), Map.entry("BR", "+55"),
+        Map.entry("NO", "+47"), Map.entry("DK", "+45"));
+
+    /** Nombres masculinos, femeninos y apellidos por grupo de idioma. */
+    private static final Map<String, String[][]> NAMES = Map.of(
+        "es", new String[][] {
+            { "Antonio", "Manuel", "José", "Francisco", "David", "Javier", "Daniel", "Carlos", "Pablo", "Alejandro", "Sergio", "Jorge" },
+            { "María", "Carmen", "Ana", "Laura", "Lucía", "Marta", "Elena", "Paula", "Cristina", "Isabel", "Sara", "Rocío" },
+            { "García", "Fernández", "González", "Rodríguez", "López", "Martínez", "Sánchez", "Pérez", "Gómez", "Martín",
+              "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno", "Álvarez", "Romero", "Navarro", "Torres", "Domínguez" } },
+        "fr", new String[][] {
+            { "Louis", "Hugo", "Lucas", "Jules", "Gabriel", "Émile" },
+            { "Emma", "Léa", "Chloé", "Camille", "Manon", "Inès" },
+            { "Martin", "Bernard", "Dubois", "Thomas", "Robert", "Petit", "Durand", "Lefèvre", "Moreau", "Peeters" } },
+        "de", new String[][] {
+            { "Lukas", "Leon", "Felix", "Jonas", "Paul", "Maximilian" },
+            { "Hannah", "Lena", "Mia", "Sophie", "Anna", "Lea" },
+            { "Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Wagner", "Becker", "Hoffmann", "Schulz", "Koch" } },
+        "en", new String[][] {
+            { "Oliver", "James", "Jack", "Harry", "Noah", "Liam" },
+            { "Olivia", "Amelia", "Emily", "Grace", "Isla", "Ava" },
+            { "Smith", "Jones", "Taylor", "Brown", "Wilson", "Evans", "Walsh", "Murphy", "Johnson", "Davies" } },
+        "it", new String[][] {
+            { "Marco", "Luca", "Giuseppe", "Matteo", "Alessandro", "Lorenzo" },
+            { "Giulia", "Sofia", "Chiara", "Francesca", "Aurora", "Alice" },
+            { "Rossi", "Russo", "Ferrari", "Esposito", "Bianchi", "Romano", "Colombo", "Ricci" } },
+        "nl", new String[][] {
+            { "Daan", "Sem", "Bram", "Lars", "Thijs", "Ruben" },
+            { "Julia", "Fleur", "Sanne", "Tess", "Noor", "Lotte" },
+            { "de Jong", "Jansen", "de Vries", "Bakker", "Visser", "Janssens", "Maes", "Smit" } },
+        "pt", new String[][] {
+            { "João", "Tiago", "Rodrigo", "Diogo", "Pedro", "Miguel" },
+            { "Beatriz", "Inês", "Mariana", "Leonor", "Ana", "Carolina" },
+            { "Silva", "Santos", "Ferreira", "Pereira", "Oliveira", "Costa", "Rodrigues", "Almeida" } },
+        "nordic", new String[][] {
+            { "Erik", "Oscar", "William", "Nils", "Magnus", "Anders" },
+            { "Alice", "Maja", "Elsa", "Astrid", "Ingrid", "Freja" },
+            { "Andersson", "Johansson", "Karlsson", "Nilsson", "Hansen", "Olsen", "Jensen", "Larsen" } });
+
+    private static final String DNI_LETTERS = "TRWAGMYFPDXBNJZSQVHLCKE";
+
+    /**
+     * Resultado de la generación: viviendas creadas, rango de fechas y filas escritas por tabla.
+     */
+    public record Summary(List<Integer> vutIds, LocalDate firstDay, LocalDate lastDay, LocalDate today,
+        long days, long reservations, long checkins, long guests, long checkouts, long millis) {
+
+        public long rows() {
+            return days + reservations + checkins + guests + checkouts;
+        }
+    }
+
+    /**
+     * Persona generada (titular o huésped). La fecha de nacimiento va en el formato del formulario.
+     */
+    record Persona(String fullname, String surname1, String surname2, String sex, String birthDate, String nationality,
+        String docType, String docNumber, String phone, String email) {
+
+        String name() {
+            return fullname + " " + surname1 + (surname2 != null ? " " + surname2 : "");
+        }
+
+        /**
+         * Datos con las claves del formulario de check-in (GuestFormPanel / CheckinUnitOfWork).
+         */
+        Map<String, Object> toGuestForm(boolean isMinor, Integer guardianId) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("fullname", fullname);
+            data.put("surname1", surname1);
+            data.put("surname2", surname2);
+            data.put("sex", sex);
+            data.put("birthDate", birthDate);
+            data.put("nationality", nationality);
+            data.put("docType", docType);
+            data.put("docNumber", docNumber);
+            data.put("country", nationality);
+            data.put("phone", phone);
+            data.put("email", email);
+            data.put("isMinor", isMinor);
+            data.put("guardianId", guardianId);
+            return data;
+        }
+    }
+
+    /** Estancia planificada para una vivienda, antes de escribirla. */
+    private record Stay(LocalDate checkIn, LocalDate checkOut, LocalDateTime createdAt, boolean paid,
+        boolean checkedIn, boolean checkedOut, List<Persona> adults, List<Persona> minors) {}
+
+    private final long seed;
+    private final int vuts;
+    private final int years;
+    private final LocalDate today;
+    private final LocalDate firstDay;
+    private final LocalDate lastDay;
+
+    private final Random shared;
+    private final List<Persona> returning = new ArrayList<>();
+    private long personaSeq;
+
+    /**
+     * @param seed Semilla de todos los números aleatorios.
+     * @param vuts Número de viviendas.
+     * @param years Años de historia (el de 'today' incluido); se genera además el año siguiente.
+     * @param today Fecha de referencia: separa pasado (con check-in y check-out) y futuro.
+     */
+    public WorkloadGenerator(long seed, int vuts, int years, LocalDate today) {
+        this.seed = seed;
+        this.vuts = vuts;
+        this.years = years;
+        this.today = today;
+        this.firstDay = LocalDate.of(today.getYear() - years + 1, 1, 1);
+        this.lastDay = LocalDate.of(today.getYear() + 1, 12, 31);
+        this.shared = new Random(seed);
+    }
+
+    /**
+     * Genera todas las viviendas sobre la conexión indicada (el esquema ya debe existir).
+     */
+    public Summary generate(Connection conn) throws SQLException {
+
+        long started = System.nanoTime();
+        long[] counts = new long[5];
+        List<Integer> vutIds = new ArrayList<>();
+        DatabaseService db = new DatabaseService(conn);
+
+        for (int v = 0; v < vuts; v++) {
+
+            int vutId = db.register_vut(String.format("Vivienda %03d", v + 1), "", "https://example.com/vut/" + (v + 1), "workload-" + seed + "-" + v);
+            if (vutId <= 0) throw new SQLException("Could not register VUT " + (v + 1));
+            vutIds.add(vutId);
+
+            Random random = new Random(seed * 1_000_003L + v);
+            List<Stay> stays = planStays(random);
+
+            Transactions.run(conn, c -> {
+                writeVut(c, vutId, random, stays, counts);
+                return null;
+            });
+
+            if ((v + 1) % 10 == 0 || v + 1 == vuts) {
+                System.out.printf("[info] Workload: %d/%d VUTs, %d rows (%.1f s)%n", v + 1, vuts,
+                    counts[0] + counts[1] + counts[2] + counts[3] + counts[4], (System.nanoTime() - started) / 1e9);
+            }
+        }
+
+        long linkStarted = System.nanoTime();
+        int linked = GuestProfiles.linkPending(conn);
+        System.out.printf("[info] Workload: %d guests linked to their profiles in %.1f s%n", linked, (System.nanoTime() - linkStarted) / 1e9);
+
+        return new Summary(List.copyOf(vutIds), firstDay, lastDay, today, counts[0], counts[1], counts[2], counts[3], counts[4],
+            (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Temporada por mes: julio y agosto alta; junio, septiembre y diciembre media; el resto baja.
+     */
+    static Season seasonOf(int month) {
+        return switch (month) {
+            case 7, 8 -> Season.HIGH;
+            case 6, 9, 12 -> Season.AVERAGE;
+            default -> Season.LOW;
+        };
+    }
+
+    /**
+     * Términos de búsqueda realistas (prefijos de apellidos generados) para la carga de WorkloadReplay.
+     */
+    static List<String> searchTerms() {
+        List<String> terms = new ArrayList<>();
+        for (String[][] names : NAMES.values()) {
+            for (String surname : names[2]) terms.add(surname.substring(0, Math.min(4, surname.length())).toLowerCase(Locale.ROOT));
+        }
+        return terms;
+    }
+
+    /**
+     * Persona nueva. 'sequence' hace único su documento (DNI con letra válida o pasaporte).
+     */
+    static Persona persona(Random random, long sequence, String nationality, String surname1, boolean minor, LocalDate today) {
+
+        String[][] names = NAMES.get(language(nationality));
+        boolean female = random.nextBoolean();
+        String fullname = pick(random, names[female ? 1 : 0]);
+        String surname = surname1 != null ? surname1 : pick(random, names[2]);
+        boolean hispanic = names == NAMES.get("es");
+        String surname2 = hispanic ? pick(random, names[2]) : null;
+
+        int age = minor ? 1 + random.nextInt(16) : 18 + random.nextInt(60);
+        LocalDate birth = today.minusYears(age).minusDays(random.nextInt(365));
+
+        String docType;
+        String docNumber;
+        if (nationality.equals("ES")) {
+            long number = 10_000_000 + (sequence * 7_919L) % 89_999_999L;
+            docType = "DNI";
+            docNumber = number + String.valueOf(DNI_LETTERS.charAt((int) (number % 23)));
+        } else {
+            docType = "Pasaporte";
+            docNumber = nationality + String.format("%08d", sequence % 100_000_000L);
+        }
+
+        String phone = minor ? null : PHONE_PREFIXES.get(nationality) + " " + (600_000_000 + random.nextInt(99_999_999));
+        String email = minor ? null : (ascii(fullname) + "." + ascii(surname) + sequence % 1000 + "@example.com").replace(' ', '.');
+
+        return new Persona(fullname, surname, surname2, female ? "Mujer" : "Hombre", birth.format(FORM_DATE), nationality,
+            docType, docNumber, phone, email);
+    }
+
+    /**
+     * Planifica las estancias de una vivienda recorriendo el calendario de principio a fin.
+     */
+    private List<Stay> planStays(Random random) {
+
+        List<Stay> stays = new ArrayList<>();
+        LocalDate checkIn = firstDay.plusDays(random.nextInt(5));
+
+        while (true) {
+
+            Season season = seasonOf(checkIn.getMonthValue());
+            int nights = nights(random, season);
+            LocalDate checkOut = checkIn.plusDays(nights);
+            if (checkOut.isAfter(lastDay)) break;
+
+            int lead = leadTime(random, season);
+            LocalDateTime createdAt = checkIn.minusDays(lead).atTime(8 + random.nextInt(14), random.nextInt(60), random.nextInt(60));
+
+            // Se planifica siempre (para no alterar la secuencia aleatoria) pero solo existe si ya se había reservado
+            Stay stay = planStay(random, checkIn, checkOut, createdAt);
+            if (!createdAt.toLocalDate().isAfter(today)) stays.add(stay);
+
+            checkIn = checkOut.plusDays(gap(random, season, nights));
+        }
+
+        return stays;
+    }
+
+    private Stay planStay(Random random, LocalDate checkIn, LocalDate checkOut, LocalDateTime createdAt) {
+
+        boolean past = !checkOut.isAfter(today);
+        boolean current = !past && !checkIn.isAfter(today);
+
+        int pax = weighted(random, new int[] { 1, 2, 3, 4 }, new int[] { 12, 48, 15, 25 });
+        boolean family = pax >= 3 && random.nextInt(10) < 6;
+
+        Persona holder;
+        if (!returning.isEmpty() && shared.nextInt(100) < 8) {
+            holder = returning.get(shared.nextInt(returning.size()));
+        } else {
+            holder = persona(random, ++personaSeq, nationality(random), null, false, today);
+            if (returning.size() < RETURNING_POOL) returning.add(holder);
+            else returning.set(shared.nextInt(RETURNING_POOL), holder);
+        }
+
+        List<Persona> adults = new ArrayList<>();
+        List<Persona> minors = new ArrayList<>();
+        adults.add(holder);
+
+        for (int i = 1; i < pax; i++) {
+            if (family && i >= 2) {
+                minors.add(persona(random, ++personaSeq, holder.nationality(), holder.surname1(), true, today));
+            } else {
+                String nationality = random.nextInt(10) < 7 ? holder.nationality() : nationality(random);
+                adults.add(persona(random, ++personaSeq, nationality, null, false, today));
+            }
+        }
+
+        boolean paid = past || current || random.nextInt(10) < 5;
+        return new Stay(checkIn, checkOut, createdAt, paid, past || current, past, adults, minors);
+    }
+
+    /**
+     * Escribe los días, reservas, check-ins, huéspedes y check-outs de una vivienda y recalcula sus agregados.
+     */
+    private void writeVut(Connection conn, int vutId, Random random, List<Stay> stays, long[] counts) throws SQLException {
+
+        int totalDays = (int) ChronoUnit.DAYS.between(firstDay, lastDay) + 1;
+        DayStatus[] status = new DayStatus[totalDays];
+        java.util.Arrays.fill(status, DayStatus.FREE);
+
+        for (Stay stay : stays) {
+            int from = (int) ChronoUnit.DAYS.between(firstDay, stay.checkIn());
+            int to = (int) ChronoUnit.DAYS.between(firstDay, stay.checkOut());
+            for (int d = from; d < to; d++) status[d] = DayStatus.occupied(stay.paid());
+        }
+
+        long basePrice = 5_000 + random.nextInt(120) * 100L;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_DAY)) {
+            for (int d = 0; d < totalDays; d++) {
+                LocalDate day = firstDay.plusDays(d);
+                Season season = seasonOf(day.getMonthValue());
+                pstmt.setInt(1, vutId);
+                pstmt.setString(2, day.toString());
+                pstmt.setLong(3, price(basePrice, season, day));
+                pstmt.setInt(4, status[d].code());
+                pstmt.setInt(5, season.code());
+                pstmt.setBoolean(6, day.isBefore(today));
+                pstmt.addBatch();
+                if ((d + 1) % BATCH_SIZE == 0) pstmt.executeBatch();
+            }
+            pstmt.executeBatch();
+        }
+        counts[0] += totalDays;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_RESERVATION)) {
+            int pending = 0;
+            for (Stay stay : stays) {
+                Persona holder = stay.adults().get(0);
+                pstmt.setInt(1, vutId);
+                pstmt.setString(2, holder.name());
+                pstmt.setString(3, holder.docNumber());
+                pstmt.setString(4, holder.email());
+                pstmt.setString(5, holder.phone());
+                pstmt.setString(6, stay.checkIn().toString());
+                pstmt.setString(7, stay.checkOut().toString());
+                pstmt.setInt(8, stay.adults().size() + stay.minors().size());
+                pstmt.setBoolean(9, stay.paid());
+                pstmt.setBoolean(10, stay.checkedIn());
+                pstmt.setBoolean(11, stay.checkedOut());
+                pstmt.setBoolean(12, stay.checkedOut());
+                pstmt.setString(13, stay.createdAt().format(TIMESTAMP));
+                pstmt.addBatch();
+                if (++pending % BATCH_SIZE == 0) pstmt.executeBatch();
+            }
+            pstmt.executeBatch();
+        }
+        counts[1] += stays.size();
+
+        Map<String, Integer> reservationIds = ids(conn, "SELECT check_in_date, id FROM reservations WHERE vut_id = ?", vutId);
+
+        try (PreparedStatement checkins = conn.prepareStatement(SQL_INSERT_CHECKIN);
+             PreparedStatement checkouts = conn.prepareStatement(SQL_INSERT_CHECKOUT)) {
+
+            for (Stay stay : stays) {
+
+                int reservationId = reservationIds.get(stay.checkIn().toString());
+
+                if (stay.checkedIn()) {
+                    bindCheckin(checkins, random, reservationId, stay);
+                    checkins.addBatch();
+                    counts[2]++;
+                }
+
+                if (stay.checkedOut()) {
+                    boolean damage = random.nextInt(100) < 2;
+                    checkouts.setInt(1, reservationId);
+                    checkouts.setString(2, stay.checkOut() + " " + (random.nextBoolean() ? "11:00" : "12:00"));
+                    checkouts.setBoolean(3, random.nextInt(100) < 99);
+                    checkouts.setBoolean(4, damage);
+                    checkouts.setString(5, damage ? "Desperfectos menores" : null);
+                    checkouts.setBoolean(6, true);
+                    checkouts.setString(7, stay.checkOut().atTime(12, 0).format(TIMESTAMP));
+                    checkouts.addBatch();
+                    counts[4]++;
+                }
+            }
+
+            checkins.executeBatch();
+            checkouts.executeBatch();
+        }
+
+        Map<String, Integer> checkinIds = ids(conn,
+            "SELECT c.reservation_id, c.id FROM checkins c JOIN reservations r ON r.id = c.reservation_id WHERE r.vut_id = ?", vutId);
+
+        // Huéspedes por mes de entrada y nacionalidad, lo mismo que calcularía MonthlyStats.refreshNationality
+        Map<YearMonth, Map<String, Integer>> nationalities = new TreeMap<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_GUEST)) {
+            int pending = 0;
+            for (Stay stay : stays) {
+                if (!stay.checkedIn()) continue;
+                int checkinId = checkinIds.get(String.valueOf(reservationIds.get(stay.checkIn().toString())));
+                Map<String, Integer> month = nationalities.computeIfAbsent(YearMonth.from(stay.checkIn()), m -> new TreeMap<>());
+                for (Persona adult : stay.adults()) {
+                    bindGuest(pstmt, checkinId, adult, false);
+                    pstmt.addBatch();
+                    month.merge(adult.nationality(), 1, Integer::sum);
+                    if (++pending % BATCH_SIZE == 0) pstmt.executeBatch();
+                }
+                for (Persona minor : stay.minors()) {
+                    bindGuest(pstmt, checkinId, minor, true);
+                    pstmt.addBatch();
+                    month.merge(minor.nationality(), 1, Integer::sum);
+                    if (++pending % BATCH_SIZE == 0) pstmt.executeBatch();
+                }
+            }
+            pstmt.executeBatch();
+            counts[3] += pending;
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LINK_GUARDIANS)) {
+            pstmt.setInt(1, vutId);
+            pstmt.executeUpdate();
+        }
+
+        MonthlyStats.refreshRange(conn, vutId, firstDay, lastDay);
+
+        // refreshNationality recorre los huéspedes de toda la cartera en cada mes: a esta escala se escriben ya calculados
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_NATIONALITY)) {
+            for (Map.Entry<YearMonth, Map<String, Integer>> month : nationalities.entrySet()) {
+                for (Map.Entry<String, Integer> nationality : month.getValue().entrySet()) {
+                    pstmt.setInt(1, vutId);
+                    pstmt.setInt(2, month.getKey().getYear());
+                    pstmt.setInt(3, month.getKey().getMonthValue());
+                    pstmt.setString(4, nationality.getKey());
+                    pstmt.setInt(5, nationality.getValue());
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void bindCheckin(PreparedStatement pstmt, Random random, int reservationId, Stay stay) throws SQLException {
+
+        Persona holder = stay.adults().get(0);
+        int method = random.nextInt(100);
+
+        pstmt.setInt(1, reservationId);
+        if (method < 60) {
+            pstmt.setString(2, "Tarjeta de Crédito/Débito");
+            pstmt.setString(3, "**** **** **** " + (1000 + random.nextInt(9000)));
+            pstmt.setString(5, String.format("%02d/%02d", 1 + random.nextInt(12), (stay.checkIn().getYear() + 1 + random.nextInt(4)) % 100));
+        } else if (method < 85) {
+            pstmt.setString(2, "Transferencia Bancaria");
+            pstmt.setString(3, "ES" + (10 + random.nextInt(90)) + " **** **** " + (1000 + random.nextInt(9000)));
+            pstmt.setString(5, null);
+        } else {
+            pstmt.setString(2, "Efectivo");
+            pstmt.setString(3, "-");
+            pstmt.setString(5, null);
+        }
+        pstmt.setString(4, holder.name());
+        pstmt.setString(6, stay.checkIn().format(FORM_DATE));
+        pstmt.setBoolean(7, true);
+        pstmt.setBoolean(8, true);
+        pstmt.setBoolean(9, stay.checkedOut());
+        pstmt.setString(10, stay.checkIn().atTime(15 + random.nextInt(6), random.nextInt(60)).format(TIMESTAMP));
+    }
+
+    private static void bindGuest(PreparedStatement pstmt, int checkinId, Persona persona, boolean minor) throws SQLException {
+        pstmt.setInt(1, checkinId);
+        pstmt.setString(2, persona.fullname());
+        pstmt.setString(3, persona.surname1());
+        pstmt.setString(4, persona.surname2());
+        pstmt.setString(5, persona.sex());
+        pstmt.setString(6, persona.birthDate());
+        pstmt.setString(7, persona.nationality());
+        pstmt.setString(8, persona.docType());
+        pstmt.setString(9, persona.docNumber());
+        pstmt.setString(10, persona.nationality());
+        pstmt.setString(11, persona.phone());
+        pstmt.setString(12, persona.email());
+        pstmt.setBoolean(13, minor);
+    }
+
+    /**
+     * Lee pares (clave, id) de una vivienda: así se recuperan los ids generados de un lote sin depender
+     * de que el driver devuelva las claves de executeBatch.
+     */
+    private static Map<String, Integer> ids(Connection conn, String sql, int vutId) throws SQLException {
+        Map<String, Integer> ids = new HashMap<>();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, vutId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) ids.put(rs.getString(1), rs.getInt(2));
+            }
+        }
+        return ids;
+    }
+
+    /** Precio de un día en céntimos, redondeado a euros enteros. */
+    private static long price(long basePrice, Season season, LocalDate day) {
+        double factor = switch (season) {
+            case HIGH -> 1.6;
+            case AVERAGE -> 1.15;
+            case LOW -> 0.8;
+        };
+        if (day.getDayOfWeek() == DayOfWeek.FRIDAY || day.getDayOfWeek() == DayOfWeek.SATURDAY) factor *= 1.15;
+        return Math.round(basePrice * factor / 100) * 100;
+    }
+
+    /** Noches de una estancia: escapadas cortas fuera de temporada, semanas en verano. */
+    private static int nights(Random random, Season season) {
+        return season == Season.HIGH
+            ? weighted(random, new int[] { 2, 3, 4, 5, 6, 7, 10, 14 }, new int[] { 8, 15, 17, 15, 10, 20, 8, 7 })
+            : weighted(random, new int[] { 1, 2, 3, 4, 5, 7, 10, 14 }, new int[] { 15, 25, 25, 15, 8, 7, 3, 2 });
+    }
+
+    /** Días entre la reserva y la entrada (exponencial, con más antelación en temporada alta). */
+    private static int leadTime(Random random, Season season) {
+        double mean = switch (season) {
+            case HIGH -> 75;
+            case AVERAGE -> 40;
+            case LOW -> 18;
+        };
+        return (int) Math.min(365, -Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    /** Días libres hasta la siguiente entrada, según la ocupación objetivo de la temporada. */
+    private static int gap(Random random, Season season, int nights) {
+        double occupancy = switch (season) {
+            case HIGH -> 0.9;
+            case AVERAGE -> 0.7;
+            case LOW -> 0.45;
+        };
+        double mean = nights * (1 - occupancy) / occupancy;
+        return (int) Math.round(-Math.log(1 - random.nextDouble()) * mean);
+    }
+
+    private static String nationality(Random random) {
+        return NATIONALITIES[weightedIndex(random, NATIONALITY_WEIGHTS)];
+    }
+
+    private static String language(String nationality) {
+        return switch (nationality) {
+            case "ES", "MX", "AR" -> "es";
+            case "FR", "BE" -> "fr";
+            case "DE", "CH" -> "de";
+            case "GB", "IE", "US" -> "en";
+            case "IT" -> "it";
+            case "NL" -> "nl";
+            case "PT", "BR" -> "pt";
+            default -> "nordic";
+        };
+    }
+
+    private static int weighted(Random random, int[] values, int[] weights) {
+        return values[weightedIndex(random, weights)];
+    }
+
+    private static int weightedIndex(Random random, int[] weights) {
+        int total = 0;
+        for (int weight : weights) total += weight;
+        int r = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++) {
+            r -= weights[i];
+            if (r < 0) return i;
+        }
+        return weights.length - 1;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static String ascii(String text) {
+        return java.text.Normalizer.normalize(text, java.text.Normalizer.Form.NFD).replaceAll("\\p{M}", "").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Genera una cartera sintética en una carpeta de usuario aparte y reproduce una carga mixta sobre ella.
+     * * Opciones: --vuts N (20), --years M (3), --seed S (42), --today yyyy-MM-dd (hoy),
+     * --home DIR (carpeta temporal nueva), --threads T (4), --ops K (20000; 0 para no reproducir carga).
+     * La base de datos queda en DIR/.local/share/sincroestancia/data; la aplicación la abre con
+     * -Duser.home=DIR.
+     */
+    public static void main(String[] args) throws Exception {
+
+        Map<String, String> options = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+
+        int vuts = Integer.parseInt(options.getOrDefault("vuts", "20"));
+        int years = Integer.parseInt(options.getOrDefault("years", "3"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "4"));
+        int operations = Integer.parseInt(options.getOrDefault("ops", "20000"));
+        LocalDate today = options.containsKey("today") ? LocalDate.parse(options.get("today")) : LocalDate.now();
+        Path home = options.containsKey("home") ? Path.of(options.get("home")) : Files.createTempDirectory("sincroestancia-workload");
+
+        // Antes de cargar DatabaseManager, que fija la carpeta de datos a partir de 'user.home'
+        Files.createDirectories(home);
+        System.setProperty("user.home", home.toAbsolutePath().toString());
+
+        new DatabaseService();
+        Connection conn = DatabaseManager.get_connection();
+
+        Summary summary = new WorkloadGenerator(seed, vuts, years, today).generate(conn);
+        System.out.printf(Locale.ROOT, "[info] Generated %d rows in %.1f s (%.0f rows/s): %d days, %d reservations, %d check-ins, %d guests, %d check-outs%n",
+            summary.rows(), summary.millis() / 1e3, summary.rows() * 1e3 / Math.max(1, summary.millis()),
+            summary.days(), summary.reservations(), summary.checkins(), summary.guests(), summary.checkouts());
+        System.out.println("[info] Data directory: " + DatabaseManager.get_data_dir());
+
+        if (operations > 0) {
+            try (ConnectionPool pool = DatabaseManager.open_pool(threads)) {
+                if (pool == null) throw new SQLException("Could not open the connection pool.");
+                WorkloadReplay.Report report = new WorkloadReplay(pool, summary, seed).run(threads, operations);
+                System.out.print(report.format());
+            }
+        }
+
+        DatabaseManager.disconnect();
+    }
+}
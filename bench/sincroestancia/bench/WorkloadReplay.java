@@ -0,0 +1,290 @@
+package sincroestancia.bench;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sincroestancia.src.database.ConnectionPool;
+import sincroestancia.src.database.QueryStats;
+import sincroestancia.src.database.QueryStats.Snapshot;
+import sincroestancia.src.models.ReservationInfo;
+import sincroestancia.src.models.Season;
+import sincroestancia.src.services.CheckinUnitOfWork;
+import sincroestancia.src.services.DatabaseService;
+
+/**
+ * Carga mixta de lecturas y escrituras sobre una cartera generada por WorkloadGenerator.
+ * * Varios hilos, cada uno con su propio Random (semilla + número de hilo), eligen operaciones con
+ * la proporción de un día normal de uso: sobre todo calendario y fichas de día, algo de búsqueda e
+ * informes, y una parte de escrituras (reservas, precios y check-ins). Cada operación toma una
+ * conexión del ConnectionPool y trabaja con su propio DatabaseService, como RestApiServer.
+ * * Las reservas y check-ins de una misma vivienda se serializan con un cerrojo por vivienda, igual que
+ * haría un único puesto: comprobar el hueco y reservar no es atómico en DatabaseService.
+ * * @author Carlos Padilla Labella
+ */
+public final class WorkloadReplay {
+
+    /**
+     * Operaciones de la carga y su peso (sobre 100).
+     */
+    public enum Operation {
+        MONTH_DATA(40),
+        DAY_DETAILS(15),
+        RESERVATION_FOR_DAY(10),
+        SEARCH_GUESTS(8),
+        YEARLY_REPORT(5),
+        UPCOMING_MOVEMENTS(4),
+        REGISTER_RESERVATION(7),
+        UPDATE_PRICES(5),
+        CHECKIN(4),
+        SYNC_SCAN(2);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * Resultado de una operación: llamadas, las que no hicieron nada (p.ej. hueco ya ocupado), errores y latencias.
+     */
+    public record OperationStats(Operation operation, long calls, long skipped, long errors, double p50Ms, double p99Ms, double maxMs) {}
+
+    /**
+     * Resultado de la carga completa.
+     */
+    public record Report(int threads, long operations, double seconds, List<OperationStats> byOperation) {
+
+        public double throughput() {
+            return operations / seconds;
+        }
+
+        public String format() {
+            StringBuilder text = new StringBuilder();
+            text.append(String.format(Locale.ROOT, "[info] Replay: %d operations on %d threads in %.1f s: %.0f ops/s%n",
+                operations, threads, seconds, throughput()));
+            text.append(String.format(Locale.ROOT, "%-22s %8s %8s %7s %9s %9s %9s%n", "Operation", "Calls", "Skipped", "Errors", "p50 ms", "p99 ms", "Max ms"));
+            for (OperationStats s : byOperation) {
+                text.append(String.format(Locale.ROOT, "%-22s %8d %8d %7d %9.2f %9.2f %9.2f%n",
+                    s.operation(), s.calls(), s.skipped(), s.errors(), s.p50Ms(), s.p99Ms(), s.maxMs()));
+            }
+            List<Snapshot> queries = QueryStats.getInstance().snapshot();
+            if (!queries.isEmpty()) {
+                text.append("Top queries by total time:\n");
+                for (Snapshot q : queries.subList(0, Math.min(5, queries.size()))) {
+                    String sql = q.sql().length() > 100 ? q.sql().substring(0, 100) + "..." : q.sql();
+                    text.append(String.format(Locale.ROOT, "  %9.1f ms %7d calls  %s%n", q.totalMs(), q.calls(), sql));
+                }
+            }
+            return text.toString();
+        }
+    }
+
+    private static final Operation[] OPERATIONS = Operation.values();
+    private static final DateTimeFormatter FORM_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final int SKIPPED = 0;
+    private static final int DONE = 1;
+
+    private final ConnectionPool pool;
+    private final WorkloadGenerator.Summary data;
+    private final long seed;
+    private final List<String> searchTerms = WorkloadGenerator.searchTerms();
+    private final Object[] vutLocks;
+    private final AtomicLong personaSeq = new AtomicLong(500_000_000L);
+
+    public WorkloadReplay(ConnectionPool pool, WorkloadGenerator.Summary data, long seed) {
+        this.pool = pool;
+        this.data = data;
+        this.seed = seed;
+        this.vutLocks = new Object[data.vutIds().size()];
+        for (int i = 0; i < vutLocks.length; i++) vutLocks[i] = new Object();
+    }
+
+    /**
+     * Ejecuta 'operations' operaciones repartidas entre 'threads' hilos y mide cada una.
+     * * Reinicia QueryStats al empezar, así que su informe refleja solo la carga.
+     */
+    public Report run(int threads, int operations) throws InterruptedException {
+
+        QueryStats.getInstance().reset();
+
+        int[][] kinds = new int[threads][];
+        long[][] nanos = new long[threads][];
+        int[][] outcomes = new int[threads][];
+        Thread[] workers = new Thread[threads];
+
+        long started = System.nanoTime();
+
+        for (int t = 0; t < threads; t++) {
+            int quota = operations / threads + (t < operations % threads ? 1 : 0);
+            int index = t;
+            kinds[t] = new int[quota];
+            nanos[t] = new long[quota];
+            outcomes[t] = new int[quota];
+            workers[t] = new Thread(() -> work(new Random(seed + index), kinds[index], nanos[index], outcomes[index]), "workload-" + t);
+            workers[t].start();
+        }
+
+        for (Thread worker : workers) worker.join();
+
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        List<OperationStats> byOperation = new ArrayList<>();
+        for (Operation op : OPERATIONS) {
+            long[] samples = new long[operations];
+            int n = 0;
+            long skipped = 0;
+            long errors = 0;
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < kinds[t].length; i++) {
+                    if (kinds[t][i] != op.ordinal()) continue;
+                    samples[n++] = nanos[t][i];
+                    if (outcomes[t][i] == SKIPPED) skipped++;
+                    else if (outcomes[t][i] < 0) errors++;
+                }
+            }
+            if (n == 0) continue;
+            Arrays.sort(samples, 0, n);
+            byOperation.add(new OperationStats(op, n, skipped, errors, samples[(n - 1) / 2] / 1e6,
+                samples[(int) Math.ceil(n * 0.99) - 1] / 1e6, samples[n - 1] / 1e6));
+        }
+
+        return new Report(threads, operations, seconds, byOperation);
+    }
+
+    private void work(Random random, int[] kinds, long[] nanos, int[] outcomes) {
+
+        int totalWeight = 0;
+        for (Operation op : OPERATIONS) totalWeight += op.weight;
+
+        for (int i = 0; i < kinds.length; i++) {
+
+            int r = random.nextInt(totalWeight);
+            Operation op = OPERATIONS[0];
+            for (Operation candidate : OPERATIONS) {
+                r -= candidate.weight;
+                if (r < 0) {
+                    op = candidate;
+                    break;
+                }
+            }
+
+            long start = System.nanoTime();
+            int outcome;
+
+            try (ConnectionPool.Lease lease = pool.borrow()) {
+                outcome = execute(op, random, new DatabaseService(lease.connection()));
+            } catch (Exception e) {
+                System.err.println("[error] Workload " + op + " failed: " + e.getMessage());
+                outcome = -1;
+            }
+
+            kinds[i] = op.ordinal();
+            nanos[i] = System.nanoTime() - start;
+            outcomes[i] = outcome;
+        }
+    }
+
+    private int execute(Operation op, Random random, DatabaseService db) {
+
+        int vutIndex = random.nextInt(data.vutIds().size());
+        int vutId = data.vutIds().get(vutIndex);
+        LocalDate today = data.today();
+
+        switch (op) {
+
+            case MONTH_DATA -> {
+                // La mayoría de las consultas son de los meses cercanos
+                LocalDate month = today.plusMonths(random.nextInt(10) < 8 ? random.nextInt(5) - 1 : random.nextInt(25) - 12);
+                db.get_month_data(vutId, month.getYear(), month.getMonthValue() - 1);
+                return DONE;
+            }
+
+            case DAY_DETAILS -> {
+                db.get_full_day_details(vutId, Date.valueOf(today.plusDays(random.nextInt(120) - 30)));
+                return DONE;
+            }
+
+            case RESERVATION_FOR_DAY -> {
+                return db.get_reservation_details_for_day(vutId, Date.valueOf(today.plusDays(random.nextInt(120) - 30))) != null ? DONE : SKIPPED;
+            }
+
+            case SEARCH_GUESTS -> {
+                return db.search_guests(searchTerms.get(random.nextInt(searchTerms.size())), 50).isEmpty() ? SKIPPED : DONE;
+            }
+
+            case YEARLY_REPORT -> {
+                db.getYearlyReport(vutId, today.getYear() - random.nextInt(2));
+                return DONE;
+            }
+
+            case UPCOMING_MOVEMENTS -> {
+                db.getUpcomingMovements(vutId);
+                return DONE;
+            }
+
+            case REGISTER_RESERVATION -> {
+                LocalDate checkIn = today.plusDays(1 + random.nextInt(300));
+                LocalDate checkOut = checkIn.plusDays(1 + random.nextInt(7));
+                if (checkOut.isAfter(data.lastDay())) return SKIPPED;
+                WorkloadGenerator.Persona holder = WorkloadGenerator.persona(random, personaSeq.incrementAndGet(), "ES", null, false, today);
+                synchronized (vutLocks[vutIndex]) {
+                    if (!db.get_reservations_overlapping(vutId, checkIn, checkOut).isEmpty()) return SKIPPED;
+                    return db.register_reservation(vutId, holder.name(), holder.docNumber(), holder.email(), holder.phone(),
+                        checkIn.toString(), checkOut.toString(), 1 + random.nextInt(4), random.nextBoolean()) ? DONE : -1;
+                }
+            }
+
+            case UPDATE_PRICES -> {
+                LocalDate start = today.plusDays(1 + random.nextInt(300));
+                Season season = WorkloadGenerator.seasonOf(start.getMonthValue());
+                return db.update_price_range(vutId, start, start.plusDays(6), (60 + random.nextInt(120)) * 100L, season) ? DONE : -1;
+            }
+
+            case CHECKIN -> {
+                return checkin(random, db, vutIndex, vutId, today);
+            }
+
+            case SYNC_SCAN -> {
+                if (random.nextBoolean()) db.getUnsyncedFutureDays();
+                else db.getOperationsToSync();
+                return DONE;
+            }
+        }
+
+        return SKIPPED;
+    }
+
+    /**
+     * Check-in completo de una reserva próxima que aún no lo tiene: titular, un acompañante y el pago.
+     */
+    private int checkin(Random random, DatabaseService db, int vutIndex, int vutId, LocalDate today) {
+
+        synchronized (vutLocks[vutIndex]) {
+
+            ReservationInfo reservation = db.get_reservation_details_for_day(vutId, Date.valueOf(today.plusDays(random.nextInt(60))));
+            if (reservation == null || reservation.hasCheckin()) return SKIPPED;
+
+            CheckinUnitOfWork work = db.begin_checkin(reservation.id());
+            if (work.guestCount() > 0) return SKIPPED;
+
+            String nationality = random.nextBoolean() ? "ES" : "FR";
+            WorkloadGenerator.Persona holder = WorkloadGenerator.persona(random, personaSeq.incrementAndGet(), nationality, null, false, today);
+            WorkloadGenerator.Persona companion = WorkloadGenerator.persona(random, personaSeq.incrementAndGet(), nationality, null, false, today);
+
+            work.addGuest(holder.toGuestForm(false, null));
+            work.addGuest(companion.toGuestForm(false, null));
+            work.setPayment(new CheckinUnitOfWork.Payment("Tarjeta de Crédito/Débito", "**** **** **** 4242", holder.name(), "12/30",
+                today.format(FORM_DATE), true, true));
+
+            return db.commit_checkin(work) > 0 ? DONE : -1;
+        }
+    }
+}
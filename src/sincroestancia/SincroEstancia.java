@@ -4,6 +4,12 @@ import sincroestancia.src.gui.Main;
 import sincroestancia.src.gui.auth.LoginDialog;
 import sincroestancia.src.gui.auth.RegisterDialog;
 import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.ArchiveService;
+import sincroestancia.src.services.BackupService;
+import sincroestancia.src.services.ChangeLogFollower;
+import sincroestancia.src.services.GuestProfiles;
+import sincroestancia.src.services.IcalFeedServer;
+import sincroestancia.src.services.RestApiServer;
 
 import java.awt.Font;
 import java.awt.FontFormatException;
@@ -13,6 +19,7 @@ import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 import javax.swing.plaf.FontUIResource;
 
+import sincroestancia.src.database.ConnectionPool;
 import sincroestancia.src.database.DatabaseManager;
 
 /**
@@ -24,11 +31,15 @@ import sincroestancia.src.database.DatabaseManager;
  * - Cargar y aplicar la tipografía corporativa (Inter) globalmente.
  * - Configurar el tema visual (Look and Feel) FlatLaf.
  * - Gestionar el cierre seguro de recursos mediante Shutdown Hooks.
+ * * Con el argumento '--headless' no se inicializa Swing ni FlatLaf: se arranca la API REST
+ * (RestApiServer) y el servidor de calendarios iCal, pensado para un equipo sin pantalla.
  * * @author Carlos Padilla Labella
  */
 public class SincroEstancia {
     
     static final String INTER_TTF_FILE_PATH = "/sincroestancia/assets/fonts/inter.ttf";
+    static final String HEADLESS_ARG = "--headless";
+    static final String RESTORE_ARG = "--restore=";
     
     /**
      * Método principal de ejecución (Entry Point).
@@ -40,12 +51,22 @@ public class SincroEstancia {
      * 4. Look and Feel: Aplica el tema FlatIntelliJLaf para una estética moderna.
      * 5. GUI: Lanza la ventana principal Main dentro del Event Dispatch Thread (EDT)
      * de AWT/Swing para garantizar la seguridad de hilos.
-     * * @param args Argumentos de línea de comandos (no utilizados actualmente).
+     * * @param args Argumentos de línea de comandos ('--headless' para el modo servidor,
+     * '--restore=<instante>' para restaurar la última copia de seguridad anterior a ese instante).
      */
  public static void main(String[] args) {
        
         DatabaseManager.connect();
         DatabaseManager.initialise_tables();
+
+        for (String arg : args) {
+            if (arg.startsWith(RESTORE_ARG)) SincroEstancia.restore_backup(arg.substring(RESTORE_ARG.length()));
+        }
+
+        if (java.util.Arrays.asList(args).contains(HEADLESS_ARG)) {
+            SincroEstancia.start_headless();
+            return;
+        }
         
         SincroEstancia.load_fonts();
         
@@ -97,6 +118,79 @@ public class SincroEstancia {
         
     }
     
+    /**
+     * Arranca el modo servidor sin interfaz gráfica.
+     * * Pasos de implementación:
+     * - Marca la JVM como 'java.awt.headless' (ningún componente AWT/Swing llega a cargarse).
+     * - Abre el pool de conexiones y publica la API REST (puerto -Dsincroestancia.api.port).
+     * - Arranca también el servidor de calendarios iCal de disponibilidad y el seguimiento del
+     * registro de cambios (cachés al día cuando escribe otro puesto) y las copias de seguridad.
+     * - El Shutdown Hook detiene el servidor y cierra el pool y la conexión principal.
+     * * El proceso sigue vivo mientras el servidor HTTP esté en marcha.
+     */
+    private static void start_headless() {
+
+        System.setProperty("java.awt.headless", "true");
+
+        int port = Integer.getInteger("sincroestancia.api.port", RestApiServer.DEFAULT_PORT);
+        ConnectionPool pool = DatabaseManager.open_pool(Integer.getInteger("sincroestancia.api.pool", RestApiServer.DEFAULT_POOL_SIZE));
+
+        if (pool == null) {
+            DatabaseManager.disconnect();
+            System.exit(1);
+        }
+
+        try {
+
+            RestApiServer api = new RestApiServer(port, pool);
+            api.start();
+            IcalFeedServer.startDefault();
+            ChangeLogFollower.getInstance().start();
+            BackupService.getInstance().start();
+            ArchiveService.getInstance().start();
+            GuestProfiles.startBackfill();
+
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                api.stop();
+                pool.close();
+                DatabaseManager.disconnect();
+            }));
+
+            System.out.println("[info] Headless mode: REST API available at http://localhost:" + api.getPort() + "/api/");
+
+        } catch (java.io.IOException e) {
+            System.err.println("[error] Could not start REST API on port " + port + ": " + e.getMessage());
+            pool.close();
+            DatabaseManager.disconnect();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Restaura la base de datos a la última copia de seguridad anterior o igual a un instante.
+     * * Acepta un instante ISO-8601 en UTC ('2026-10-18T09:30:00Z') o una fecha y hora local
+     * ('2026-10-18T11:30'). Si no hay copia o la restauración falla, la aplicación no arranca.
+     */
+    private static void restore_backup(String when) {
+
+        java.time.Instant instant;
+
+        try {
+            instant = when.endsWith("Z") ? java.time.Instant.parse(when)
+                : java.time.LocalDateTime.parse(when).atZone(java.time.ZoneId.systemDefault()).toInstant();
+        } catch (java.time.format.DateTimeParseException e) {
+            System.err.println("[error] Invalid restore point '" + when + "': " + e.getMessage());
+            DatabaseManager.disconnect();
+            System.exit(1);
+            return;
+        }
+
+        if (BackupService.getInstance().restoreTo(instant) == null) {
+            DatabaseManager.disconnect();
+            System.exit(1);
+        }
+    }
+
     /**
      * Carga la fuente 'Inter' desde los recursos y la establece como predeterminada
      * para todos los componentes de Swing.
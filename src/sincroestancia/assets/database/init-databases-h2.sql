@@ -0,0 +1,201 @@
+CREATE TABLE IF NOT EXISTS schema_version (
+    id INTEGER PRIMARY KEY,
+    version INTEGER NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS users (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username VARCHAR NOT NULL UNIQUE,
+    password_hash VARCHAR NOT NULL,
+    account_type VARCHAR NOT NULL CHECK(account_type IN ('admin', 'user')),
+    created_at VARCHAR DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS vuts (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR NOT NULL,
+    cover VARCHAR,
+    apikey VARCHAR,
+    url VARCHAR NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS config (
+    id INTEGER DEFAULT 1 PRIMARY KEY,
+    selected_vut INTEGER,
+    google_calendar_id VARCHAR,
+    google_credentials_path VARCHAR,
+    FOREIGN KEY(selected_vut) REFERENCES vuts(id) ON DELETE SET NULL
+);
+
+MERGE INTO config (id) KEY (id) VALUES (1);
+
+CREATE TABLE IF NOT EXISTS days (
+    vut_id INTEGER NOT NULL,
+    day_date VARCHAR NOT NULL,
+    day_price DOUBLE PRECISION NOT NULL,
+    status VARCHAR NOT NULL CHECK(status IN ('reserved', 'free', 'paid')),
+    season VARCHAR NOT NULL CHECK(season IN ('high', 'low', 'average')),
+    is_synced INTEGER NOT NULL DEFAULT 0,
+    google_event_id VARCHAR,    
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+    PRIMARY KEY (vut_id, day_date)
+);
+
+CREATE TABLE IF NOT EXISTS reservations (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    vut_id INTEGER NOT NULL,
+    guest_name VARCHAR NOT NULL,
+    guest_dni VARCHAR NOT NULL,
+    guest_email VARCHAR,
+    guest_phone VARCHAR,
+    check_in_date VARCHAR NOT NULL,
+    check_out_date VARCHAR NOT NULL,
+    pax_count INTEGER NOT NULL,
+    is_paid INTEGER NOT NULL DEFAULT 0,
+    has_checkin INTEGER NOT NULL DEFAULT 0,
+    has_checkout INTEGER NOT NULL DEFAULT 0,
+    is_synced INTEGER NOT NULL DEFAULT 0,
+    google_event_id VARCHAR,
+    google_event_in_id VARCHAR,
+    google_event_out_id VARCHAR,
+    created_at VARCHAR NOT NULL,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS checkins (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    reservation_id INTEGER NOT NULL,
+    payment_method VARCHAR,
+    payment_identifier VARCHAR,
+    payment_holder VARCHAR,
+    card_expiry_date VARCHAR,
+    payment_date VARCHAR,
+    confirmed_entry_time VARCHAR,
+    confirmed_exit_time VARCHAR,
+    final_price DOUBLE PRECISION,
+    rules_accepted INTEGER NOT NULL DEFAULT 0,
+    gdpr_accepted INTEGER NOT NULL DEFAULT 0,
+    is_synced INTEGER NOT NULL DEFAULT 0,
+    google_event_id VARCHAR,
+    signed_at VARCHAR NOT NULL,
+    FOREIGN KEY(reservation_id) REFERENCES reservations(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS guests (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    checkin_id INTEGER NOT NULL,
+    fullname VARCHAR NOT NULL,
+    surname1 VARCHAR NOT NULL,
+    surname2 VARCHAR,
+    sex VARCHAR NOT NULL,
+    birth_date VARCHAR NOT NULL,
+    nationality VARCHAR NOT NULL,
+    id_document_type VARCHAR NOT NULL,
+    id_document_number VARCHAR NOT NULL,
+    id_support_number VARCHAR,
+    address_full VARCHAR,
+    address_municipality VARCHAR,
+    address_country VARCHAR,
+    phone VARCHAR,
+    email VARCHAR,
+    is_minor INTEGER NOT NULL DEFAULT 0,
+    guardian_id INTEGER,
+    FOREIGN KEY(checkin_id) REFERENCES checkins(id) ON DELETE CASCADE,
+    FOREIGN KEY(guardian_id) REFERENCES guests(id) ON DELETE SET NULL
+);
+
+CREATE TABLE IF NOT EXISTS checkouts (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    reservation_id INTEGER NOT NULL,
+    actual_exit_time VARCHAR NOT NULL,
+    keys_returned INTEGER NOT NULL DEFAULT 0,
+    damage_detected INTEGER NOT NULL DEFAULT 0,
+    damage_description VARCHAR,
+    is_synced INTEGER NOT NULL DEFAULT 0,
+    google_event_id VARCHAR,
+    created_at VARCHAR NOT NULL,
+    FOREIGN KEY(reservation_id) REFERENCES reservations(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS monthly_stats (
+    vut_id INTEGER NOT NULL,
+    year INTEGER NOT NULL,
+    month INTEGER NOT NULL,
+    revenue DOUBLE PRECISION NOT NULL DEFAULT 0,
+    occupied_nights INTEGER NOT NULL DEFAULT 0,
+    paid_nights INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+    PRIMARY KEY (vut_id, year, month)
+);
+
+CREATE TABLE IF NOT EXISTS monthly_nationality_stats (
+    vut_id INTEGER NOT NULL,
+    year INTEGER NOT NULL,
+    month INTEGER NOT NULL,
+    nationality VARCHAR NOT NULL,
+    guests INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+    PRIMARY KEY (vut_id, year, month, nationality)
+);
+
+CREATE TABLE IF NOT EXISTS ical_feeds (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    vut_id INTEGER NOT NULL,
+    name VARCHAR NOT NULL,
+    url VARCHAR NOT NULL,
+    etag VARCHAR,
+    last_modified VARCHAR,
+    last_sync VARCHAR,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS ical_feed_events (
+    feed_id INTEGER NOT NULL,
+    uid VARCHAR NOT NULL,
+    sequence INTEGER NOT NULL DEFAULT 0,
+    check_in_date VARCHAR NOT NULL,
+    check_out_date VARCHAR NOT NULL,
+    reservation_id INTEGER,
+    FOREIGN KEY(feed_id) REFERENCES ical_feeds(id) ON DELETE CASCADE,
+    FOREIGN KEY(reservation_id) REFERENCES reservations(id) ON DELETE SET NULL,
+    PRIMARY KEY (feed_id, uid)
+);
+
+CREATE TABLE IF NOT EXISTS change_log (
+    seq BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    table_name VARCHAR NOT NULL,
+    row_key VARCHAR NOT NULL,
+    vut_id INTEGER NOT NULL,
+    operation VARCHAR NOT NULL CHECK(operation IN ('insert', 'update', 'delete')),
+    changed_at VARCHAR NOT NULL,
+    origin VARCHAR NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS change_cursors (
+    consumer VARCHAR PRIMARY KEY,
+    last_seq BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS guest_profiles (
+    id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    document_number VARCHAR NOT NULL UNIQUE,
+    fullname VARCHAR,
+    surname1 VARCHAR,
+    surname2 VARCHAR,
+    sex VARCHAR,
+    birth_date VARCHAR,
+    nationality VARCHAR,
+    id_document_type VARCHAR,
+    id_support_number VARCHAR,
+    address_full VARCHAR,
+    address_municipality VARCHAR,
+    address_country VARCHAR,
+    phone VARCHAR,
+    email VARCHAR,
+    last_stay_date VARCHAR,
+    updated_at VARCHAR NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_reservations_vut_checkin ON reservations (vut_id, check_in_date);
+CREATE INDEX IF NOT EXISTS idx_checkins_reservation ON checkins (reservation_id);
+CREATE INDEX IF NOT EXISTS idx_guests_checkin ON guests (checkin_id);
@@ -110,4 +110,87 @@ CREATE TABLE IF NOT EXISTS checkouts (
     google_event_id TEXT,
     created_at TEXT NOT NULL,
     FOREIGN KEY(reservation_id) REFERENCES reservations(id) ON DELETE CASCADE
-);
\ No newline at end of file
+);
+
+CREATE TABLE IF NOT EXISTS monthly_stats (
+    vut_id INTEGER NOT NULL,
+    year INTEGER NOT NULL,
+    month INTEGER NOT NULL,
+    revenue FLOAT NOT NULL DEFAULT 0,
+    occupied_nights INTEGER NOT NULL DEFAULT 0,
+    paid_nights INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+    PRIMARY KEY (vut_id, year, month)
+);
+
+CREATE TABLE IF NOT EXISTS monthly_nationality_stats (
+    vut_id INTEGER NOT NULL,
+    year INTEGER NOT NULL,
+    month INTEGER NOT NULL,
+    nationality TEXT NOT NULL,
+    guests INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+    PRIMARY KEY (vut_id, year, month, nationality)
+);
+
+CREATE TABLE IF NOT EXISTS ical_feeds (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    vut_id INTEGER NOT NULL,
+    name TEXT NOT NULL,
+    url TEXT NOT NULL,
+    etag TEXT,
+    last_modified TEXT,
+    last_sync TEXT,
+    FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS ical_feed_events (
+    feed_id INTEGER NOT NULL,
+    uid TEXT NOT NULL,
+    sequence INTEGER NOT NULL DEFAULT 0,
+    check_in_date TEXT NOT NULL,
+    check_out_date TEXT NOT NULL,
+    reservation_id INTEGER,
+    FOREIGN KEY(feed_id) REFERENCES ical_feeds(id) ON DELETE CASCADE,
+    FOREIGN KEY(reservation_id) REFERENCES reservations(id) ON DELETE SET NULL,
+    PRIMARY KEY (feed_id, uid)
+);
+
+CREATE TABLE IF NOT EXISTS change_log (
+    seq INTEGER PRIMARY KEY AUTOINCREMENT,
+    table_name TEXT NOT NULL,
+    row_key TEXT NOT NULL,
+    vut_id INTEGER NOT NULL,
+    operation TEXT NOT NULL CHECK(operation IN ('insert', 'update', 'delete')),
+    changed_at TEXT NOT NULL,
+    origin TEXT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS change_cursors (
+    consumer TEXT PRIMARY KEY,
+    last_seq BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS guest_profiles (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    document_number TEXT NOT NULL UNIQUE,
+    fullname TEXT,
+    surname1 TEXT,
+    surname2 TEXT,
+    sex TEXT,
+    birth_date TEXT,
+    nationality TEXT,
+    id_document_type TEXT,
+    id_support_number TEXT,
+    address_full TEXT,
+    address_municipality TEXT,
+    address_country TEXT,
+    phone TEXT,
+    email TEXT,
+    last_stay_date TEXT,
+    updated_at TEXT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_reservations_vut_checkin ON reservations (vut_id, check_in_date);
+CREATE INDEX IF NOT EXISTS idx_checkins_reservation ON checkins (reservation_id);
+CREATE INDEX IF NOT EXISTS idx_guests_checkin ON guests (checkin_id);
@@ -0,0 +1,135 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool de tamaño fijo de conexiones JDBC a la base de datos activa.
+ * * La conexión única de DatabaseManager sirve a la interfaz Swing, pero un servidor que atiende
+ * peticiones concurrentes necesita que cada petición tenga su propia conexión: las transacciones
+ * (setAutoCommit(false) ... commit) de DatabaseService no pueden compartir conexión entre hilos.
+ * * Cada conexión se abre y configura a través de DatabaseProvider (en SQLite: modo WAL con
+ * 'busy_timeout', de modo que las lecturas no bloquean a la escritura en curso y las escrituras
+ * simultáneas esperan en lugar de fallar con SQLITE_BUSY).
+ * * @author Carlos Padilla Labella
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /** Tiempo máximo de espera (ms) por una conexión libre antes de rechazar la petición. */
+    private static final long BORROW_TIMEOUT_MS = 10_000;
+
+    private final BlockingQueue<Connection> idle;
+    private final List<Connection> all = new ArrayList<>();
+
+    private volatile boolean closed = false;
+
+    /**
+     * Préstamo de una conexión del pool; se devuelve al cerrarlo (try-with-resources).
+     */
+    public final class Lease implements AutoCloseable {
+
+        private final Connection conn;
+        private boolean released = false;
+
+        private Lease(Connection conn) {
+            this.conn = conn;
+        }
+
+        public Connection connection() {
+            return conn;
+        }
+
+        @Override
+        public void close() {
+            if (released) return;
+            released = true;
+            release(conn);
+        }
+    }
+
+    /**
+     * Abre todas las conexiones del pool.
+     * * @param provider Motor de base de datos (ya arrancado).
+     * @param size Número de conexiones.
+     * @throws SQLException Si alguna conexión no se puede abrir (se cierran las ya abiertas).
+     */
+    public ConnectionPool(DatabaseProvider provider, int size) throws SQLException {
+
+        if (size < 1) throw new IllegalArgumentException("Pool size must be at least 1");
+
+        this.idle = new ArrayBlockingQueue<>(size);
+
+        try {
+            for (int i = 0; i < size; i++) {
+                Connection conn = provider.open();
+                all.add(conn);
+                idle.add(conn);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Toma una conexión libre, esperando como máximo BORROW_TIMEOUT_MS.
+     * * @throws SQLException Si el pool está cerrado, se agota la espera o se interrumpe el hilo.
+     */
+    public Lease borrow() throws SQLException {
+
+        if (closed) throw new SQLException("Connection pool is closed");
+
+        try {
+            Connection conn = idle.poll(BORROW_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            if (conn == null) throw new SQLException("Timed out waiting for a pooled connection");
+            return new Lease(conn);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled connection", e);
+        }
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    /**
+     * Cierra todas las conexiones (las prestadas se cierran al devolverse).
+     */
+    @Override
+    public void close() {
+
+        closed = true;
+
+        for (Connection conn : all) {
+            try {
+                conn.close();
+            } catch (SQLException e) {
+                System.err.println("[error] Error closing pooled connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool dejándola en modo auto-commit.
+     * * Si la transacción quedó abierta (p.ej. por una excepción no controlada) se deshace antes.
+     */
+    private void release(Connection conn) {
+
+        try {
+            if (!conn.getAutoCommit()) {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            System.err.println("[error] Error resetting pooled connection: " + e.getMessage());
+        }
+
+        if (!closed) idle.offer(conn);
+    }
+}
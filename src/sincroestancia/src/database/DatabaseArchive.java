@@ -0,0 +1,140 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Almacén frío ('archive') para los días y reservas cerrados.
+ * * Las tablas activas solo deberían contener lo que usan la interfaz y la sincronización (de hoy en
+ * adelante). Lo antiguo se mueve (ArchiveService) a tablas con las mismas columnas en el esquema
+ * 'archive':
+ * - SQLite: un segundo archivo 'archive.db' junto a la base de datos, adjuntado (ATTACH) en cada conexión.
+ * - H2: un esquema 'archive' dentro de la misma base de datos del servidor.
+ * * Los informes y consultas históricas leen las vistas 'all_<tabla>' (UNION ALL de la tabla activa y
+ * la archivada). En SQLite son vistas temporales de cada conexión, porque una vista persistente no
+ * puede referirse a otra base de datos adjunta.
+ * * Las tablas archivadas se crean copiando las columnas de las activas, y las columnas que añadan
+ * migraciones posteriores se añaden también aquí al arrancar, para que las vistas sigan cuadrando.
+ * * @author Carlos Padilla Labella
+ */
+public final class DatabaseArchive {
+
+    /** Nombre del esquema (o base de datos adjunta) del archivo. */
+    public static final String SCHEMA = "archive";
+
+    /** Tablas que se archivan, de padres a hijos. */
+    public static final List<String> TABLES = List.of("reservations", "checkins", "guests", "checkouts", "days");
+
+    /** Índices de las tablas archivadas (nombre -> tabla y columnas), los mismos accesos que en las activas. */
+    private static final Map<String, String[]> INDEXES = new LinkedHashMap<>();
+
+    static {
+        INDEXES.put("idx_archive_reservations_vut_checkin", new String[] { "reservations", "vut_id, check_in_date" });
+        INDEXES.put("idx_archive_reservations_id", new String[] { "reservations", "id" });
+        INDEXES.put("idx_archive_checkins_reservation", new String[] { "checkins", "reservation_id" });
+        INDEXES.put("idx_archive_guests_checkin", new String[] { "guests", "checkin_id" });
+        INDEXES.put("idx_archive_checkouts_reservation", new String[] { "checkouts", "reservation_id" });
+        INDEXES.put("idx_archive_days_vut_date", new String[] { "days", "vut_id, day_date" });
+    }
+
+    private DatabaseArchive() {}
+
+    /**
+     * Nombre cualificado de la copia archivada de una tabla (p.ej. 'archive.days').
+     */
+    public static String archived(String table) {
+        return SCHEMA + "." + table;
+    }
+
+    /**
+     * Vista que une la tabla activa con la archivada (p.ej. 'all_days').
+     */
+    public static String view(String table) {
+        return "all_" + table;
+    }
+
+    /**
+     * Crea (si no existen) las tablas archivadas, sus índices y las vistas de unión.
+     * * Se invoca tras el script de inicialización y las migraciones, cuando las tablas activas ya
+     * tienen todas sus columnas.
+     */
+    public static void ensure_tables(Connection conn) throws SQLException {
+
+        SqlDialect dialect = DatabaseManager.dialect();
+
+        try (Statement stmt = conn.createStatement()) {
+
+            for (String table : TABLES) {
+                stmt.execute(dialect.createTableLike(archived(table), table));
+                addMissingColumns(stmt, table);
+            }
+
+            for (Map.Entry<String, String[]> index : INDEXES.entrySet()) {
+                stmt.execute(dialect.createArchiveIndex(index.getKey(), index.getValue()[0], index.getValue()[1]));
+            }
+
+            for (String table : TABLES) {
+                stmt.execute(dialect.createUnionView(view(table), table));
+            }
+        }
+    }
+
+    /**
+     * Borra del archivo las filas que vuelven a estar en las tablas activas (misma clave).
+     * * Ocurre si el proceso se interrumpe entre la confirmación del archivo y la de la base de datos
+     * principal (en modo WAL la transacción no es atómica entre archivos) o tras restaurar una copia
+     * anterior a un archivado. La copia activa es la que vale.
+     * * @return Número de filas eliminadas del archivo.
+     */
+    public static int remove_duplicates(Connection conn) throws SQLException {
+
+        int removed = 0;
+
+        try (Statement stmt = conn.createStatement()) {
+            removed += stmt.executeUpdate("DELETE FROM " + archived("reservations") + " WHERE id IN (SELECT id FROM reservations)");
+            removed += stmt.executeUpdate("DELETE FROM " + archived("checkins") + " WHERE id IN (SELECT id FROM checkins)");
+            removed += stmt.executeUpdate("DELETE FROM " + archived("guests") + " WHERE id IN (SELECT id FROM guests)");
+            removed += stmt.executeUpdate("DELETE FROM " + archived("checkouts") + " WHERE id IN (SELECT id FROM checkouts)");
+            removed += stmt.executeUpdate("DELETE FROM " + archived("days") + " WHERE EXISTS (SELECT 1 FROM days d " +
+                "WHERE d.vut_id = " + archived("days") + ".vut_id AND d.day_date = " + archived("days") + ".day_date)");
+        }
+
+        return removed;
+    }
+
+    /**
+     * Añade a la tabla archivada las columnas de la activa que todavía no tiene (al final, en el mismo orden).
+     */
+    private static void addMissingColumns(Statement stmt, String table) throws SQLException {
+
+        Map<String, String> active = columns(stmt, table);
+        Map<String, String> archived = columns(stmt, archived(table));
+
+        for (Map.Entry<String, String> column : active.entrySet()) {
+            if (!archived.containsKey(column.getKey())) {
+                stmt.execute("ALTER TABLE " + archived(table) + " ADD COLUMN " + column.getKey() + " " + column.getValue());
+            }
+        }
+    }
+
+    private static Map<String, String> columns(Statement stmt, String table) throws SQLException {
+
+        Map<String, String> columns = new LinkedHashMap<>();
+
+        try (ResultSet rs = stmt.executeQuery("SELECT * FROM " + table + " WHERE 1 = 0")) {
+            ResultSetMetaData meta = rs.getMetaData();
+            for (int i = 1; i <= meta.getColumnCount(); i++) {
+                String type = meta.getColumnTypeName(i);
+                columns.put(meta.getColumnName(i).toLowerCase(), type == null || type.isBlank() ? "TEXT" : type);
+            }
+        }
+
+        return columns;
+    }
+}
@@ -1,27 +1,30 @@
 package sincroestancia.src.database;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 /**
- * Gestor centralizado para la base de datos SQLite.
+ * Gestor centralizado para la base de datos.
  * * Esta clase implementa un patrón Singleton simplificado para mantener una única 
  * conexión abierta durante el ciclo de vida de la aplicación.
  * * Sus responsabilidades son:
- * - Establecer la conexión JDBC con el archivo local.
- * - Proveer acceso a la conexión para los repositorios y servicios.
+ * - Establecer la conexión JDBC con el motor configurado (DatabaseProvider: SQLite local o servidor H2).
+ * - Proveer acceso a la conexión y al dialecto SQL para los repositorios y servicios.
  * - Ejecutar el script de inicialización (DDL) para crear las tablas necesarias.
- * - Cerrar la conexión de forma segura al salir.
+ * - Cerrar la conexión de forma segura al salir, volcando antes las estadísticas de consultas
+ * (QueryStats) a 'diagnostics/query-stats.txt' en la carpeta de datos.
  * * @author Carlos Padilla Labella
  * @version 1.0
  */
 public class DatabaseManager {
     
     private static Connection conn = null;
+    private static DatabaseProvider provider = null;
 
     private static final String USER_DATA_DIR = 
             System.getProperty("user.home") + 
@@ -31,17 +34,13 @@ public class DatabaseManager {
             java.io.File.separator + "data" + 
             java.io.File.separator;
     
-    private static final String DB_FILENAME = "sqlite.db"; 
-    private static final String DATABASE_FULL_PATH = USER_DATA_DIR + DB_FILENAME;
-    private static final String DATABASE_URL = "jdbc:sqlite:" + DATABASE_FULL_PATH;
-    private static final String SQL_INIT_SCRIPT_FILEPATH = "/sincroestancia/assets/database/init-databases.sql";
-    
     /**
-     * Establece la conexión física con el archivo de base de datos local.
+     * Establece la conexión física con la base de datos.
      * * Pasos de implementación:
      * - Verifica si la conexión ya está establecida (para evitar reconexiones).
-     * - Carga dinámicamente el driver JDBC de SQLite.
-     * - Intenta conectar a la URL definida en DATABASE_URL.
+     * - Crea la carpeta de datos del usuario.
+     * - Arranca el proveedor (carga el driver JDBC y, en modo H2, el servidor embebido).
+     * - Abre la conexión principal con la URL del proveedor, serializada entre hilos (SharedConnection).
      * - Si ocurre un error crítico (falta driver o error SQL), termina la aplicación con código 1.
      */
     public static void connect() {
@@ -56,34 +55,45 @@ public class DatabaseManager {
             System.exit(1); 
         }
 
+        DatabaseProvider active = provider();
+
         try {
-            Class.forName("org.sqlite.JDBC");
-            System.out.println("[debug] Attempting to connect to URL: " + DATABASE_URL);
-            conn = DriverManager.getConnection(DATABASE_URL);
-            System.out.println("[info] Connection to SQLite successfully established.");
+            active.start();
+            System.out.println("[debug] Attempting to connect to URL: " + active.url());
+            conn = SharedConnection.wrap(active.open());
+            System.out.println("[info] Connection to " + active.dialect().name() + " successfully established.");
         } catch (SQLException e) {
-            System.err.println("[error] Error connecting to SQLite: " + e.getMessage());
+            System.err.println("[error] Error connecting to " + active.dialect().name() + ": " + e.getMessage());
             System.exit(1); 
-        } catch (ClassNotFoundException e) {
-            System.err.println("[error] SQLite driver not found (missing .jar in Libraries).");
-            System.exit(1);
         }
     }
 
     /**
      * Cierra la conexión activa con la base de datos de manera segura.
      * * Generalmente invocado por el Shutdown Hook de la clase principal al cerrar la app
-     * para evitar bloqueos en el archivo .db.
+     * para evitar bloqueos en el archivo .db. Detiene también el servidor H2 embebido, si lo hay.
      */
     public static void disconnect() {
+
+        if (conn != null && QueryStats.getInstance().isEnabled()) {
+            try {
+                Path file = QueryStats.getInstance().dump(Path.of(USER_DATA_DIR, "diagnostics"), "query-stats.txt");
+                System.out.println("[info] Query statistics written to " + file);
+            } catch (IOException e) {
+                System.err.println("[error] Could not write query statistics: " + e.getMessage());
+            }
+        }
+
         try {
             if (conn != null) {
                 conn.close();
-                System.out.println("[info] Connection to SQLite closed");
+                System.out.println("[info] Connection to " + dialect().name() + " closed");
             }
         } catch (SQLException ex) {
             System.err.println("[error] Error closing connection: " + ex.getMessage());
         }
+
+        if (provider != null) provider.stop();
     }
 
     /**
@@ -95,24 +105,70 @@ public class DatabaseManager {
         if (conn == null) { connect(); }
         return conn;
     }
-    
+
+    /**
+     * Carpeta de datos del usuario (base de datos SQLite, servidor H2 y copias de seguridad).
+     */
+    public static String get_data_dir() {
+        return USER_DATA_DIR;
+    }
+
+    /**
+     * Devuelve el proveedor de base de datos configurado (se resuelve una sola vez).
+     */
+    public static synchronized DatabaseProvider provider() {
+        if (provider == null) {
+            provider = DatabaseProvider.fromSystemProperties(USER_DATA_DIR);
+        }
+        return provider;
+    }
+
+    /**
+     * Dialecto SQL del motor activo, para las sentencias que no son comunes a todos ellos.
+     */
+    public static SqlDialect dialect() {
+        return provider().dialect();
+    }
+
+    /**
+     * Abre un pool de conexiones independientes sobre la misma base de datos.
+     * * Lo usan los servidores que atienden peticiones concurrentes (modo sin interfaz), donde
+     * la conexión única no puede compartirse entre transacciones de distintos hilos.
+     * * @param size Número de conexiones del pool.
+     * @return El pool abierto, o null si no se pudo abrir.
+     */
+    public static ConnectionPool open_pool(int size) {
+        try {
+            DatabaseProvider active = provider();
+            active.start();
+            ConnectionPool pool = new ConnectionPool(active, size);
+            System.out.println("[info] Connection pool opened (" + size + " connections).");
+            return pool;
+        } catch (SQLException e) {
+            System.err.println("[error] Error opening connection pool: " + e.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Ejecuta el script SQL inicial para asegurar que la estructura de datos exista.
      * * Flujo de ejecución:
-     * - Localiza el archivo 'init-databases.sql' dentro de los recursos del JAR.
+     * - Localiza el script DDL del dialecto activo ('init-databases.sql' o 'init-databases-h2.sql') dentro del JAR.
      * - Lee el contenido completo del archivo usando UTF-8.
      * - Divide el contenido en comandos individuales usando el separador ';'.
      * - Itera y ejecuta cada comando SQL (CREATE TABLE, INSERT iniciales, etc.).
+     * - Aplica las migraciones versionadas pendientes (DatabaseMigrations).
+     * - Crea o completa las tablas archivadas y sus vistas de unión (DatabaseArchive).
      * - Si el script no se encuentra o falla la ejecución, termina la aplicación.
      */
     public static void initialise_tables() {
         
         try (Statement stmt = conn.createStatement();
             
-            InputStream is = DatabaseManager.class.getResourceAsStream(SQL_INIT_SCRIPT_FILEPATH)) {
+            InputStream is = DatabaseManager.class.getResourceAsStream(dialect().initScript())) {
 
            if (is == null) {
-               System.err.println("[error] The script 'init.sql' could not be found in: " + SQL_INIT_SCRIPT_FILEPATH);
+               System.err.println("[error] The script 'init.sql' could not be found in: " + dialect().initScript());
                System.exit(1);
            }
 
@@ -127,6 +183,9 @@ public class DatabaseManager {
 
            System.out.println("[info] Script 'init.sql' successfully executed. Tables verified/created.");
 
+           DatabaseMigrations.migrate(conn);
+           DatabaseArchive.ensure_tables(conn);
+
        } catch (Exception e) {
            System.err.println("[error] Fatal error when executing the 'init.sql' script: " + e.getMessage());
            System.exit(1);
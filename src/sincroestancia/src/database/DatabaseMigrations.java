@@ -0,0 +1,262 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Function;
+import sincroestancia.src.models.DayStatus;
+import sincroestancia.src.models.Season;
+
+/**
+ * Migraciones de datos versionadas que se aplican una única vez sobre la base de datos.
+ * * El script 'init-databases.sql' solo contiene sentencias idempotentes (CREATE ... IF NOT EXISTS)
+ * y se ejecuta en cada arranque. Todo lo que no puede repetirse (rellenar tablas derivadas,
+ * ALTER TABLE, reconstrucciones...) se registra aquí como un paso numerado.
+ * * La versión aplicada se guarda donde indique el dialecto ('PRAGMA user_version' en SQLite,
+ * tabla 'schema_version' en H2), por lo que comprobar que la base de datos está al día cuesta
+ * una única lectura.
+ * * @author Carlos Padilla Labella
+ */
+public class DatabaseMigrations {
+
+    /** Número de pasos definidos en {@link #apply(Statement, int)}. */
+    private static final int LATEST_VERSION = 6;
+
+    /**
+     * Aplica, en orden y dentro de una transacción cada uno, los pasos pendientes.
+     * * Pasos de implementación:
+     * - Lee la versión actual registrada por el dialecto.
+     * - Para cada paso pendiente abre una transacción, lo ejecuta y actualiza la versión.
+     * - Si un paso falla se deshace y se lanza el error: el arranque se detiene (ver
+     * DatabaseManager.initialise_tables) en lugar de seguir con un esquema a medio migrar.
+     * * @param conn Conexión activa (tras ejecutar el script de inicialización).
+     * @throws SQLException Si no se puede leer la versión o falla un paso.
+     */
+    public static synchronized void migrate(Connection conn) throws SQLException {
+
+        int current = get_version(conn);
+        if (current >= LATEST_VERSION) return;
+
+        for (int version = current + 1; version <= LATEST_VERSION; version++) {
+
+            try {
+
+                conn.setAutoCommit(false);
+
+                try (Statement stmt = conn.createStatement()) {
+                    apply(stmt, version);
+                    DatabaseManager.dialect().writeSchemaVersion(stmt, version);
+                }
+
+                conn.commit();
+                System.out.println("[info] Database migrated to version " + version);
+
+            } catch (SQLException e) {
+
+                try {
+                    conn.rollback();
+                } catch (SQLException ex) {
+                    ex.printStackTrace();
+                }
+
+                System.err.println("[error] Migration " + version + " failed: " + e.getMessage());
+                throw e;
+
+            } finally {
+                try {
+                    conn.setAutoCommit(true);
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Devuelve la versión de esquema registrada en la base de datos (0 si nunca se migró).
+     * * @throws SQLException Si no se puede leer. No se supone nunca que la base de datos está al día:
+     * saltarse los pasos pendientes dejaría el código consultando columnas que aún no existen.
+     */
+    public static int get_version(Connection conn) throws SQLException {
+        return DatabaseManager.dialect().readSchemaVersion(conn);
+    }
+
+    /**
+     * Ejecuta un paso concreto de migración.
+     * * Pasos:
+     * 1. Rellena 'monthly_stats' y 'monthly_nationality_stats' a partir del histórico existente.
+     * 2. Añade la columna 'version' a 'reservations' y 'days' (control de concurrencia optimista).
+     * 3. Crea y rellena el índice de búsqueda de huéspedes, si el motor lo admite (los disparadores
+     * no pueden ir en el script de inicialización, que se divide por ';').
+     * 4. Añade a 'guests' el enlace 'profile_id' con su ficha en 'guest_profiles' (los huéspedes
+     * existentes los enlaza GuestProfiles.startBackfill en segundo plano).
+     * 5. Guarda 'days.status' y 'days.season' como códigos numéricos (DayStatus, Season) en lugar de
+     * texto, reconstruyendo 'days' y, si existe, su copia archivada (ver {@link #rebuildTable}).
+     * 6. Guarda el dinero en céntimos enteros (Money): 'days.day_price' pasa a 'price_cents' y
+     * 'monthly_stats.revenue' a 'revenue_cents'.
+     */
+    private static void apply(Statement stmt, int version) throws SQLException {
+
+        switch (version) {
+
+            case 1 -> {
+                stmt.execute("DELETE FROM monthly_stats");
+                stmt.execute("""
+                    INSERT INTO monthly_stats (vut_id, year, month, revenue, occupied_nights, paid_nights)
+                    SELECT vut_id,
+                           CAST(SUBSTR(day_date, 1, 4) AS INTEGER),
+                           CAST(SUBSTR(day_date, 6, 2) AS INTEGER),
+                           COALESCE(SUM(CASE WHEN status = 'paid' THEN day_price END), 0),
+                           SUM(CASE WHEN status IN ('reserved', 'paid') THEN 1 ELSE 0 END),
+                           SUM(CASE WHEN status = 'paid' THEN 1 ELSE 0 END)
+                    FROM days
+                    GROUP BY vut_id, SUBSTR(day_date, 1, 4), SUBSTR(day_date, 6, 2)
+                    """);
+
+                stmt.execute("DELETE FROM monthly_nationality_stats");
+                stmt.execute("""
+                    INSERT INTO monthly_nationality_stats (vut_id, year, month, nationality, guests)
+                    SELECT r.vut_id,
+                           CAST(SUBSTR(r.check_in_date, 1, 4) AS INTEGER),
+                           CAST(SUBSTR(r.check_in_date, 6, 2) AS INTEGER),
+                           g.nationality,
+                           COUNT(*)
+                    FROM guests g
+                    JOIN checkins c ON g.checkin_id = c.id
+                    JOIN reservations r ON c.reservation_id = r.id
+                    GROUP BY r.vut_id, SUBSTR(r.check_in_date, 1, 4), SUBSTR(r.check_in_date, 6, 2), g.nationality
+                    """);
+            }
+
+            case 2 -> {
+                stmt.execute("ALTER TABLE reservations ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+                stmt.execute("ALTER TABLE days ADD COLUMN version INTEGER NOT NULL DEFAULT 0");
+            }
+
+            case 3 -> DatabaseManager.dialect().createSearchIndex(stmt);
+
+            case 4 -> {
+                stmt.execute("ALTER TABLE guests ADD COLUMN profile_id INTEGER");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_guests_profile ON guests (profile_id)");
+            }
+
+            case 5 -> rebuildTable(stmt, "days", DAYS_TABLE_V5, DatabaseMigrations::daysWithCodes);
+
+            case 6 -> {
+                rebuildTable(stmt, "days", DAYS_TABLE_V6, DatabaseMigrations::daysWithCents);
+                rebuildTable(stmt, "monthly_stats", MONTHLY_STATS_TABLE_V6, table ->
+                    "SELECT vut_id, year, month, CAST(ROUND(revenue * 100) AS BIGINT) AS revenue_cents, occupied_nights, paid_nights FROM " + table);
+            }
+
+            default -> throw new SQLException("Unknown migration version " + version);
+        }
+    }
+
+    /** Definición de 'days' con los estados y temporadas como códigos (tipos válidos en SQLite y H2). */
+    private static final String DAYS_TABLE_V5 = """
+        CREATE TABLE days (
+            vut_id INTEGER NOT NULL,
+            day_date VARCHAR NOT NULL,
+            day_price DOUBLE PRECISION NOT NULL,
+            status SMALLINT NOT NULL CHECK(status IN (0, 1, 2)),
+            season SMALLINT NOT NULL CHECK(season IN (0, 1, 2)),
+            is_synced INTEGER NOT NULL DEFAULT 0,
+            google_event_id VARCHAR,
+            version INTEGER NOT NULL DEFAULT 0,
+            FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+            PRIMARY KEY (vut_id, day_date)
+        )
+        """;
+
+    /** Definición de 'days' con el precio en céntimos (misma posición que el antiguo 'day_price'). */
+    private static final String DAYS_TABLE_V6 = """
+        CREATE TABLE days (
+            vut_id INTEGER NOT NULL,
+            day_date VARCHAR NOT NULL,
+            price_cents INTEGER NOT NULL,
+            status SMALLINT NOT NULL CHECK(status IN (0, 1, 2)),
+            season SMALLINT NOT NULL CHECK(season IN (0, 1, 2)),
+            is_synced INTEGER NOT NULL DEFAULT 0,
+            google_event_id VARCHAR,
+            version INTEGER NOT NULL DEFAULT 0,
+            FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+            PRIMARY KEY (vut_id, day_date)
+        )
+        """;
+
+    /** Definición de 'monthly_stats' con los ingresos en céntimos. */
+    private static final String MONTHLY_STATS_TABLE_V6 = """
+        CREATE TABLE monthly_stats (
+            vut_id INTEGER NOT NULL,
+            year INTEGER NOT NULL,
+            month INTEGER NOT NULL,
+            revenue_cents BIGINT NOT NULL DEFAULT 0,
+            occupied_nights INTEGER NOT NULL DEFAULT 0,
+            paid_nights INTEGER NOT NULL DEFAULT 0,
+            FOREIGN KEY(vut_id) REFERENCES vuts(id) ON DELETE CASCADE,
+            PRIMARY KEY (vut_id, year, month)
+        )
+        """;
+
+    /**
+     * Reconstruye una tabla con una definición nueva, convirtiendo sus filas (pasos 5 y 6).
+     * * Ni SQLite ni H2 permiten cambiar el tipo ni el CHECK de una columna en su sitio de forma común,
+     * así que la tabla se copia convertida a una tabla auxiliar, se elimina, se vuelve a crear con la
+     * definición nueva (mismas columnas y en el mismo orden, para que las vistas de unión sigan
+     * cuadrando) y se rellena. No se usa ALTER TABLE ... RENAME porque SQLite lo rechaza mientras
+     * haya vistas (las temporales 'all_*') que apunten a la tabla eliminada.
+     * * Si la tabla tiene copia archivada, esta (que no tiene restricciones) se convierte igual y se
+     * vuelve a crear a partir de la tabla nueva.
+     * * @param converted Consulta que lee una tabla (activa o archivada) en el orden de columnas de la definición nueva.
+     */
+    private static void rebuildTable(Statement stmt, String table, String definition, Function<String, String> converted) throws SQLException {
+
+        SqlDialect dialect = DatabaseManager.dialect();
+        String copy = table + "_migration";
+        String archive = DatabaseArchive.archived(table);
+        boolean hasArchive = DatabaseArchive.TABLES.contains(table) && exists(stmt, archive);
+
+        stmt.execute("CREATE TABLE " + copy + " AS " + converted.apply(table));
+        stmt.execute(dialect.dropTable(table));
+        stmt.execute(definition);
+        stmt.execute("INSERT INTO " + table + " SELECT * FROM " + copy);
+        stmt.execute(dialect.dropTable(copy));
+
+        if (hasArchive) {
+            stmt.execute("CREATE TABLE " + copy + " AS " + converted.apply(archive));
+            stmt.execute(dialect.dropTable(archive));
+            stmt.execute(dialect.createTableLike(archive, table));
+            stmt.execute("INSERT INTO " + archive + " SELECT * FROM " + copy);
+            stmt.execute(dialect.dropTable(copy));
+        }
+    }
+
+    /**
+     * Paso 5: días con los textos antiguos de estado y temporada traducidos a sus códigos.
+     */
+    private static String daysWithCodes(String table) {
+        return "SELECT vut_id, day_date, day_price, " +
+            "CASE status WHEN 'reserved' THEN " + DayStatus.RESERVED.code() + " WHEN 'paid' THEN " + DayStatus.PAID.code() +
+            " ELSE " + DayStatus.FREE.code() + " END AS status, " +
+            "CASE season WHEN 'low' THEN " + Season.LOW.code() + " WHEN 'high' THEN " + Season.HIGH.code() +
+            " ELSE " + Season.AVERAGE.code() + " END AS season, " +
+            "is_synced, google_event_id, version FROM " + table;
+    }
+
+    /**
+     * Paso 6: días con el precio pasado a céntimos (redondeando, para absorber el error del double).
+     */
+    private static String daysWithCents(String table) {
+        return "SELECT vut_id, day_date, CAST(ROUND(day_price * 100) AS INTEGER) AS price_cents, " +
+            "status, season, is_synced, google_event_id, version FROM " + table;
+    }
+
+    private static boolean exists(Statement stmt, String table) {
+        try {
+            stmt.executeQuery("SELECT 1 FROM " + table + " WHERE 1 = 0").close();
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package sincroestancia.src.database;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Base64;
+
+/**
+ * Motor de base de datos activo: dialecto SQL, URL JDBC y credenciales.
+ * * Se elige con propiedades del sistema al arrancar:
+ * - sincroestancia.db            'sqlite' (por defecto) o 'h2'.
+ * - sincroestancia.db.url        URL JDBC explícita (p.ej. jdbc:h2:tcp://recepcion:9092/sincroestancia
+ * para conectarse al servidor de otro puesto).
+ * - sincroestancia.db.user       Usuario (H2, por defecto 'sa').
+ * - sincroestancia.db.password   Contraseña (H2). Necesaria para que otros puestos puedan conectarse.
+ * - sincroestancia.db.port       Puerto del servidor H2 embebido (por defecto 9092).
+ * * Con 'h2' y sin URL explícita, este puesto arranca un servidor H2 (TCP) sobre la carpeta de datos
+ * del usuario y se conecta a él como un cliente más. El driver de H2 se carga por reflexión: solo hace
+ * falta añadir el .jar a las librerías cuando se usa este modo.
+ * * El administrador de H2 puede ejecutar código Java en el equipo (CREATE ALIAS), así que el servidor
+ * nunca queda abierto sin contraseña:
+ * - Con 'sincroestancia.db.password', acepta conexiones de otros puestos de la oficina con ella.
+ * - Sin ella, solo escucha en 127.0.0.1 y usa una contraseña generada al crear la base de datos, que
+ * se guarda en la carpeta de datos (h2.secret, legible solo por el usuario). Las bases de datos
+ * creadas sin contraseña por versiones anteriores reciben esa contraseña al arrancar.
+ * * @author Carlos Padilla Labella
+ */
+public final class DatabaseProvider {
+
+    public static final String BACKEND_PROPERTY = "sincroestancia.db";
+    public static final int DEFAULT_H2_PORT = 9092;
+
+    private static final String SQLITE_FILENAME = "sqlite.db";
+    private static final String H2_DATABASE = "sincroestancia";
+    private static final String H2_SERVER_CLASS = "org.h2.tools.Server";
+    private static final String H2_SECRET_FILE = "h2.secret";
+    private static final String H2_BIND_PROPERTY = "h2.bindAddress";
+
+    private final SqlDialect dialect;
+    private final String url;
+    private final String user;
+    private String password;
+
+    /** Carpeta y puerto del servidor H2 embebido (null si este puesto no lo arranca). */
+    private final Path serverBaseDir;
+    private final int serverPort;
+
+    private Object server;
+
+    private DatabaseProvider(SqlDialect dialect, String url, String user, String password, Path serverBaseDir, int serverPort) {
+        this.dialect = dialect;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.serverBaseDir = serverBaseDir;
+        this.serverPort = serverPort;
+    }
+
+    /**
+     * Construye el proveedor a partir de las propiedades del sistema.
+     * * @param dataDir Carpeta de datos del usuario (archivo SQLite o base de datos del servidor H2).
+     */
+    public static DatabaseProvider fromSystemProperties(String dataDir) {
+
+        String backend = System.getProperty(BACKEND_PROPERTY, "sqlite").trim().toLowerCase();
+        String explicitUrl = System.getProperty("sincroestancia.db.url");
+
+        if (!backend.equals("h2")) {
+            if (!backend.equals("sqlite")) {
+                System.err.println("[warning] Unknown database backend '" + backend + "', using SQLite.");
+            }
+            String url = explicitUrl != null ? explicitUrl : "jdbc:sqlite:" + Path.of(dataDir, SQLITE_FILENAME);
+            return new DatabaseProvider(new SqliteDialect(), url, null, null, null, 0);
+        }
+
+        String user = System.getProperty("sincroestancia.db.user", "sa");
+        String password = System.getProperty("sincroestancia.db.password", "");
+
+        if (explicitUrl != null) {
+            String url = explicitUrl.contains("NON_KEYWORDS") ? explicitUrl : explicitUrl + H2Dialect.URL_OPTIONS;
+            return new DatabaseProvider(new H2Dialect(), url, user, password, null, 0);
+        }
+
+        int port = Integer.getInteger("sincroestancia.db.port", DEFAULT_H2_PORT);
+        String url = "jdbc:h2:tcp://localhost:" + port + "/" + H2_DATABASE + H2Dialect.URL_OPTIONS;
+        return new DatabaseProvider(new H2Dialect(), url, user, password, Path.of(dataDir), port);
+    }
+
+    public SqlDialect dialect() {
+        return dialect;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    /**
+     * Carga el driver y, si corresponde, arranca el servidor H2 embebido.
+     * * Si el puerto ya está en uso se asume que otra instancia de este puesto ya sirve la base de
+     * datos y se continúa como cliente.
+     */
+    public synchronized void start() throws SQLException {
+
+        // H2 lee la dirección de escucha al cargar sus clases: debe fijarse antes que el driver
+        if (serverBaseDir != null && password.isEmpty() && System.getProperty(H2_BIND_PROPERTY) == null) {
+            System.setProperty(H2_BIND_PROPERTY, "127.0.0.1");
+        }
+
+        try {
+            Class.forName(dialect.driverClass());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException(dialect.name() + " driver not found (missing .jar in Libraries).", e);
+        }
+
+        if (serverBaseDir == null || server != null) return;
+
+        boolean allowOthers = !password.isEmpty();
+
+        if (!allowOthers) {
+            password = localPassword();
+        } else {
+            createH2DatabaseIfMissing();
+        }
+
+        try {
+
+            Class<?> serverClass = Class.forName(H2_SERVER_CLASS);
+            Object tcpServer = serverClass.getMethod("createTcpServer", String[].class).invoke(null, (Object) (allowOthers
+                ? new String[] { "-tcpPort", String.valueOf(serverPort), "-tcpAllowOthers", "-baseDir", serverBaseDir.toString() }
+                : new String[] { "-tcpPort", String.valueOf(serverPort), "-baseDir", serverBaseDir.toString() }));
+            serverClass.getMethod("start").invoke(tcpServer);
+            server = tcpServer;
+
+            System.out.println("[info] H2 server listening on port " + serverPort + " (" + serverBaseDir + ")"
+                + (allowOthers ? "" : "; local connections only, set -Dsincroestancia.db.password to share it"));
+
+        } catch (ReflectiveOperationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            System.out.println("[info] H2 server not started here (" + cause.getMessage() + "); connecting as a client.");
+        }
+    }
+
+    /**
+     * Abre una conexión nueva ya configurada según el dialecto y con el archivo accesible.
+     * * La conexión se devuelve instrumentada (QueryStats), de modo que la principal, las del pool y
+     * las de los servicios en segundo plano quedan medidas por igual.
+     */
+    public Connection open() throws SQLException {
+        Connection conn = user == null ? DriverManager.getConnection(url) : DriverManager.getConnection(url, user, password);
+        dialect.configure(conn);
+        dialect.attachArchive(conn);
+        return QueryStats.instrument(conn);
+    }
+
+    /**
+     * Detiene el servidor H2 embebido (si este puesto lo arrancó).
+     */
+    public synchronized void stop() {
+
+        if (server == null) return;
+
+        try {
+            server.getClass().getMethod("stop").invoke(server);
+            System.out.println("[info] H2 server stopped");
+        } catch (ReflectiveOperationException e) {
+            System.err.println("[error] Error stopping H2 server: " + e.getMessage());
+        }
+
+        server = null;
+    }
+
+    /**
+     * El servidor TCP no permite crear bases de datos de forma remota, así que la primera vez se
+     * crea abriéndola en modo embebido (con las credenciales configuradas como administrador).
+     */
+    private void createH2DatabaseIfMissing() throws SQLException {
+
+        if (h2DatabaseExists()) return;
+
+        DriverManager.getConnection(h2FileUrl(), user, password).close();
+        System.out.println("[info] H2 database created in " + serverBaseDir);
+    }
+
+    /**
+     * Contraseña del servidor local (sin 'sincroestancia.db.password'): la guardada en h2.secret o,
+     * la primera vez, una nueva con la que se crea la base de datos (o se protege la que se creó sin
+     * contraseña). El archivo se escribe antes de cambiar la contraseña para no perderla nunca.
+     */
+    private String localPassword() throws SQLException {
+
+        Path secretFile = serverBaseDir.resolve(H2_SECRET_FILE);
+
+        try {
+
+            if (Files.exists(secretFile)) return Files.readString(secretFile, StandardCharsets.UTF_8).trim();
+
+            byte[] bytes = new byte[24];
+            new SecureRandom().nextBytes(bytes);
+            String secret = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+
+            Files.writeString(secretFile, secret, StandardCharsets.UTF_8);
+            try {
+                Files.setPosixFilePermissions(secretFile, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                secretFile.toFile().setReadable(false, false);
+                secretFile.toFile().setReadable(true, true);
+            }
+
+            try {
+                if (h2DatabaseExists()) {
+                    try (Connection conn = DriverManager.getConnection(h2FileUrl(), user, "");
+                         PreparedStatement pstmt = conn.prepareStatement("ALTER USER \"" + user.toUpperCase() + "\" SET PASSWORD ?")) {
+                        pstmt.setString(1, secret);
+                        pstmt.executeUpdate();
+                    }
+                    System.out.println("[info] H2 database protected with a generated password (" + secretFile + ")");
+                } else {
+                    DriverManager.getConnection(h2FileUrl(), user, secret).close();
+                    System.out.println("[info] H2 database created in " + serverBaseDir);
+                }
+            } catch (SQLException e) {
+                Files.deleteIfExists(secretFile);
+                throw e;
+            }
+
+            return secret;
+
+        } catch (IOException e) {
+            throw new SQLException("Could not read or write the H2 password file " + secretFile, e);
+        }
+    }
+
+    private boolean h2DatabaseExists() {
+        return Files.exists(serverBaseDir.resolve(H2_DATABASE + ".mv.db"));
+    }
+
+    private String h2FileUrl() {
+        return "jdbc:h2:file:" + serverBaseDir.resolve(H2_DATABASE) + H2Dialect.URL_OPTIONS;
+    }
+}
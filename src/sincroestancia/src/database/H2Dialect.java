@@ -0,0 +1,133 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Dialecto de H2, usado en modo servidor para compartir una base de datos entre varios puestos.
+ * * - El esquema se crea con 'init-databases-h2.sql' (tipos VARCHAR/IDENTITY en lugar de TEXT/AUTOINCREMENT).
+ * - La versión de esquema se guarda en la tabla 'schema_version'.
+ * - 'upsert' se traduce a MERGE INTO ... USING ... WHEN MATCHED / WHEN NOT MATCHED.
+ * - El archivo es el esquema 'archive' de la misma base de datos, con vistas de unión persistentes.
+ * - No hay índice de texto completo (FTS5 es de SQLite): la búsqueda de huéspedes recurre a LIKE.
+ * - Las columnas 'year' y 'month' son palabras reservadas en H2 2.x: la URL debe incluir
+ * NON_KEYWORDS (ver {@link #URL_OPTIONS}).
+ * * @author Carlos Padilla Labella
+ */
+public final class H2Dialect implements SqlDialect {
+
+    /** Opciones que se añaden a la URL JDBC de H2 para aceptar el esquema de la aplicación. */
+    public static final String URL_OPTIONS = ";NON_KEYWORDS=YEAR,MONTH,VALUE";
+
+    /** Tiempo máximo (ms) de espera por un bloqueo de fila antes de fallar. */
+    private static final int LOCK_TIMEOUT_MS = 5_000;
+
+    @Override
+    public String name() {
+        return "H2";
+    }
+
+    @Override
+    public String driverClass() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    public String initScript() {
+        return "/sincroestancia/assets/database/init-databases-h2.sql";
+    }
+
+    @Override
+    public void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("SET LOCK_TIMEOUT " + LOCK_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public int readSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT version FROM schema_version WHERE id = 1")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public void writeSchemaVersion(Statement stmt, int version) throws SQLException {
+        stmt.execute("MERGE INTO schema_version (id, version) KEY (id) VALUES (1, " + version + ")");
+    }
+
+    @Override
+    public String upsert(String table, String[] columns, String[] keys, String[] updates, String source, String condition, String versionColumn) {
+
+        StringBuilder sql = new StringBuilder("MERGE INTO ").append(table)
+            .append(" USING (").append(source).append(") AS src (").append(String.join(", ", columns)).append(") ON (");
+
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append(table).append('.').append(keys[i]).append(" = src.").append(keys[i]);
+        }
+        sql.append(')');
+
+        if (updates.length > 0) {
+            sql.append(" WHEN MATCHED");
+            if (condition != null) sql.append(" AND ").append(condition);
+            sql.append(" THEN UPDATE SET ");
+            for (int i = 0; i < updates.length; i++) {
+                if (i > 0) sql.append(", ");
+                sql.append(updates[i]).append(" = src.").append(updates[i]);
+            }
+            if (versionColumn != null) sql.append(", ").append(versionColumn).append(" = ").append(table).append('.').append(versionColumn).append(" + 1");
+        }
+
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append("src.").append(columns[i]);
+        }
+
+        return sql.append(')').toString();
+    }
+
+    @Override
+    public void attachArchive(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE SCHEMA IF NOT EXISTS " + DatabaseArchive.SCHEMA);
+        }
+    }
+
+    @Override
+    public String createTableLike(String target, String source) {
+        return "CREATE TABLE IF NOT EXISTS " + target + " AS SELECT * FROM " + source + " WITH NO DATA";
+    }
+
+    @Override
+    public String dropTable(String table) {
+        return "DROP TABLE IF EXISTS " + table + " CASCADE";
+    }
+
+    @Override
+    public String explain(String sql) {
+        return "EXPLAIN " + sql;
+    }
+
+    @Override
+    public String createArchiveIndex(String name, String table, String columns) {
+        return "CREATE INDEX IF NOT EXISTS " + DatabaseArchive.SCHEMA + "." + name + " ON " + DatabaseArchive.archived(table) + " (" + columns + ")";
+    }
+
+    @Override
+    public String createUnionView(String view, String table) {
+        return "CREATE OR REPLACE VIEW " + view + " AS SELECT * FROM " + table + " UNION ALL SELECT * FROM " + DatabaseArchive.archived(table);
+    }
+
+    @Override
+    public boolean hasSearchIndex() {
+        return false;
+    }
+
+    @Override
+    public void createSearchIndex(Statement stmt) {
+    }
+}
@@ -0,0 +1,228 @@
+package sincroestancia.src.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Envoltorio de una conexión JDBC que mide cada sentencia y la anota en QueryStats.
+ * * Se implementa con proxies dinámicos (java.lang.reflect.Proxy) en lugar de clases que reimplementen
+ * las decenas de métodos de Connection, Statement y ResultSet: solo se interceptan los que importan y
+ * el resto se delega tal cual (incluido unwrap(), así que BackupService sigue llegando a la conexión
+ * nativa de SQLite).
+ * - prepareStatement / createStatement devuelven sentencias envueltas.
+ * - executeUpdate, executeBatch y execute se miden en la propia llamada (filas = filas modificadas).
+ * - executeQuery devuelve un ResultSet envuelto: el tiempo va desde la ejecución hasta que se cierra
+ * el ResultSet (o su sentencia), porque SQLite calcula las filas mientras se recorren; las filas son
+ * las llamadas a next() que devolvieron true.
+ * * @author Carlos Padilla Labella
+ */
+final class InstrumentedConnection {
+
+    private InstrumentedConnection() {}
+
+    /**
+     * Devuelve una conexión que delega en 'conn' y anota sus sentencias en 'stats'.
+     */
+    static Connection wrap(Connection conn, QueryStats stats) {
+        return proxy(Connection.class, new ConnectionHandler(conn, stats));
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(InstrumentedConnection.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Invoca el método sobre el objeto real, relanzando la excepción original (SQLException...).
+     */
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * equals/hashCode/toString del proxy: identidad del propio proxy, como un objeto normal.
+     */
+    private static Object objectMethod(Object proxy, Object target, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> "Instrumented[" + target + "]";
+        };
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Integer count) return Math.max(0, count);
+        if (result instanceof Long count) return Math.max(0, count);
+        if (result instanceof int[] counts) {
+            long total = 0;
+            for (int count : counts) if (count > 0) total += count;
+            return total;
+        }
+        if (result instanceof long[] counts) {
+            long total = 0;
+            for (long count : counts) if (count > 0) total += count;
+            return total;
+        }
+        return 0;
+    }
+
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final QueryStats stats;
+
+        private ConnectionHandler(Connection target, QueryStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getDeclaringClass() == Object.class) return objectMethod(proxy, target, method, args);
+
+            Object result = InstrumentedConnection.invoke(target, method, args);
+
+            return switch (method.getName()) {
+                case "prepareStatement" -> proxy(PreparedStatement.class, new StatementHandler((Statement) result, (String) args[0], target, stats));
+                case "createStatement" -> proxy(Statement.class, new StatementHandler((Statement) result, null, target, stats));
+                default -> result;
+            };
+        }
+    }
+
+    /**
+     * Sentencia (preparada o no). 'preparedSql' es el de prepareStatement; en las sentencias simples se toma
+     * de cada llamada a execute*(sql) o del primer addBatch(sql).
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql;
+        private final Connection conn;
+        private final QueryStats stats;
+
+        private String batchSql;
+        private ResultSetHandler open;
+
+        private StatementHandler(Statement target, String preparedSql, Connection conn, QueryStats stats) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+            this.conn = conn;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getDeclaringClass() == Object.class) return objectMethod(proxy, target, method, args);
+
+            String name = method.getName();
+            String sql = preparedSql;
+
+            switch (name) {
+                case "executeQuery", "executeUpdate", "executeLargeUpdate", "execute" -> {
+                    if (args != null && args.length > 0 && args[0] instanceof String text) sql = text;
+                }
+                case "addBatch" -> {
+                    if (args != null && args.length == 1 && args[0] instanceof String text && batchSql == null) batchSql = text;
+                    return InstrumentedConnection.invoke(target, method, args);
+                }
+                case "executeBatch", "executeLargeBatch" -> {
+                    if (sql == null) sql = batchSql;
+                    batchSql = null;
+                }
+                case "close" -> {
+                    finishOpen();
+                    return InstrumentedConnection.invoke(target, method, args);
+                }
+                default -> {
+                    return InstrumentedConnection.invoke(target, method, args);
+                }
+            }
+
+            finishOpen();
+
+            String label = sql == null ? "(sin SQL)" : sql;
+            long start = System.nanoTime();
+            Object result;
+
+            try {
+                result = InstrumentedConnection.invoke(target, method, args);
+            } catch (Throwable e) {
+                stats.record(label, System.nanoTime() - start, 0, true, conn);
+                throw e;
+            }
+
+            if (name.equals("executeQuery")) {
+                open = new ResultSetHandler((ResultSet) result, label, start, conn, stats);
+                return proxy(ResultSet.class, open);
+            }
+
+            long rows = name.equals("execute") ? (Boolean.TRUE.equals(result) ? 0 : Math.max(0, target.getUpdateCount())) : rowsOf(result);
+            stats.record(label, System.nanoTime() - start, rows, false, conn);
+            return result;
+        }
+
+        private void finishOpen() {
+            if (open != null) open.finish();
+            open = null;
+        }
+    }
+
+    /**
+     * Resultado de executeQuery: cuenta las filas y anota la consulta al cerrarse.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final String sql;
+        private final long start;
+        private final Connection conn;
+        private final QueryStats stats;
+
+        private long rows;
+        private boolean finished;
+
+        private ResultSetHandler(ResultSet target, String sql, long start, Connection conn, QueryStats stats) {
+            this.target = target;
+            this.sql = sql;
+            this.start = start;
+            this.conn = conn;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (method.getDeclaringClass() == Object.class) return objectMethod(proxy, target, method, args);
+
+            String name = method.getName();
+
+            if (name.equals("next")) {
+                Object result = InstrumentedConnection.invoke(target, method, args);
+                if (Boolean.TRUE.equals(result)) rows++;
+                return result;
+            }
+
+            if (name.equals("close")) finish();
+
+            return InstrumentedConnection.invoke(target, method, args);
+        }
+
+        private void finish() {
+            if (finished) return;
+            finished = true;
+            stats.record(sql, System.nanoTime() - start, rows, false, conn);
+        }
+    }
+}
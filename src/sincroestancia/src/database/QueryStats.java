@@ -0,0 +1,335 @@
+package sincroestancia.src.database;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Estadísticas de acceso a la base de datos por plantilla SQL, y registro de consultas lentas.
+ * * Todas las conexiones que abre DatabaseProvider pasan por {@link #instrument(Connection)}, que las
+ * envuelve (InstrumentedConnection) para medir cada ejecución sin tocar los servicios. Por cada
+ * plantilla (el SQL con los literales sustituidos por '?') se guarda:
+ * - Llamadas, errores, filas devueltas o modificadas y tiempo total y máximo.
+ * - Un histograma de latencias con cubos logarítmicos (4 por potencia de dos, ~19% de error), del
+ * que salen p50/p95/p99 sin guardar cada muestra.
+ * - Las llamadas hechas desde el hilo de Swing (EDT), que congelan la interfaz mientras duran, y el
+ * último hilo que la ejecutó.
+ * * Las ejecuciones que superan el umbral (propiedad 'sincroestancia.db.slow_ms', 200 ms por defecto)
+ * se anotan en un registro circular junto con su plan de ejecución (EXPLAIN del dialecto, calculado
+ * una vez por plantilla) y se avisan por consola.
+ * * Se consulta desde la pestaña 'Diagnóstico' de la configuración y se vuelca a un archivo de texto
+ * ({@link #dump(Path)}; al cerrar la conexión principal, 'diagnostics/query-stats.txt').
+ * Se desactiva con '-Dsincroestancia.db.stats=false'.
+ * * @author Carlos Padilla Labella
+ */
+public final class QueryStats {
+
+    public static final String ENABLED_PROPERTY = "sincroestancia.db.stats";
+    public static final String SLOW_MS_PROPERTY = "sincroestancia.db.slow_ms";
+
+    private static final int SUB_BUCKETS = 4;
+    private static final int BUCKETS = 30 * SUB_BUCKETS;
+    private static final int SLOW_LOG_SIZE = 200;
+    private static final int MAX_CACHED_SQL = 10_000;
+    private static final int MAX_SQL_LENGTH = 500;
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EXPLAINABLE = Pattern.compile("^(SELECT|WITH|INSERT|UPDATE|DELETE)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private static final QueryStats INSTANCE = new QueryStats();
+
+    /**
+     * Resumen de una plantilla SQL. Los tiempos están en milisegundos.
+     */
+    public record Snapshot(String sql, long calls, long errors, long rows, long edtCalls, String lastThread,
+        double totalMs, double maxMs, double p50Ms, double p95Ms, double p99Ms) {
+
+        public double meanMs() {
+            return calls == 0 ? 0 : totalMs / calls;
+        }
+    }
+
+    /**
+     * Ejecución que superó el umbral de consulta lenta.
+     */
+    public record SlowQuery(String timestamp, String sql, double millis, long rows, String thread, boolean edt, String plan) {}
+
+    private final boolean enabled = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY, "true"));
+    private final Map<String, Template> templates = new ConcurrentHashMap<>();
+    private final Map<String, Template> bySql = new ConcurrentHashMap<>();
+    private final Map<String, String> plans = new ConcurrentHashMap<>();
+    private final ArrayDeque<SlowQuery> slowLog = new ArrayDeque<>();
+
+    private volatile long slowNanos = Long.getLong(SLOW_MS_PROPERTY, 200) * 1_000_000L;
+
+    private QueryStats() {}
+
+    public static QueryStats getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Envuelve una conexión recién abierta para medir sus sentencias (o la devuelve tal cual si las
+     * estadísticas están desactivadas).
+     */
+    public static Connection instrument(Connection conn) {
+        return INSTANCE.enabled ? InstrumentedConnection.wrap(conn, INSTANCE) : conn;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Umbral de consulta lenta en milisegundos. */
+    public long getSlowThresholdMs() {
+        return slowNanos / 1_000_000L;
+    }
+
+    public void setSlowThresholdMs(long millis) {
+        slowNanos = Math.max(0, millis) * 1_000_000L;
+    }
+
+    /**
+     * Anota una ejecución.
+     * * @param sql SQL tal como se preparó o ejecutó.
+     * @param rows Filas leídas (consultas) o modificadas (actualizaciones).
+     * @param conn Conexión sin instrumentar, para pedir el plan si la ejecución fue lenta.
+     */
+    void record(String sql, long nanos, long rows, boolean failed, Connection conn) {
+
+        Template template = template(sql);
+        Thread thread = Thread.currentThread();
+        boolean edt = EventQueue.isDispatchThread();
+
+        template.calls.increment();
+        template.totalNanos.add(nanos);
+        template.rows.add(rows);
+        template.buckets.incrementAndGet(bucket(nanos));
+        template.maxNanos.accumulateAndGet(nanos, Math::max);
+        template.lastThread = thread.getName();
+        if (failed) template.errors.increment();
+        if (edt) template.edtCalls.increment();
+
+        if (nanos >= slowNanos && !failed) {
+
+            String plan = plans.computeIfAbsent(template.sql, key -> explain(conn, sql));
+            SlowQuery slow = new SlowQuery(LocalDateTime.now().format(TIMESTAMP), template.sql, nanos / 1e6, rows, thread.getName(), edt, plan);
+
+            synchronized (slowLog) {
+                if (slowLog.size() == SLOW_LOG_SIZE) slowLog.removeFirst();
+                slowLog.addLast(slow);
+            }
+
+            System.out.printf(Locale.ROOT, "[warning] Slow query (%.1f ms, %s%s): %s%n", slow.millis(), slow.thread(), edt ? ", EDT" : "", template.sql);
+        }
+    }
+
+    /**
+     * Resumen de todas las plantillas, de mayor a menor tiempo total.
+     */
+    public List<Snapshot> snapshot() {
+
+        List<Snapshot> list = new ArrayList<>();
+
+        for (Template template : templates.values()) {
+
+            long[] counts = new long[BUCKETS];
+            long calls = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = template.buckets.get(i);
+                calls += counts[i];
+            }
+            if (calls == 0) continue;
+
+            list.add(new Snapshot(template.sql, calls, template.errors.sum(), template.rows.sum(), template.edtCalls.sum(),
+                template.lastThread, template.totalNanos.sum() / 1e6, template.maxNanos.get() / 1e6,
+                percentile(counts, calls, 0.50), percentile(counts, calls, 0.95), percentile(counts, calls, 0.99)));
+        }
+
+        list.sort(Comparator.comparingDouble(Snapshot::totalMs).reversed());
+        return list;
+    }
+
+    /**
+     * Consultas lentas registradas, de la más antigua a la más reciente.
+     */
+    public List<SlowQuery> slowQueries() {
+        synchronized (slowLog) {
+            return new ArrayList<>(slowLog);
+        }
+    }
+
+    /**
+     * Vacía las estadísticas y el registro de consultas lentas.
+     */
+    public void reset() {
+        templates.clear();
+        bySql.clear();
+        plans.clear();
+        synchronized (slowLog) {
+            slowLog.clear();
+        }
+    }
+
+    /**
+     * Informe de texto con la tabla de plantillas y las consultas lentas.
+     */
+    public String report() {
+
+        StringBuilder text = new StringBuilder();
+        text.append("SincroEstancia - estadísticas de base de datos (").append(LocalDateTime.now().format(TIMESTAMP)).append(")\n");
+        text.append("Umbral de consulta lenta: ").append(getSlowThresholdMs()).append(" ms\n\n");
+        text.append(String.format(Locale.ROOT, "%10s %8s %10s %9s %9s %9s %9s %10s %7s  %s%n",
+            "calls", "errors", "total ms", "p50 ms", "p95 ms", "p99 ms", "max ms", "rows", "edt", "sql"));
+
+        for (Snapshot s : snapshot()) {
+            text.append(String.format(Locale.ROOT, "%10d %8d %10.1f %9.3f %9.3f %9.3f %9.3f %10d %7d  %s%n",
+                s.calls(), s.errors(), s.totalMs(), s.p50Ms(), s.p95Ms(), s.p99Ms(), s.maxMs(), s.rows(), s.edtCalls(), s.sql()));
+        }
+
+        List<SlowQuery> slow = slowQueries();
+        text.append("\nConsultas lentas (").append(slow.size()).append(")\n");
+
+        for (SlowQuery q : slow) {
+            text.append(String.format(Locale.ROOT, "%n%s  %.1f ms  %d filas  hilo %s%s%n  %s%n", q.timestamp(), q.millis(), q.rows(),
+                q.thread(), q.edt() ? " (EDT)" : "", q.sql()));
+            for (String line : q.plan().split("\n")) text.append("    ").append(line).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Escribe el informe en 'directory/query-stats-<fecha>.txt'.
+     * * @return Ruta del archivo creado.
+     */
+    public Path dump(Path directory) throws IOException {
+        return dump(directory, "query-stats-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".txt");
+    }
+
+    /**
+     * Escribe el informe en 'directory/fileName' (sobrescribiéndolo).
+     */
+    public Path dump(Path directory, String fileName) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve(fileName);
+        Files.writeString(file, report(), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * Plantilla de un SQL: los literales pasan a '?' y los espacios se compactan, para que las
+     * sentencias construidas concatenando valores cuenten como una sola.
+     */
+    static String normalize(String sql) {
+        String text = STRING_LITERAL.matcher(sql).replaceAll("?");
+        text = NUMBER_LITERAL.matcher(text).replaceAll("?");
+        text = WHITESPACE.matcher(text).replaceAll(" ").trim();
+        return text.length() > MAX_SQL_LENGTH ? text.substring(0, MAX_SQL_LENGTH) + "..." : text;
+    }
+
+    private Template template(String sql) {
+
+        Template template = bySql.get(sql);
+        if (template != null) return template;
+
+        template = templates.computeIfAbsent(normalize(sql), Template::new);
+        if (bySql.size() < MAX_CACHED_SQL) bySql.put(sql, template);
+        return template;
+    }
+
+    /**
+     * Plan de ejecución de una sentencia, con los parámetros a NULL (el plan depende de los índices,
+     * no de los valores). Se pide sobre la conexión sin instrumentar para no medirse a sí mismo.
+     */
+    private String explain(Connection conn, String sql) {
+
+        if (conn == null || !EXPLAINABLE.matcher(sql.strip()).matches()) return "(sin plan)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(DatabaseManager.dialect().explain(sql))) {
+
+            int parameters = pstmt.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parameters; i++) pstmt.setObject(i, null);
+
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = pstmt.executeQuery()) {
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    if (plan.length() > 0) plan.append('\n');
+                    // SQLite: id, parent, notused, detail -> solo 'detail'. H2: una columna con el plan.
+                    plan.append(rs.getString(columns));
+                }
+            }
+            return plan.length() == 0 ? "(plan vacío)" : plan.toString();
+
+        } catch (SQLException e) {
+            return "(plan no disponible: " + e.getMessage() + ")";
+        }
+    }
+
+    private static int bucket(long nanos) {
+        double micros = nanos / 1_000.0;
+        if (micros <= 1) return 0;
+        return Math.min(BUCKETS - 1, (int) (Math.log(micros) / Math.log(2) * SUB_BUCKETS) + 1);
+    }
+
+    /**
+     * Percentil en milisegundos: límite superior del cubo en el que cae.
+     */
+    private static double percentile(long[] counts, long calls, double p) {
+
+        long target = (long) Math.ceil(calls * p);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) return Math.pow(2, (double) i / SUB_BUCKETS) / 1_000.0;
+        }
+
+        return Math.pow(2, (double) BUCKETS / SUB_BUCKETS) / 1_000.0;
+    }
+
+    /**
+     * Contadores de una plantilla (actualizados desde cualquier hilo sin bloqueos).
+     */
+    private static final class Template {
+
+        private final String sql;
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder edtCalls = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private volatile String lastThread;
+
+        private Template(String sql) {
+            this.sql = sql;
+        }
+    }
+}
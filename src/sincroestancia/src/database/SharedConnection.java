@@ -0,0 +1,147 @@
+package sincroestancia.src.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Envoltorio de la conexión principal que serializa su uso entre hilos.
+ * * La conexión principal la comparten la interfaz, el servidor REST y los servicios en segundo plano
+ * (SwingWorker, sincronización programada). JDBC no separa las transacciones por hilo: una sentencia
+ * lanzada desde otro hilo mientras hay una transacción abierta entraría en ella, y se confirmaría o
+ * desharía con el trabajo ajeno.
+ * - Cada llamada a la conexión, y a las sentencias y resultados que devuelve, se hace con un único
+ * cerrojo (reentrante) tomado.
+ * - setAutoCommit(false) se queda además con el cerrojo hasta setAutoCommit(true): mientras un hilo
+ * tiene una transacción abierta, las sentencias de los demás esperan a que confirme o deshaga.
+ * * unwrap() devuelve la conexión nativa sin cerrojo; quien la necesite (BackupService) debe abrir
+ * su propia conexión.
+ * * @author Carlos Padilla Labella
+ */
+final class SharedConnection {
+
+    private SharedConnection() {}
+
+    /**
+     * Devuelve una conexión que delega en 'conn' con su uso serializado.
+     */
+    static Connection wrap(Connection conn) {
+        return proxy(Connection.class, new ConnectionHandler(conn));
+    }
+
+    /**
+     * Cerrojo de una conexión devuelta por {@link #wrap(Connection)}, o null si es una conexión normal.
+     */
+    static Lock lockOf(Connection conn) {
+        if (Proxy.isProxyClass(conn.getClass()) && Proxy.getInvocationHandler(conn) instanceof ConnectionHandler handler) {
+            return handler.lock;
+        }
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(SharedConnection.class.getClassLoader(), new Class<?>[] { type }, handler));
+    }
+
+    /**
+     * Invoca el método sobre el objeto real con el cerrojo tomado y envuelve las sentencias y resultados
+     * que devuelve.
+     */
+    private static Object invoke(ReentrantLock lock, Object proxy, Object target, Method method, Object[] args) throws Throwable {
+
+        if (method.getDeclaringClass() == Object.class) {
+            return switch (method.getName()) {
+                case "equals" -> proxy == args[0];
+                case "hashCode" -> System.identityHashCode(proxy);
+                default -> "Shared[" + target + "]";
+            };
+        }
+
+        Object result;
+        try {
+            result = method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+
+        if (result == null) return null;
+
+        Class<?> type = method.getReturnType();
+        if (type == Statement.class || type == PreparedStatement.class || type == CallableStatement.class || type == ResultSet.class) {
+            return proxy(type, new Handler(result, lock));
+        }
+        return result;
+    }
+
+    /**
+     * Sentencia o resultado: cada llamada con el cerrojo de su conexión.
+     */
+    private static class Handler implements InvocationHandler {
+
+        final Object target;
+        final ReentrantLock lock;
+
+        Handler(Object target, ReentrantLock lock) {
+            this.target = target;
+            this.lock = lock;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            lock.lock();
+            try {
+                return SharedConnection.invoke(lock, proxy, target, method, args);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Conexión: además del cerrojo por llamada, conserva uno mientras la transacción está abierta.
+     */
+    private static final class ConnectionHandler extends Handler {
+
+        /** true mientras el hilo dueño del cerrojo tiene una transacción abierta (solo se lee con él). */
+        private boolean held;
+
+        private ConnectionHandler(Connection target) {
+            super(target, new ReentrantLock());
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+
+            if (!method.getName().equals("setAutoCommit")) return super.invoke(proxy, method, args);
+
+            boolean autoCommit = (Boolean) args[0];
+
+            lock.lock();
+            try {
+
+                Object result = SharedConnection.invoke(lock, proxy, target, method, args);
+
+                if (!autoCommit && !held) {
+                    lock.lock();
+                    held = true;
+                } else if (autoCommit && held) {
+                    held = false;
+                    lock.unlock();
+                }
+
+                return result;
+
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
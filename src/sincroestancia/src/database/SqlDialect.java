@@ -0,0 +1,103 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Diferencias de SQL entre los motores de base de datos soportados.
+ * * El resto de la aplicación escribe SQL estándar (fechas como texto ISO 'YYYY-MM-DD' comparadas
+ * por rango y calculadas en Java). Solo lo que no tiene una forma común se pide al dialecto:
+ * el esquema inicial, la configuración de cada conexión, dónde se guarda la versión de esquema,
+ * las sentencias 'upsert', cómo se monta el almacén de archivo (DatabaseArchive) y el índice de
+ * búsqueda de texto completo de huéspedes.
+ * * @author Carlos Padilla Labella
+ */
+public interface SqlDialect {
+
+    /** Nombre del motor para los mensajes de registro. */
+    String name();
+
+    /** Clase del driver JDBC (se carga por nombre para que el .jar sea opcional en compilación). */
+    String driverClass();
+
+    /** Ruta del script DDL idempotente dentro de los recursos. */
+    String initScript();
+
+    /**
+     * Ajustes que se aplican a cada conexión nada más abrirla.
+     */
+    void configure(Connection conn) throws SQLException;
+
+    /**
+     * Versión de esquema aplicada por DatabaseMigrations (0 si nunca se migró).
+     */
+    int readSchemaVersion(Connection conn) throws SQLException;
+
+    /**
+     * Registra la versión de esquema dentro de la transacción de la migración.
+     */
+    void writeSchemaVersion(Statement stmt, int version) throws SQLException;
+
+    /**
+     * Sentencia que inserta filas o, si la clave ya existe, actualiza algunas columnas.
+     * * @param table Tabla destino (sin alias; 'condition' puede referirse a ella por su nombre).
+     * @param columns Columnas que aporta 'source', en orden.
+     * @param keys Columnas de la clave primaria o única.
+     * @param updates Columnas que se sobrescriben con el valor nuevo si la fila existe (vacío: se ignora).
+     * @param source 'VALUES (?, ...)' o un 'SELECT ... WHERE ...' con las columnas de 'columns'.
+     * @param condition Condición adicional sobre la fila existente para actualizarla, o null.
+     */
+    default String upsert(String table, String[] columns, String[] keys, String[] updates, String source, String condition) {
+        return upsert(table, columns, keys, updates, source, condition, null);
+    }
+
+    /**
+     * Igual que {@link #upsert(String, String[], String[], String[], String, String)}, pero además
+     * incrementa la columna de versión de la fila existente cuando se actualiza.
+     * * @param versionColumn Columna de versión (control de concurrencia optimista), o null.
+     */
+    String upsert(String table, String[] columns, String[] keys, String[] updates, String source, String condition, String versionColumn);
+
+    /**
+     * Hace accesible el esquema de archivo en una conexión recién configurada.
+     */
+    void attachArchive(Connection conn) throws SQLException;
+
+    /**
+     * Sentencia que crea, si no existe, la tabla vacía 'target' con las mismas columnas que 'source'.
+     */
+    String createTableLike(String target, String source);
+
+    /**
+     * Sentencia que elimina, si existe, una tabla. En H2 arrastra las vistas que dependen de ella
+     * (las vistas de unión, que DatabaseArchive vuelve a crear al arrancar).
+     */
+    String dropTable(String table);
+
+    /**
+     * Sentencia que muestra el plan de ejecución de 'sql' (registro de consultas lentas, QueryStats).
+     */
+    String explain(String sql);
+
+    /**
+     * Sentencia que crea, si no existe, un índice sobre una tabla del esquema de archivo.
+     */
+    String createArchiveIndex(String name, String table, String columns);
+
+    /**
+     * Sentencia que crea la vista 'view' como unión de una tabla activa y su copia archivada.
+     */
+    String createUnionView(String view, String table);
+
+    /**
+     * Indica si el motor mantiene el índice de texto completo 'guest_search' (si no, se busca con LIKE).
+     */
+    boolean hasSearchIndex();
+
+    /**
+     * Crea el índice de texto completo de huéspedes, los disparadores que lo mantienen al día y lo
+     * rellena con las reservas y huéspedes activos. No hace nada si el motor no lo admite.
+     */
+    void createSearchIndex(Statement stmt) throws SQLException;
+}
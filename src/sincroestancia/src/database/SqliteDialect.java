@@ -0,0 +1,208 @@
+package sincroestancia.src.database;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Dialecto de SQLite (motor por defecto, un archivo local por equipo).
+ * * - Cada conexión trabaja en modo WAL con 'busy_timeout' para que varias conexiones del mismo
+ * proceso puedan leer mientras otra escribe.
+ * - La versión de esquema se guarda en 'PRAGMA user_version'.
+ * - 'upsert' se traduce a INSERT ... ON CONFLICT DO UPDATE.
+ * - El archivo es la base de datos 'archive.db' (junto a la principal), adjuntada en cada conexión con
+ * sus vistas de unión temporales (una vista persistente no puede leer otra base de datos).
+ * - La búsqueda de huéspedes usa una tabla virtual FTS5 ('guest_search') mantenida por disparadores:
+ * una fila por reserva (titular, rowid = id * 2) y por huésped del check-in (rowid = id * 2 + 1).
+ * * @author Carlos Padilla Labella
+ */
+public final class SqliteDialect implements SqlDialect {
+
+    /** Tiempo máximo (ms) que SQLite reintenta cuando otra conexión tiene el bloqueo de escritura. */
+    private static final int BUSY_TIMEOUT_MS = 5_000;
+
+    private static final String ARCHIVE_FILENAME = "archive.db";
+
+    @Override
+    public String name() {
+        return "SQLite";
+    }
+
+    @Override
+    public String driverClass() {
+        return "org.sqlite.JDBC";
+    }
+
+    @Override
+    public String initScript() {
+        return "/sincroestancia/assets/database/init-databases.sql";
+    }
+
+    @Override
+    public void configure(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA journal_mode = WAL");
+            stmt.execute("PRAGMA busy_timeout = " + BUSY_TIMEOUT_MS);
+        }
+    }
+
+    @Override
+    public int readSchemaVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    @Override
+    public void writeSchemaVersion(Statement stmt, int version) throws SQLException {
+        stmt.execute("PRAGMA user_version = " + version);
+    }
+
+    @Override
+    public String upsert(String table, String[] columns, String[] keys, String[] updates, String source, String condition, String versionColumn) {
+
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table)
+            .append(" (").append(String.join(", ", columns)).append(") ")
+            .append(source)
+            .append(" ON CONFLICT(").append(String.join(", ", keys)).append(") ");
+
+        if (updates.length == 0) return sql.append("DO NOTHING").toString();
+
+        sql.append("DO UPDATE SET ");
+        for (int i = 0; i < updates.length; i++) {
+            if (i > 0) sql.append(", ");
+            sql.append(updates[i]).append(" = excluded.").append(updates[i]);
+        }
+        if (versionColumn != null) sql.append(", ").append(versionColumn).append(" = ").append(table).append('.').append(versionColumn).append(" + 1");
+
+        if (condition != null) sql.append(" WHERE ").append(condition);
+
+        return sql.toString();
+    }
+
+    @Override
+    public void attachArchive(Connection conn) throws SQLException {
+
+        String mainFile = null;
+
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals(DatabaseArchive.SCHEMA)) return;
+                if (rs.getString("name").equals("main")) mainFile = rs.getString("file");
+            }
+        }
+
+        String archiveFile = mainFile == null || mainFile.isEmpty() ? ":memory:" : Path.of(mainFile).resolveSibling(ARCHIVE_FILENAME).toString();
+
+        try (PreparedStatement pstmt = conn.prepareStatement("ATTACH DATABASE ? AS " + DatabaseArchive.SCHEMA)) {
+            pstmt.setString(1, archiveFile);
+            pstmt.execute();
+        }
+
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA " + DatabaseArchive.SCHEMA + ".journal_mode = WAL");
+            for (String table : DatabaseArchive.TABLES) {
+                stmt.execute(createUnionView(DatabaseArchive.view(table), table));
+            }
+        }
+    }
+
+    @Override
+    public String createTableLike(String target, String source) {
+        return "CREATE TABLE IF NOT EXISTS " + target + " AS SELECT * FROM " + source + " WHERE 0";
+    }
+
+    @Override
+    public String dropTable(String table) {
+        return "DROP TABLE IF EXISTS " + table;
+    }
+
+    @Override
+    public String explain(String sql) {
+        return "EXPLAIN QUERY PLAN " + sql;
+    }
+
+    @Override
+    public String createArchiveIndex(String name, String table, String columns) {
+        return "CREATE INDEX IF NOT EXISTS " + DatabaseArchive.SCHEMA + "." + name + " ON " + table + " (" + columns + ")";
+    }
+
+    @Override
+    public String createUnionView(String view, String table) {
+        return "CREATE TEMP VIEW IF NOT EXISTS " + view + " AS SELECT * FROM main." + table + " UNION ALL SELECT * FROM " + DatabaseArchive.archived(table);
+    }
+
+    @Override
+    public boolean hasSearchIndex() {
+        return true;
+    }
+
+    @Override
+    public void createSearchIndex(Statement stmt) throws SQLException {
+
+        stmt.execute("""
+            CREATE VIRTUAL TABLE IF NOT EXISTS guest_search USING fts5(
+                name, document, email, phone, reservation_id UNINDEXED,
+                tokenize = 'unicode61 remove_diacritics 2', prefix = '2 3'
+            )
+            """);
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_reservation_insert AFTER INSERT ON reservations BEGIN
+                INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+                VALUES (new.id * 2, new.guest_name, new.guest_dni, new.guest_email, new.guest_phone, new.id);
+            END
+            """);
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_reservation_update
+            AFTER UPDATE OF guest_name, guest_dni, guest_email, guest_phone ON reservations BEGIN
+                DELETE FROM guest_search WHERE rowid = old.id * 2;
+                INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+                VALUES (new.id * 2, new.guest_name, new.guest_dni, new.guest_email, new.guest_phone, new.id);
+            END
+            """);
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_reservation_delete AFTER DELETE ON reservations BEGIN
+                DELETE FROM guest_search WHERE rowid = old.id * 2;
+            END
+            """);
+
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_guest_insert AFTER INSERT ON guests BEGIN
+                INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+                VALUES (new.id * 2 + 1, new.fullname || ' ' || new.surname1 || COALESCE(' ' || new.surname2, ''),
+                        new.id_document_number, new.email, new.phone,
+                        (SELECT reservation_id FROM checkins WHERE id = new.checkin_id));
+            END
+            """);
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_guest_update AFTER UPDATE ON guests BEGIN
+                DELETE FROM guest_search WHERE rowid = old.id * 2 + 1;
+                INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+                VALUES (new.id * 2 + 1, new.fullname || ' ' || new.surname1 || COALESCE(' ' || new.surname2, ''),
+                        new.id_document_number, new.email, new.phone,
+                        (SELECT reservation_id FROM checkins WHERE id = new.checkin_id));
+            END
+            """);
+        stmt.execute("""
+            CREATE TRIGGER IF NOT EXISTS guest_search_guest_delete AFTER DELETE ON guests BEGIN
+                DELETE FROM guest_search WHERE rowid = old.id * 2 + 1;
+            END
+            """);
+
+        stmt.execute("DELETE FROM guest_search");
+        stmt.execute("""
+            INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+            SELECT id * 2, guest_name, guest_dni, guest_email, guest_phone, id FROM reservations
+            """);
+        stmt.execute("""
+            INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id)
+            SELECT g.id * 2 + 1, g.fullname || ' ' || g.surname1 || COALESCE(' ' || g.surname2, ''),
+                   g.id_document_number, g.email, g.phone, c.reservation_id
+            FROM guests g JOIN checkins c ON c.id = g.checkin_id
+            """);
+    }
+}
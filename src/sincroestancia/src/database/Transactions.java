@@ -0,0 +1,117 @@
+package sincroestancia.src.database;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Plantilla de transacción sobre una conexión.
+ * * Reúne en un solo sitio el patrón 'setAutoCommit(false) / commit / rollback / setAutoCommit(true)'
+ * que repetían los servicios:
+ * - Si la conexión está en autocommit, abre la transacción, ejecuta el trabajo y confirma (un único
+ * fsync); ante cualquier error deshace todo, restaura el autocommit y relanza la excepción.
+ * - Si la conexión ya está dentro de una transacción abierta por run() en este mismo hilo, el trabajo
+ * se une a ella: ni confirma ni deshace, eso lo decide quien la abrió. Así un método transaccional
+ * puede llamarse desde otro.
+ * - Si la transacción la abrió otro hilo (o este, a mano con setAutoCommit(false)), se lanza un error
+ * en lugar de unirse: confirmaría o desharía trabajo ajeno.
+ * * Contrato de uso entre hilos:
+ * - La conexión principal (DatabaseManager.get_connection) está serializada (SharedConnection): si
+ * otro hilo tiene una transacción abierta, run() y las sentencias sueltas esperan a que termine.
+ * - Cualquier otra conexión (pool, DatabaseProvider.open) pertenece a un solo hilo; usar su
+ * transacción desde otro hilo lanza el error anterior.
+ * * Los cambios en memoria (cachés, índices) deben hacerse después de que run() devuelva, cuando los
+ * datos ya están confirmados.
+ * * @author Carlos Padilla Labella
+ */
+public final class Transactions {
+
+    /**
+     * Trabajo que se ejecuta dentro de la transacción.
+     */
+    @FunctionalInterface
+    public interface Work<T> {
+        T run(Connection conn) throws SQLException;
+    }
+
+    /** Conexiones con una transacción abierta por run() en el hilo actual. */
+    private static final ThreadLocal<Set<Connection>> OWNED =
+        ThreadLocal.withInitial(() -> Collections.newSetFromMap(new IdentityHashMap<>()));
+
+    private Transactions() {}
+
+    /**
+     * Ejecuta el trabajo en una transacción y devuelve su resultado.
+     * * @throws SQLException El error del trabajo (ya deshecho) o del commit, o si la conexión está en una
+     * transacción que no abrió este hilo.
+     */
+    public static <T> T run(Connection conn, Work<T> work) throws SQLException {
+
+        Set<Connection> owned = OWNED.get();
+
+        if (owned.contains(conn)) return work.run(conn);
+
+        begin(conn);
+        owned.add(conn);
+
+        try {
+
+            T result = work.run(conn);
+            conn.commit();
+            return result;
+
+        } catch (SQLException | RuntimeException e) {
+
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                e.addSuppressed(ex);
+            }
+
+            throw e;
+
+        } finally {
+            owned.remove(conn);
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Comprueba que la conexión está en autocommit y abre la transacción en un solo paso: con el
+     * cerrojo de la conexión principal o, en las demás, sincronizado sobre la propia conexión.
+     */
+    private static void begin(Connection conn) throws SQLException {
+
+        Lock shared = SharedConnection.lockOf(conn);
+
+        if (shared == null) {
+            synchronized (conn) {
+                beginUnlocked(conn);
+            }
+            return;
+        }
+
+        shared.lock();
+        try {
+            beginUnlocked(conn);
+        } finally {
+            shared.unlock();
+        }
+    }
+
+    private static void beginUnlocked(Connection conn) throws SQLException {
+
+        if (!conn.getAutoCommit()) {
+            throw new SQLException("Connection is in a transaction not opened by this thread.");
+        }
+
+        conn.setAutoCommit(false);
+    }
+}
@@ -10,6 +10,7 @@ import java.awt.Font;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.time.LocalDate;
 import java.util.List;
 import javax.swing.JLabel;
 import javax.swing.JMenuItem;
@@ -17,12 +18,20 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
 
+import sincroestancia.src.gui.components.GuestSearchBox;
 import sincroestancia.src.gui.config.Config;
 import sincroestancia.src.gui.dasboard.Dashboard;
 import sincroestancia.src.gui.register.RegisterVUT;
 import sincroestancia.src.gui.reports.ReportsPanel;
+import sincroestancia.src.models.GuestSearchResult;
 import sincroestancia.src.models.VutItem;
+import sincroestancia.src.services.ArchiveService;
+import sincroestancia.src.services.BackupService;
+import sincroestancia.src.services.ChangeLogFollower;
 import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestProfiles;
+import sincroestancia.src.services.IcalFeedServer;
+import sincroestancia.src.services.IcalFeedSyncService;
 import sincroestancia.src.services.SyncManager;
 
 /**
@@ -61,7 +70,7 @@ public final class Main extends javax.swing.JFrame {
      * 3. Configura el Layout principal añadiendo el Footer personalizado.
      * 4. Instancia y añade los paneles principales al gestor de tarjetas (CardLayout).
      * 5. Carga los datos iniciales y determina qué pantalla mostrar (Registro o Dashboard).
-     * 6. Configura los listeners de navegación del menú.
+     * 6. Configura los listeners de navegación del menú y la búsqueda de huéspedes.
      * 7. Inicia el hilo del servicio de sincronización en segundo plano.
      */
     public Main() {
@@ -88,6 +97,7 @@ public final class Main extends javax.swing.JFrame {
 
         loadInitialData();
         setupMenuListeners();
+        setupGuestSearch();
         startSyncService();
 
     }
@@ -170,11 +180,23 @@ public final class Main extends javax.swing.JFrame {
      * Vincula la interfaz gráfica con el gestor de sincronización (Singleton).
      * * Ejecuta el inicio del servicio en un hilo separado (SwingUtilities) para
      * no bloquear el arranque de la aplicación.
+     * * Arranca también el sondeo periódico de los feeds iCal de las OTAs (IcalFeedSyncService)
+     * y el servidor que publica el calendario de disponibilidad de cada vivienda (IcalFeedServer).
+     * * Y el seguimiento del registro de cambios (ChangeLogFollower), que refresca las cachés cuando
+     * otro puesto modifica reservas o días, las copias de seguridad periódicas (BackupService) y el
+     * archivado de temporadas cerradas (ArchiveService), y el enlace inicial de los huéspedes
+     * existentes con sus fichas (GuestProfiles).
      */
     private void startSyncService() {
         SyncManager.getInstance().setStatusLabel(lblSyncStatus);
         SwingUtilities.invokeLater(() -> {
             new Thread(() -> SyncManager.getInstance().start()).start();
+            new Thread(() -> IcalFeedSyncService.getInstance().start()).start();
+            new Thread(IcalFeedServer::startDefault).start();
+            new Thread(() -> ChangeLogFollower.getInstance().start()).start();
+            new Thread(() -> BackupService.getInstance().start()).start();
+            new Thread(() -> ArchiveService.getInstance().start()).start();
+            GuestProfiles.startBackfill();
         });
     }
 
@@ -283,6 +305,31 @@ public final class Main extends javax.swing.JFrame {
         this.setTitle("Sincro Estancia - " + new_title);
     }
 
+    /**
+     * Añade la caja de búsqueda de huéspedes al extremo derecho de la barra de menú.
+     */
+    private void setupGuestSearch() {
+        jMenuBar1.add(javax.swing.Box.createHorizontalGlue());
+        jMenuBar1.add(new GuestSearchBox(db_service, this::open_search_result));
+    }
+
+    /**
+     * Abre en el Dashboard la estancia de un resultado de búsqueda: cambia de vivienda si hace falta y
+     * selecciona el día de entrada en el calendario.
+     */
+    private void open_search_result(GuestSearchResult result) {
+
+        if (result.vutId() != this.current_selected_vut_id) {
+            VutItem vut = db_service.get_vut_details_by_id(result.vutId());
+            if (vut == null) return;
+            setCurrentSelectedVutID(vut.getId(), vut.getName());
+            panel_reports.updateVut(vut.getId());
+        }
+
+        panel_dashboard.showDate(result.vutId(), LocalDate.parse(result.checkIn()));
+        set_panel_view("DASHBOARD", this.current_selected_vut_name);
+    }
+
     /**
      * Fuerza una recarga completa del menú de selección de viviendas.
      * * Se utiliza tras operaciones de creación o eliminación de propiedades.
@@ -0,0 +1,157 @@
+package sincroestancia.src.gui.components;
+
+import java.awt.Dimension;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import javax.swing.BorderFactory;
+import javax.swing.JMenuItem;
+import javax.swing.JPopupMenu;
+import javax.swing.JTextField;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import sincroestancia.src.models.GuestSearchResult;
+import sincroestancia.src.models.VutItem;
+import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestSearch;
+import sincroestancia.src.utils.StyleUtils;
+
+/**
+ * Caja de búsqueda de huéspedes para la barra de menú de la ventana principal.
+ * * Funcionamiento:
+ * - Mientras se escribe, espera DEBOUNCE_MS sin pulsaciones antes de consultar (DatabaseService.search_guests),
+ * así una palabra tecleada de corrido lanza una sola búsqueda.
+ * - Muestra las coincidencias en un menú emergente bajo la caja (nombre, documento, fechas y vivienda).
+ * - Al elegir una (clic o Enter para la primera), se notifica al receptor y se limpia la caja.
+ * - Escape cierra el menú.
+ * * @author Carlos Padilla Labella
+ */
+public class GuestSearchBox extends JTextField {
+
+    private static final int DEBOUNCE_MS = 200;
+    private static final int MAX_RESULTS = 10;
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private final DatabaseService db_service;
+    private final Consumer<GuestSearchResult> on_select;
+    private final JPopupMenu results_popup = new JPopupMenu();
+    private final Timer debounce_timer;
+
+    private List<GuestSearchResult> current_results = List.of();
+
+    /**
+     * @param db_service Servicio de base de datos de la ventana.
+     * @param on_select Receptor del resultado elegido por el usuario.
+     */
+    public GuestSearchBox(DatabaseService db_service, Consumer<GuestSearchResult> on_select) {
+
+        super(18);
+
+        this.db_service = db_service;
+        this.on_select = on_select;
+
+        setFont(StyleUtils.FONT_BODY);
+        setToolTipText("Buscar huésped por nombre, DNI, email o teléfono");
+        setMaximumSize(new Dimension(260, 26));
+        setBorder(BorderFactory.createCompoundBorder(
+            BorderFactory.createLineBorder(StyleUtils.COLOR_BORDER, 1),
+            BorderFactory.createEmptyBorder(2, 6, 2, 6)));
+
+        results_popup.setFocusable(false);
+
+        debounce_timer = new Timer(DEBOUNCE_MS, e -> run_search());
+        debounce_timer.setRepeats(false);
+
+        getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) { debounce_timer.restart(); }
+            @Override
+            public void removeUpdate(DocumentEvent e) { debounce_timer.restart(); }
+            @Override
+            public void changedUpdate(DocumentEvent e) { debounce_timer.restart(); }
+        });
+
+        addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                if (e.getKeyCode() == KeyEvent.VK_ESCAPE) {
+                    results_popup.setVisible(false);
+                } else if (e.getKeyCode() == KeyEvent.VK_ENTER) {
+                    debounce_timer.stop();
+                    run_search();
+                    if (!current_results.isEmpty()) select(current_results.get(0));
+                }
+            }
+        });
+    }
+
+    /**
+     * Lanza la búsqueda con el texto actual y rellena el menú de resultados.
+     */
+    private void run_search() {
+
+        String text = getText().strip();
+
+        if (text.length() < GuestSearch.MIN_QUERY_LENGTH) {
+            current_results = List.of();
+            results_popup.setVisible(false);
+            return;
+        }
+
+        current_results = db_service.search_guests(text, MAX_RESULTS);
+        results_popup.removeAll();
+
+        if (current_results.isEmpty()) {
+            JMenuItem empty = new JMenuItem("Sin resultados");
+            empty.setEnabled(false);
+            results_popup.add(empty);
+        } else {
+            Map<Integer, String> vut_names = new HashMap<>();
+            for (VutItem vut : db_service.get_all_vuts()) vut_names.put(vut.getId(), vut.getName());
+
+            for (GuestSearchResult result : current_results) {
+                JMenuItem item = new JMenuItem(describe(result, vut_names.getOrDefault(result.vutId(), "")));
+                item.addActionListener(e -> select(result));
+                results_popup.add(item);
+            }
+        }
+
+        results_popup.pack();
+        if (isShowing()) results_popup.show(this, 0, getHeight());
+    }
+
+    private void select(GuestSearchResult result) {
+        results_popup.setVisible(false);
+        current_results = List.of();
+        setText("");
+        on_select.accept(result);
+    }
+
+    private static String describe(GuestSearchResult result, String vut_name) {
+
+        StringBuilder text = new StringBuilder("<html><b>").append(escape(result.name())).append("</b>");
+
+        if (result.document() != null && !result.document().isBlank()) {
+            text.append(" &middot; ").append(escape(result.document()));
+        }
+
+        text.append("<br><font color='gray'>")
+            .append(LocalDate.parse(result.checkIn()).format(DATE_FORMAT)).append(" - ")
+            .append(LocalDate.parse(result.checkOut()).format(DATE_FORMAT));
+
+        if (!vut_name.isEmpty()) text.append(" &middot; ").append(escape(vut_name));
+        if (result.archived()) text.append(" (archivada)");
+
+        return text.append("</font></html>").toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
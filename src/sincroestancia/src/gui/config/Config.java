@@ -29,7 +29,10 @@ import sincroestancia.src.services.DatabaseService;
 import sincroestancia.src.services.ImageStorageService;
 import sincroestancia.src.utils.StyleUtils;
 import sincroestancia.src.gui.components.ButtonUtils;
+import sincroestancia.src.gui.config.components.DataConfigPanel;
+import sincroestancia.src.gui.config.components.DiagnosticsConfigPanel;
 import sincroestancia.src.gui.config.components.GoogleConfigPanel;
+import sincroestancia.src.gui.config.components.IcalFeedsConfigPanel;
 import sincroestancia.src.gui.config.components.PriceConfigPanel;
 import sincroestancia.src.gui.config.components.UsersConfigPanel;
 
@@ -39,6 +42,9 @@ import sincroestancia.src.gui.config.components.UsersConfigPanel;
  * 1. General: Edición de datos básicos de la vivienda (Nombre, Foto, URL).
  * 2. Calendario: Configuración de precios por temporada.
  * 3. Google Sync: Configuración de credenciales y conexión con Google Calendar.
+ * 4. Datos: Exportación e importación masiva de datos (CSV / JSON Lines / iCal).
+ * 5. Canales: Calendarios iCal de las OTAs que se importan periódicamente.
+ * 6. Diagnóstico: Tiempos de las consultas a la base de datos y registro de consultas lentas.
  * * Detecta automáticamente cuándo el panel se hace visible para recargar los datos
  * de la base de datos sin necesidad de reiniciar la aplicación.
  * * @author Carlos Padilla Labella
@@ -49,6 +55,9 @@ public class Config extends JPanel {
     private JPanel vutSettingsPanel;
     private PriceConfigPanel priceConfigPanel;
     private GoogleConfigPanel googleConfigPanel;
+    private DataConfigPanel dataConfigPanel;
+    private IcalFeedsConfigPanel icalFeedsConfigPanel;
+    private DiagnosticsConfigPanel diagnosticsConfigPanel;
 
     private JTextField txtName;
     private JLabel lblCoverPath;
@@ -105,6 +114,14 @@ public class Config extends JPanel {
             priceConfigPanel.setVut(this.currentVut);
         }
 
+        if (dataConfigPanel != null) {
+            dataConfigPanel.setVut(this.currentVut);
+        }
+
+        if (icalFeedsConfigPanel != null) {
+            icalFeedsConfigPanel.setVut(this.currentVut);
+        }
+
         if (currentVut != null) {
             lblTitle.setText("Configuración - " + currentVut.getName());
             txtName.setText(currentVut.getName());
@@ -158,6 +175,15 @@ public class Config extends JPanel {
         googleConfigPanel = new GoogleConfigPanel();
         tabbedPane.addTab("Google Sync", googleConfigPanel);
 
+        dataConfigPanel = new DataConfigPanel();
+        tabbedPane.addTab("Datos", dataConfigPanel);
+
+        icalFeedsConfigPanel = new IcalFeedsConfigPanel();
+        tabbedPane.addTab("Canales", icalFeedsConfigPanel);
+
+        diagnosticsConfigPanel = new DiagnosticsConfigPanel();
+        tabbedPane.addTab("Diagnóstico", diagnosticsConfigPanel);
+
         add(tabbedPane, BorderLayout.CENTER);
 
         this.addAncestorListener(new javax.swing.event.AncestorListener() {
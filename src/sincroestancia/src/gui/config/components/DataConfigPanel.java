@@ -0,0 +1,334 @@
+package sincroestancia.src.gui.config.components;
+
+import java.awt.*;
+import java.io.File;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
+
+import sincroestancia.src.gui.components.ButtonUtils;
+import sincroestancia.src.models.VutItem;
+import sincroestancia.src.services.DataExportService;
+import sincroestancia.src.services.DataExportService.ExportOptions;
+import sincroestancia.src.services.DataExportService.Format;
+import sincroestancia.src.services.DataExportService.Table;
+import sincroestancia.src.services.ReservationImportService;
+import sincroestancia.src.services.ReservationImportService.ImportReport;
+import sincroestancia.src.services.ReservationImportService.RowError;
+
+/**
+ * Panel de configuración para la exportación e importación masiva de datos.
+ * * Exportación (CSV / JSON Lines): permite elegir las tablas, el formato, la compresión gzip y
+ * filtrar por vivienda y por rango de fechas.
+ * * Importación: carga reservas en la vivienda actual desde un CSV o un calendario .ics, con
+ * modo simulación e informe de errores por fila.
+ * * Ambas operaciones se ejecutan en segundo plano (SwingWorker).
+ * * @author Carlos Padilla Labella
+ */
+public class DataConfigPanel extends JPanel {
+
+    private final Map<Table, JCheckBox> tableChecks = new EnumMap<>(Table.class);
+    private JComboBox<Format> cmbFormat;
+    private JCheckBox chkGzip;
+    private JCheckBox chkOnlyVut;
+    private JTextField txtFrom;
+    private JTextField txtTo;
+    private JButton btnExport;
+    private JButton btnImport;
+    private JCheckBox chkDryRun;
+    private JLabel lblStatus;
+
+    private VutItem currentVut;
+
+    /**
+     * Constructor.
+     * * Construye la interfaz gráfica del panel.
+     */
+    public DataConfigPanel() {
+        initComponents();
+    }
+
+    /**
+     * Actualiza la vivienda activa (para el filtro "Solo la vivienda actual").
+     */
+    public void setVut(VutItem vut) {
+        this.currentVut = vut;
+        chkOnlyVut.setEnabled(vut != null);
+        chkOnlyVut.setText(vut != null ? "Solo la vivienda actual (" + vut.getName() + ")" : "Solo la vivienda actual");
+    }
+
+    /**
+     * Construye la interfaz gráfica del panel.
+     */
+    private void initComponents() {
+
+        setLayout(new BorderLayout(20, 20));
+        setBackground(Color.WHITE);
+        setBorder(new EmptyBorder(30, 30, 30, 30));
+
+        JLabel title = new JLabel("Exportación de datos");
+        title.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        add(title, BorderLayout.NORTH);
+
+        JPanel formPanel = new JPanel(new GridBagLayout());
+        formPanel.setBackground(Color.WHITE);
+        GridBagConstraints gbc = new GridBagConstraints();
+        gbc.insets = new Insets(8, 10, 8, 10);
+        gbc.fill = GridBagConstraints.HORIZONTAL;
+        gbc.anchor = GridBagConstraints.WEST;
+
+        gbc.gridx = 0; gbc.gridy = 0; gbc.gridwidth = 3;
+        JLabel help = new JLabel("<html>Genera un archivo por tabla en la carpeta elegida. Las fechas filtran por día en <b>days</b> "
+            + "y por fecha de entrada de la reserva en el resto de tablas (formato yyyy-MM-dd, opcionales).</html>");
+        help.setForeground(Color.GRAY);
+        formPanel.add(help, gbc);
+
+        gbc.gridy = 1; gbc.gridwidth = 1;
+        formPanel.add(new JLabel("Tablas:"), gbc);
+
+        JPanel tablesPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        tablesPanel.setBackground(Color.WHITE);
+        for (Table table : Table.values()) {
+            JCheckBox check = new JCheckBox(table.name().toLowerCase(), true);
+            check.setBackground(Color.WHITE);
+            tableChecks.put(table, check);
+            tablesPanel.add(check);
+        }
+        gbc.gridx = 1; gbc.gridwidth = 2; gbc.weightx = 1.0;
+        formPanel.add(tablesPanel, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 2; gbc.gridwidth = 1; gbc.weightx = 0;
+        formPanel.add(new JLabel("Formato:"), gbc);
+
+        cmbFormat = new JComboBox<>(Format.values());
+        gbc.gridx = 1;
+        formPanel.add(cmbFormat, gbc);
+
+        chkGzip = new JCheckBox("Comprimir (gzip)");
+        chkGzip.setBackground(Color.WHITE);
+        gbc.gridx = 2;
+        formPanel.add(chkGzip, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 3;
+        formPanel.add(new JLabel("Desde / Hasta:"), gbc);
+
+        txtFrom = new JTextField(10);
+        gbc.gridx = 1;
+        formPanel.add(txtFrom, gbc);
+
+        txtTo = new JTextField(10);
+        gbc.gridx = 2;
+        formPanel.add(txtTo, gbc);
+
+        chkOnlyVut = new JCheckBox("Solo la vivienda actual");
+        chkOnlyVut.setBackground(Color.WHITE);
+        chkOnlyVut.setEnabled(false);
+        gbc.gridx = 1; gbc.gridy = 4; gbc.gridwidth = 2;
+        formPanel.add(chkOnlyVut, gbc);
+
+        lblStatus = new JLabel(" ");
+        lblStatus.setFont(new Font("Segoe UI", Font.BOLD, 12));
+        gbc.gridy = 5;
+        formPanel.add(lblStatus, gbc);
+
+        btnExport = new JButton("Exportar...");
+        ButtonUtils.stylePrimary(btnExport);
+        gbc.gridx = 2; gbc.gridy = 6; gbc.gridwidth = 1;
+        formPanel.add(btnExport, gbc);
+
+        gbc.gridx = 0; gbc.gridy = 7; gbc.gridwidth = 3;
+        JLabel importTitle = new JLabel("Importación de reservas");
+        importTitle.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        importTitle.setBorder(new EmptyBorder(20, 0, 0, 0));
+        formPanel.add(importTitle, gbc);
+
+        gbc.gridy = 8;
+        JLabel importHelp = new JLabel("<html>Importa reservas en la vivienda actual desde un <b>CSV</b> (guest_name, guest_dni, guest_email, guest_phone, "
+            + "check_in_date, check_out_date, pax_count, is_paid) o un calendario <b>.ics</b>. Las filas que se solapan con reservas o días ocupados se rechazan.</html>");
+        importHelp.setForeground(Color.GRAY);
+        formPanel.add(importHelp, gbc);
+
+        chkDryRun = new JCheckBox("Simulación (validar sin guardar)", true);
+        chkDryRun.setBackground(Color.WHITE);
+        gbc.gridx = 1; gbc.gridy = 9; gbc.gridwidth = 1;
+        formPanel.add(chkDryRun, gbc);
+
+        btnImport = new JButton("Importar...");
+        ButtonUtils.stylePrimary(btnImport);
+        gbc.gridx = 2;
+        formPanel.add(btnImport, gbc);
+
+        JPanel wrapper = new JPanel(new BorderLayout());
+        wrapper.setBackground(Color.WHITE);
+        wrapper.add(formPanel, BorderLayout.NORTH);
+        add(wrapper, BorderLayout.CENTER);
+
+        btnExport.addActionListener(e -> exportData());
+        btnImport.addActionListener(e -> importReservations());
+    }
+
+    /**
+     * Importa reservas en la vivienda actual desde un CSV o un .ics.
+     * * Implementación asíncrona mediante SwingWorker:
+     * - Pide el archivo de origen (el formato se decide por la extensión).
+     * - DoInBackground: Ejecuta ReservationImportService (en simulación si está marcada).
+     * - Done: Muestra el resumen y el detalle de las filas rechazadas.
+     */
+    private void importReservations() {
+
+        if (currentVut == null) {
+            JOptionPane.showMessageDialog(this, "Seleccione primero una vivienda.", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Archivo de reservas");
+        fc.setFileFilter(new FileNameExtensionFilter("Reservas (.csv, .ics)", "csv", "ics"));
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        File file = fc.getSelectedFile();
+        boolean ical = file.getName().toLowerCase().endsWith(".ics");
+        boolean dryRun = chkDryRun.isSelected();
+        int vutId = currentVut.getId();
+
+        btnImport.setEnabled(false);
+        lblStatus.setText(dryRun ? "Validando..." : "Importando...");
+        lblStatus.setForeground(Color.ORANGE);
+
+        SwingWorker<ImportReport, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected ImportReport doInBackground() throws Exception {
+                ReservationImportService service = new ReservationImportService();
+                try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                    return ical ? service.importIcal(vutId, reader, dryRun) : service.importCsv(vutId, reader, dryRun);
+                }
+            }
+
+            @Override
+            protected void done() {
+
+                btnImport.setEnabled(true);
+
+                try {
+
+                    ImportReport report = get();
+
+                    lblStatus.setText(report.summary());
+                    lblStatus.setForeground(report.getRejected() > 0 ? Color.RED : new Color(0, 150, 0));
+
+                    StringBuilder details = new StringBuilder(report.summary()).append("\n\n");
+                    for (RowError error : report.getErrors()) {
+                        details.append("Línea ").append(error.line()).append(": ").append(error.message()).append('\n');
+                    }
+
+                    JTextArea area = new JTextArea(details.toString(), 15, 60);
+                    area.setEditable(false);
+                    JOptionPane.showMessageDialog(DataConfigPanel.this, new JScrollPane(area),
+                        report.isDryRun() ? "Resultado de la simulación" : "Resultado de la importación", JOptionPane.INFORMATION_MESSAGE);
+
+                } catch (Exception ex) {
+                    lblStatus.setText("Error en la importación");
+                    lblStatus.setForeground(Color.RED);
+                    ex.printStackTrace();
+                }
+            }
+        };
+
+        worker.execute();
+    }
+
+    /**
+     * Valida el formulario y lanza la exportación.
+     * * Implementación asíncrona mediante SwingWorker:
+     * - Valida las fechas y pide la carpeta de destino.
+     * - DoInBackground: Exporta cada tabla seleccionada con DataExportService.
+     * - Done: Muestra el número de filas exportadas por tabla.
+     */
+    private void exportData() {
+
+        Set<Table> tables = EnumSet.noneOf(Table.class);
+        tableChecks.forEach((table, check) -> {
+            if (check.isSelected()) tables.add(table);
+        });
+
+        if (tables.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "Seleccione al menos una tabla.");
+            return;
+        }
+
+        LocalDate from;
+        LocalDate to;
+
+        try {
+            from = txtFrom.getText().isBlank() ? null : LocalDate.parse(txtFrom.getText().trim());
+            to = txtTo.getText().isBlank() ? null : LocalDate.parse(txtTo.getText().trim());
+        } catch (DateTimeParseException ex) {
+            JOptionPane.showMessageDialog(this, "Las fechas deben tener el formato yyyy-MM-dd.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Carpeta de destino");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        Path directory = fc.getSelectedFile().toPath();
+        int vutId = (chkOnlyVut.isSelected() && currentVut != null) ? currentVut.getId() : -1;
+        ExportOptions options = new ExportOptions((Format) cmbFormat.getSelectedItem(), chkGzip.isSelected(), vutId, from, to);
+
+        btnExport.setEnabled(false);
+        lblStatus.setText("Exportando...");
+        lblStatus.setForeground(Color.ORANGE);
+
+        SwingWorker<Map<Table, Long>, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected Map<Table, Long> doInBackground() {
+                return new DataExportService().exportAll(tables, options, directory);
+            }
+
+            @Override
+            protected void done() {
+
+                btnExport.setEnabled(true);
+
+                try {
+
+                    Map<Table, Long> result = get();
+                    StringBuilder summary = new StringBuilder();
+                    boolean failed = false;
+
+                    for (Map.Entry<Table, Long> entry : result.entrySet()) {
+                        summary.append(entry.getKey().name().toLowerCase()).append(": ");
+                        if (entry.getValue() < 0) {
+                            summary.append("error\n");
+                            failed = true;
+                        } else {
+                            summary.append(entry.getValue()).append(" filas\n");
+                        }
+                    }
+
+                    lblStatus.setText(failed ? "Exportación con errores" : "Exportación completada");
+                    lblStatus.setForeground(failed ? Color.RED : new Color(0, 150, 0));
+                    JOptionPane.showMessageDialog(DataConfigPanel.this, summary.toString());
+
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+
+        worker.execute();
+    }
+}
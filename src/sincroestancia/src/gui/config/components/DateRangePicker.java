@@ -7,12 +7,11 @@ import java.time.LocalDate;
 import java.time.YearMonth;
 import java.time.format.TextStyle;
 import java.util.Locale;
-import java.util.Map;
-import java.util.HashMap;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 
-import sincroestancia.src.models.DayInfo;
+import sincroestancia.src.models.MonthSnapshot;
+import sincroestancia.src.models.Season;
 import sincroestancia.src.services.DatabaseService;
 
 /**
@@ -39,7 +38,7 @@ public class DateRangePicker extends JPanel {
     private LocalDate selectedEndDate;
     private final Locale locale = Locale.ENGLISH; 
     
-    private Map<Integer, DayInfo> currentMonthData = new HashMap<>();
+    private MonthSnapshot currentMonthData = MonthSnapshot.empty(0, 0);
 
     private final Color COLOR_SELECTED = new Color(0, 120, 215);
     private final Color COLOR_RANGE = new Color(200, 230, 255);
@@ -152,7 +151,7 @@ public class DateRangePicker extends JPanel {
         if (currentVutId != -1) {
             currentMonthData = dbService.get_month_data(currentVutId, currentYearMonth.getYear(), currentYearMonth.getMonthValue() - 1);
         } else {
-            currentMonthData.clear();
+            currentMonthData = MonthSnapshot.empty(currentYearMonth.getYear(), currentYearMonth.getMonthValue() - 1);
         }
 
         lblMonthYear.setText(currentYearMonth.getMonth().getDisplayName(TextStyle.FULL, locale) + " " + currentYearMonth.getYear());
@@ -189,24 +188,20 @@ public class DateRangePicker extends JPanel {
             Color dayColor = SEASON_NONE;
             String tooltip = "No configurado";
 
-            if (currentMonthData.containsKey(day)) {
-                DayInfo info = currentMonthData.get(day);
-                if (info != null) {
-
-                    if ("reserved".equals(info.status()) || "paid".equals(info.status())) {
-                        isReserved = true;
-                    } 
-                    
-                    else {
-                        if (info.season() != null) {
-                            switch (info.season()) {
-                                case "low": dayColor = SEASON_LOW; break;
-                                case "average": dayColor = SEASON_AVG; break;
-                                case "high": dayColor = SEASON_HIGH; break;
-                            }
-                            tooltip = "Configurado: " + info.season().toUpperCase();
-                        }
+            if (currentMonthData.has(day)) {
+
+                if (currentMonthData.isOccupied(day)) {
+                    isReserved = true;
+                } 
+                
+                else {
+                    Season season = currentMonthData.season(day);
+                    switch (season) {
+                        case LOW: dayColor = SEASON_LOW; break;
+                        case AVERAGE: dayColor = SEASON_AVG; break;
+                        case HIGH: dayColor = SEASON_HIGH; break;
                     }
+                    tooltip = "Configurado: " + season.name();
                 }
             }
 
@@ -0,0 +1,237 @@
+package sincroestancia.src.gui.config.components;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+import sincroestancia.src.database.QueryStats;
+import sincroestancia.src.database.QueryStats.SlowQuery;
+import sincroestancia.src.database.QueryStats.Snapshot;
+import sincroestancia.src.gui.components.ButtonUtils;
+
+/**
+ * Panel de diagnóstico del acceso a la base de datos.
+ * * Muestra las estadísticas de QueryStats por plantilla SQL (llamadas, percentiles de latencia,
+ * filas, llamadas desde el hilo de la interfaz y errores) y el registro de consultas lentas con su
+ * plan de ejecución. Permite cambiar el umbral de consulta lenta, reiniciar los contadores y guardar
+ * el informe en un archivo de texto.
+ * * @author Carlos Padilla Labella
+ */
+public class DiagnosticsConfigPanel extends JPanel {
+
+    private JTable statsTable;
+    private DefaultTableModel tableModel;
+    private JTextArea slowArea;
+    private JTextField txtThreshold;
+    private JLabel lblStatus;
+
+    private final QueryStats stats;
+
+    /**
+     * Constructor.
+     * * Construye la interfaz gráfica del panel.
+     */
+    public DiagnosticsConfigPanel() {
+        this.stats = QueryStats.getInstance();
+        initComponents();
+    }
+
+    /**
+     * Construye la interfaz gráfica del panel.
+     */
+    private void initComponents() {
+
+        setLayout(new BorderLayout(0, 10));
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JPanel header = new JPanel(new BorderLayout(0, 5));
+        header.setBackground(Color.WHITE);
+
+        JLabel title = new JLabel("Diagnóstico de base de datos");
+        title.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        header.add(title, BorderLayout.NORTH);
+
+        JLabel help = new JLabel("<html>Tiempos de cada consulta desde que se abrió la aplicación, de mayor a menor tiempo total. "
+            + "La columna <b>EDT</b> cuenta las llamadas hechas desde el hilo de la interfaz (la congelan mientras duran). "
+            + "Las consultas que superan el umbral se guardan abajo con su plan de ejecución.</html>");
+        help.setForeground(Color.GRAY);
+        header.add(help, BorderLayout.CENTER);
+
+        add(header, BorderLayout.NORTH);
+
+        String[] columnNames = {"SQL", "Llamadas", "Total ms", "p50 ms", "p95 ms", "p99 ms", "Máx ms", "Filas", "EDT", "Errores", "Último hilo"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+
+            @Override
+            public Class<?> getColumnClass(int column) {
+                return switch (column) {
+                    case 0, 10 -> String.class;
+                    case 1, 7, 8, 9 -> Long.class;
+                    default -> Double.class;
+                };
+            }
+        };
+
+        statsTable = new JTable(tableModel);
+        statsTable.setRowHeight(26);
+        statsTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        statsTable.setAutoCreateRowSorter(true);
+        statsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        statsTable.getColumnModel().getColumn(0).setPreferredWidth(420);
+
+        JScrollPane tableScroll = new JScrollPane(statsTable);
+        tableScroll.setBorder(BorderFactory.createMatteBorder(1, 1, 1, 1, new Color(230, 230, 230)));
+
+        slowArea = new JTextArea();
+        slowArea.setEditable(false);
+        slowArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+
+        JScrollPane slowScroll = new JScrollPane(slowArea);
+        slowScroll.setBorder(BorderFactory.createTitledBorder("Consultas lentas"));
+
+        JSplitPane split = new JSplitPane(JSplitPane.VERTICAL_SPLIT, tableScroll, slowScroll);
+        split.setResizeWeight(0.65);
+        split.setBorder(null);
+        add(split, BorderLayout.CENTER);
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.setBackground(Color.WHITE);
+
+        toolbar.add(new JLabel("Umbral lento (ms):"));
+        txtThreshold = new JTextField(String.valueOf(stats.getSlowThresholdMs()), 5);
+        toolbar.add(txtThreshold);
+
+        JButton btnApply = new JButton("Aplicar");
+        JButton btnRefresh = new JButton("Actualizar");
+        JButton btnReset = new JButton("Reiniciar");
+        JButton btnDump = new JButton("Guardar informe...");
+
+        ButtonUtils.styleSecondary(btnApply);
+        ButtonUtils.stylePrimary(btnRefresh);
+        ButtonUtils.styleDanger(btnReset);
+        ButtonUtils.styleSecondary(btnDump);
+
+        btnApply.addActionListener(e -> applyThreshold());
+        btnRefresh.addActionListener(e -> refresh());
+        btnReset.addActionListener(e -> {
+            stats.reset();
+            refresh();
+        });
+        btnDump.addActionListener(e -> dumpReport());
+
+        lblStatus = new JLabel(" ");
+        lblStatus.setFont(new Font("Segoe UI", Font.BOLD, 12));
+
+        toolbar.add(btnApply);
+        toolbar.add(btnRefresh);
+        toolbar.add(btnReset);
+        toolbar.add(btnDump);
+        toolbar.add(lblStatus);
+
+        add(toolbar, BorderLayout.SOUTH);
+
+        if (!stats.isEnabled()) {
+            lblStatus.setText("Estadísticas desactivadas (-D" + QueryStats.ENABLED_PROPERTY + "=false)");
+            lblStatus.setForeground(Color.GRAY);
+        }
+
+        this.addAncestorListener(new javax.swing.event.AncestorListener() {
+
+            @Override
+            public void ancestorAdded(javax.swing.event.AncestorEvent event) {
+                refresh();
+            }
+
+            @Override
+            public void ancestorRemoved(javax.swing.event.AncestorEvent event) {}
+            @Override
+            public void ancestorMoved(javax.swing.event.AncestorEvent event) {}
+
+        });
+    }
+
+    /**
+     * Vuelve a leer las estadísticas y el registro de consultas lentas.
+     */
+    private void refresh() {
+
+        tableModel.setRowCount(0);
+
+        for (Snapshot s : stats.snapshot()) {
+            tableModel.addRow(new Object[]{
+                s.sql(),
+                s.calls(),
+                round(s.totalMs()),
+                round(s.p50Ms()),
+                round(s.p95Ms()),
+                round(s.p99Ms()),
+                round(s.maxMs()),
+                s.rows(),
+                s.edtCalls(),
+                s.errors(),
+                s.lastThread()
+            });
+        }
+
+        StringBuilder text = new StringBuilder();
+
+        for (SlowQuery q : stats.slowQueries().reversed()) {
+            text.append(String.format(Locale.ROOT, "%s  %.1f ms  %d filas  hilo %s%s%n%s%n", q.timestamp(), q.millis(), q.rows(),
+                q.thread(), q.edt() ? " (EDT)" : "", q.sql()));
+            for (String line : q.plan().split("\n")) text.append("    ").append(line).append('\n');
+            text.append('\n');
+        }
+
+        slowArea.setText(text.length() == 0 ? "Ninguna consulta ha superado el umbral." : text.toString());
+        slowArea.setCaretPosition(0);
+    }
+
+    /**
+     * Aplica el umbral de consulta lenta escrito en el campo.
+     */
+    private void applyThreshold() {
+
+        try {
+            long millis = Long.parseLong(txtThreshold.getText().trim());
+            if (millis < 0) throw new NumberFormatException();
+            stats.setSlowThresholdMs(millis);
+            lblStatus.setForeground(new Color(40, 140, 60));
+            lblStatus.setText("Umbral: " + millis + " ms");
+        } catch (NumberFormatException e) {
+            txtThreshold.setText(String.valueOf(stats.getSlowThresholdMs()));
+            JOptionPane.showMessageDialog(this, "Introduzca un número de milisegundos válido.", "Error", JOptionPane.WARNING_MESSAGE);
+        }
+    }
+
+    /**
+     * Pide una carpeta y guarda en ella el informe de texto.
+     */
+    private void dumpReport() {
+
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Carpeta del informe");
+        fc.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        try {
+            Path file = stats.dump(fc.getSelectedFile().toPath());
+            lblStatus.setForeground(new Color(40, 140, 60));
+            lblStatus.setText("Informe guardado: " + file.getFileName());
+        } catch (IOException e) {
+            System.err.println("[error] Could not write query statistics: " + e.getMessage());
+            JOptionPane.showMessageDialog(this, "No se pudo guardar el informe: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,235 @@
+package sincroestancia.src.gui.config.components;
+
+import java.awt.*;
+import java.util.List;
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+
+import sincroestancia.src.gui.components.ButtonUtils;
+import sincroestancia.src.models.IcalFeed;
+import sincroestancia.src.models.VutItem;
+import sincroestancia.src.services.IcalFeedSyncService;
+import sincroestancia.src.services.IcalFeedSyncService.SyncResult;
+
+/**
+ * Panel de configuración de los calendarios iCal de las OTAs (Airbnb, Booking...).
+ * * Permite asociar a la vivienda actual los enlaces de exportación de cada canal, eliminarlos y
+ * forzar una sincronización. Además, IcalFeedSyncService los consulta periódicamente.
+ * * @author Carlos Padilla Labella
+ */
+public class IcalFeedsConfigPanel extends JPanel {
+
+    private JTable feedsTable;
+    private DefaultTableModel tableModel;
+    private JButton btnSync;
+    private JLabel lblStatus;
+
+    private final IcalFeedSyncService feedService;
+    private VutItem currentVut;
+
+    /**
+     * Constructor.
+     * * Construye la interfaz gráfica del panel.
+     */
+    public IcalFeedsConfigPanel() {
+        this.feedService = IcalFeedSyncService.getInstance();
+        initComponents();
+    }
+
+    /**
+     * Actualiza la vivienda activa y recarga sus feeds.
+     */
+    public void setVut(VutItem vut) {
+        this.currentVut = vut;
+        refreshTable();
+    }
+
+    /**
+     * Construye la interfaz gráfica del panel.
+     */
+    private void initComponents() {
+
+        setLayout(new BorderLayout(0, 10));
+        setBackground(Color.WHITE);
+        setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
+
+        JPanel header = new JPanel(new BorderLayout(0, 5));
+        header.setBackground(Color.WHITE);
+
+        JLabel title = new JLabel("Canales (iCal)");
+        title.setFont(new Font("Segoe UI", Font.BOLD, 18));
+        header.add(title, BorderLayout.NORTH);
+
+        JLabel help = new JLabel("<html>Pegue el enlace de exportación del calendario de cada OTA (o la ruta de un archivo .ics). "
+            + "Las reservas nuevas, modificadas y canceladas se aplican automáticamente cada 15 minutos.</html>");
+        help.setForeground(Color.GRAY);
+        header.add(help, BorderLayout.CENTER);
+
+        add(header, BorderLayout.NORTH);
+
+        String[] columnNames = {"ID", "Canal", "URL", "Última comprobación"};
+        tableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        feedsTable = new JTable(tableModel);
+        feedsTable.setRowHeight(30);
+        feedsTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 12));
+        feedsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        feedsTable.getColumnModel().getColumn(0).setMaxWidth(50);
+
+        JScrollPane scrollPane = new JScrollPane(feedsTable);
+        scrollPane.setBorder(BorderFactory.createMatteBorder(1, 1, 1, 1, new Color(230, 230, 230)));
+        add(scrollPane, BorderLayout.CENTER);
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        toolbar.setBackground(Color.WHITE);
+
+        JButton btnAdd = new JButton("Añadir Canal");
+        JButton btnDelete = new JButton("Eliminar");
+        btnSync = new JButton("Sincronizar ahora");
+
+        ButtonUtils.stylePrimary(btnAdd);
+        ButtonUtils.styleDanger(btnDelete);
+        ButtonUtils.styleSecondary(btnSync);
+
+        btnAdd.addActionListener(e -> showAddFeedDialog());
+        btnDelete.addActionListener(e -> deleteSelectedFeed());
+        btnSync.addActionListener(e -> syncFeeds());
+
+        lblStatus = new JLabel(" ");
+        lblStatus.setFont(new Font("Segoe UI", Font.BOLD, 12));
+
+        toolbar.add(btnAdd);
+        toolbar.add(btnDelete);
+        toolbar.add(btnSync);
+        toolbar.add(lblStatus);
+
+        add(toolbar, BorderLayout.SOUTH);
+    }
+
+    /**
+     * Recarga la tabla con los feeds de la vivienda actual.
+     */
+    private void refreshTable() {
+
+        tableModel.setRowCount(0);
+        if (currentVut == null) return;
+
+        for (IcalFeed feed : feedService.getFeeds(currentVut.getId())) {
+            tableModel.addRow(new Object[]{
+                feed.id(),
+                feed.name(),
+                feed.url(),
+                feed.lastSync() != null ? feed.lastSync() : "Nunca"
+            });
+        }
+    }
+
+    /**
+     * Pide el nombre del canal y su enlace y lo registra para la vivienda actual.
+     */
+    private void showAddFeedDialog() {
+
+        if (currentVut == null) {
+            JOptionPane.showMessageDialog(this, "Seleccione primero una vivienda.", "Error", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        JTextField nameField = new JTextField("Airbnb");
+        JTextField urlField = new JTextField(40);
+
+        JPanel form = new JPanel(new GridLayout(4, 1, 5, 5));
+        form.add(new JLabel("Canal:"));
+        form.add(nameField);
+        form.add(new JLabel("URL del calendario (.ics):"));
+        form.add(urlField);
+
+        int option = JOptionPane.showConfirmDialog(this, form, "Nuevo Canal", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (option != JOptionPane.OK_OPTION) return;
+
+        String name = nameField.getText().trim();
+        String url = urlField.getText().trim();
+
+        if (name.isEmpty() || url.isEmpty()) {
+            JOptionPane.showMessageDialog(this, "El canal y la URL son obligatorios.", "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
+        if (feedService.addFeed(currentVut.getId(), name, url) > 0) {
+            refreshTable();
+        } else {
+            JOptionPane.showMessageDialog(this, "Error al guardar el canal.", "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Elimina el feed seleccionado (las reservas ya importadas se conservan).
+     */
+    private void deleteSelectedFeed() {
+
+        int selectedRow = feedsTable.getSelectedRow();
+        if (selectedRow == -1) return;
+
+        int feedId = (int) tableModel.getValueAt(selectedRow, 0);
+
+        int confirm = JOptionPane.showConfirmDialog(this,
+            "¿Eliminar este canal?\nLas reservas ya importadas no se borrarán.", "Confirmar", JOptionPane.YES_NO_OPTION);
+
+        if (confirm == JOptionPane.YES_OPTION && feedService.deleteFeed(feedId)) {
+            refreshTable();
+        }
+    }
+
+    /**
+     * Sincroniza en segundo plano todos los feeds de la vivienda actual.
+     */
+    private void syncFeeds() {
+
+        if (currentVut == null) return;
+
+        List<IcalFeed> feeds = feedService.getFeeds(currentVut.getId());
+        if (feeds.isEmpty()) return;
+
+        btnSync.setEnabled(false);
+        lblStatus.setText("Sincronizando...");
+        lblStatus.setForeground(Color.ORANGE);
+
+        SwingWorker<String, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected String doInBackground() {
+
+                StringBuilder summary = new StringBuilder();
+                for (IcalFeed feed : feeds) {
+                    SyncResult result = feedService.sync(feed);
+                    if (summary.length() > 0) summary.append(" | ");
+                    summary.append(feed.name()).append(": ").append(result.summary());
+                }
+                return summary.toString();
+            }
+
+            @Override
+            protected void done() {
+
+                btnSync.setEnabled(true);
+
+                try {
+                    lblStatus.setText(get());
+                    lblStatus.setForeground(new Color(0, 150, 0));
+                } catch (Exception ex) {
+                    lblStatus.setText("Error en la sincronización");
+                    lblStatus.setForeground(Color.RED);
+                    ex.printStackTrace();
+                }
+
+                refreshTable();
+            }
+        };
+
+        worker.execute();
+    }
+}
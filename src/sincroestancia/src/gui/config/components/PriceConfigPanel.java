@@ -10,6 +10,8 @@ import javax.swing.border.TitledBorder;
 import sincroestancia.src.services.DatabaseService;
 import sincroestancia.src.gui.components.ButtonUtils;
 import sincroestancia.src.models.VutItem;
+import sincroestancia.src.models.Money;
+import sincroestancia.src.models.Season;
 
 /**
  * Panel para la configuración masiva de precios y temporadas.
@@ -133,13 +135,13 @@ public class PriceConfigPanel extends JPanel {
         
         btnAddPrice.addActionListener(e -> {
             try {
-                double price = Double.parseDouble(txtNewPrice.getText().trim());
+                long price = Money.parse(txtNewPrice.getText());
                 if (price <= 0) throw new NumberFormatException();
                 addPriceToList(price);
                 txtNewPrice.setText("");
                 recalculateSeasons(); 
             } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Please enter a valid positive number.", "Invalid Price", JOptionPane.WARNING_MESSAGE);
+                JOptionPane.showMessageDialog(this, "Please enter a valid positive amount (up to two decimals).", "Invalid Price", JOptionPane.WARNING_MESSAGE);
             }
         });
 
@@ -150,7 +152,7 @@ public class PriceConfigPanel extends JPanel {
     /**
      * Añade un nuevo precio a la lista evitando duplicados.
      */
-    private void addPriceToList(double price) {
+    private void addPriceToList(long price) {
         for (int i = 0; i < listModel.size(); i++) {
             if (listModel.get(i).price == price) return;
         }
@@ -171,7 +173,7 @@ public class PriceConfigPanel extends JPanel {
         int size = listModel.size();
         if (size == 0) return;
 
-        List<Double> prices = new ArrayList<>();
+        List<Long> prices = new ArrayList<>();
         for (int i = 0; i < size; i++) {
             prices.add(listModel.get(i).price);
         }
@@ -182,14 +184,14 @@ public class PriceConfigPanel extends JPanel {
             int rank = prices.indexOf(item.price);
             
             if (size == 1) {
-                item.season = "average"; 
+                item.season = Season.AVERAGE; 
             } else if (size == 2) {
-                item.season = (rank == 0) ? "low" : "high";
+                item.season = (rank == 0) ? Season.LOW : Season.HIGH;
             } else {
                 double percentile = (double) rank / (size - 1);
-                if (percentile < 0.33) item.season = "low";
-                else if (percentile < 0.66) item.season = "average";
-                else item.season = "high";
+                if (percentile < 0.33) item.season = Season.LOW;
+                else if (percentile < 0.66) item.season = Season.AVERAGE;
+                else item.season = Season.HIGH;
             }
         }
         priceList.repaint();
@@ -224,8 +226,8 @@ public class PriceConfigPanel extends JPanel {
             return;
         }
 
-        String msg = String.format("Apply %.2f€ (%s)\nFrom: %s\nTo: %s?", 
-                selectedItem.price, selectedItem.season, start, end);
+        String msg = String.format("Apply %s€ (%s)\nFrom: %s\nTo: %s?", 
+                Money.format(selectedItem.price), selectedItem.season.key(), start, end);
                 
         int confirm = JOptionPane.showConfirmDialog(this, msg, "Confirm Update", JOptionPane.YES_NO_OPTION);
         
@@ -262,17 +264,17 @@ public class PriceConfigPanel extends JPanel {
      */
     private static class PriceItem {
 
-        double price;
-        String season; 
+        long price; // céntimos
+        Season season; 
 
-        public PriceItem(double price) {
+        public PriceItem(long price) {
             this.price = price;
-            this.season = "average"; 
+            this.season = Season.AVERAGE; 
         }
 
         @Override
         public String toString() {
-            return String.format("%.2f €  -  [%s]", price, season.toUpperCase());
+            return String.format("%s €  -  [%s]", Money.format(price), season.name());
         }
         
     }
@@ -2,6 +2,7 @@ package sincroestancia.src.gui.dasboard;
 
 import sincroestancia.src.gui.dasboard.components.Calendar;
 import java.awt.BorderLayout;
+import java.time.LocalDate;
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
 import sincroestancia.src.gui.components.Drawer;
@@ -192,6 +193,21 @@ public class Dashboard extends javax.swing.JPanel {
         }
     }
 
+    /**
+     * Muestra en el calendario (y en el panel de detalle) un día de una vivienda concreta.
+     * * @param new_vut_id El ID de la vivienda.
+     * @param date El día a seleccionar.
+     */
+    public void showDate(int new_vut_id, LocalDate date) {
+        this.vut_id = new_vut_id;
+        if (calendar_panel != null) {
+            calendar_panel.show_date(new_vut_id, date);
+        }
+        if (register_day_form_panel != null) {
+            register_day_form_panel.setVutId(new_vut_id);
+        }
+    }
+
     private void initComponents() {
 
         left_panel = new javax.swing.JPanel();
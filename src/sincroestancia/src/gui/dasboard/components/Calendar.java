@@ -6,6 +6,7 @@ import java.awt.Color;
 import java.awt.GridLayout;
 import java.awt.event.ActionEvent;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
 import java.util.GregorianCalendar;
 import java.util.Locale;
 import javax.swing.JButton;
@@ -19,9 +20,8 @@ import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
 import sincroestancia.src.utils.ImageUtils;
 import sincroestancia.src.services.DatabaseService;
-import java.util.Map;
-import java.util.HashMap;
-import sincroestancia.src.models.DayInfo;
+import sincroestancia.src.models.MonthSnapshot;
+import sincroestancia.src.models.Season;
 import sincroestancia.src.gui.components.ButtonUtils;
 
 /**
@@ -102,6 +102,20 @@ public class Calendar extends javax.swing.JPanel {
         update_calendar();
     }
 
+    /**
+     * Cambia la vivienda activa, muestra el mes de la fecha indicada y la deja seleccionada
+     * (p.ej. al abrir un resultado de la búsqueda de huéspedes).
+     */
+    public void show_date(int new_vut_id, LocalDate date) {
+        this.current_vut_id = new_vut_id;
+        this.current_year = date.getYear();
+        this.current_month = date.getMonthValue() - 1;
+        this.selected_year = this.current_year;
+        this.selected_month = this.current_month;
+        this.selected_day = date.getDayOfMonth();
+        update_calendar();
+    }
+
     /**
      * Método CORE: Renderiza la rejilla del calendario.
      * * Flujo lógico:
@@ -120,10 +134,9 @@ public class Calendar extends javax.swing.JPanel {
 
         this.selected_day_button = null;
 
-        Map<Integer, DayInfo> monthData = new HashMap<>();
-        if (this.current_vut_id > 0) {
-            monthData = db_service.get_month_data(this.current_vut_id, this.current_year, this.current_month);
-        }
+        MonthSnapshot monthData = this.current_vut_id > 0
+            ? db_service.get_month_data(this.current_vut_id, this.current_year, this.current_month)
+            : MonthSnapshot.empty(this.current_year, this.current_month);
 
         GregorianCalendar cal = new GregorianCalendar(this.current_year, this.current_month, 1);
 
@@ -177,27 +190,24 @@ public class Calendar extends javax.swing.JPanel {
             }
 
             if (this.current_vut_id > 0) {
-                DayInfo dayInfo = monthData.get(day);
-
-                if (dayInfo != null) {
-                    String season = dayInfo.season();
-                    String status = dayInfo.status();
+                if (monthData.has(day)) {
+                    Season season = monthData.season(day);
 
-                    if (status != null && (status.equals("reserved") || status.equals("paid"))) {
+                    if (monthData.isOccupied(day)) {
                         day_button.setText("<html><center>" + day + "<br><font size='-2'>•</font></center></html>");
                         day_button.setMargin(new java.awt.Insets(0, 1, 0, 1));
                     }
 
                     switch (season) {
-                        case "low" -> {
+                        case LOW -> {
                             day_btn_color = low_day_btn_color;
                             hover_btn_color = hover_low_day_btn_color;
                         }
-                        case "average" -> {
+                        case AVERAGE -> {
                             day_btn_color = average_day_btn_color;
                             hover_btn_color = hover_average_day_btn_color;
                         }
-                        case "high" -> {
+                        case HIGH -> {
                             day_btn_color = high_day_btn_color;
                             hover_btn_color = hover_high_day_btn_color;
                         }
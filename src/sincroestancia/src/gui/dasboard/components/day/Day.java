@@ -16,6 +16,7 @@ import javax.swing.JButton;
 import javax.swing.JScrollPane;
 import sincroestancia.src.services.DatabaseService;
 import sincroestancia.src.models.FullDayInfo;
+import sincroestancia.src.models.Money;
 import java.util.function.Consumer;
 import sincroestancia.src.gui.components.ButtonUtils;
 import sincroestancia.src.models.ReservationInfo;
@@ -193,23 +194,23 @@ public class Day extends javax.swing.JPanel {
 
         if (dayInfo != null) {
 
-            price_label.setText("(" + String.format(spanishLocale, "%.2f", dayInfo.price()) + " €)");
+            price_label.setText("(" + Money.format(dayInfo.priceCents(), spanishLocale) + " €)");
 
             String statusText = "Libre";
             Color statusColor = new Color(0, 140, 0);
 
             switch (dayInfo.status()) {
-                case "reserved":
+                case RESERVED:
                     statusText = "Reservado";
                     statusColor = new Color(200, 0, 0);
                     loadAndShowReservationDetails(vut_id, date_obj);
                     break;
-                case "paid":
+                case PAID:
                     statusText = "Pagado";
                     statusColor = new Color(0, 0, 200);
                     loadAndShowReservationDetails(vut_id, date_obj);
                     break;
-                case "free":
+                case FREE:
                     GregorianCalendar todayCal = new GregorianCalendar();
                     todayCal.set(GregorianCalendar.HOUR_OF_DAY, 0);
                     todayCal.set(GregorianCalendar.MINUTE, 0);
@@ -26,8 +26,11 @@ import javax.swing.SwingConstants;
 import javax.swing.text.MaskFormatter;
 
 import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestProfiles;
 import sincroestancia.src.gui.components.ButtonUtils;
+import sincroestancia.src.models.GuestProfile;
 import sincroestancia.src.models.ReservationInfo;
+import sincroestancia.src.models.UpdateResult;
 
 /**
  * Formulario lateral deslizante (Drawer Content) para la gestión de Reservas.
@@ -37,6 +40,8 @@ import sincroestancia.src.models.ReservationInfo;
  * redimensionado en layouts verticales.
  * - Gestión manual de placeholders (texto fantasma) en los campos de texto.
  * - Validación de formatos de fecha y campos obligatorios antes del envío.
+ * - Autocompletado de huéspedes habituales: al teclear un documento conocido se rellenan el nombre,
+ * el email y el teléfono vacíos con su ficha (GuestProfiles).
  * * @author Carlos Padilla Labella
  */
 public class RegisterDay extends javax.swing.JPanel {
@@ -63,6 +68,7 @@ public class RegisterDay extends javax.swing.JPanel {
     private DatabaseService db_service;
     private int current_vut_id = -1;
     private int editing_reservation_id = -1;
+    private int editing_reservation_version = 0;
     private Runnable onReservationSuccess;
 
     /**
@@ -74,6 +80,7 @@ public class RegisterDay extends javax.swing.JPanel {
         this.db_service = new DatabaseService();
         initComponents();
         setupPlaceholderLogic();
+        setupProfileAutofill();
     }
 
     /**
@@ -331,8 +338,16 @@ public class RegisterDay extends javax.swing.JPanel {
             success = db_service.register_reservation(this.current_vut_id, name, dni, email, phone, checkInSQL,
                     checkOutSQL, pax, isPaid);
         } else {
-            success = db_service.update_reservation_details(this.editing_reservation_id, this.current_vut_id, name, dni,
-                    email, phone, pax, isPaid, checkInSQL, checkOutSQL);
+            UpdateResult result = db_service.update_reservation_details(this.editing_reservation_id,
+                    this.editing_reservation_version, this.current_vut_id, name, dni, email, phone, pax, isPaid,
+                    checkInSQL, checkOutSQL);
+
+            if (result.isConflict() || result.status() == UpdateResult.Status.NOT_FOUND) {
+                handleConcurrentChange(result);
+                return;
+            }
+
+            success = result.isUpdated();
         }
 
         if (success) {
@@ -353,6 +368,28 @@ public class RegisterDay extends javax.swing.JPanel {
         }
     }
 
+    /**
+     * Otro puesto modificó (o eliminó) la reserva mientras se editaba.
+     * * No se sobrescribe nada: se avisa al usuario y se recarga el formulario con los datos actuales
+     * para que vuelva a aplicar sus cambios sobre ellos.
+     */
+    private void handleConcurrentChange(UpdateResult result) {
+
+        if (result.status() == UpdateResult.Status.NOT_FOUND) {
+            JOptionPane.showMessageDialog(this, "La reserva ha sido eliminada desde otro puesto.", "Reserva modificada",
+                    JOptionPane.WARNING_MESSAGE);
+            resetForm();
+            if (this.onReservationSuccess != null) this.onReservationSuccess.run();
+            return;
+        }
+
+        JOptionPane.showMessageDialog(this,
+                "La reserva ha sido modificada desde otro puesto mientras la editaba.\nSe mostrarán los datos actuales; revise y vuelva a guardar sus cambios.",
+                "Reserva modificada", JOptionPane.WARNING_MESSAGE);
+
+        loadForEdit(db_service.get_reservation_by_id(this.editing_reservation_id));
+    }
+
     /**
      * Lógica de eliminación de reserva.
      * * Requiere confirmación del usuario.
@@ -413,6 +450,7 @@ public class RegisterDay extends javax.swing.JPanel {
         resetForm();
         
         this.editing_reservation_id = resInfo.id();
+        this.editing_reservation_version = resInfo.version();
         Color defaultColor = new Color(51, 51, 51);
         name_input.setText(resInfo.guestName());
         name_input.setForeground(defaultColor);
@@ -521,6 +559,42 @@ public class RegisterDay extends javax.swing.JPanel {
         }
     }
 
+    /**
+     * Rellena los datos del titular con la ficha del documento tecleado (solo en reservas nuevas y
+     * sin tocar los campos que ya se han escrito).
+     */
+    private void setupProfileAutofill() {
+
+        dni_input.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+        });
+    }
+
+    private void autofillFromProfile() {
+
+        String dni = dni_input.getText().trim();
+        if (this.editing_reservation_id != -1 || dni.equals(dni_placeholder) || GuestProfiles.normalize(dni).length() < GuestProfiles.MIN_DOCUMENT_LENGTH) return;
+
+        GuestProfile profile = db_service.find_guest_profile(dni);
+        if (profile == null) return;
+
+        fillIfEmpty(name_input, name_placeholder, profile.displayName());
+        fillIfEmpty(email_input, email_placeholder, profile.email());
+        fillIfEmpty(phone_input, phone_placeholder, profile.phone());
+    }
+
+    private void fillIfEmpty(JTextField field, String placeholder, String value) {
+        String current = field.getText().trim();
+        if (value == null || value.isBlank() || !(current.isEmpty() || current.equals(placeholder))) return;
+        field.setText(value);
+        field.setForeground(new Color(51, 51, 51));
+    }
+
     /**
      * Habilita el scroll con la rueda del ratón incluso cuando el cursor está sobre
      * componentes que normalmente no propagan el evento (como paneles internos).
@@ -16,6 +16,7 @@ import javax.swing.JButton;
 
 import java.util.function.Consumer;
 import sincroestancia.src.models.ReservationInfo;
+import sincroestancia.src.models.UpdateResult;
 
 /**
  * Un panel dedicado a mostrar los detalles de una reserva existente.
@@ -176,18 +177,29 @@ public class ReservationDetails extends JPanel {
 
         boolean isNowPaid = paid_checkbox.isSelected();
 
-        boolean success = db_service.update_reservation_payment_status(
+        UpdateResult result = db_service.update_reservation_payment_status(
                 this.current_reservation_id,
+                this.currentReservation.version(),
                 isNowPaid,
                 this.current_vut_id,
                 this.check_in_date_sql,
                 this.check_out_date_sql);
 
-        if (success) {
+        if (result.isUpdated()) {
             System.out.println("[DetailsPanel] Pago actualizado. Avisando al panel 'Day'...");
             if (onPaymentChanged != null) {
                 onPaymentChanged.run();
             }
+        } else if (result.status() != UpdateResult.Status.FAILED) {
+            System.out.println("[DetailsPanel] La reserva cambió en otro puesto. Recargando...");
+            paid_checkbox.setSelected(!isNowPaid);
+            javax.swing.JOptionPane.showMessageDialog(this,
+                    "La reserva ha sido modificada desde otro puesto. Se mostrarán los datos actuales.",
+                    "Reserva modificada",
+                    javax.swing.JOptionPane.WARNING_MESSAGE);
+            if (onPaymentChanged != null) {
+                onPaymentChanged.run();
+            }
         } else {
             System.err.println("[DetailsPanel] Error al actualizar el pago. Revirtiendo checkbox.");
             paid_checkbox.setSelected(!isNowPaid);
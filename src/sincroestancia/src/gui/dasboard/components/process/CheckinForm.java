@@ -17,6 +17,7 @@ import javax.swing.JLabel;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
+import sincroestancia.src.services.CheckinUnitOfWork;
 import sincroestancia.src.services.DatabaseService;
 import sincroestancia.src.gui.components.ButtonUtils;
 import sincroestancia.src.models.ReservationInfo;
@@ -29,6 +30,8 @@ import sincroestancia.src.models.GuestData;
  * - Listado y adición de huéspedes (Parte de Entrada).
  * - Firma digital (simulada) y aceptación de normas/GDPR.
  * - Registro de datos financieros (Tarjeta, método de pago).
+ * * Los huéspedes y el pago se acumulan en memoria (CheckinUnitOfWork) y se guardan juntos, en una sola
+ * transacción, al pulsar 'Finalizar'; cancelar no deja partes a medias en la base de datos.
  * * Interactúa con un componente 'Modal' externo para los sub-formularios.
  * * @author Carlos Padilla Labella
  */
@@ -47,7 +50,7 @@ public class CheckinForm extends JPanel {
     private java.util.Map<String, String> firstGuestAddressCache = null; 
 
     private int currentReservationId = -1;
-    private int currentCheckinId = -1; 
+    private CheckinUnitOfWork checkinWork;
 
     private Runnable onCancel, onFinish;
     private Consumer<Component> onOpenModalRequest;
@@ -141,15 +144,14 @@ public class CheckinForm extends JPanel {
                 int payerId = financialDataPanel.getPayerId();
                 String payerName = "Desconocido";
                 if (payerId != -1) {
-                    Map<String, Object> payerData = db.get_guest_details(payerId);
+                    Map<String, Object> payerData = checkinWork.guestDetails(payerId);
                     if (payerData != null) {
                         payerName = payerData.get("fullname") + " " + payerData.get("surname1") +
                                 " (" + payerData.get("docNumber") + ")";
                     }
                 }
 
-                boolean success = db.finalize_checkin(
-                        this.currentCheckinId,
+                checkinWork.setPayment(new CheckinUnitOfWork.Payment(
                         financialDataPanel.getPaymentMethod(),
                         financialDataPanel.getPaymentId(),
                         payerName,
@@ -157,9 +159,12 @@ public class CheckinForm extends JPanel {
                         financialDataPanel.getPaymentDate(),
                         true, 
                         true 
-                );
+                ));
 
-                if (success) {
+                int checkinId = db.commit_checkin(checkinWork);
+                System.out.println("[CheckinForm] Check-in ID guardado: " + checkinId);
+
+                if (checkinId > 0) {
                     JOptionPane.showMessageDialog(this, "Check-in finalizado y guardado correctamente.");
                     if (onFinish != null)
                         onFinish.run();
@@ -221,15 +226,14 @@ public class CheckinForm extends JPanel {
             return;
 
         GuestFormPanel guestForm = new GuestFormPanel();
-        DatabaseService db = new DatabaseService();
 
-        List<GuestData> adults = db.get_adults_by_checkin(this.currentCheckinId);
+        List<GuestData> adults = checkinWork.adults();
         guestForm.setPotentialGuardians(adults);
 
         if (guestIdToEdit == -1) {
             guestForm.clearForm();
 
-            List<GuestData> existingGuests = db.get_guests_by_checkin(this.currentCheckinId);
+            List<GuestData> existingGuests = checkinWork.guests();
 
             if (existingGuests.isEmpty()) {
                 
@@ -246,7 +250,7 @@ public class CheckinForm extends JPanel {
             } else {
                 int firstGuestId = existingGuests.get(0).id();
 
-                Map<String, Object> firstGuestFullData = db.get_guest_details(firstGuestId);
+                Map<String, Object> firstGuestFullData = checkinWork.guestDetails(firstGuestId);
 
                 if (firstGuestFullData != null) {
                     System.out.println(
@@ -261,7 +265,7 @@ public class CheckinForm extends JPanel {
 
         } else {
             System.out.println("Cargando datos para editar huésped ID: " + guestIdToEdit);
-            Map<String, Object> data = db.get_guest_details(guestIdToEdit);
+            Map<String, Object> data = checkinWork.guestDetails(guestIdToEdit);
             guestForm.loadGuestData(data);
         }
 
@@ -274,37 +278,16 @@ public class CheckinForm extends JPanel {
             Map<String, Object> data = guestForm.validateAndGetData();
 
             if (data != null) {
-                boolean success;
 
                 if (guestIdToEdit == -1) {
-                    success = db.add_guest(
-                            this.currentCheckinId,
-                            (String) data.get("fullname"), (String) data.get("surname1"), (String) data.get("surname2"),
-                            (String) data.get("sex"), (String) data.get("birthDate"), (String) data.get("nationality"),
-                            (String) data.get("docType"), (String) data.get("docNumber"),
-                            (String) data.get("supportNumber"),
-                            (String) data.get("address"), (String) data.get("city"), (String) data.get("country"),
-                            (String) data.get("phone"), (String) data.get("email"), (Boolean) data.get("isMinor"),
-                            (Integer) data.get("guardianId"));
+                    checkinWork.addGuest(data);
                 } else {
-                    success = db.update_guest(
-                            guestIdToEdit,
-                            (String) data.get("fullname"), (String) data.get("surname1"), (String) data.get("surname2"),
-                            (String) data.get("sex"), (String) data.get("birthDate"), (String) data.get("nationality"),
-                            (String) data.get("docType"), (String) data.get("docNumber"),
-                            (String) data.get("supportNumber"),
-                            (String) data.get("address"), (String) data.get("city"), (String) data.get("country"),
-                            (String) data.get("phone"), (String) data.get("email"), (Boolean) data.get("isMinor"),
-                            (Integer) data.get("guardianId"));
+                    checkinWork.updateGuest(guestIdToEdit, data);
                 }
 
-                if (success) {
-                    refreshGuestList();
-                    if (onCloseModalRequest != null)
-                        onCloseModalRequest.run();
-                } else {
-                    JOptionPane.showMessageDialog(this, "Error al guardar en base de datos.");
-                }
+                refreshGuestList();
+                if (onCloseModalRequest != null)
+                    onCloseModalRequest.run();
             }
         });
 
@@ -345,11 +328,10 @@ public class CheckinForm extends JPanel {
 
     private void navigateNext() {
         if (currentStep == 1) {
-            DatabaseService db = new DatabaseService();
-            List<GuestData> guests = db.get_guests_by_checkin(this.currentCheckinId);
+            int guestCount = checkinWork.guestCount();
 
-            if (this.reservationInfo != null && guests.size() < this.reservationInfo.pax()) {
-                int missing = this.reservationInfo.pax() - guests.size();
+            if (this.reservationInfo != null && guestCount < this.reservationInfo.pax()) {
+                int missing = this.reservationInfo.pax() - guestCount;
                 JOptionPane.showMessageDialog(this,
                         "Faltan registrar " + missing + " huésped(s).\nDebe registrar a todos los viajeros ("
                                 + this.reservationInfo.pax() + ") antes de continuar.",
@@ -382,8 +364,7 @@ public class CheckinForm extends JPanel {
      * Carga los datos de una reserva específica para iniciar o continuar el proceso de check-in.
      * * Pasos lógicos:
      * - Consulta la reserva en la BD.
-     * - Obtiene o crea un ID de check-in asociado en la tabla 'checkins'.
-     * - Carga la lista de huéspedes ya registrados.
+     * - Abre su parte de entrada (CheckinUnitOfWork) con los huéspedes ya registrados, sin escribir nada.
      * - Resetea los campos del formulario.
      * * @param reservationId ID de la reserva a procesar.
      */
@@ -392,9 +373,10 @@ public class CheckinForm extends JPanel {
         this.firstGuestAddressCache = null;
         DatabaseService db = new DatabaseService();
         this.reservationInfo = db.get_reservation_by_id(reservationId);
-        this.currentCheckinId = db.get_or_create_checkin_id(reservationId);
+        this.checkinWork = db.begin_checkin(reservationId);
 
-        System.out.println("[CheckinForm] Check-in ID activo: " + this.currentCheckinId);
+        System.out.println("[CheckinForm] Parte de entrada abierto para la reserva " + reservationId
+                + " (" + this.checkinWork.guestCount() + " huéspedes guardados)");
 
         refreshGuestList();
 
@@ -405,7 +387,7 @@ public class CheckinForm extends JPanel {
     private void refreshGuestList() {
         guestsListContainer.removeAll();
 
-        List<GuestData> guests = new DatabaseService().get_guests_by_checkin(this.currentCheckinId);
+        List<GuestData> guests = checkinWork.guests();
 
         if (this.reservationInfo != null && btnAddGuest != null) {
             boolean isFull = guests.size() >= this.reservationInfo.pax();
@@ -481,9 +463,8 @@ public class CheckinForm extends JPanel {
                 "¿Eliminar este huésped?", "Confirmar", JOptionPane.YES_NO_OPTION);
 
         if (confirm == JOptionPane.YES_OPTION) {
-            if (new DatabaseService().delete_guest(guestId)) {
-                refreshGuestList();
-            }
+            checkinWork.removeGuest(guestId);
+            refreshGuestList();
         }
     }
 
@@ -494,8 +475,7 @@ public class CheckinForm extends JPanel {
             case 2 -> {
                 stepIndicatorLabel.setText("Fase 2 de 3: Datos Financieros");
                 if (financialDataPanel != null) {
-                    DatabaseService db = new DatabaseService();
-                    List<GuestData> adults = db.get_adults_by_checkin(this.currentCheckinId);
+                    List<GuestData> adults = checkinWork.adults();
                     financialDataPanel.setPotentialPayers(adults);
                 }
             }
@@ -23,9 +23,14 @@ import sincroestancia.src.gui.components.ButtonUtils;
 import java.awt.Cursor;
 
 import sincroestancia.src.models.GuestData;
+import sincroestancia.src.models.GuestProfile;
+import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestProfiles;
 
 /**
  * Formulario detallado para los datos de un huésped (Adulto o Menor).
+ * * Al teclear un documento conocido, los campos vacíos se rellenan con la ficha del huésped
+ * habitual (datos de su última estancia, GuestProfiles).
  */
 public class GuestFormPanel extends JPanel {
 
@@ -54,8 +59,13 @@ public class GuestFormPanel extends JPanel {
     // Paneles contenedores para ocultar/mostrar según si es menor
     private JPanel contactPanel, addressPanel, docPanel;
 
+    private final DatabaseService db_service;
+    private boolean loading_guest = false;
+
     public GuestFormPanel() {
+        this.db_service = new DatabaseService();
         initComponents();
+        setupProfileAutofill();
     }
 
     private void initComponents() {
@@ -332,6 +342,7 @@ public class GuestFormPanel extends JPanel {
         if (data == null)
             return;
 
+        loading_guest = true;
         txtFullname.setText((String) data.get("fullname"));
         txtSurname1.setText((String) data.get("surname1"));
         txtSurname2.setText((String) data.get("surname2"));
@@ -346,6 +357,7 @@ public class GuestFormPanel extends JPanel {
         txtCountry.setText((String) data.get("country"));
         txtPhone.setText((String) data.get("phone"));
         txtEmail.setText((String) data.get("email"));
+        loading_guest = false;
 
         boolean isMinor = (Boolean) data.get("isMinor");
         chkIsMinor.setSelected(isMinor);
@@ -433,6 +445,62 @@ public class GuestFormPanel extends JPanel {
 
     // --- LOGICA UI ---
 
+    private void setupProfileAutofill() {
+        txtDocNumber.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+            @Override
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+            @Override
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { autofillFromProfile(); }
+        });
+    }
+
+    /**
+     * Rellena con la ficha del documento los campos que siguen vacíos (no sobrescribe lo ya escrito
+     * ni actúa al cargar un huésped existente para editarlo).
+     * * Sexo, fecha de nacimiento y tipo de documento solo se toman si la fecha está vacía (formulario nuevo).
+     */
+    private void autofillFromProfile() {
+
+        String docNumber = txtDocNumber.getText().trim();
+        if (loading_guest || GuestProfiles.normalize(docNumber).length() < GuestProfiles.MIN_DOCUMENT_LENGTH) return;
+
+        GuestProfile profile = db_service.find_guest_profile(docNumber);
+        if (profile == null) return;
+
+        if (isEmpty(txtFullname) && isEmpty(txtSurname1) && profile.surname1() == null) {
+            // Ficha creada desde una reserva: el nombre completo va junto
+            setPreloadedData(profile.fullname(), null, null, null, null, null, null);
+        } else {
+            fillIfEmpty(txtFullname, profile.fullname());
+            fillIfEmpty(txtSurname1, profile.surname1());
+        }
+        fillIfEmpty(txtSurname2, profile.surname2());
+        fillIfEmpty(txtNationality, profile.nationality());
+        fillIfEmpty(txtSupportNumber, profile.supportNumber());
+        fillIfEmpty(txtAddress, profile.address());
+        fillIfEmpty(txtCity, profile.municipality());
+        fillIfEmpty(txtCountry, profile.country());
+        fillIfEmpty(txtPhone, profile.phone());
+        fillIfEmpty(txtEmail, profile.email());
+
+        String birthDate = txtBirthDate.getText().trim();
+        if ((birthDate.isEmpty() || birthDate.equals("__/__/____")) && profile.birthDate() != null) {
+            txtBirthDate.setText(profile.birthDate());
+            if (profile.sex() != null) comboSex.setSelectedItem(profile.sex());
+            if (profile.documentType() != null) comboDocType.setSelectedItem(profile.documentType());
+        }
+    }
+
+    private static boolean isEmpty(JTextField field) {
+        return field.getText().trim().isEmpty();
+    }
+
+    private static void fillIfEmpty(JTextField field, String value) {
+        if (value != null && !value.isBlank() && isEmpty(field)) field.setText(value);
+    }
+
     private void toggleMinorFields(boolean isMinor) {
         // Si es menor, ocultamos contacto y quizás documento/dirección si asumimos las
         // del padre
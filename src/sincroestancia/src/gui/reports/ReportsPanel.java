@@ -7,6 +7,8 @@ import java.time.format.TextStyle;
 import java.util.ArrayList;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntConsumer;
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import org.jfree.chart.ChartFactory;
@@ -14,6 +16,7 @@ import org.jfree.chart.ChartPanel;
 import org.jfree.chart.JFreeChart;
 import org.jfree.chart.plot.CategoryPlot;
 import org.jfree.chart.plot.PiePlot;
+import org.jfree.chart.plot.Plot;
 import org.jfree.chart.plot.PlotOrientation;
 import org.jfree.chart.renderer.category.BarRenderer;
 import org.jfree.chart.renderer.category.LineAndShapeRenderer;
@@ -21,9 +24,13 @@ import org.jfree.data.category.DefaultCategoryDataset;
 import org.jfree.data.general.DefaultPieDataset;
 
 import sincroestancia.src.gui.components.ButtonUtils;
+import sincroestancia.src.models.Money;
 import sincroestancia.src.models.VutItem;
+import sincroestancia.src.models.YearlyReport;
 import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.MonthlyStats;
 import sincroestancia.src.services.PdfReportService;
+import sincroestancia.src.services.PortfolioReportService;
 
 /**
  * Panel principal para la visualización de reportes y estadísticas (Dashboard de Rendimiento).
@@ -32,7 +39,11 @@ import sincroestancia.src.services.PdfReportService;
  * - Demografía de los huéspedes (nacionalidades).
  * - Tendencias de ocupación porcentual.
  * * Permite filtrar los datos por año actual y exportar un informe completo en PDF.
+ * * También genera el informe consolidado de cartera (todas las viviendas) en segundo plano.
  * * También muestra una lista rápida de próximas operaciones (Check-in/Check-out).
+ * * Las consultas, los datasets de los gráficos y la exportación se calculan fuera del EDT
+ * (SwingWorker) con barra de progreso y opción de cancelar. Los datasets se cachean por
+ * (vivienda, año) hasta que cambian los agregados mensuales o se pulsa "Recargar".
  * * @author Carlos Padilla Labella
  */
 public class ReportsPanel extends JPanel {
@@ -46,6 +57,7 @@ public class ReportsPanel extends JPanel {
     private JLabel lblOccupancyValue;
     
     private JButton btnExportPdf; 
+    private JButton btnPortfolioPdf;
     
     private JPanel revenueChartContainer;
     private JPanel nationalityChartContainer;
@@ -53,6 +65,29 @@ public class ReportsPanel extends JPanel {
     
     private JPanel movementsListPanel; 
 
+    private JProgressBar progressBar;
+    private JButton btnCancel;
+
+    private SwingWorker<RefreshResult, Void> refreshWorker;
+    private SwingWorker<?, ?> activeWorker;
+    private int refreshGeneration = 0;
+
+    private final Map<CacheKey, ReportData> datasetCache = new ConcurrentHashMap<>();
+
+    private record CacheKey(int vutId, int year) {}
+
+    /**
+     * Datos calculados de un (vivienda, año): el informe, los datasets de los tres gráficos
+     * y los gráficos del PDF.
+     * * Los gráficos del PDF usan datasets propios (los de pantalla se enlazan a los ChartPanel) y se
+     * reutilizan entre exportaciones para aprovechar la caché de renderizado de PdfReportService.
+     * * 'version' es la versión de MonthlyStats con la que se calcularon.
+     */
+    private record ReportData(YearlyReport report, DefaultCategoryDataset revenue, DefaultPieDataset nationality,
+            DefaultCategoryDataset occupancy, java.util.List<JFreeChart> pdfCharts, long version) {}
+
+    private record RefreshResult(ReportData data, ArrayList<Map<String, String>> movements) {}
+
     /**
      * Constructor del panel de reportes.
      * * Inicializa el servicio de base de datos y establece el año actual como filtro por defecto.
@@ -184,7 +219,7 @@ public class ReportsPanel extends JPanel {
         btnRefresh.setCursor(new Cursor(Cursor.HAND_CURSOR));
         btnRefresh.setBackground(new Color(245, 245, 245)); 
         btnRefresh.addActionListener(e -> {
-            refreshData();
+            refreshData(true);
             btnRefresh.setEnabled(false);
             new Timer(500, evt -> {
                 btnRefresh.setEnabled(true);
@@ -200,20 +235,45 @@ public class ReportsPanel extends JPanel {
         ButtonUtils.styleDanger(btnExportPdf);
         btnExportPdf.addActionListener(e -> exportPdfAction());
 
+        btnPortfolioPdf = new JButton("Informe cartera");
+        ButtonUtils.styleSecondary(btnPortfolioPdf);
+        btnPortfolioPdf.setFocusPainted(false);
+        btnPortfolioPdf.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        btnPortfolioPdf.addActionListener(e -> exportPortfolioAction());
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setPreferredSize(new Dimension(120, 16));
+        progressBar.setVisible(false);
+
+        btnCancel = new JButton("Cancelar");
+        ButtonUtils.styleSecondary(btnCancel);
+        btnCancel.setFocusPainted(false);
+        btnCancel.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        btnCancel.setVisible(false);
+        btnCancel.addActionListener(e -> cancelActiveWork());
+
+        p.add(progressBar);
+        p.add(btnCancel);
+        p.add(Box.createHorizontalStrut(10));
         p.add(new JLabel("Año: "));
         p.add(yearSelector);
         p.add(Box.createHorizontalStrut(20)); 
         p.add(btnRefresh);
         p.add(Box.createHorizontalStrut(5)); 
         p.add(btnExportPdf); 
+        p.add(Box.createHorizontalStrut(5));
+        p.add(btnPortfolioPdf);
 
         return p;
     }
    
     /**
     * Lógica para la generación y exportación del informe PDF.
-    * * Recopila todos los datos actuales de la pantalla y genera los gráficos
-    * en memoria para pasárselos al servicio PdfReportService.
+    * * Implementación asíncrona mediante SwingWorker:
+    * - En el EDT solo se piden la vivienda y la ruta de destino.
+    * - DoInBackground: Obtiene el informe y sus gráficos (de la caché si siguen vigentes)
+    * y escribe el PDF, publicando el progreso en la barra superior.
+    * - Si se cancela, se descarta el archivo parcial.
     */
     private void exportPdfAction() {
         
@@ -232,70 +292,122 @@ public class ReportsPanel extends JPanel {
         fileChooser.setSelectedFile(new java.io.File("report_" + vutName + "_" + selectedYear + ".pdf"));
         
         int userSelection = fileChooser.showSaveDialog(this);
-        if (userSelection == JFileChooser.APPROVE_OPTION) {
-            
-            java.io.File fileToSave = fileChooser.getSelectedFile();
-            String filePath = fileToSave.getAbsolutePath();
-            
-            if (!filePath.toLowerCase().endsWith(".pdf")) {
-                filePath += ".pdf"; 
+        if (userSelection != JFileChooser.APPROVE_OPTION) return;
+
+        String path = fileChooser.getSelectedFile().getAbsolutePath();
+        String filePath = path.toLowerCase().endsWith(".pdf") ? path : path + ".pdf";
+
+        int vutId = currentVutId;
+        int year = selectedYear;
+
+        btnExportPdf.setEnabled(false);
+
+        SwingWorker<Boolean, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected Boolean doInBackground() throws Exception {
+
+                ReportData data = loadReportData(vutId, year, false, value -> setProgress(value / 2));
+                if (isCancelled()) return false;
+
+                setProgress(60);
+
+                boolean success = new PdfReportService().generateReport(filePath, vutName, coverPath, data.report(), data.pdfCharts());
+                setProgress(100);
+
+                if (isCancelled()) {
+                    new java.io.File(filePath).delete();
+                    return false;
+                }
+
+                return success;
             }
 
-            Map<String, String> stats = new java.util.LinkedHashMap<>();
-            stats.put("Nombre del VUT", vutName);
-            stats.put("Año", String.valueOf(selectedYear));
-            stats.put("Ingresos anuales totales", lblRevenueValue.getText());
-            stats.put("Ocupación media", lblOccupancyValue.getText());
+            @Override
+            protected void done() {
 
-            stats.put("Generado el", LocalDate.now().toString());
+                finishProgress(this);
+                btnExportPdf.setEnabled(true);
 
-            java.util.List<JFreeChart> chartList = new ArrayList<>();
+                if (isCancelled()) return;
 
-            DefaultCategoryDataset datasetRev = new DefaultCategoryDataset();
-            Map<Integer, Double> dataRev = dbService.getYearlyRevenueData(currentVutId, selectedYear);
-            for (Map.Entry<Integer, Double> entry : dataRev.entrySet()) {
-                datasetRev.addValue(entry.getValue(), "Revenue", java.time.Month.of(entry.getKey()).name());
+                try {
+                    if (get()) {
+                        JOptionPane.showMessageDialog(ReportsPanel.this, "Annual PDF generated successfully!");
+                    } else {
+                        JOptionPane.showMessageDialog(ReportsPanel.this, "Error generating PDF. Check console.", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
             }
-            chartList.add(ChartFactory.createBarChart(
-                "Evolución de Facuración " + selectedYear, "Month", "Amount (€)", datasetRev, 
-                PlotOrientation.VERTICAL, false, true, false
-            ));
+        };
 
-            DefaultPieDataset datasetNat = new DefaultPieDataset();
-            Map<String, Integer> dataNat = dbService.getNationalityStats(currentVutId);
-            
-            for (Map.Entry<String, Integer> entry : dataNat.entrySet()) {
-                datasetNat.setValue(entry.getKey(), entry.getValue());
+        trackProgress(worker);
+        worker.execute();
+    }
+
+    /**
+     * Genera el informe consolidado de todas las viviendas (PortfolioReportService).
+     * * Implementación asíncrona mediante SwingWorker:
+     * - Pide el periodo (año completo o trimestre del año seleccionado) y la ruta de destino.
+     * - DoInBackground: Genera el PDF publicando el progreso en el propio botón.
+     * - Done: Restaura el botón e informa del resultado.
+     */
+    private void exportPortfolioAction() {
+
+        String[] periods = { "Año completo", "T1", "T2", "T3", "T4" };
+        Object choice = JOptionPane.showInputDialog(this, "Periodo del informe " + selectedYear + ":", "Informe de cartera",
+            JOptionPane.QUESTION_MESSAGE, null, periods, periods[0]);
+
+        if (choice == null) return;
+
+        int quarter = java.util.Arrays.asList(periods).indexOf(choice);
+        int year = selectedYear;
+
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Guardar informe de cartera");
+        fileChooser.setSelectedFile(new java.io.File("portfolio_" + year + (quarter == 0 ? "" : "_T" + quarter) + ".pdf"));
+
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+
+        String path = fileChooser.getSelectedFile().getAbsolutePath();
+        String filePath = path.toLowerCase().endsWith(".pdf") ? path : path + ".pdf";
+
+        btnPortfolioPdf.setEnabled(false);
+
+        SwingWorker<Boolean, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return new PortfolioReportService().generateReport(filePath, year, quarter, this::setProgress);
             }
-            
-            chartList.add(ChartFactory.createPieChart("Procedencia de los visitantes (de todos los tiempos)", datasetNat, true, true, false));
 
-            DefaultCategoryDataset datasetOcc = new DefaultCategoryDataset();
-            Map<Integer, Double> dataOcc = dbService.getYearlyOccupancyStats(currentVutId, selectedYear);
-            for (Map.Entry<Integer, Double> entry : dataOcc.entrySet()) {
-                datasetOcc.addValue(entry.getValue(), "Ocupación %", java.time.Month.of(entry.getKey()).name());
+            @Override
+            protected void done() {
+
+                btnPortfolioPdf.setText("Informe cartera");
+                btnPortfolioPdf.setEnabled(true);
+
+                try {
+                    if (get()) {
+                        JOptionPane.showMessageDialog(ReportsPanel.this, "Portfolio PDF generated successfully!");
+                    } else {
+                        JOptionPane.showMessageDialog(ReportsPanel.this, "Error generating PDF. Check console.", "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
             }
-            chartList.add(ChartFactory.createLineChart(
-                "Tasa de ocupación " + selectedYear, "Mensual", "Porcentaje (%)", datasetOcc, 
-                PlotOrientation.VERTICAL, false, true, false
-            ));
-
-            PdfReportService pdfService = new PdfReportService();
-            boolean success = pdfService.generateReport(
-                filePath, 
-                vutName, 
-                "Reporte Anual " + selectedYear,
-                coverPath, 
-                stats, 
-                chartList
-            );
-
-            if (success) {
-                JOptionPane.showMessageDialog(this, "Annual PDF generated successfully!");
-            } else {
-                JOptionPane.showMessageDialog(this, "Error generating PDF. Check console.", "Error", JOptionPane.ERROR_MESSAGE);
+        };
+
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                btnPortfolioPdf.setText("Generando... " + evt.getNewValue() + "%");
             }
-        }
+        });
+
+        worker.execute();
     }
 
     /**
@@ -381,32 +493,160 @@ public class ReportsPanel extends JPanel {
     }
 
     /**
-     * Coordina la actualización de todos los datos del panel.
-     * * Invoca al servicio de base de datos para recalcular KPIs y redibujar gráficos.
+     * Coordina la actualización de todos los datos del panel (usando la caché si sigue vigente).
      */
     private void refreshData() {
+        refreshData(false);
+    }
+
+    /**
+     * Lanza el cálculo del panel en segundo plano.
+     * * Pasos de implementación:
+     * - Cancela el cálculo anterior, si lo hay, y abre una nueva generación.
+     * - DoInBackground: Obtiene el informe y los datasets (caché o base de datos) y los próximos movimientos.
+     * - Done: Solo aplica el resultado si sigue siendo la última generación solicitada; los resultados
+     * de un año o vivienda ya sustituidos se descartan.
+     * * @param forceReload true para ignorar la caché (botón "Recargar").
+     */
+    private void refreshData(boolean forceReload) {
         if (currentVutId == -1) return;
 
-        double revenue = dbService.getTotalYearlyRevenue(currentVutId, selectedYear);
-        lblRevenueValue.setText(String.format("€ %.2f", revenue));
+        if (refreshWorker != null) refreshWorker.cancel(true);
+
+        int generation = ++refreshGeneration;
+        int vutId = currentVutId;
+        int year = selectedYear;
+
+        SwingWorker<RefreshResult, Void> worker = new SwingWorker<>() {
+
+            @Override
+            protected RefreshResult doInBackground() {
+
+                ReportData data = loadReportData(vutId, year, forceReload, this::setProgress);
+                if (isCancelled()) return null;
+
+                ArrayList<Map<String, String>> movements = dbService.getUpcomingMovements(vutId);
+                setProgress(100);
+
+                return new RefreshResult(data, movements);
+            }
 
-        double occupancy = dbService.getYearlyOccupancyPercentage(currentVutId, selectedYear);
-        lblOccupancyValue.setText(String.format("%.1f%%", occupancy));
+            @Override
+            protected void done() {
 
-        updateRevenueChart();
-        updateNationalityChart();
-        updateOccupancyChart();
-        updateMovementsList();
+                finishProgress(this);
 
+                if (isCancelled() || generation != refreshGeneration) return;
+
+                try {
+                    applyResult(get());
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+        };
+
+        refreshWorker = worker;
+        trackProgress(worker);
+        worker.execute();
+    }
+
+    /**
+     * Obtiene el informe y los datasets de un (vivienda, año). Se ejecuta fuera del EDT.
+     * * Si hay una entrada en caché calculada con la versión actual de MonthlyStats se reutiliza;
+     * en caso contrario se consulta la base de datos y se construyen los datasets.
+     */
+    private ReportData loadReportData(int vutId, int year, boolean forceReload, IntConsumer progress) {
+
+        CacheKey key = new CacheKey(vutId, year);
+        long version = MonthlyStats.version();
+
+        ReportData cached = forceReload ? null : datasetCache.get(key);
+        if (cached != null && cached.version() == version) {
+            progress.accept(80);
+            return cached;
+        }
+
+        progress.accept(10);
+        YearlyReport report = dbService.getYearlyReport(vutId, year);
+        progress.accept(50);
+
+        ReportData data = new ReportData(
+            report,
+            buildRevenueDataset(report),
+            buildNationalityDataset(report),
+            buildOccupancyDataset(report),
+            java.util.List.of(
+                createRevenueChart(buildRevenueDataset(report), year),
+                createNationalityChart(buildNationalityDataset(report), "Procedencia de los visitantes (de todos los tiempos)"),
+                createOccupancyChart(buildOccupancyDataset(report), year)
+            ),
+            version
+        );
+
+        datasetCache.put(key, data);
+        progress.accept(80);
+
+        return data;
+    }
+
+    /**
+     * Vuelca un resultado ya calculado en los KPIs, los gráficos y la lista lateral (EDT).
+     */
+    private void applyResult(RefreshResult result) {
+
+        ReportData data = result.data();
+        int year = data.report().getYear();
+
+        lblRevenueValue.setText("€ " + Money.format(data.report().getTotalRevenueCents()));
+        lblOccupancyValue.setText(String.format("%.1f%%", data.report().getYearlyOccupancy()));
+
+        showChart(revenueChartContainer, createRevenueChart(data.revenue(), year));
+        showChart(nationalityChartContainer, createNationalityChart(data.nationality(), "Procedencia de los clientes"));
+        showChart(occupancyChartContainer, createOccupancyChart(data.occupancy(), year));
+        updateMovementsList(result.movements());
+    }
+
+    /**
+     * Asocia la barra de progreso y el botón "Cancelar" a un trabajo en segundo plano.
+     */
+    private void trackProgress(SwingWorker<?, ?> worker) {
+
+        activeWorker = worker;
+        progressBar.setValue(0);
+        progressBar.setVisible(true);
+        btnCancel.setVisible(true);
+
+        worker.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName()) && worker == activeWorker) {
+                progressBar.setValue((Integer) evt.getNewValue());
+            }
+        });
+    }
+
+    /**
+     * Oculta la barra de progreso si el trabajo indicado sigue siendo el activo.
+     */
+    private void finishProgress(SwingWorker<?, ?> worker) {
+        if (worker != activeWorker) return;
+        activeWorker = null;
+        progressBar.setVisible(false);
+        btnCancel.setVisible(false);
+    }
+
+    private void cancelActiveWork() {
+        if (activeWorker == null) return;
+        SwingWorker<?, ?> worker = activeWorker;
+        worker.cancel(true);
+        finishProgress(worker);
     }
     
     /**
      * Refresca la lista lateral de movimientos.
      */
-    private void updateMovementsList() {
+    private void updateMovementsList(ArrayList<Map<String, String>> movements) {
         
         movementsListPanel.removeAll();
-        ArrayList<Map<String, String>> movements = dbService.getUpcomingMovements(currentVutId);
 
         if (movements.isEmpty()) {
             
@@ -432,21 +672,69 @@ public class ReportsPanel extends JPanel {
     }
 
     /**
-     * Genera y actualiza el Gráfico de Barras de Ingresos.
+     * Sustituye el gráfico de una pestaña.
+     * * Antes de descartar el gráfico anterior lo desvincula de su dataset, ya que los datasets
+     * cacheados sobreviven a los gráficos y, de lo contrario, acumularían listeners.
      */
-    private void updateRevenueChart() {
-        
-        revenueChartContainer.removeAll();
-        Map<Integer, Double> data = dbService.getYearlyRevenueData(currentVutId, selectedYear);
+    private void showChart(JPanel container, JFreeChart chart) {
+
+        for (Component component : container.getComponents()) {
+            if (component instanceof ChartPanel panel && panel.getChart() != null) {
+                Plot plot = panel.getChart().getPlot();
+                if (plot instanceof CategoryPlot categoryPlot) categoryPlot.setDataset(null);
+                if (plot instanceof PiePlot piePlot) piePlot.setDataset(null);
+                panel.setChart(null);
+            }
+        }
+
+        container.removeAll();
+        container.add(new ChartPanel(chart), BorderLayout.CENTER);
+        container.revalidate();
+        container.repaint();
+    }
+
+    private DefaultCategoryDataset buildRevenueDataset(YearlyReport report) {
+
         DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        
-        for (Map.Entry<Integer, Double> entry : data.entrySet()) {
-            String monthName = Month.of(entry.getKey()).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
-            dataset.addValue(entry.getValue(), "Ingresos", monthName);
+
+        for (int month = 1; month <= 12; month++) {
+            String monthName = Month.of(month).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+            dataset.addValue(Money.toEuros(report.getRevenueCents(month)), "Ingresos", monthName);
+        }
+
+        return dataset;
+    }
+
+    private DefaultPieDataset buildNationalityDataset(YearlyReport report) {
+
+        DefaultPieDataset dataset = new DefaultPieDataset();
+
+        for (int i = 0; i < report.getNationalityCount(); i++) {
+            dataset.setValue(report.getNationality(i), report.getNationalityGuests(i));
+        }
+
+        return dataset;
+    }
+
+    private DefaultCategoryDataset buildOccupancyDataset(YearlyReport report) {
+
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+
+        for (int month = 1; month <= 12; month++) {
+            String monthName = Month.of(month).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
+            dataset.addValue(report.getOccupancy(month), "Ocupación %", monthName);
         }
+
+        return dataset;
+    }
+
+    /**
+     * Construye el gráfico de barras de ingresos mensuales (pantalla y PDF).
+     */
+    private JFreeChart createRevenueChart(DefaultCategoryDataset dataset, int year) {
         
         JFreeChart barChart = ChartFactory.createBarChart(
-            "Total Facturado " + selectedYear, "Mes", "Cantidad (€)",
+            "Total Facturado " + year, "Mes", "Cantidad (€)",
             dataset, PlotOrientation.VERTICAL, false, true, false
         );
         
@@ -456,53 +744,32 @@ public class ReportsPanel extends JPanel {
         
         BarRenderer renderer = (BarRenderer) plot.getRenderer();
         renderer.setSeriesPaint(0, new Color(46, 204, 113));
-        
-        revenueChartContainer.add(new ChartPanel(barChart), BorderLayout.CENTER);
-        revenueChartContainer.revalidate();
 
+        return barChart;
     }
 
     /**
-     * Genera y actualiza el Gráfico de Pastel de Nacionalidades.
+     * Construye el gráfico de pastel con el top de nacionalidades (pantalla y PDF).
      */
-    private void updateNationalityChart() {
-        
-        nationalityChartContainer.removeAll();
-        Map<String, Integer> data = dbService.getNationalityStats(currentVutId);
-        
-        DefaultPieDataset dataset = new DefaultPieDataset();
-        
-        for (Map.Entry<String, Integer> entry : data.entrySet()) {
-            dataset.setValue(entry.getKey(), entry.getValue());
-        }
-        
-        JFreeChart pieChart = ChartFactory.createPieChart(
-            "Procedencia de los clientes", dataset, true, true, false
-        );
+    private JFreeChart createNationalityChart(DefaultPieDataset dataset, String title) {
+
+        JFreeChart pieChart = ChartFactory.createPieChart(title, dataset, true, true, false);
         
         PiePlot plot = (PiePlot) pieChart.getPlot();
 
         plot.setBackgroundPaint(Color.WHITE);
         plot.setOutlineVisible(false);
-        
-        nationalityChartContainer.add(new ChartPanel(pieChart), BorderLayout.CENTER);
-        nationalityChartContainer.revalidate();
+
+        return pieChart;
     }
 
-    private void updateOccupancyChart() {
-        
-        occupancyChartContainer.removeAll();
-        
-        Map<Integer, Double> data = dbService.getYearlyOccupancyStats(currentVutId, selectedYear);
-        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
-        
-        for (Map.Entry<Integer, Double> entry : data.entrySet()) {
-            String monthName = Month.of(entry.getKey()).getDisplayName(TextStyle.SHORT, Locale.ENGLISH);
-            dataset.addValue(entry.getValue(), "Ocupación %", monthName);
-        }
+    /**
+     * Construye el gráfico de líneas de ocupación mensual (pantalla y PDF).
+     */
+    private JFreeChart createOccupancyChart(DefaultCategoryDataset dataset, int year) {
         
         JFreeChart lineChart = ChartFactory.createLineChart(
-            "Tasa de ocupación " + selectedYear, "mES", "Porcentaje (%)",
+            "Tasa de ocupación " + year, "Mes", "Porcentaje (%)",
             dataset, PlotOrientation.VERTICAL, false, true, false
         );
         
@@ -513,9 +780,7 @@ public class ReportsPanel extends JPanel {
         LineAndShapeRenderer renderer = (LineAndShapeRenderer) plot.getRenderer();
         renderer.setSeriesPaint(0, new Color(52, 152, 219));
         renderer.setSeriesStroke(0, new BasicStroke(3.0f));
-        
-        occupancyChartContainer.add(new ChartPanel(lineChart), BorderLayout.CENTER);
-        occupancyChartContainer.revalidate();
 
+        return lineChart;
     }
-}
\ No newline at end of file
+}
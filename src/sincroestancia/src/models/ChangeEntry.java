@@ -0,0 +1,15 @@
+package sincroestancia.src.models;
+
+/**
+ * Record que representa una entrada del registro de cambios ('change_log').
+ * * @author Carlos Padilla Labella
+ */
+public record ChangeEntry(
+    long seq,
+    String table,
+    String key,
+    int vutId,
+    String operation,
+    String changedAt,
+    String origin
+) {}
@@ -4,4 +4,4 @@ package sincroestancia.src.models;
  * Record para transferir información básica de un día (Temporada y Estado).
  * * @author Carlos Padilla Labella
  */
-public record DayInfo(String season, String status) {}
\ No newline at end of file
+public record DayInfo(Season season, DayStatus status) {}
\ No newline at end of file
@@ -0,0 +1,80 @@
+package sincroestancia.src.models;
+
+/**
+ * Estado de ocupación de un día del calendario.
+ * * En la tabla 'days' se guarda el código numérico ({@link #code()}), no el nombre: ocupa un byte
+ * (o ninguno, en SQLite los valores 0 y 1 se codifican en la propia cabecera de la fila) en lugar
+ * de un texto por día. Los códigos son parte del formato de la base de datos y no deben reordenarse.
+ * * La clave ({@link #key()}) es el nombre histórico ('free', 'reserved', 'paid') que siguen usando
+ * la API REST y las exportaciones.
+ * * @author Carlos Padilla Labella
+ */
+public enum DayStatus {
+
+    FREE(0, "free"),
+    RESERVED(1, "reserved"),
+    PAID(2, "paid");
+
+    private static final DayStatus[] BY_CODE = values();
+
+    private final int code;
+    private final String key;
+
+    DayStatus(int code, String key) {
+        this.code = code;
+        this.key = key;
+    }
+
+    /** Código con el que se guarda en la columna 'days.status'. */
+    public int code() {
+        return code;
+    }
+
+    /** Nombre en minúsculas usado en la API y las exportaciones. */
+    public String key() {
+        return key;
+    }
+
+    /** Indica si el día está ocupado por una reserva (pagada o no). */
+    public boolean isOccupied() {
+        return this != FREE;
+    }
+
+    /** Estado de un día a partir del pago de la reserva que lo ocupa. */
+    public static DayStatus occupied(boolean isPaid) {
+        return isPaid ? PAID : RESERVED;
+    }
+
+    /**
+     * Estado correspondiente a un código leído de la base de datos.
+     * * @throws IllegalArgumentException Si el código no corresponde a ningún estado.
+     */
+    public static DayStatus fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown day status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Estado correspondiente a su clave (sin distinguir mayúsculas).
+     * * @throws IllegalArgumentException Si la clave no corresponde a ningún estado.
+     */
+    public static DayStatus fromKey(String key) {
+        for (DayStatus status : BY_CODE) {
+            if (status.key.equalsIgnoreCase(key)) return status;
+        }
+        throw new IllegalArgumentException("Unknown day status: " + key);
+    }
+
+    /**
+     * Expresión SQL que traduce la columna de códigos a su clave (para exportaciones legibles).
+     */
+    public static String sqlKey(String column) {
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        for (DayStatus status : BY_CODE) {
+            sql.append(" WHEN ").append(status.code).append(" THEN '").append(status.key).append("'");
+        }
+        return sql.append(" END").toString();
+    }
+}
@@ -7,9 +7,10 @@ package sincroestancia.src.models;
 public record DaySyncData(
     int vutId, 
     String date, 
-    double price, 
-    String status, 
-    String season,
+    long priceCents, 
+    DayStatus status, 
+    Season season,
     String googleEventId, 
-    String guestName
+    String guestName,
+    int version
 ) {}
\ No newline at end of file
@@ -1,7 +1,7 @@
 package sincroestancia.src.models;
 
 /**
- * Record con detalles completos de un día, incluyendo precio.
+ * Record con detalles completos de un día, incluyendo precio (en céntimos, ver Money).
  * * @author Carlos Padilla Labella
  */
-public record FullDayInfo(String season, String status, double price) {}
\ No newline at end of file
+public record FullDayInfo(Season season, DayStatus status, long priceCents) {}
\ No newline at end of file
@@ -0,0 +1,38 @@
+package sincroestancia.src.models;
+
+/**
+ * Record que representa la ficha de un huésped habitual ('guest_profiles'): los datos de su última
+ * estancia, identificados por el número de documento normalizado.
+ * * Las fichas creadas a partir de una reserva (sin check-in) solo tienen el nombre completo en
+ * 'fullname', el teléfono y el email.
+ * * @author Carlos Padilla Labella
+ */
+public record GuestProfile(
+    String documentNumber,
+    String fullname,
+    String surname1,
+    String surname2,
+    String sex,
+    String birthDate,
+    String nationality,
+    String documentType,
+    String supportNumber,
+    String address,
+    String municipality,
+    String country,
+    String phone,
+    String email,
+    String lastStay
+) {
+
+    /**
+     * Nombre y apellidos en una sola cadena (como se guardan en la reserva).
+     */
+    public String displayName() {
+        StringBuilder name = new StringBuilder(fullname == null ? "" : fullname);
+        for (String surname : new String[] { surname1, surname2 }) {
+            if (surname != null && !surname.isBlank()) name.append(' ').append(surname);
+        }
+        return name.toString().strip();
+    }
+}
@@ -0,0 +1,18 @@
+package sincroestancia.src.models;
+
+/**
+ * Record que representa un resultado de la búsqueda de huéspedes: la persona encontrada (titular de
+ * la reserva o huésped registrado en el check-in) y la estancia a la que pertenece.
+ * * @author Carlos Padilla Labella
+ */
+public record GuestSearchResult(
+    int reservationId,
+    int vutId,
+    String name,
+    String document,
+    String email,
+    String phone,
+    String checkIn,
+    String checkOut,
+    boolean archived
+) {}
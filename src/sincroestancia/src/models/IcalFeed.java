@@ -0,0 +1,17 @@
+package sincroestancia.src.models;
+
+/**
+ * Record con la configuración de un feed iCal de una OTA (Airbnb, Booking...) asociado a una vivienda.
+ * * 'etag' y 'lastModified' son los validadores de la última descarga, usados para las peticiones
+ * condicionales (If-None-Match / If-Modified-Since).
+ * * @author Carlos Padilla Labella
+ */
+public record IcalFeed(
+    int id,
+    int vutId,
+    String name,
+    String url,
+    String etag,
+    String lastModified,
+    String lastSync
+) {}
@@ -0,0 +1,104 @@
+package sincroestancia.src.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Importes en céntimos de euro.
+ * * El dinero viaja por la aplicación como un 'long' de céntimos (columnas 'price_cents' y
+ * 'revenue_cents', MonthSnapshot, YearlyReport...), no como double: las sumas son exactas y no
+ * hay que envolver valores en objetos. Esta clase solo reúne las operaciones sobre ese 'long'
+ * (conversión, aritmética con control de desbordamiento y formato), por lo que no crea objetos
+ * salvo los textos que devuelve.
+ * * @author Carlos Padilla Labella
+ */
+public final class Money {
+
+    /** Céntimos por euro. */
+    public static final long CENTS = 100;
+
+    private Money() {}
+
+    /**
+     * Céntimos de un importe en euros, redondeando al céntimo más cercano.
+     * * Solo para importes que llegan como double (p.ej. un número JSON); el texto introducido por
+     * el usuario debe leerse con {@link #parse(String)}.
+     */
+    public static long ofEuros(double euros) {
+        return Math.round(euros * CENTS);
+    }
+
+    /**
+     * Lee un importe en euros escrito como texto ('72', '72.5', '72,50').
+     * * @throws NumberFormatException Si no es un número o tiene más de dos decimales.
+     */
+    public static long parse(String text) {
+        try {
+            return new BigDecimal(text.trim().replace(',', '.')).movePointRight(2).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount must have at most two decimals: " + text);
+        }
+    }
+
+    /**
+     * Importe en euros como double, solo para mostrarlo (gráficos, JSON); nunca para sumar.
+     */
+    public static double toEuros(long cents) {
+        return cents / (double) CENTS;
+    }
+
+    /**
+     * Euros enteros redondeando a la mitad hacia arriba (para textos cortos, p.ej. '72€').
+     */
+    public static long roundedEuros(long cents) {
+        return Math.floorDiv(cents + CENTS / 2, CENTS);
+    }
+
+    /** Suma con control de desbordamiento. */
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /** Importe por un número de unidades (p.ej. precio por noches), con control de desbordamiento. */
+    public static long times(long cents, long quantity) {
+        return Math.multiplyExact(cents, quantity);
+    }
+
+    /** Suma de un array de importes. */
+    public static long sum(long[] cents) {
+        return sum(cents, 0, cents.length);
+    }
+
+    /** Suma de los importes entre 'from' (incluido) y 'to' (excluido). */
+    public static long sum(long[] cents, int from, int to) {
+        long total = 0;
+        for (int i = from; i < to; i++) total = Math.addExact(total, cents[i]);
+        return total;
+    }
+
+    /**
+     * Importe con dos decimales y el separador decimal de la configuración regional
+     * (el mismo resultado que String.format("%.2f", euros)).
+     */
+    public static String format(long cents) {
+        return format(cents, Locale.getDefault(Locale.Category.FORMAT));
+    }
+
+    /**
+     * Importe con dos decimales y el separador decimal de 'locale'.
+     */
+    public static String format(long cents, Locale locale) {
+
+        long abs = Math.abs(cents);
+        long units = abs / CENTS;
+        long fraction = abs % CENTS;
+
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) text.append('-');
+        text.append(units).append(DecimalFormatSymbols.getInstance(locale).getDecimalSeparator());
+        if (fraction < 10) text.append('0');
+        return text.append(fraction).toString();
+    }
+}
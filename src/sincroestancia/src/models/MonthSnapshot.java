@@ -0,0 +1,169 @@
+package sincroestancia.src.models;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Fotografía inmutable de los días de un mes de una vivienda (estado, temporada y precio).
+ * * Sustituye al mapa 'día -> DayInfo' que pintaba el calendario: en lugar de una clave y un objeto
+ * por día, guarda arrays planos indexados por día del mes (1-31):
+ * - status[] y season[]: códigos de DayStatus y Season ({@link #NONE} si el día no tiene registro).
+ * - priceCents[]: precio de la noche en céntimos.
+ * - Máscaras de bits (bit 'día - 1') de los días con registro y de los ocupados.
+ * * Se rellena directamente desde el ResultSet ({@link #read}) y los arrays no salen nunca de la
+ * instancia, así que puede guardarse en caché y compartirse entre hilos sin copias ni bloqueos.
+ * Un año son simplemente 12 de ellas ({@link #read} con 'months = 12').
+ * * @author Carlos Padilla Labella
+ */
+public final class MonthSnapshot {
+
+    /** Días máximos de un mes (tamaño de los arrays). */
+    public static final int MAX_DAYS = 31;
+
+    /** Código guardado en status[] y season[] para los días sin registro en 'days'. */
+    public static final byte NONE = -1;
+
+    private final int year;
+    private final int month;
+    private final byte[] status;
+    private final byte[] season;
+    private final long[] priceCents;
+    private final int recordedMask;
+    private final int occupiedMask;
+
+    private MonthSnapshot(int year, int month, byte[] status, byte[] season, long[] priceCents, int recordedMask, int occupiedMask) {
+        this.year = year;
+        this.month = month;
+        this.status = status;
+        this.season = season;
+        this.priceCents = priceCents;
+        this.recordedMask = recordedMask;
+        this.occupiedMask = occupiedMask;
+    }
+
+    /**
+     * Mes sin ningún día registrado (vivienda sin configurar o error de lectura).
+     * * @param month Mes (0-11), como en DatabaseService.get_month_data.
+     */
+    public static MonthSnapshot empty(int year, int month) {
+        return new MonthSnapshot(year, month, blank(), blank(), new long[MAX_DAYS], 0, 0);
+    }
+
+    /**
+     * Construye las fotografías de 'months' meses consecutivos a partir de una consulta sobre 'days'.
+     * * La consulta debe devolver las columnas 'day_month' (1-12), 'day_of_month' (1-31), 'status',
+     * 'season' y 'price_cents' (ver DatabaseService.get_month_data); las filas fuera del intervalo se
+     * ignoran. No se crea ningún objeto por fila: cada una escribe directamente en los arrays.
+     * * @param year Año del primer mes.
+     * @param firstMonth Primer mes (0-11).
+     * @param months Número de meses (sin pasar de diciembre).
+     */
+    public static MonthSnapshot[] read(ResultSet rs, int year, int firstMonth, int months) throws SQLException {
+
+        byte[][] status = new byte[months][];
+        byte[][] season = new byte[months][];
+        long[][] prices = new long[months][MAX_DAYS];
+        int[] recorded = new int[months];
+        int[] occupied = new int[months];
+
+        for (int i = 0; i < months; i++) {
+            status[i] = blank();
+            season[i] = blank();
+        }
+
+        while (rs.next()) {
+
+            int index = rs.getInt("day_month") - 1 - firstMonth;
+            int day = rs.getInt("day_of_month");
+            if (index < 0 || index >= months || day < 1 || day > MAX_DAYS) continue;
+
+            int code = rs.getInt("status");
+            status[index][day - 1] = (byte) code;
+            season[index][day - 1] = (byte) rs.getInt("season");
+            prices[index][day - 1] = rs.getLong("price_cents");
+            recorded[index] |= 1 << (day - 1);
+            if (code != DayStatus.FREE.code()) occupied[index] |= 1 << (day - 1);
+        }
+
+        MonthSnapshot[] snapshots = new MonthSnapshot[months];
+        for (int i = 0; i < months; i++) {
+            snapshots[i] = new MonthSnapshot(year, firstMonth + i, status[i], season[i], prices[i], recorded[i], occupied[i]);
+        }
+        return snapshots;
+    }
+
+    public int year() {
+        return year;
+    }
+
+    /** Mes (0-11). */
+    public int month() {
+        return month;
+    }
+
+    /** Indica si el día (1-31) tiene registro en 'days'. */
+    public boolean has(int day) {
+        return inRange(day) && (recordedMask & (1 << (day - 1))) != 0;
+    }
+
+    /** Estado del día (1-31), o null si no tiene registro. */
+    public DayStatus status(int day) {
+        return has(day) ? DayStatus.fromCode(status[day - 1]) : null;
+    }
+
+    /** Temporada del día (1-31), o null si no tiene registro. */
+    public Season season(int day) {
+        return has(day) ? Season.fromCode(season[day - 1]) : null;
+    }
+
+    /** Código de estado del día (1-31), o {@link #NONE}. */
+    public byte statusCode(int day) {
+        return inRange(day) ? status[day - 1] : NONE;
+    }
+
+    /** Código de temporada del día (1-31), o {@link #NONE}. */
+    public byte seasonCode(int day) {
+        return inRange(day) ? season[day - 1] : NONE;
+    }
+
+    /** Precio de la noche en céntimos (0 si el día no tiene registro). */
+    public long priceCents(int day) {
+        return inRange(day) ? priceCents[day - 1] : 0;
+    }
+
+    /** Indica si el día (1-31) está reservado o pagado. */
+    public boolean isOccupied(int day) {
+        return inRange(day) && (occupiedMask & (1 << (day - 1))) != 0;
+    }
+
+    /** Días con registro, un bit por día (bit 0 = día 1). */
+    public int recordedMask() {
+        return recordedMask;
+    }
+
+    /** Días ocupados, un bit por día (bit 0 = día 1). */
+    public int occupiedMask() {
+        return occupiedMask;
+    }
+
+    /** Número de días del mes con registro. */
+    public int recordedDays() {
+        return Integer.bitCount(recordedMask);
+    }
+
+    /** Número de noches ocupadas del mes. */
+    public int occupiedNights() {
+        return Integer.bitCount(occupiedMask);
+    }
+
+    private static boolean inRange(int day) {
+        return day >= 1 && day <= MAX_DAYS;
+    }
+
+    private static byte[] blank() {
+        byte[] codes = new byte[MAX_DAYS];
+        Arrays.fill(codes, NONE);
+        return codes;
+    }
+}
@@ -2,6 +2,8 @@ package sincroestancia.src.models;
 
 /**
  * Record que agrupa todos los datos de una reserva para su visualización o procesamiento.
+ * * 'version' es la versión de la fila leída; se devuelve al modificarla para detectar si otro
+ * puesto la cambió entretanto (ver UpdateResult).
  * * @author Carlos Padilla Labella
  */
 public record ReservationInfo(
@@ -15,5 +17,6 @@ public record ReservationInfo(
     int pax, 
     boolean isPaid, 
     boolean hasCheckin, 
-    boolean hasCheckout
+    boolean hasCheckout,
+    int version
 ) {}
\ No newline at end of file
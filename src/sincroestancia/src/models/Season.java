@@ -0,0 +1,68 @@
+package sincroestancia.src.models;
+
+/**
+ * Temporada de precios de un día del calendario.
+ * * Igual que {@link DayStatus}, en la tabla 'days' se guarda el código numérico ({@link #code()}),
+ * que forma parte del formato de la base de datos, y la clave ({@link #key()}) es el nombre
+ * histórico ('low', 'average', 'high') de la API REST y las exportaciones.
+ * * @author Carlos Padilla Labella
+ */
+public enum Season {
+
+    LOW(0, "low"),
+    AVERAGE(1, "average"),
+    HIGH(2, "high");
+
+    private static final Season[] BY_CODE = values();
+
+    private final int code;
+    private final String key;
+
+    Season(int code, String key) {
+        this.code = code;
+        this.key = key;
+    }
+
+    /** Código con el que se guarda en la columna 'days.season'. */
+    public int code() {
+        return code;
+    }
+
+    /** Nombre en minúsculas usado en la API y las exportaciones. */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Temporada correspondiente a un código leído de la base de datos.
+     * * @throws IllegalArgumentException Si el código no corresponde a ninguna temporada.
+     */
+    public static Season fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown season code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Temporada correspondiente a su clave (sin distinguir mayúsculas).
+     * * @throws IllegalArgumentException Si la clave no corresponde a ninguna temporada.
+     */
+    public static Season fromKey(String key) {
+        for (Season season : BY_CODE) {
+            if (season.key.equalsIgnoreCase(key)) return season;
+        }
+        throw new IllegalArgumentException("Unknown season: " + key);
+    }
+
+    /**
+     * Expresión SQL que traduce la columna de códigos a su clave (para exportaciones legibles).
+     */
+    public static String sqlKey(String column) {
+        StringBuilder sql = new StringBuilder("CASE ").append(column);
+        for (Season season : BY_CODE) {
+            sql.append(" WHEN ").append(season.code).append(" THEN '").append(season.key).append("'");
+        }
+        return sql.append(" END").toString();
+    }
+}
@@ -0,0 +1,49 @@
+package sincroestancia.src.models;
+
+/**
+ * Resultado de una modificación con control de concurrencia optimista.
+ * * La fila solo se actualiza si su versión sigue siendo la que leyó quien la edita. Si otro puesto
+ * (u otro hilo, como la sincronización) la cambió antes, no se sobrescribe nada y se devuelve
+ * CONFLICT con la versión actual, para que la interfaz recargue los datos y el usuario decida.
+ * * @author Carlos Padilla Labella
+ */
+public record UpdateResult(
+    Status status,
+    int version
+) {
+
+    public enum Status {
+        /** Cambios guardados; 'version' es la nueva versión de la fila. */
+        UPDATED,
+        /** La fila cambió desde que se leyó; 'version' es la versión actual. */
+        CONFLICT,
+        /** La fila ya no existe. */
+        NOT_FOUND,
+        /** Error de base de datos (los cambios se han deshecho). */
+        FAILED
+    }
+
+    public static UpdateResult updated(int version) {
+        return new UpdateResult(Status.UPDATED, version);
+    }
+
+    public static UpdateResult conflict(int currentVersion) {
+        return new UpdateResult(Status.CONFLICT, currentVersion);
+    }
+
+    public static UpdateResult notFound() {
+        return new UpdateResult(Status.NOT_FOUND, -1);
+    }
+
+    public static UpdateResult failed() {
+        return new UpdateResult(Status.FAILED, -1);
+    }
+
+    public boolean isUpdated() {
+        return status == Status.UPDATED;
+    }
+
+    public boolean isConflict() {
+        return status == Status.CONFLICT;
+    }
+}
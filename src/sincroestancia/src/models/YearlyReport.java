@@ -0,0 +1,130 @@
+package sincroestancia.src.models;
+
+import java.time.Year;
+import java.time.YearMonth;
+
+/**
+ * Resultado compacto con todas las métricas anuales de una vivienda para el panel de control y el PDF.
+ * * Los datos mensuales se guardan en arrays primitivos indexados por mes (0 = enero, 11 = diciembre)
+ * en lugar de mapas con claves y valores envueltos. Los ingresos van en céntimos (ver Money) y se
+ * suman con aritmética entera.
+ * * Las nacionalidades se guardan como dos arrays paralelos ordenados de mayor a menor número de huéspedes.
+ * * @author Carlos Padilla Labella
+ */
+public final class YearlyReport {
+
+    private final int vutId;
+    private final int year;
+    private final long[] revenueCents;
+    private final int[] occupiedNights;
+    private final int[] paidNights;
+    private final String[] nationalities;
+    private final int[] nationalityGuests;
+
+    public YearlyReport(int vutId, int year, long[] revenueCents, int[] occupiedNights, int[] paidNights,
+            String[] nationalities, int[] nationalityGuests) {
+        this.vutId = vutId;
+        this.year = year;
+        this.revenueCents = revenueCents;
+        this.occupiedNights = occupiedNights;
+        this.paidNights = paidNights;
+        this.nationalities = nationalities;
+        this.nationalityGuests = nationalityGuests;
+    }
+
+    /**
+     * Informe vacío (todos los meses a cero) para cuando la consulta falla.
+     */
+    public static YearlyReport empty(int vutId, int year) {
+        return new YearlyReport(vutId, year, new long[12], new int[12], new int[12], new String[0], new int[0]);
+    }
+
+    public int getVutId() { return vutId; }
+    public int getYear() { return year; }
+
+    /**
+     * Ingresos confirmados del mes (1-12), en céntimos.
+     */
+    public long getRevenueCents(int month) {
+        return revenueCents[month - 1];
+    }
+
+    public int getOccupiedNights(int month) {
+        return occupiedNights[month - 1];
+    }
+
+    public int getPaidNights(int month) {
+        return paidNights[month - 1];
+    }
+
+    /**
+     * Porcentaje de noches ocupadas del mes (1-12) sobre los días que tiene.
+     */
+    public double getOccupancy(int month) {
+        return (occupiedNights[month - 1] * 100.0) / YearMonth.of(year, month).lengthOfMonth();
+    }
+
+    public long getTotalRevenueCents() {
+        return Money.sum(revenueCents);
+    }
+
+    public int getTotalOccupiedNights() {
+        int total = 0;
+        for (int value : occupiedNights) total += value;
+        return total;
+    }
+
+    /**
+     * Porcentaje de ocupación anual global (noches ocupadas / días del año).
+     */
+    public double getYearlyOccupancy() {
+        return (getTotalOccupiedNights() * 100.0) / Year.of(year).length();
+    }
+
+    /**
+     * Ingresos acumulados entre dos meses (1-12, ambos inclusive), en céntimos.
+     */
+    public long getRevenueCents(int fromMonth, int toMonth) {
+        return Money.sum(revenueCents, fromMonth - 1, toMonth);
+    }
+
+    public int getOccupiedNights(int fromMonth, int toMonth) {
+        int total = 0;
+        for (int month = fromMonth; month <= toMonth; month++) total += occupiedNights[month - 1];
+        return total;
+    }
+
+    public int getPaidNights(int fromMonth, int toMonth) {
+        int total = 0;
+        for (int month = fromMonth; month <= toMonth; month++) total += paidNights[month - 1];
+        return total;
+    }
+
+    /**
+     * Porcentaje de ocupación entre dos meses (1-12, ambos inclusive) sobre los días del periodo.
+     */
+    public double getOccupancy(int fromMonth, int toMonth) {
+        return (getOccupiedNights(fromMonth, toMonth) * 100.0) / getDays(fromMonth, toMonth);
+    }
+
+    /**
+     * Número de días naturales del periodo (1-12, ambos inclusive).
+     */
+    public int getDays(int fromMonth, int toMonth) {
+        int days = 0;
+        for (int month = fromMonth; month <= toMonth; month++) days += YearMonth.of(year, month).lengthOfMonth();
+        return days;
+    }
+
+    public int getNationalityCount() {
+        return nationalities.length;
+    }
+
+    public String getNationality(int index) {
+        return nationalities[index];
+    }
+
+    public int getNationalityGuests(int index) {
+        return nationalityGuests[index];
+    }
+}
@@ -0,0 +1,346 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.SqliteDialect;
+import sincroestancia.src.database.Transactions;
+
+/**
+ * Archivado de temporadas cerradas: mueve los días y reservas antiguos al almacén frío (DatabaseArchive).
+ * * 'days' crece 365 filas por vivienda y año, y 'reservations' (con sus check-ins, huéspedes y
+ * check-outs) guarda todo el histórico, aunque el calendario, la sincronización y los próximos
+ * movimientos solo leen de hoy en adelante. Periódicamente se mueve todo lo anterior al horizonte
+ * configurado, de modo que las tablas activas se mantienen pequeñas (caben en la caché de páginas y
+ * la copia de seguridad es rápida). Los informes lo siguen viendo a través de las vistas 'all_<tabla>'.
+ * * Reglas del corte:
+ * - Se archivan los días anteriores al corte y las reservas que terminan en él o antes, con sus
+ * check-ins, huéspedes y check-outs.
+ * - Si una reserva cruza el corte, el corte se adelanta a su fecha de entrada: una estancia nunca
+ * queda partida entre las dos partes.
+ * - El corte nunca pasa de hoy, así que las consultas de hoy en adelante no necesitan el archivo.
+ * - Las reservas y huéspedes movidos siguen en el índice de búsqueda (GuestSearch.indexArchived).
+ * * Se avanza mes a mes, una transacción por mes, sobre una conexión propia y con una pausa entre
+ * meses, para no retener el bloqueo de escritura cuando la primera ejecución mueve años de datos.
+ * * Los agregados mensuales (MonthlyStats) no se tocan: siguen en la base de datos activa y se
+ * recalculan sobre las vistas de unión.
+ * * Configuración (propiedades del sistema):
+ * - sincroestancia.archive.horizon.months  Meses completos que permanecen activos (24 por defecto; 0 desactiva el archivado).
+ * - sincroestancia.archive.interval.hours  Horas entre ejecuciones programadas (24).
+ * * @author Carlos Padilla Labella
+ */
+public final class ArchiveService {
+
+    private static final int STEP_PAUSE_MS = 50;
+
+    /** En SQLite se compacta el archivo principal si más de 1/FREE_PAGES_RATIO de sus páginas quedan libres. */
+    private static final int FREE_PAGES_RATIO = 4;
+
+    /**
+     * Resultado de un archivado: corte aplicado, reservas y días movidos y duración.
+     */
+    public record ArchiveResult(LocalDate cutoff, int reservations, int days, long durationMs) {
+
+        public boolean isEmpty() {
+            return reservations == 0 && days == 0;
+        }
+    }
+
+    private static ArchiveService instance;
+
+    private final int horizonMonths;
+    private final long intervalHours;
+
+    private ScheduledExecutorService scheduler;
+
+    private ArchiveService() {
+        this.horizonMonths = Integer.getInteger("sincroestancia.archive.horizon.months", 24);
+        this.intervalHours = Long.getLong("sincroestancia.archive.interval.hours", 24);
+    }
+
+    /**
+     * Obtiene la instancia única del servicio.
+     */
+    public static synchronized ArchiveService getInstance() {
+        if (instance == null) {
+            instance = new ArchiveService();
+        }
+        return instance;
+    }
+
+    /**
+     * Inicia el archivado periódico (la primera vez, pasados 10 minutos del arranque).
+     * * No hace nada si ya está corriendo o si el horizonte o el intervalo son 0.
+     */
+    public synchronized void start() {
+
+        if (scheduler != null || horizonMonths <= 0 || intervalHours <= 0) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "archive");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledArchive, 10, intervalHours * 60, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Detiene el archivado periódico.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        scheduler = null;
+    }
+
+    /**
+     * Archiva todo lo anterior al primer día del mes situado 'horizon.months' meses atrás.
+     */
+    public ArchiveResult archiveNow() throws SQLException {
+        return archiveBefore(LocalDate.now().withDayOfMonth(1).minusMonths(Math.max(horizonMonths, 0)));
+    }
+
+    /**
+     * Archiva los días anteriores a 'cutoff' y las reservas que terminan en esa fecha o antes.
+     * * Pasos de implementación:
+     * - Abre una conexión propia y elimina del archivo los duplicados que hubiera dejado una ejecución interrumpida.
+     * - Avanza mes a mes desde el día activo más antiguo: cada mes se copia al archivo y se borra de
+     * las tablas activas en una transacción, que anota además cada vivienda afectada en el registro de cambios.
+     * - En SQLite, compacta el archivo principal si ha quedado mucho espacio libre.
+     * - Invalida las cachés de reservas de las viviendas afectadas.
+     * * @param cutoff Primer día que se mantiene activo (se limita a hoy).
+     * @return Corte efectivo y número de filas movidas.
+     */
+    public synchronized ArchiveResult archiveBefore(LocalDate cutoff) throws SQLException {
+
+        long start = System.nanoTime();
+        LocalDate today = LocalDate.now();
+        if (cutoff.isAfter(today)) cutoff = today;
+
+        int reservations = 0;
+        int days = 0;
+        LocalDate applied = null;
+        Set<Integer> vuts = new HashSet<>();
+
+        try (Connection conn = DatabaseManager.provider().open()) {
+
+            DatabaseArchive.remove_duplicates(conn);
+
+            LocalDate oldest = oldestActiveDate(conn);
+
+            if (oldest != null && oldest.isBefore(cutoff)) {
+
+                LocalDate step = oldest.withDayOfMonth(1).plusMonths(1);
+
+                while (true) {
+
+                    LocalDate stepCutoff = step.isBefore(cutoff) ? step : cutoff;
+                    applied = effectiveCutoff(conn, stepCutoff);
+
+                    int[] moved = moveBefore(conn, applied, vuts);
+                    reservations += moved[0];
+                    days += moved[1];
+
+                    if (!stepCutoff.isBefore(cutoff)) break;
+
+                    step = step.plusMonths(1);
+                    pause();
+                }
+            }
+
+            if (reservations + days > 0) reclaimSpace(conn);
+        }
+
+        for (int vutId : vuts) {
+            ReservationIndex.getInstance().invalidate(vutId);
+            IcalExportService.invalidate(vutId);
+        }
+
+        ArchiveResult result = new ArchiveResult(applied != null ? applied : cutoff, reservations, days, (System.nanoTime() - start) / 1_000_000);
+
+        if (!result.isEmpty()) {
+            System.out.println("[info] Archived " + reservations + " reservations and " + days + " days before " + result.cutoff() + " in " + result.durationMs() + " ms");
+        }
+
+        return result;
+    }
+
+    /**
+     * Primer día que sigue en las tablas activas para las fechas anteriores a hoy: los días anteriores
+     * están archivados y son de solo lectura (null si el archivo está vacío).
+     */
+    public static LocalDate archivedUntil(Connection conn) throws SQLException {
+
+        try (Statement stmt = conn.createStatement();
+            ResultSet rs = stmt.executeQuery("SELECT MAX(day_date) FROM " + DatabaseArchive.archived("days"))) {
+            String last = rs.next() ? rs.getString(1) : null;
+            return last != null ? LocalDate.parse(last).plusDays(1) : null;
+        }
+    }
+
+    /**
+     * Borra del archivo los datos de una vivienda (al eliminarla; el borrado en cascada no cruza al archivo).
+     */
+    public static void clearVut(Connection conn, int vutId) throws SQLException {
+
+        GuestSearch.forgetArchived(conn, vutId);
+
+        String reservationIds = "SELECT id FROM " + DatabaseArchive.archived("reservations") + " WHERE vut_id = ?";
+        String checkinIds = "SELECT id FROM " + DatabaseArchive.archived("checkins") + " WHERE reservation_id IN (" + reservationIds + ")";
+
+        String[] statements = {
+            "DELETE FROM " + DatabaseArchive.archived("guests") + " WHERE checkin_id IN (" + checkinIds + ")",
+            "DELETE FROM " + DatabaseArchive.archived("checkins") + " WHERE reservation_id IN (" + reservationIds + ")",
+            "DELETE FROM " + DatabaseArchive.archived("checkouts") + " WHERE reservation_id IN (" + reservationIds + ")",
+            "DELETE FROM " + DatabaseArchive.archived("reservations") + " WHERE vut_id = ?",
+            "DELETE FROM " + DatabaseArchive.archived("days") + " WHERE vut_id = ?"
+        };
+
+        for (String sql : statements) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, vutId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Mueve al archivo, en una transacción, los días anteriores a 'cutoff' y las reservas que terminan en él o antes.
+     * * @param vuts Recibe las viviendas afectadas.
+     * @return Reservas y días movidos.
+     */
+    private static int[] moveBefore(Connection conn, LocalDate cutoff, Set<Integer> vuts) throws SQLException {
+
+        String date = cutoff.toString();
+        String reservationIds = "SELECT id FROM reservations WHERE check_out_date <= ?";
+        String checkinIds = "SELECT id FROM checkins WHERE reservation_id IN (" + reservationIds + ")";
+
+        Set<Integer> affected = new HashSet<>();
+
+        int[] moved = Transactions.run(conn, c -> {
+
+            try (PreparedStatement pstmt = c.prepareStatement(
+                "SELECT DISTINCT vut_id FROM days WHERE day_date < ? UNION SELECT DISTINCT vut_id FROM reservations WHERE check_out_date <= ?")) {
+                pstmt.setString(1, date);
+                pstmt.setString(2, date);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) affected.add(rs.getInt(1));
+                }
+            }
+
+            int reservations = execute(c, "INSERT INTO " + DatabaseArchive.archived("reservations") + " SELECT * FROM reservations WHERE check_out_date <= ?", date);
+            execute(c, "INSERT INTO " + DatabaseArchive.archived("checkins") + " SELECT * FROM checkins WHERE reservation_id IN (" + reservationIds + ")", date);
+            execute(c, "INSERT INTO " + DatabaseArchive.archived("guests") + " SELECT * FROM guests WHERE checkin_id IN (" + checkinIds + ")", date);
+            execute(c, "INSERT INTO " + DatabaseArchive.archived("checkouts") + " SELECT * FROM checkouts WHERE reservation_id IN (" + reservationIds + ")", date);
+            int days = execute(c, "INSERT INTO " + DatabaseArchive.archived("days") + " SELECT * FROM days WHERE day_date < ?", date);
+
+            execute(c, "DELETE FROM guests WHERE checkin_id IN (" + checkinIds + ")", date);
+            execute(c, "DELETE FROM checkins WHERE reservation_id IN (" + reservationIds + ")", date);
+            execute(c, "DELETE FROM checkouts WHERE reservation_id IN (" + reservationIds + ")", date);
+            execute(c, "DELETE FROM reservations WHERE check_out_date <= ?", date);
+            execute(c, "DELETE FROM days WHERE day_date < ?", date);
+
+            GuestSearch.indexArchived(c);
+
+            for (int vutId : affected) {
+                ChangeLog.record(c, ChangeLog.VUTS, vutId, vutId, ChangeLog.Operation.UPDATE);
+            }
+
+            return new int[] { reservations, days };
+        });
+
+        vuts.addAll(affected);
+
+        return moved;
+    }
+
+    /**
+     * Adelanta el corte a la entrada de la primera reserva que lo cruce (entra antes y sale después).
+     */
+    private static LocalDate effectiveCutoff(Connection conn, LocalDate cutoff) throws SQLException {
+
+        String sql = "SELECT MIN(check_in_date) FROM reservations WHERE check_in_date < ? AND check_out_date > ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, cutoff.toString());
+            pstmt.setString(2, cutoff.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                String earliest = rs.next() ? rs.getString(1) : null;
+                return earliest != null ? LocalDate.parse(earliest) : cutoff;
+            }
+        }
+    }
+
+    /**
+     * Fecha más antigua de las tablas activas (día o entrada de reserva), o null si están vacías.
+     */
+    private static LocalDate oldestActiveDate(Connection conn) throws SQLException {
+
+        String sql = "SELECT MIN(d) FROM (SELECT MIN(day_date) AS d FROM days UNION ALL SELECT MIN(check_in_date) AS d FROM reservations) oldest";
+
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            String oldest = rs.next() ? rs.getString(1) : null;
+            return oldest != null ? LocalDate.parse(oldest) : null;
+        }
+    }
+
+    /**
+     * En SQLite el archivo no encoge al borrar filas: si ha quedado mucho espacio libre se reconstruye
+     * (VACUUM) para que la base de datos activa y sus copias vuelvan a ser pequeñas. H2 compacta solo.
+     */
+    private static void reclaimSpace(Connection conn) throws SQLException {
+
+        if (!(DatabaseManager.dialect() instanceof SqliteDialect)) return;
+
+        try (Statement stmt = conn.createStatement()) {
+
+            long free;
+            long total;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA main.freelist_count")) {
+                free = rs.next() ? rs.getLong(1) : 0;
+            }
+            try (ResultSet rs = stmt.executeQuery("PRAGMA main.page_count")) {
+                total = rs.next() ? rs.getLong(1) : 0;
+            }
+
+            if (free * FREE_PAGES_RATIO > total) stmt.execute("VACUUM main");
+        }
+    }
+
+    private static int execute(Connection conn, String sql, String date) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            int count = sql.length() - sql.replace("?", "").length();
+            for (int i = 1; i <= count; i++) pstmt.setString(i, date);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private void scheduledArchive() {
+        try {
+            archiveNow();
+        } catch (SQLException e) {
+            System.err.println("[error] Scheduled archiving failed: " + e.getMessage());
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(STEP_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
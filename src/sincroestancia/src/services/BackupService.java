@@ -0,0 +1,498 @@
+package sincroestancia.src.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.SqliteDialect;
+import sincroestancia.src.database.Transactions;
+
+/**
+ * Copias de seguridad en caliente de la base de datos SQLite y restauración a un instante.
+ * * Copiar 'sqlite.db' con el programa abierto puede dejar un archivo corrupto si la sincronización
+ * está escribiendo. Este servicio usa la API de backup de SQLite sobre una conexión propia:
+ * - La conexión abre una transacción de lectura antes de empezar: en modo WAL los escritores siguen
+ * trabajando y la copia es una instantánea coherente (no se reinicia aunque cambien los datos).
+ * - La copia avanza PAGES_PER_STEP páginas por paso y cede el disco STEP_PAUSE_MS entre pasos, en un
+ * hilo de fondo, para que la interfaz no note la copia.
+ * - Cada copia se guarda como 'sincroestancia-<instante UTC>.db' (o '.db.gz' si se comprime).
+ * - El archivo de datos antiguos ('archive.db', ver ArchiveService) solo cambia cuando se archiva: se
+ * copia en la misma instantánea como 'archive-<instante UTC>.db' únicamente si ha cambiado desde la
+ * última copia, y se conservan las ARCHIVE_COPIES más recientes.
+ * * Retención: se conservan todas las copias de las últimas 'keep.hours' horas y, de las anteriores,
+ * la más reciente de cada día durante 'keep.days' días.
+ * * Restauración: restoreTo(instante) vuelca en la base de datos abierta la última copia anterior o
+ * igual a ese instante (también con la API de backup, en una única transacción). La resolución es el
+ * intervalo entre copias: el WAL de SQLite se reinicia en cada checkpoint y no se puede reproducir
+ * fuera del propio motor, así que no se archiva.
+ * * Configuración (propiedades del sistema):
+ * - sincroestancia.backup.interval     Minutos entre copias (60 por defecto; 0 desactiva la programación).
+ * - sincroestancia.backup.dir          Carpeta de destino (por defecto 'backups' en la carpeta de datos).
+ * - sincroestancia.backup.compress     Comprimir con gzip (true por defecto).
+ * - sincroestancia.backup.keep.hours   Horas en las que se conservan todas las copias (24).
+ * - sincroestancia.backup.keep.days    Días con una copia diaria (30).
+ * * Solo se aplica con SQLite; el servidor H2 se respalda con su propio comando BACKUP.
+ * * @author Carlos Padilla Labella
+ */
+public final class BackupService {
+
+    private static final int PAGES_PER_STEP = 64;
+    private static final int STEP_PAUSE_MS = 2;
+    private static final int BUSY_SLEEP_MS = 50;
+    private static final int BUSY_RETRIES = 100;
+    private static final int ARCHIVE_COPIES = 2;
+
+    private static final String PREFIX = "sincroestancia-";
+    private static final String ARCHIVE_PREFIX = "archive-";
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssSSS'Z'").withZone(ZoneOffset.UTC);
+
+    /**
+     * Resultado de una copia: archivo, instante de la instantánea, duración, páginas copiadas y tamaño final.
+     */
+    public record BackupResult(Path file, Instant takenAt, long durationMs, int pages, long bytes) {}
+
+    /**
+     * Copia disponible en la carpeta de destino.
+     */
+    public record Snapshot(Path file, Instant takenAt) {}
+
+    private static BackupService instance;
+
+    private final Path directory;
+    private final boolean compress;
+    private final long intervalMinutes;
+    private final Duration keepAll;
+    private final int keepDays;
+
+    private ScheduledExecutorService scheduler;
+    private volatile BackupResult lastResult;
+
+    private BackupService() {
+        String dir = System.getProperty("sincroestancia.backup.dir");
+        this.directory = dir != null ? Path.of(dir) : Path.of(DatabaseManager.get_data_dir(), "backups");
+        this.compress = Boolean.parseBoolean(System.getProperty("sincroestancia.backup.compress", "true"));
+        this.intervalMinutes = Long.getLong("sincroestancia.backup.interval", 60);
+        this.keepAll = Duration.ofHours(Long.getLong("sincroestancia.backup.keep.hours", 24));
+        this.keepDays = Integer.getInteger("sincroestancia.backup.keep.days", 30);
+    }
+
+    /**
+     * Obtiene la instancia única del servicio.
+     */
+    public static synchronized BackupService getInstance() {
+        if (instance == null) {
+            instance = new BackupService();
+        }
+        return instance;
+    }
+
+    /**
+     * Inicia las copias periódicas (la primera, pasado un minuto del arranque).
+     * * No hace nada si ya está corriendo, si el intervalo es 0 o si el motor no es SQLite.
+     */
+    public synchronized void start() {
+
+        if (scheduler != null || intervalMinutes <= 0 || !isSupported()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "sqlite-backup");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::scheduledBackup, 1, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Detiene las copias periódicas (una copia en curso termina antes de que el hilo acabe).
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdown();
+        scheduler = null;
+    }
+
+    public boolean isSupported() {
+        return DatabaseManager.dialect() instanceof SqliteDialect;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Última copia realizada en este proceso (null si aún no hay ninguna).
+     */
+    public BackupResult getLastResult() {
+        return lastResult;
+    }
+
+    /**
+     * Realiza una copia completa ahora, en el hilo que llama, y aplica la política de retención.
+     * * Pasos de implementación:
+     * - Abre una conexión propia y fija una instantánea de lectura (BEGIN + SELECT) de la base de
+     * datos principal y del archivo.
+     * - Copia las páginas por pasos a un archivo temporal en la carpeta de destino (y el archivo, si cambió).
+     * - Comprime el resultado si está configurado y lo renombra de forma atómica.
+     * - Elimina las copias que ya no cubre la retención.
+     * * @return El resultado de la copia.
+     * @throws IOException Si no se puede escribir en la carpeta de destino.
+     * @throws SQLException Si la copia falla o el motor no es SQLite.
+     */
+    public synchronized BackupResult backupNow() throws IOException, SQLException {
+
+        if (!isSupported()) throw new SQLException("Online backup is only available for SQLite");
+
+        Files.createDirectories(directory);
+
+        long start = System.nanoTime();
+        Instant takenAt;
+        String name;
+        Path raw;
+        Path archiveRaw = null;
+        int[] pages = { 0 };
+
+        try (Connection source = DatabaseManager.provider().open()) {
+
+            source.setAutoCommit(false);
+
+            try (Statement stmt = source.createStatement()) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master")) {
+                    rs.next();
+                }
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + DatabaseArchive.SCHEMA + ".sqlite_master")) {
+                    rs.next();
+                }
+            }
+
+            takenAt = Instant.now();
+            name = PREFIX + FILE_TIMESTAMP.format(takenAt) + ".db";
+            raw = directory.resolve(name + ".tmp");
+
+            DB db = source.unwrap(SQLiteConnection.class).getDatabase();
+            db.backup("main", raw.toString(), (remaining, pageCount) -> {
+                pages[0] = pageCount;
+                if (remaining > 0) pause();
+            }, BUSY_SLEEP_MS, BUSY_RETRIES, PAGES_PER_STEP);
+
+            if (archiveChanged(source)) {
+                archiveRaw = directory.resolve(ARCHIVE_PREFIX + FILE_TIMESTAMP.format(takenAt) + ".db.tmp");
+                db.backup(DatabaseArchive.SCHEMA, archiveRaw.toString(), (remaining, pageCount) -> {
+                    if (remaining > 0) pause();
+                }, BUSY_SLEEP_MS, BUSY_RETRIES, PAGES_PER_STEP);
+            }
+
+            source.rollback();
+        }
+
+        Path target = finish(raw, name);
+
+        if (archiveRaw != null) {
+            Path archiveTarget = finish(archiveRaw, ARCHIVE_PREFIX + FILE_TIMESTAMP.format(takenAt) + ".db");
+            System.out.println("[info] Archive backup " + archiveTarget.getFileName() + " written");
+        }
+
+        BackupResult result = new BackupResult(target, takenAt, (System.nanoTime() - start) / 1_000_000, pages[0], Files.size(target));
+        lastResult = result;
+
+        System.out.println("[info] Backup " + target.getFileName() + " written in " + result.durationMs() + " ms (" + result.pages() + " pages, " + result.bytes() + " bytes)");
+
+        applyRetention();
+
+        return result;
+    }
+
+    /**
+     * Comprime (si está configurado) un volcado temporal y lo mueve a su nombre definitivo de forma atómica.
+     */
+    private Path finish(Path raw, String name) throws IOException {
+
+        Path target = directory.resolve(compress ? name + ".gz" : name);
+
+        if (compress) {
+            Path gz = directory.resolve(name + ".gz.tmp");
+            try (InputStream in = Files.newInputStream(raw); OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz), 1 << 16)) {
+                in.transferTo(out);
+            }
+            Files.delete(raw);
+            Files.move(gz, target, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            Files.move(raw, target, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        return target;
+    }
+
+    /**
+     * Indica si el archivo (o su WAL) se ha modificado después de su última copia.
+     */
+    private boolean archiveChanged(Connection source) throws IOException, SQLException {
+
+        Path file = null;
+        try (Statement stmt = source.createStatement(); ResultSet rs = stmt.executeQuery("PRAGMA database_list")) {
+            while (rs.next()) {
+                if (rs.getString("name").equals(DatabaseArchive.SCHEMA) && !rs.getString("file").isEmpty()) file = Path.of(rs.getString("file"));
+            }
+        }
+
+        if (file == null || !Files.exists(file)) return false;
+
+        long modified = Files.getLastModifiedTime(file).toMillis();
+        Path wal = file.resolveSibling(file.getFileName() + "-wal");
+        if (Files.exists(wal)) modified = Math.max(modified, Files.getLastModifiedTime(wal).toMillis());
+
+        List<Path> copies = archiveCopies();
+        if (copies.isEmpty()) return true;
+
+        Instant last = parseTimestamp(copies.get(copies.size() - 1).getFileName().toString(), ARCHIVE_PREFIX);
+        return last == null || modified > last.toEpochMilli();
+    }
+
+    /**
+     * Copias del archivo, de la más antigua a la más reciente.
+     */
+    private List<Path> archiveCopies() throws IOException {
+
+        if (!Files.isDirectory(directory)) return new ArrayList<>();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> parseTimestamp(file.getFileName().toString(), ARCHIVE_PREFIX) != null)
+                .sorted(Comparator.comparing((Path file) -> parseTimestamp(file.getFileName().toString(), ARCHIVE_PREFIX)))
+                .collect(java.util.stream.Collectors.toList());
+        }
+    }
+
+    /**
+     * Copias disponibles, de la más antigua a la más reciente.
+     */
+    public List<Snapshot> listBackups() {
+
+        List<Snapshot> snapshots = new ArrayList<>();
+        if (!Files.isDirectory(directory)) return snapshots;
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.forEach(file -> {
+                Instant takenAt = parseTimestamp(file.getFileName().toString(), PREFIX);
+                if (takenAt != null) snapshots.add(new Snapshot(file, takenAt));
+            });
+        } catch (IOException e) {
+            System.err.println("[error] Could not list backups: " + e.getMessage());
+        }
+
+        snapshots.sort(Comparator.comparing(Snapshot::takenAt));
+        return snapshots;
+    }
+
+    /**
+     * Restaura la base de datos abierta al estado de la última copia anterior o igual a 'instant'.
+     * * Pasos de implementación:
+     * - Elige la copia y, si está comprimida, la descomprime en un temporal.
+     * - La vuelca con la API de backup desde una conexión propia (una sola transacción: las demás
+     * conexiones, incluida la principal, ven el estado anterior o el restaurado, nunca una mezcla).
+     * - Mantiene creciente la secuencia del registro de cambios y anota cada vivienda como
+     * modificada, para que los demás procesos invaliden sus cachés.
+     * - Borra los cursores persistentes y marca los días futuros como no sincronizados, de modo
+     * que Google Calendar se vuelva a sincronizar desde el estado restaurado.
+     * - El archivo no se restaura (solo crece): si la copia es anterior a un archivado, las filas que
+     * vuelven a estar activas se eliminan del archivo.
+     * - Invalida las cachés de este proceso.
+     * * @return La copia restaurada, o null si no hay ninguna anterior a ese instante o la restauración falló.
+     */
+    public synchronized Snapshot restoreTo(Instant instant) {
+
+        Snapshot chosen = null;
+        for (Snapshot snapshot : listBackups()) {
+            if (!snapshot.takenAt().isAfter(instant)) chosen = snapshot;
+        }
+
+        if (chosen == null) {
+            System.err.println("[error] No backup found at or before " + instant);
+            return null;
+        }
+
+        if (!isSupported()) {
+            System.err.println("[error] Restore is only available for SQLite");
+            return null;
+        }
+
+        Path source = chosen.file();
+        Path temp = null;
+
+        try (Connection conn = DatabaseManager.provider().open()) {
+
+            if (source.getFileName().toString().endsWith(".gz")) {
+                temp = Files.createTempFile(directory, "restore-", ".db");
+                try (InputStream in = new GZIPInputStream(Files.newInputStream(source), 1 << 16)) {
+                    Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+                }
+                source = temp;
+            }
+
+            Set<Integer> vuts = vutIds(conn);
+            long head = ChangeLog.head(conn);
+
+            conn.unwrap(SQLiteConnection.class).getDatabase().restore("main", source.toString(), null, BUSY_SLEEP_MS, BUSY_RETRIES, -1);
+
+            vuts.addAll(vutIds(conn));
+
+            Transactions.run(conn, c -> {
+
+                try (PreparedStatement update = c.prepareStatement("UPDATE sqlite_sequence SET seq = MAX(seq, ?) WHERE name = 'change_log'");
+                    PreparedStatement insert = c.prepareStatement("INSERT INTO sqlite_sequence (name, seq) VALUES ('change_log', ?)")) {
+                    update.setLong(1, head);
+                    if (update.executeUpdate() == 0) {
+                        insert.setLong(1, head);
+                        insert.executeUpdate();
+                    }
+                }
+
+                try (Statement stmt = c.createStatement()) {
+                    stmt.executeUpdate("DELETE FROM change_cursors");
+                }
+
+                DatabaseArchive.remove_duplicates(c);
+
+                try (PreparedStatement pstmt = c.prepareStatement("UPDATE days SET is_synced = 0 WHERE day_date >= ?")) {
+                    pstmt.setString(1, LocalDate.now().toString());
+                    pstmt.executeUpdate();
+                }
+
+                for (int vutId : vuts) {
+                    ChangeLog.record(c, ChangeLog.VUTS, vutId, vutId, ChangeLog.Operation.UPDATE);
+                }
+
+                return null;
+            });
+
+            for (int vutId : vuts) {
+                ReservationIndex.getInstance().invalidate(vutId);
+                IcalExportService.invalidate(vutId);
+            }
+            MonthlyStats.touch();
+
+            System.out.println("[info] Database restored from " + chosen.file().getFileName());
+            return chosen;
+
+        } catch (IOException | SQLException e) {
+
+            System.err.println("[error] Restore from " + chosen.file().getFileName() + " failed: " + e.getMessage());
+            return null;
+
+        } finally {
+
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.err.println("[error] Could not delete " + temp + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Borra las copias que no cubre la política de retención.
+     * * Se conservan todas las de las últimas 'keepAll' horas y la más reciente de cada uno de los
+     * últimos 'keepDays' días (y las ARCHIVE_COPIES copias más recientes del archivo).
+     */
+    private void applyRetention() {
+
+        try {
+            List<Path> copies = archiveCopies();
+            for (int i = 0; i < copies.size() - ARCHIVE_COPIES; i++) {
+                Files.delete(copies.get(i));
+            }
+        } catch (IOException e) {
+            System.err.println("[error] Could not prune archive backups: " + e.getMessage());
+        }
+
+        Instant now = Instant.now();
+        LocalDate oldestDay = LocalDate.now(ZoneOffset.UTC).minusDays(keepDays);
+        Set<LocalDate> dailyKept = new HashSet<>();
+
+        List<Snapshot> snapshots = listBackups();
+
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+
+            Snapshot snapshot = snapshots.get(i);
+            LocalDate day = LocalDate.ofInstant(snapshot.takenAt(), ZoneOffset.UTC);
+
+            boolean recent = snapshot.takenAt().isAfter(now.minus(keepAll));
+            boolean firstOfDay = !day.isBefore(oldestDay) && dailyKept.add(day);
+
+            if (recent || firstOfDay) continue;
+
+            try {
+                Files.delete(snapshot.file());
+                System.out.println("[info] Backup " + snapshot.file().getFileName() + " removed by retention policy");
+            } catch (IOException e) {
+                System.err.println("[error] Could not delete backup " + snapshot.file() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void scheduledBackup() {
+        try {
+            backupNow();
+        } catch (IOException | SQLException e) {
+            System.err.println("[error] Scheduled backup failed: " + e.getMessage());
+        }
+    }
+
+    private static Set<Integer> vutIds(Connection conn) throws SQLException {
+        Set<Integer> ids = new HashSet<>();
+        try (Statement stmt = conn.createStatement(); ResultSet rs = stmt.executeQuery("SELECT id FROM vuts")) {
+            while (rs.next()) ids.add(rs.getInt(1));
+        }
+        return ids;
+    }
+
+    private static Instant parseTimestamp(String fileName, String prefix) {
+
+        if (!fileName.startsWith(prefix) || !(fileName.endsWith(".db") || fileName.endsWith(".db.gz"))) return null;
+
+        String stamp = fileName.substring(prefix.length(), fileName.indexOf(".db"));
+        try {
+            return FILE_TIMESTAMP.parse(stamp, Instant::from);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(STEP_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
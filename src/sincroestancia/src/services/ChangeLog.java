@@ -0,0 +1,245 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.ChangeEntry;
+
+/**
+ * Registro de cambios (change data capture) sobre 'reservations' y 'days'.
+ * * Cada escritura de DatabaseService (y de las importaciones y feeds iCal) añade, dentro de su misma
+ * transacción, una entrada a 'change_log' por fila modificada: secuencia creciente, tabla, clave,
+ * vivienda, operación, instante y proceso de origen. Si la transacción se deshace, sus entradas también.
+ * * Los consumidores procesan solo lo que ha cambiado desde su cursor en lugar de recorrer las tablas:
+ * - Persistentes: guardan el cursor en 'change_cursors' (p.ej. la sincronización de check-in/out con Google).
+ * - En memoria: ChangeLogFollower invalida las cachés de este proceso cuando escribe otro puesto.
+ * * Compactación: se borran las entradas que todos los cursores persistentes ya han superado y que
+ * tienen más de RETENTION (margen para los consumidores en memoria).
+ * * Con escritores concurrentes (servidor H2) la secuencia se asigna antes del commit, así que una
+ * transacción puede confirmar la entrada 10 después de la 11. La lectura se detiene en el primer
+ * hueco reciente para no saltárselo; pasado GAP_GRACE se asume que era una transacción deshecha.
+ * * Todos los métodos usan la conexión recibida para ejecutarse dentro de la transacción del llamante.
+ * * @author Carlos Padilla Labella
+ */
+public final class ChangeLog {
+
+    public static final String RESERVATIONS = "reservations";
+    public static final String DAYS = "days";
+    public static final String VUTS = "vuts";
+
+    /** Identifica las entradas escritas por este proceso (los consumidores en memoria las ignoran). */
+    public static final String ORIGIN = UUID.randomUUID().toString();
+
+    private static final Duration GAP_GRACE = Duration.ofSeconds(30);
+    private static final Duration RETENTION = Duration.ofDays(1);
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SQL_INSERT =
+        "INSERT INTO change_log (table_name, row_key, vut_id, operation, changed_at, origin) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_INSERT_DAYS =
+        "INSERT INTO change_log (table_name, row_key, vut_id, operation, changed_at, origin) " +
+        "SELECT 'days', day_date, vut_id, 'update', CAST(? AS VARCHAR(19)), CAST(? AS VARCHAR(36)) " +
+        "FROM days WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
+
+    private static final String SQL_INSERT_RESERVATION =
+        "INSERT INTO change_log (table_name, row_key, vut_id, operation, changed_at, origin) " +
+        "SELECT 'reservations', CAST(id AS VARCHAR(20)), vut_id, CAST(? AS VARCHAR(6)), CAST(? AS VARCHAR(19)), CAST(? AS VARCHAR(36)) " +
+        "FROM reservations WHERE id = ?";
+
+    private static final String SQL_ADVANCE = DatabaseManager.dialect().upsert("change_cursors",
+        new String[] { "consumer", "last_seq" },
+        new String[] { "consumer" },
+        new String[] { "last_seq" },
+        "VALUES (CAST(? AS VARCHAR(64)), CAST(? AS BIGINT))",
+        null);
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE;
+
+        String sql() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Entradas leídas en orden y secuencia hasta la que puede avanzar el cursor tras procesarlas.
+     */
+    public record Batch(List<ChangeEntry> entries, long lastSeq) {
+
+        public boolean isEmpty() {
+            return entries.isEmpty();
+        }
+
+        /**
+         * Claves numéricas distintas de una tabla (p.ej. IDs de reserva), en orden de aparición.
+         */
+        public Set<Integer> keys(String table) {
+            Set<Integer> keys = new LinkedHashSet<>();
+            for (ChangeEntry entry : entries) {
+                if (entry.table().equals(table)) keys.add(Integer.parseInt(entry.key()));
+            }
+            return keys;
+        }
+    }
+
+    private ChangeLog() {}
+
+    /**
+     * Registra el cambio de una fila.
+     */
+    public static void record(Connection conn, String table, int vutId, Object key, Operation operation) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT)) {
+            pstmt.setString(1, table);
+            pstmt.setString(2, String.valueOf(key));
+            pstmt.setInt(3, vutId);
+            pstmt.setString(4, operation.sql());
+            pstmt.setString(5, now());
+            pstmt.setString(6, ORIGIN);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Registra el cambio de una reserva que sigue existiendo, obteniendo su vivienda de la propia fila.
+     */
+    public static void recordReservation(Connection conn, int reservationId, Operation operation) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_RESERVATION)) {
+            pstmt.setString(1, operation.sql());
+            pstmt.setString(2, now());
+            pstmt.setString(3, ORIGIN);
+            pstmt.setInt(4, reservationId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Registra como modificados los días existentes de una vivienda en [from, toExclusive) (yyyy-MM-dd).
+     * * Una sola sentencia INSERT ... SELECT, sin importar la longitud del rango.
+     */
+    public static void recordDays(Connection conn, int vutId, String from, String toExclusive) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_DAYS)) {
+            pstmt.setString(1, now());
+            pstmt.setString(2, ORIGIN);
+            pstmt.setInt(3, vutId);
+            pstmt.setString(4, from);
+            pstmt.setString(5, toExclusive);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Secuencia de la última entrada registrada (0 si el registro está vacío).
+     */
+    public static long head(Connection conn) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM change_log");
+            ResultSet rs = pstmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Cursor persistente de un consumidor, o -1 si todavía no tiene (debe hacer una carga completa).
+     */
+    public static long cursor(Connection conn, String consumer) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT last_seq FROM change_cursors WHERE consumer = ?")) {
+            pstmt.setString(1, consumer);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Guarda el cursor de un consumidor tras procesar hasta 'seq' (inclusive).
+     */
+    public static void advance(Connection conn, String consumer, long seq) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_ADVANCE)) {
+            pstmt.setString(1, consumer);
+            pstmt.setLong(2, seq);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Lee las entradas posteriores al cursor persistente de un consumidor (desde el principio si no tiene).
+     */
+    public static Batch read(Connection conn, String consumer, int limit) throws SQLException {
+        return readAfter(conn, Math.max(cursor(conn, consumer), 0), limit);
+    }
+
+    /**
+     * Lee como máximo 'limit' entradas con secuencia mayor que 'after', en orden.
+     * * Se detiene antes de un hueco en la secuencia si la entrada siguiente es reciente (ver GAP_GRACE).
+     */
+    public static Batch readAfter(Connection conn, long after, int limit) throws SQLException {
+
+        String sql = "SELECT seq, table_name, row_key, vut_id, operation, changed_at, origin FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?";
+
+        List<ChangeEntry> entries = new ArrayList<>();
+        long last = after;
+        String graceLimit = format(LocalDateTime.now(ZoneOffset.UTC).minus(GAP_GRACE));
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setLong(1, after);
+            pstmt.setInt(2, limit);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+
+                    long seq = rs.getLong("seq");
+                    String changedAt = rs.getString("changed_at");
+
+                    if (seq != last + 1 && changedAt.compareTo(graceLimit) > 0) break;
+
+                    entries.add(new ChangeEntry(seq, rs.getString("table_name"), rs.getString("row_key"),
+                        rs.getInt("vut_id"), rs.getString("operation"), changedAt, rs.getString("origin")));
+                    last = seq;
+                }
+            }
+        }
+
+        return new Batch(entries, last);
+    }
+
+    /**
+     * Borra las entradas que ya han procesado todos los consumidores persistentes y superan la retención.
+     * * @return Número de entradas eliminadas.
+     */
+    public static int compact(Connection conn) throws SQLException {
+
+        String sql = "DELETE FROM change_log WHERE changed_at < ? AND seq <= " +
+            "COALESCE((SELECT MIN(last_seq) FROM change_cursors), (SELECT MAX(seq) FROM change_log))";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, format(LocalDateTime.now(ZoneOffset.UTC).minus(RETENTION)));
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static String now() {
+        return format(LocalDateTime.now(ZoneOffset.UTC));
+    }
+
+    private static String format(LocalDateTime time) {
+        return time.format(TIMESTAMP);
+    }
+}
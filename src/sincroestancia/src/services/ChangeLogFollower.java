@@ -0,0 +1,129 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.ChangeEntry;
+
+/**
+ * Consumidor en memoria del registro de cambios que mantiene al día las cachés de este proceso.
+ * * El índice de reservas (ReservationIndex), los calendarios iCal publicados (IcalExportService) y los
+ * agregados de informes (MonthlyStats) se invalidan en línea cuando escribe este proceso, pero no se
+ * enteraban de lo que escribían otros puestos sobre el servidor H2 (o la API sin interfaz sobre el
+ * mismo archivo). Cada pocos segundos se leen las entradas nuevas de 'change_log' y se invalidan
+ * solo las viviendas afectadas por escrituras de otro origen (y la caché de fichas de huéspedes, GuestProfiles).
+ * * El cursor vive en memoria y arranca en la última entrada existente: al iniciar el proceso las
+ * cachés están vacías, así que no hay nada anterior que invalidar.
+ * * Implementa el patrón Singleton (como IcalFeedSyncService) y usa su propia conexión para no
+ * mezclarse con las transacciones abiertas en la conexión principal.
+ * * @author Carlos Padilla Labella
+ */
+public final class ChangeLogFollower {
+
+    private static final int POLL_SECONDS = 5;
+    private static final int BATCH_SIZE = 1_000;
+
+    private static ChangeLogFollower instance;
+
+    private Connection conn;
+    private ScheduledExecutorService scheduler;
+    private long cursor = -1;
+
+    private ChangeLogFollower() {}
+
+    /**
+     * Obtiene la instancia única del consumidor.
+     */
+    public static synchronized ChangeLogFollower getInstance() {
+        if (instance == null) {
+            instance = new ChangeLogFollower();
+        }
+        return instance;
+    }
+
+    /**
+     * Abre la conexión propia, sitúa el cursor al final del registro e inicia el sondeo periódico.
+     * * Si ya está corriendo, no hace nada.
+     */
+    public synchronized void start() {
+
+        if (scheduler != null) return;
+
+        try {
+            conn = DatabaseManager.provider().open();
+            cursor = ChangeLog.head(conn);
+        } catch (SQLException e) {
+            System.err.println("[error] Change log follower not started: " + e.getMessage());
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "change-log-follower");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::poll, POLL_SECONDS, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Detiene el sondeo y cierra la conexión propia.
+     */
+    public synchronized void stop() {
+
+        if (scheduler == null) return;
+
+        scheduler.shutdownNow();
+        scheduler = null;
+
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            System.err.println("[error] Error closing change log follower connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Procesa las entradas nuevas del registro.
+     * * @return Número de viviendas cuyas cachés se han invalidado.
+     */
+    public synchronized int poll() {
+
+        if (conn == null) return 0;
+
+        Set<Integer> touched = new HashSet<>();
+
+        try {
+
+            ChangeLog.Batch batch;
+
+            do {
+                batch = ChangeLog.readAfter(conn, cursor, BATCH_SIZE);
+                for (ChangeEntry entry : batch.entries()) {
+                    if (!entry.origin().equals(ChangeLog.ORIGIN)) touched.add(entry.vutId());
+                }
+                cursor = batch.lastSeq();
+            } while (batch.entries().size() == BATCH_SIZE);
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error reading change log: " + e.getMessage());
+        }
+
+        for (int vutId : touched) {
+            ReservationIndex.getInstance().invalidate(vutId);
+            IcalExportService.invalidate(vutId);
+        }
+
+        if (!touched.isEmpty()) {
+            MonthlyStats.touch();
+            GuestProfiles.clearCache();
+        }
+
+        return touched.size();
+    }
+}
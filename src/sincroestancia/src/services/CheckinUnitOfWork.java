@@ -0,0 +1,421 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import sincroestancia.src.models.GuestData;
+
+/**
+ * Unidad de trabajo de un check-in: el parte de entrada completo (huéspedes y datos de pago) que se
+ * guarda de una sola vez.
+ * * El asistente de check-in (CheckinForm) antes escribía en cada paso: creaba el registro en
+ * 'checkins' al abrirse, insertaba o editaba cada huésped al guardarlo en el modal y cerraba con otra
+ * transacción. Eran muchas confirmaciones por check-in y un cierre a medias dejaba partes incompletos.
+ * Ahora el asistente solo trabaja sobre esta clase, en memoria, y DatabaseService.commit_checkin lo
+ * escribe todo en una transacción:
+ * - Obtiene o crea el registro de 'checkins'.
+ * - Borra, actualiza e inserta (por lotes) los huéspedes.
+ * - Enlaza las fichas (GuestProfiles) y recalcula las nacionalidades del mes (MonthlyStats) una vez.
+ * - Si hay datos de pago, cierra el check-in (finalize).
+ * * Los huéspedes ya guardados conservan su id; los nuevos reciben un id provisional negativo (desde
+ * -2, porque -1 es la opción vacía de los selectores) que se puede usar como tutor o titular del pago
+ * y se sustituye por el real al guardar. Los datos de cada huésped usan las claves del formulario
+ * (GuestFormPanel.validateAndGetData).
+ * * No es segura entre hilos: pertenece al formulario que la creó.
+ * * @author Carlos Padilla Labella
+ */
+public final class CheckinUnitOfWork {
+
+    /**
+     * Datos financieros y legales con los que se cierra el check-in.
+     */
+    public record Payment(String method, String identifier, String holder, String cardExpiry, String date,
+        boolean rulesAccepted, boolean gdprAccepted) {}
+
+    private static final int FIRST_PENDING_ID = -2;
+    private static final DateTimeFormatter UTC_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String SQL_FIND_CHECKIN = "SELECT id FROM checkins WHERE reservation_id = ?";
+    private static final String SQL_INSERT_CHECKIN = "INSERT INTO checkins (reservation_id, signed_at) VALUES (?, ?)";
+
+    private static final String SQL_LOAD_GUESTS = "SELECT id, fullname, surname1, surname2, sex, birth_date, nationality, " +
+        "id_document_type, id_document_number, id_support_number, address_full, address_municipality, address_country, " +
+        "phone, email, is_minor, guardian_id FROM guests WHERE checkin_id = ? ORDER BY id";
+
+    private static final String SQL_INSERT_GUEST = "INSERT INTO guests (fullname, surname1, surname2, sex, birth_date, nationality, " +
+        "id_document_type, id_document_number, id_support_number, address_full, address_municipality, " +
+        "address_country, phone, email, is_minor, guardian_id, checkin_id) " +
+        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String SQL_UPDATE_GUEST = "UPDATE guests SET fullname=?, surname1=?, surname2=?, sex=?, birth_date=?, " +
+        "nationality=?, id_document_type=?, id_document_number=?, id_support_number=?, address_full=?, address_municipality=?, " +
+        "address_country=?, phone=?, email=?, is_minor=?, guardian_id=? WHERE id=?";
+
+    private static final String SQL_UPDATE_GUARDIAN = "UPDATE guests SET guardian_id = ? WHERE id = ?";
+    private static final String SQL_DELETE_GUEST = "DELETE FROM guests WHERE id = ? AND checkin_id = ?";
+
+    private static final String SQL_FINALIZE_CHECKIN = "UPDATE checkins SET payment_method = ?, payment_identifier = ?, payment_holder = ?, " +
+        "card_expiry_date = ?, payment_date = ?, rules_accepted = ?, gdpr_accepted = ? WHERE id = ?";
+    private static final String SQL_FINALIZE_RESERVATION = "UPDATE reservations SET has_checkin = 1, version = version + 1 WHERE id = ?";
+
+    private final int reservationId;
+    private final Map<Integer, Map<String, Object>> guests = new LinkedHashMap<>();
+    private final Set<Integer> edited = new LinkedHashSet<>();
+    private final Set<Integer> removed = new LinkedHashSet<>();
+
+    private int nextPendingId = FIRST_PENDING_ID;
+    private Payment payment;
+
+    /**
+     * Check-in vacío (sin huéspedes guardados) de una reserva.
+     */
+    public CheckinUnitOfWork(int reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    /**
+     * Carga los huéspedes ya guardados del check-in de la reserva, sin crear el registro si no existe.
+     */
+    static CheckinUnitOfWork load(Connection conn, int reservationId) throws SQLException {
+
+        CheckinUnitOfWork work = new CheckinUnitOfWork(reservationId);
+        int checkinId = checkinId(conn, reservationId, false);
+        if (checkinId < 0) return work;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_LOAD_GUESTS)) {
+            pstmt.setInt(1, checkinId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("fullname", rs.getString("fullname"));
+                    data.put("surname1", rs.getString("surname1"));
+                    data.put("surname2", rs.getString("surname2"));
+                    data.put("sex", rs.getString("sex"));
+                    data.put("birthDate", rs.getString("birth_date"));
+                    data.put("nationality", rs.getString("nationality"));
+                    data.put("docType", rs.getString("id_document_type"));
+                    data.put("docNumber", rs.getString("id_document_number"));
+                    data.put("supportNumber", rs.getString("id_support_number"));
+                    data.put("address", rs.getString("address_full"));
+                    data.put("city", rs.getString("address_municipality"));
+                    data.put("country", rs.getString("address_country"));
+                    data.put("phone", rs.getString("phone"));
+                    data.put("email", rs.getString("email"));
+                    data.put("isMinor", rs.getBoolean("is_minor"));
+
+                    int guardianId = rs.getInt("guardian_id");
+                    data.put("guardianId", rs.wasNull() ? null : guardianId);
+
+                    work.guests.put(rs.getInt("id"), data);
+                }
+            }
+        }
+
+        return work;
+    }
+
+    public int reservationId() {
+        return reservationId;
+    }
+
+    /**
+     * Añade un huésped nuevo.
+     * * @return Id provisional (negativo) del huésped hasta que se guarde.
+     */
+    public int addGuest(Map<String, Object> data) {
+        int id = nextPendingId--;
+        guests.put(id, new HashMap<>(data));
+        return id;
+    }
+
+    /**
+     * Sustituye los datos de un huésped (guardado o nuevo).
+     */
+    public void updateGuest(int id, Map<String, Object> data) {
+        if (!guests.containsKey(id)) throw new IllegalArgumentException("Unknown guest: " + id);
+        guests.put(id, new HashMap<>(data));
+        if (id > 0) edited.add(id);
+    }
+
+    /**
+     * Quita un huésped del parte; los menores que lo tenían como tutor se quedan sin él.
+     */
+    public void removeGuest(int id) {
+
+        if (guests.remove(id) == null) return;
+
+        if (id > 0) {
+            edited.remove(id);
+            removed.add(id);
+        }
+
+        for (Map.Entry<Integer, Map<String, Object>> guest : guests.entrySet()) {
+            if (Integer.valueOf(id).equals(guest.getValue().get("guardianId"))) {
+                guest.getValue().put("guardianId", null);
+                if (guest.getKey() > 0) edited.add(guest.getKey());
+            }
+        }
+    }
+
+    /** Número de huéspedes del parte. */
+    public int guestCount() {
+        return guests.size();
+    }
+
+    /** Listado de huéspedes en el orden en que se registraron. */
+    public List<GuestData> guests() {
+        return list(false);
+    }
+
+    /** Huéspedes adultos (posibles tutores y titulares del pago). */
+    public List<GuestData> adults() {
+        return list(true);
+    }
+
+    /**
+     * Copia de los datos de un huésped, o null si no está en el parte.
+     */
+    public Map<String, Object> guestDetails(int id) {
+        Map<String, Object> data = guests.get(id);
+        return data == null ? null : new HashMap<>(data);
+    }
+
+    /**
+     * Datos de pago con los que se cerrará el check-in al guardar (null para guardar solo los huéspedes).
+     */
+    public void setPayment(Payment payment) {
+        this.payment = payment;
+    }
+
+    public Payment payment() {
+        return payment;
+    }
+
+    /**
+     * Escribe el parte en la base de datos. Debe ejecutarse dentro de una transacción
+     * (DatabaseService.commit_checkin); esta instancia no cambia, así que si falla puede reintentarse.
+     * * @return Id del registro de 'checkins'.
+     */
+    int commit(Connection conn) throws SQLException {
+
+        int checkinId = checkinId(conn, reservationId, true);
+        if (checkinId < 0) throw new SQLException("Checkin could not be created for reservation " + reservationId);
+
+        if (!removed.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_DELETE_GUEST)) {
+                for (int id : removed) {
+                    pstmt.setInt(1, id);
+                    pstmt.setInt(2, checkinId);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+
+        List<Integer> pending = new ArrayList<>();
+        for (int id : guests.keySet()) if (id < 0) pending.add(id);
+
+        Map<Integer, Integer> ids = insertPending(conn, checkinId, pending);
+
+        if (!edited.isEmpty()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE_GUEST)) {
+                for (int id : edited) {
+                    bindGuest(pstmt, guests.get(id), ids);
+                    pstmt.setInt(17, id);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        }
+
+        // Los tutores nuevos no tenían id al insertar a sus menores: se enlazan ahora.
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_UPDATE_GUARDIAN)) {
+            boolean batched = false;
+            for (int id : pending) {
+                Object guardianId = guests.get(id).get("guardianId");
+                if (guardianId instanceof Integer guardian && guardian < 0 && ids.containsKey(guardian)) {
+                    pstmt.setInt(1, ids.get(guardian));
+                    pstmt.setInt(2, ids.get(id));
+                    pstmt.addBatch();
+                    batched = true;
+                }
+            }
+            if (batched) pstmt.executeBatch();
+        }
+
+        for (int id : edited) GuestProfiles.recordGuest(conn, id, (String) guests.get(id).get("docNumber"));
+        for (int id : pending) GuestProfiles.recordGuest(conn, ids.get(id), (String) guests.get(id).get("docNumber"));
+
+        if (!removed.isEmpty() || !edited.isEmpty() || !pending.isEmpty()) {
+            MonthlyStats.refreshNationalityForCheckin(conn, checkinId);
+        }
+
+        if (payment != null) finalize(conn, checkinId, payment);
+
+        return checkinId;
+    }
+
+    /**
+     * Id del check-in de una reserva, creándolo si se pide y no existe.
+     * * @return El id, o -1 si no existe (y no se ha pedido crearlo).
+     */
+    static int checkinId(Connection conn, int reservationId, boolean create) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FIND_CHECKIN)) {
+            pstmt.setInt(1, reservationId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+
+        if (!create) return -1;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_CHECKIN, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setInt(1, reservationId);
+            pstmt.setString(2, LocalDateTime.now(ZoneOffset.UTC).format(UTC_TIMESTAMP));
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Cierra el check-in: guarda los datos de pago y marca 'has_checkin' en la reserva.
+     * * @return Id de la reserva del check-in, o -1 si el check-in no existe.
+     */
+    static int finalize(Connection conn, int checkinId, Payment payment) throws SQLException {
+
+        int reservationId = -1;
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT reservation_id FROM checkins WHERE id = ?")) {
+            pstmt.setInt(1, checkinId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) reservationId = rs.getInt(1);
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FINALIZE_CHECKIN)) {
+            pstmt.setString(1, payment.method());
+            pstmt.setString(2, payment.identifier());
+            pstmt.setString(3, payment.holder());
+            pstmt.setString(4, payment.cardExpiry());
+            pstmt.setString(5, payment.date());
+            pstmt.setBoolean(6, payment.rulesAccepted());
+            pstmt.setBoolean(7, payment.gdprAccepted());
+            pstmt.setInt(8, checkinId);
+            pstmt.executeUpdate();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FINALIZE_RESERVATION)) {
+            pstmt.setInt(1, reservationId);
+            pstmt.executeUpdate();
+        }
+
+        ChangeLog.recordReservation(conn, reservationId, ChangeLog.Operation.UPDATE);
+
+        return reservationId;
+    }
+
+    /**
+     * Inserta por lotes los huéspedes nuevos y devuelve la correspondencia id provisional -> id real.
+     * * Los ids generados se leen con una consulta (los de este check-in por encima del mayor que ya
+     * tenía, en orden) porque no todos los drivers devuelven las claves de un executeBatch.
+     */
+    private Map<Integer, Integer> insertPending(Connection conn, int checkinId, List<Integer> pending) throws SQLException {
+
+        Map<Integer, Integer> ids = new HashMap<>();
+        if (pending.isEmpty()) return ids;
+
+        int lastId = 0;
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT COALESCE(MAX(id), 0) FROM guests WHERE checkin_id = ?")) {
+            pstmt.setInt(1, checkinId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) lastId = rs.getInt(1);
+            }
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_INSERT_GUEST)) {
+            for (int id : pending) {
+                bindGuest(pstmt, guests.get(id), ids);
+                pstmt.setInt(17, checkinId);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT id FROM guests WHERE checkin_id = ? AND id > ? ORDER BY id")) {
+            pstmt.setInt(1, checkinId);
+            pstmt.setInt(2, lastId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                for (int id : pending) {
+                    if (!rs.next()) throw new SQLException("Inserted guests could not be read back.");
+                    ids.put(id, rs.getInt(1));
+                }
+            }
+        }
+
+        return ids;
+    }
+
+    /**
+     * Asigna los 16 primeros parámetros de SQL_INSERT_GUEST / SQL_UPDATE_GUEST. Un tutor nuevo que aún
+     * no tiene id real se deja a NULL (se enlaza después).
+     */
+    private static void bindGuest(PreparedStatement pstmt, Map<String, Object> data, Map<Integer, Integer> ids) throws SQLException {
+
+        pstmt.setString(1, (String) data.get("fullname"));
+        pstmt.setString(2, (String) data.get("surname1"));
+        pstmt.setString(3, (String) data.get("surname2"));
+        pstmt.setString(4, (String) data.get("sex"));
+        pstmt.setString(5, (String) data.get("birthDate"));
+        pstmt.setString(6, (String) data.get("nationality"));
+        pstmt.setString(7, (String) data.get("docType"));
+        pstmt.setString(8, (String) data.get("docNumber"));
+        pstmt.setString(9, (String) data.get("supportNumber"));
+        pstmt.setString(10, (String) data.get("address"));
+        pstmt.setString(11, (String) data.get("city"));
+        pstmt.setString(12, (String) data.get("country"));
+        pstmt.setString(13, (String) data.get("phone"));
+        pstmt.setString(14, (String) data.get("email"));
+        pstmt.setBoolean(15, Boolean.TRUE.equals(data.get("isMinor")));
+
+        Integer guardianId = (Integer) data.get("guardianId");
+        if (guardianId != null && guardianId < 0) guardianId = ids.get(guardianId);
+
+        if (guardianId != null && guardianId > 0) pstmt.setInt(16, guardianId);
+        else pstmt.setNull(16, Types.INTEGER);
+    }
+
+    private List<GuestData> list(boolean adultsOnly) {
+
+        List<GuestData> list = new ArrayList<>();
+
+        for (Map.Entry<Integer, Map<String, Object>> guest : guests.entrySet()) {
+            Map<String, Object> data = guest.getValue();
+            boolean isMinor = Boolean.TRUE.equals(data.get("isMinor"));
+            if (adultsOnly && isMinor) continue;
+            list.add(new GuestData(guest.getKey(), data.get("fullname") + " " + data.get("surname1"), (String) data.get("docNumber"), isMinor));
+        }
+
+        return list;
+    }
+}
@@ -0,0 +1,307 @@
+package sincroestancia.src.services;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.DayStatus;
+import sincroestancia.src.models.Season;
+
+/**
+ * Servicio de exportación masiva de datos a CSV y JSON Lines.
+ * * Pensado para extracciones completas (contabilidad, herramientas de BI), por lo que nunca carga
+ * una tabla entera en memoria:
+ * - Las consultas usan cursores de solo avance (TYPE_FORWARD_ONLY / CONCUR_READ_ONLY) con un
+ * tamaño de lote fijo ({@link #FETCH_SIZE}).
+ * - Cada fila se escribe en cuanto se lee, a través de un BufferedWriter (y opcionalmente gzip).
+ * * El consumo de memoria es constante independientemente del número de filas.
+ * * @author Carlos Padilla Labella
+ */
+public class DataExportService {
+
+    /** Filas pedidas al driver en cada lote del cursor. */
+    private static final int FETCH_SIZE = 1000;
+
+    /** Tamaño del búfer de escritura (caracteres y bytes). */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Format {
+        CSV("csv"),
+        JSONL("jsonl");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    /**
+     * Tablas exportables.
+     * * Cada una define su consulta base y las columnas (de 'reservations' o 'days') sobre las
+     * que se aplican los filtros de vivienda y de fechas. Se leen las vistas 'all_<tabla>', que
+     * incluyen los datos archivados (ArchiveService). El estado y la temporada de los días se
+     * exportan por su nombre ('paid', 'high'...), no por el código con el que se guardan.
+     */
+    public enum Table {
+        RESERVATIONS("reservations", "SELECT r.* FROM all_reservations r", "r.vut_id", "r.check_in_date", "r.id"),
+        DAYS("days", "SELECT d.vut_id, d.day_date, d.price_cents, " + DayStatus.sqlKey("d.status") + " AS status, " +
+            Season.sqlKey("d.season") + " AS season, d.is_synced, d.google_event_id, d.version FROM all_days d",
+            "d.vut_id", "d.day_date", "d.vut_id, d.day_date"),
+        CHECKINS("checkins", "SELECT c.* FROM all_checkins c JOIN all_reservations r ON c.reservation_id = r.id", "r.vut_id", "r.check_in_date", "c.id"),
+        GUESTS("guests", "SELECT g.* FROM all_guests g JOIN all_checkins c ON g.checkin_id = c.id JOIN all_reservations r ON c.reservation_id = r.id", "r.vut_id", "r.check_in_date", "g.id"),
+        CHECKOUTS("checkouts", "SELECT co.* FROM all_checkouts co JOIN all_reservations r ON co.reservation_id = r.id", "r.vut_id", "r.check_in_date", "co.id");
+
+        private final String fileName;
+        private final String baseSql;
+        private final String vutColumn;
+        private final String dateColumn;
+        private final String orderBy;
+
+        Table(String fileName, String baseSql, String vutColumn, String dateColumn, String orderBy) {
+            this.fileName = fileName;
+            this.baseSql = baseSql;
+            this.vutColumn = vutColumn;
+            this.dateColumn = dateColumn;
+            this.orderBy = orderBy;
+        }
+    }
+
+    /**
+     * Opciones de una exportación.
+     * * @param vutId Vivienda a exportar o -1 para todas.
+     * @param from Primera fecha incluida (o null). En días se filtra por 'day_date'; en el resto por la fecha de entrada de la reserva.
+     * @param to Última fecha incluida (o null).
+     */
+    public record ExportOptions(Format format, boolean gzip, int vutId, LocalDate from, LocalDate to) {}
+
+    private final Connection conn;
+
+    public DataExportService() {
+        this.conn = DatabaseManager.get_connection();
+    }
+
+    /**
+     * Exporta varias tablas a un directorio, un archivo por tabla (p.ej. 'days.csv.gz').
+     * * @return Mapa (Tabla -> Filas exportadas). Las tablas que fallan se registran con -1.
+     */
+    public Map<Table, Long> exportAll(Set<Table> tables, ExportOptions options, Path directory) {
+
+        Map<Table, Long> result = new LinkedHashMap<>();
+
+        for (Table table : Table.values()) {
+            if (!tables.contains(table)) continue;
+            String name = table.fileName + "." + options.format().extension + (options.gzip() ? ".gz" : "");
+            result.put(table, export(table, options, directory.resolve(name)));
+        }
+
+        return result;
+    }
+
+    /**
+     * Exporta una tabla a un archivo.
+     * * Pasos de implementación:
+     * - Construye la consulta con los filtros opcionales de vivienda y de rango de fechas.
+     * - Abre un cursor de solo avance con el tamaño de lote configurado.
+     * - Escribe la cabecera (CSV) a partir de los metadatos y cada fila según se recorre el cursor.
+     * * @return Número de filas exportadas o -1 si hubo un error.
+     */
+    public long export(Table table, ExportOptions options, Path target) {
+
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = new StringBuilder(table.baseSql).append(" WHERE 1 = 1");
+
+        if (options.vutId() >= 0) {
+            sql.append(" AND ").append(table.vutColumn).append(" = ?");
+            params.add(options.vutId());
+        }
+        if (options.from() != null) {
+            sql.append(" AND ").append(table.dateColumn).append(" >= ?");
+            params.add(options.from().toString());
+        }
+        if (options.to() != null) {
+            sql.append(" AND ").append(table.dateColumn).append(" <= ?");
+            params.add(options.to().toString());
+        }
+
+        sql.append(" ORDER BY ").append(table.orderBy);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql.toString(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            pstmt.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                pstmt.setObject(i + 1, params.get(i));
+            }
+
+            try (ResultSet rs = pstmt.executeQuery(); Writer out = openWriter(target, options.gzip())) {
+
+                long rows = options.format() == Format.CSV ? writeCsv(rs, out) : writeJsonLines(rs, out);
+                System.out.println("[info] Exported " + rows + " rows from '" + table.fileName + "' to " + target);
+                return rows;
+            }
+
+        } catch (SQLException | IOException e) {
+            System.err.println("[error] Error exporting '" + table.fileName + "': " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Abre el archivo de destino con búfer y, si se pide, compresión gzip.
+     */
+    private Writer openWriter(Path target, boolean gzip) throws IOException {
+
+        if (target.getParent() != null) Files.createDirectories(target.getParent());
+
+        OutputStream stream = new FileOutputStream(target.toFile());
+        if (gzip) stream = new GZIPOutputStream(stream, BUFFER_SIZE);
+
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Escribe el cursor en formato CSV (RFC 4180) con cabecera.
+     */
+    private long writeCsv(ResultSet rs, Writer out) throws SQLException, IOException {
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) out.write(',');
+            writeCsvValue(out, columnName(meta, i));
+        }
+        out.write("\r\n");
+
+        long rows = 0;
+        while (rs.next()) {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) out.write(',');
+                String value = rs.getString(i);
+                if (value != null) writeCsvValue(out, value);
+            }
+            out.write("\r\n");
+            rows++;
+        }
+
+        return rows;
+    }
+
+    /**
+     * Nombre de la columna en minúsculas: H2 devuelve los nombres sin comillas en mayúsculas y el
+     * archivo debe ser igual con cualquier motor.
+     */
+    private static String columnName(ResultSetMetaData meta, int column) throws SQLException {
+        return meta.getColumnLabel(column).toLowerCase(Locale.ROOT);
+    }
+
+    private void writeCsvValue(Writer out, String value) throws IOException {
+
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char ch = value.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '"') out.write('"');
+            out.write(ch);
+        }
+        out.write('"');
+    }
+
+    /**
+     * Escribe el cursor en formato JSON Lines (un objeto por línea).
+     * * Los números se escriben como números; el resto de valores como cadenas o null.
+     */
+    private long writeJsonLines(ResultSet rs, Writer out) throws SQLException, IOException {
+
+        ResultSetMetaData meta = rs.getMetaData();
+        int columns = meta.getColumnCount();
+
+        String[] keys = new String[columns];
+        for (int i = 1; i <= columns; i++) {
+            StringBuilder key = new StringBuilder();
+            appendJsonString(key, columnName(meta, i));
+            keys[i - 1] = key.append(':').toString();
+        }
+
+        StringBuilder line = new StringBuilder(512);
+        long rows = 0;
+
+        while (rs.next()) {
+
+            line.setLength(0);
+            line.append('{');
+
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) line.append(',');
+                line.append(keys[i - 1]);
+
+                Object value = rs.getObject(i);
+                if (value == null) {
+                    line.append("null");
+                } else if (value instanceof Number) {
+                    line.append(value);
+                } else {
+                    appendJsonString(line, value.toString());
+                }
+            }
+
+            line.append("}\n");
+            out.append(line);
+            rows++;
+        }
+
+        return rows;
+    }
+
+    private void appendJsonString(StringBuilder sb, String value) {
+
+        sb.append('"');
+
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            switch (ch) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (ch < 0x20) sb.append(String.format("\\u%04x", (int) ch));
+                    else sb.append(ch);
+                }
+            }
+        }
+
+        sb.append('"');
+    }
+}
@@ -9,25 +9,35 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import sincroestancia.src.database.DatabaseArchive;
 import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.DatabaseMigrations;
+import sincroestancia.src.database.Transactions;
 import sincroestancia.src.models.VutItem;
 import sincroestancia.src.models.FullDayInfo;
+import sincroestancia.src.models.Season;
 import sincroestancia.src.models.ReservationInfo;
-import sincroestancia.src.models.DayInfo;
+import sincroestancia.src.models.DayStatus;
 import sincroestancia.src.models.DaySyncData;
 import sincroestancia.src.models.GuestData;
+import sincroestancia.src.models.GuestProfile;
+import sincroestancia.src.models.GuestSearchResult;
+import sincroestancia.src.models.MonthSnapshot;
 import sincroestancia.src.models.OperationSyncData;
+import sincroestancia.src.models.UpdateResult;
+import sincroestancia.src.models.YearlyReport;
 
 /**
  * Servicio centralizado (Repository) para la gestión de toda la persistencia de datos SQLite.
@@ -38,6 +48,7 @@ import sincroestancia.src.models.OperationSyncData;
 public class DatabaseService {
 
     Connection conn = DatabaseManager.get_connection();
+    private final ReservationIndex reservationIndex = ReservationIndex.getInstance();
 
     /**
      * Constructor predeterminado.
@@ -48,14 +59,25 @@ public class DatabaseService {
     }
 
     /**
-     * Lee y ejecuta el script SQL 'init-databases.sql' desde los recursos del JAR.
+     * Crea un servicio sobre una conexión concreta (p.ej. prestada por un ConnectionPool).
+     * * No vuelve a ejecutar el script de inicialización: se asume que el esquema ya existe.
+     * * @param conn Conexión que usarán todas las consultas de esta instancia.
+     */
+    public DatabaseService(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * Lee y ejecuta el script SQL del dialecto activo ('init-databases.sql' en SQLite) desde los recursos del JAR.
      * * Divide el archivo por sentencias (separador ';') y las ejecuta secuencialmente
      * para crear tablas si no existen.
+     * * Después aplica las migraciones versionadas pendientes (DatabaseMigrations) y crea o completa
+     * las tablas archivadas y sus vistas de unión (DatabaseArchive).
      */
     private void initDatabase() {
         try {
 
-            InputStream is = getClass().getResourceAsStream("/sincroestancia/assets/database/init-databases.sql");
+            InputStream is = getClass().getResourceAsStream(DatabaseManager.dialect().initScript());
 
             if (is == null) {
                 System.err.println("[error] No se encontró el archivo init-databases.sql");
@@ -77,6 +99,9 @@ public class DatabaseService {
 
             }
 
+            DatabaseMigrations.migrate(conn);
+            DatabaseArchive.ensure_tables(conn);
+
             System.out.println("[info] Base de datos inicializada correctamente.");
 
         } catch (Exception e) {
@@ -280,8 +305,12 @@ public class DatabaseService {
             pstmt.setString(3, url);
             pstmt.setString(4, apikey);
             pstmt.setInt(5, id);
+
+            if (pstmt.executeUpdate() == 0) return false;
+
+            PdfReportService.invalidateCover(id);
             
-            return pstmt.executeUpdate() > 0;
+            return true;
 
         } catch (SQLException e) {
             System.err.println("[error] Error updating VUT: " + e.getMessage());
@@ -292,6 +321,9 @@ public class DatabaseService {
 
     /**
      * Elimina una vivienda del sistema.
+     * * Transaccional: el borrado, su registro de cambios y la limpieza de lo que cuelga de la vivienda
+     * (agregados, feeds iCal importados y datos archivados) se confirman o deshacen juntos. Si la
+     * vivienda no existía no se toca nada. Las cachés en memoria se invalidan tras confirmar.
      * * @param id ID de la vivienda a eliminar.
      * @return true si se eliminó correctamente.
      */
@@ -299,9 +331,31 @@ public class DatabaseService {
         
         String sql = "DELETE FROM vuts WHERE id = ?";
         
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
+        try {
+
+            boolean deleted = Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmt = c.prepareStatement(sql)) {
+                    pstmt.setInt(1, id);
+                    if (pstmt.executeUpdate() == 0) return false;
+                }
+
+                ChangeLog.record(c, ChangeLog.VUTS, id, id, ChangeLog.Operation.DELETE);
+                MonthlyStats.clearVut(c, id);
+                IcalFeedSyncService.clearVut(c, id);
+                ArchiveService.clearVut(c, id);
+
+                return true;
+            });
+
+            if (deleted) {
+                reservationIndex.invalidate(id);
+                PdfReportService.invalidateCover(id);
+                IcalExportService.invalidate(id);
+            }
+
+            return deleted;
+
         } catch (SQLException e) {
             System.err.println("[error] Error deleting VUT: " + e.getMessage());
             return false;
@@ -313,13 +367,13 @@ public class DatabaseService {
      * Obtiene la temporada asignada a una fecha específica.
      * * @param vutId ID de la vivienda.
      * @param date Fecha a consultar.
-     * @return Nombre de la temporada (low, average, high) o null.
+     * @return Temporada del día, o null si no tiene registro.
      */
-    public String get_day_season(int vutId, Date date) {
+    public Season get_day_season(int vutId, Date date) {
         
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
         String formattedDate = sdf.format(date);
-        String sql = "SELECT season FROM days WHERE vut_id = ? AND day_date = ?";
+        String sql = "SELECT season FROM " + days_source(toLocalDate(date)) + " WHERE vut_id = ? AND day_date = ?";
         
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
@@ -328,7 +382,7 @@ public class DatabaseService {
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getString("season");
+                    return Season.fromCode(rs.getInt("season"));
                 }
             }
 
@@ -341,43 +395,62 @@ public class DatabaseService {
     }
 
     /**
-     * Recupera el estado y temporada de todos los días de un mes y año específicos.
+     * Recupera el estado, temporada y precio de todos los días de un mes y año específicos.
      * * Útil para pintar el calendario mensual en la interfaz.
      * * @param vutId ID de la vivienda.
      * @param year Año.
      * @param month Mes (0-11).
-     * @return Mapa donde la Clave es el día del mes (int) y el Valor es DayInfo.
+     * @return Fotografía inmutable del mes (vacía si el mes no es válido o hubo un error).
      */
-    public Map < Integer, DayInfo > get_month_data(int vutId, int year, int month) {
-        
-        Map < Integer, DayInfo > monthData = new HashMap < > ();
-        String sqlMonth = String.format("%02d", month + 1);
-        String sqlYear = String.valueOf(year);
-        
-        String sql = "SELECT day_date, season, status FROM days " +
-            "WHERE vut_id = ? AND strftime('%Y', day_date) = ? AND strftime('%m', day_date) = ?";
+    public MonthSnapshot get_month_data(int vutId, int year, int month) {
+
+        if (month < 0 || month > 11) return MonthSnapshot.empty(year, month);
+
+        MonthSnapshot[] months = read_months(vutId, year, month, 1);
+        return months != null ? months[0] : MonthSnapshot.empty(year, month);
+    }
+
+    /**
+     * Recupera los 12 meses de un año en una única consulta (vista anual de precios y ocupación).
+     * * @return Array de 12 fotografías (índice = mes 0-11); vacías si hubo un error.
+     */
+    public MonthSnapshot[] get_year_data(int vutId, int year) {
+
+        MonthSnapshot[] months = read_months(vutId, year, 0, 12);
+        if (months != null) return months;
+
+        months = new MonthSnapshot[12];
+        for (int i = 0; i < 12; i++) months[i] = MonthSnapshot.empty(year, i);
+        return months;
+    }
+
+    /**
+     * Lee 'count' meses consecutivos desde 'firstMonth' (0-11) con una consulta por rango de fechas.
+     * * El día y el mes se extraen en SQL para que MonthSnapshot no tenga que analizar la fecha de cada fila.
+     * * @return Las fotografías, o null si hubo un error.
+     */
+    private MonthSnapshot[] read_months(int vutId, int year, int firstMonth, int count) {
+
+        LocalDate firstDay = LocalDate.of(year, firstMonth + 1, 1);
+
+        String sql = "SELECT CAST(SUBSTR(day_date, 6, 2) AS INTEGER) AS day_month, " +
+            "CAST(SUBSTR(day_date, 9, 2) AS INTEGER) AS day_of_month, status, season, price_cents " +
+            "FROM " + days_source(firstDay) + " WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, sqlYear);
-            pstmt.setString(3, sqlMonth);
-            
+            pstmt.setString(2, firstDay.toString());
+            pstmt.setString(3, firstDay.plusMonths(count).toString());
+
             try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    String dayDateStr = rs.getString("day_date");
-                    String season = rs.getString("season");
-                    String status = rs.getString("status");
-                    int day = Integer.parseInt(dayDateStr.substring(8, 10));
-                    monthData.put(day, new DayInfo(season, status));
-                }
+                return MonthSnapshot.read(rs, year, firstMonth, count);
             }
 
-        } catch (SQLException | NumberFormatException e) {
+        } catch (SQLException e) {
             System.err.println("[error] Error getting month data: " + e.getMessage());
+            return null;
         }
-
-        return monthData;
     }
 
     /**
@@ -390,7 +463,7 @@ public class DatabaseService {
         
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
         String formattedDate = sdf.format(date);
-        String sql = "SELECT season, status, day_price FROM days WHERE vut_id = ? AND day_date = ?";
+        String sql = "SELECT season, status, price_cents FROM " + days_source(toLocalDate(date)) + " WHERE vut_id = ? AND day_date = ?";
         
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
@@ -399,7 +472,7 @@ public class DatabaseService {
             
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
-                    return new FullDayInfo(rs.getString("season"), rs.getString("status"), rs.getDouble("day_price"));
+                    return new FullDayInfo(Season.fromCode(rs.getInt("season")), DayStatus.fromCode(rs.getInt("status")), rs.getLong("price_cents"));
                 }
             }
 
@@ -411,13 +484,41 @@ public class DatabaseService {
 
     }
 
+    /**
+     * Recupera estado, temporada y precio de los días registrados en un rango de fechas.
+     * * @param vutId ID de la vivienda.
+     * @param from Primer día (incluido).
+     * @param toExclusive Día final (excluido).
+     * @return Mapa ordenado (Fecha ISO -> FullDayInfo); los días sin registro no aparecen.
+     */
+    public Map < String, FullDayInfo > get_days_in_range(int vutId, LocalDate from, LocalDate toExclusive) {
+
+        Map < String, FullDayInfo > days = new LinkedHashMap < > ();
+        String sql = "SELECT day_date, season, status, price_cents FROM " + days_source(from) + " " +
+            "WHERE vut_id = ? AND day_date >= ? AND day_date < ? ORDER BY day_date";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, vutId);
+            pstmt.setString(2, from.toString());
+            pstmt.setString(3, toExclusive.toString());
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    days.put(rs.getString("day_date"), new FullDayInfo(Season.fromCode(rs.getInt("season")), DayStatus.fromCode(rs.getInt("status")), rs.getLong("price_cents")));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error getting days in range: " + e.getMessage());
+        }
+
+        return days;
+    }
+
     /**
      * Crea una nueva reserva y bloquea los días correspondientes en el calendario.
-     * * Implementación Transaccional:
-     * - Inicia transacción.
-     * - Inserta el registro en la tabla 'reservations'.
-     * - Actualiza por lotes (batch) la tabla 'days' marcando los días como ocupados/pagados y reseteando 'is_synced'.
-     * - Si algo falla, hace rollback completo.
+     * * Igual que create_reservation, pero solo indica si se guardó.
      * * @param vutId ID de la vivienda.
      * @param name Nombre del huésped principal.
      * @param checkIn Fecha de entrada.
@@ -426,88 +527,140 @@ public class DatabaseService {
      * @return true si la transacción fue exitosa.
      */
     public boolean register_reservation(int vutId, String name, String dni, String email, String phone, String checkIn, String checkOut, int pax, boolean isPaid) {
+        return create_reservation(vutId, name, dni, email, phone, checkIn, checkOut, pax, isPaid).isUpdated();
+    }
 
-        String newStatus = isPaid ? "paid" : "reserved";
+    /**
+     * Crea una nueva reserva y bloquea los días correspondientes en el calendario.
+     * * Implementación Transaccional:
+     * - Inicia transacción.
+     * - Marca en 'days' los días como ocupados/pagados (reseteando 'is_synced') solo si siguen libres.
+     * Si alguno no lo está (otra reserva, una estancia de una OTA o un puesto que acaba de reservar
+     * las mismas noches) o hay reservas que se solapan (ReservationIndex), deshace todo.
+     * - Inserta el registro en la tabla 'reservations'.
+     * - Si algo falla, hace rollback completo.
+     * * La actualización condicionada hace de bloqueo: en H2 espera a que termine la transacción del
+     * otro puesto sobre esas filas y vuelve a evaluar la condición, así que dos puestos no pueden
+     * reservar las mismas noches (en SQLite las escrituras ya están serializadas).
+     * * @return UPDATED si se guardó, CONFLICT si las fechas ya no están libres o FAILED.
+     */
+    public UpdateResult create_reservation(int vutId, String name, String dni, String email, String phone, String checkIn, String checkOut, int pax, boolean isPaid) {
+
+        DayStatus newStatus = DayStatus.occupied(isPaid);
         String createdAt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
 
         String sqlInsertReservation = "INSERT INTO reservations (vut_id, guest_name, guest_dni, guest_email, guest_phone, " +
             "check_in_date, check_out_date, pax_count, is_paid, created_at, has_checkout) " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
 
-        String sqlUpdateDays = "UPDATE days SET status = ?, is_synced = 0 WHERE vut_id = ? AND day_date = ?";
+        String sqlUpdateDays = "UPDATE days SET status = ?, is_synced = 0, version = version + 1 " +
+            "WHERE vut_id = ? AND day_date >= ? AND day_date < ? AND status = " + DayStatus.FREE.code();
 
-        List < String > datesToUpdate;
+        LocalDate start, end;
 
         try {
             
             DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            LocalDate start = LocalDate.parse(checkIn, formatter);
-            LocalDate end = LocalDate.parse(checkOut, formatter);
-            
-            datesToUpdate = Stream.iterate(start, date -> date.plusDays(1))
-                .limit(ChronoUnit.DAYS.between(start, end))
-                .map(formatter::format)
-                .collect(Collectors.toList());
+            start = LocalDate.parse(checkIn, formatter);
+            end = LocalDate.parse(checkOut, formatter);
 
-            if (datesToUpdate.isEmpty()) return false;
+            if (!end.isAfter(start)) return UpdateResult.failed();
 
         } catch (Exception e) {
             System.err.println("[error] Error parsing dates: " + e.getMessage());
-            return false;
+            return UpdateResult.failed();
         }
 
         try {
 
-            conn.setAutoCommit(false);
-            
-            try (PreparedStatement pstmtReservation = conn.prepareStatement(sqlInsertReservation)) {
-                pstmtReservation.setInt(1, vutId);
-                pstmtReservation.setString(2, name);
-                pstmtReservation.setString(3, dni);
-                pstmtReservation.setString(4, email);
-                pstmtReservation.setString(5, phone);
-                pstmtReservation.setString(6, checkIn);
-                pstmtReservation.setString(7, checkOut);
-                pstmtReservation.setInt(8, pax);
-                pstmtReservation.setBoolean(9, isPaid);
-                pstmtReservation.setString(10, createdAt);
-                
-                if (pstmtReservation.executeUpdate() == 0) throw new SQLException("Reservation insert failed.");
+            int reservationId = Transactions.run(conn, c -> {
 
-            }
+                int claimed;
 
-            try (PreparedStatement pstmtUpdateDays = conn.prepareStatement(sqlUpdateDays)) {
-                
-                for (String date: datesToUpdate) {
-                    pstmtUpdateDays.setString(1, newStatus);
+                try (PreparedStatement pstmtUpdateDays = c.prepareStatement(sqlUpdateDays)) {
+                    pstmtUpdateDays.setInt(1, newStatus.code());
                     pstmtUpdateDays.setInt(2, vutId);
-                    pstmtUpdateDays.setString(3, date);
-                    pstmtUpdateDays.addBatch();
+                    pstmtUpdateDays.setString(3, checkIn);
+                    pstmtUpdateDays.setString(4, checkOut);
+                    claimed = pstmtUpdateDays.executeUpdate();
                 }
 
-                pstmtUpdateDays.executeBatch();
+                if (claimed != count_days(c, vutId, checkIn, checkOut) || !reservationIndex.findOverlapping(c, vutId, start, end).isEmpty()) {
+                    throw new DatesTakenException();
+                }
+
+                int insertedId = -1;
+
+                try (PreparedStatement pstmtReservation = c.prepareStatement(sqlInsertReservation, Statement.RETURN_GENERATED_KEYS)) {
+                    pstmtReservation.setInt(1, vutId);
+                    pstmtReservation.setString(2, name);
+                    pstmtReservation.setString(3, dni);
+                    pstmtReservation.setString(4, email);
+                    pstmtReservation.setString(5, phone);
+                    pstmtReservation.setString(6, checkIn);
+                    pstmtReservation.setString(7, checkOut);
+                    pstmtReservation.setInt(8, pax);
+                    pstmtReservation.setBoolean(9, isPaid);
+                    pstmtReservation.setString(10, createdAt);
+
+                    if (pstmtReservation.executeUpdate() == 0) throw new SQLException("Reservation insert failed.");
+
+                    try (ResultSet rs = pstmtReservation.getGeneratedKeys()) {
+                        if (rs.next()) insertedId = rs.getInt(1);
+                    }
+                }
+
+                ChangeLog.record(c, ChangeLog.RESERVATIONS, vutId, insertedId, ChangeLog.Operation.INSERT);
+                ChangeLog.recordDays(c, vutId, checkIn, checkOut);
+
+                MonthlyStats.refreshStay(c, vutId, checkIn, checkOut);
+                GuestProfiles.recordHolder(c, insertedId, dni);
+
+                return insertedId;
+            });
+
+            if (reservationId > 0) {
+                reservationIndex.put(vutId, new ReservationInfo(reservationId, name, dni, email, phone, checkIn, checkOut, pax, isPaid, false, false, 0));
+            } else {
+                reservationIndex.invalidate(vutId);
             }
-            
-            conn.commit();
-            
-            return true;
 
+            IcalExportService.invalidate(vutId);
+
+            return UpdateResult.updated(0);
+
+        } catch (DatesTakenException e) {
+            System.out.println("[info] Dates " + checkIn + " - " + checkOut + " of VUT " + vutId + " are not free.");
+            return UpdateResult.conflict(-1);
         } catch (SQLException e) {
-            
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            
             System.err.println("[error] Reservation transaction failed: " + e.getMessage());
-            return false;
+            return UpdateResult.failed();
+        }
+    }
 
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /**
+     * Fechas de una reserva nueva que ya no están libres; deshace su transacción (ver create_reservation).
+     */
+    private static final class DatesTakenException extends SQLException {
+
+        DatesTakenException() {
+            super("Dates are not free.");
+        }
+    }
+
+    /**
+     * Cuenta los días del calendario de una vivienda en el rango [from, toExclusive).
+     */
+    private static int count_days(Connection c, int vutId, String from, String toExclusive) throws SQLException {
+
+        String sql = "SELECT COUNT(*) FROM days WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
+
+        try (PreparedStatement pstmt = c.prepareStatement(sql)) {
+            pstmt.setInt(1, vutId);
+            pstmt.setString(2, from);
+            pstmt.setString(3, toExclusive);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
             }
         }
     }
@@ -515,24 +668,36 @@ public class DatabaseService {
     /**
      * Busca si existe una reserva activa que cubra la fecha indicada.
      * * Se utiliza para mostrar detalles al hacer clic en un día ocupado del calendario.
+     * * Se resuelve contra el índice en memoria (ReservationIndex) en lugar de un rango SQL no indexable.
+     * Si la fecha es pasada y no hay reserva activa, se busca entre las reservas archivadas (solo lectura).
      * * @param vutId ID de la vivienda.
      * @param date Fecha a comprobar.
      * @return Datos de la reserva (ReservationInfo) o null.
      */
     public ReservationInfo get_reservation_details_for_day(int vutId, Date date) {
-        
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        String formattedDate = sdf.format(date);
 
-        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout " +
-            "FROM reservations " +
-            "WHERE vut_id = ? AND ? BETWEEN check_in_date AND date(check_out_date, '-1 day')";
+        LocalDate day = toLocalDate(date);
+        ReservationInfo reservation = reservationIndex.findCovering(conn, vutId, day);
+
+        if (reservation == null && day.isBefore(LocalDate.now())) reservation = find_archived_reservation(vutId, day);
+
+        return reservation;
+    }
+
+    /**
+     * Busca en el archivo la reserva que cubre una fecha pasada.
+     */
+    private ReservationInfo find_archived_reservation(int vutId, LocalDate day) {
+
+        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout, version " +
+            "FROM " + DatabaseArchive.archived("reservations") + " WHERE vut_id = ? AND check_in_date <= ? AND check_out_date > ? ORDER BY check_in_date DESC LIMIT 1";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
+
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, formattedDate);
-            
+            pstmt.setString(2, day.toString());
+            pstmt.setString(3, day.toString());
+
             try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs.next()) {
                     return new ReservationInfo(
@@ -546,126 +711,162 @@ public class DatabaseService {
                         rs.getInt("pax_count"),
                         rs.getBoolean("is_paid"),
                         rs.getBoolean("has_checkin"),
-                        rs.getBoolean("has_checkout")
+                        rs.getBoolean("has_checkout"),
+                        rs.getInt("version")
                     );
                 }
             }
 
         } catch (SQLException e) {
-            System.err.println("[error] Error getting reservation details: " + e.getMessage());
+            System.err.println("[error] Error reading archived reservation: " + e.getMessage());
         }
 
         return null;
     }
 
+    /**
+     * Obtiene las reservas de una vivienda que se solapan con el rango [from, toExclusive).
+     * * @return Lista ordenada por fecha de entrada (vacía si no hay solapes).
+     */
+    public List < ReservationInfo > get_reservations_overlapping(int vutId, LocalDate from, LocalDate toExclusive) {
+        return reservationIndex.findOverlapping(conn, vutId, from, toExclusive);
+    }
+
     /**
      * Actualiza el estado de pago de una reserva y sus días asociados.
      * * Transaccional: Actualiza 'reservations' y actualiza el estado (reserved -> paid) en 'days'.
+     * * Control optimista: la reserva solo se modifica si su versión sigue siendo 'expectedVersion'
+     * (la que se leyó al mostrarla). Si otro puesto la cambió entretanto no se toca nada.
      * * @param reservationId ID de la reserva.
+     * @param expectedVersion Versión de la reserva leída por quien la edita (ReservationInfo.version()).
      * @param isPaid Nuevo estado de pago.
-     * @return true si se completó correctamente.
+     * @return UPDATED con la nueva versión, CONFLICT con la versión actual, NOT_FOUND o FAILED.
      */
-    public boolean update_reservation_payment_status(int reservationId, boolean isPaid, int vutId, String checkIn, String checkOut) {
+    public UpdateResult update_reservation_payment_status(int reservationId, int expectedVersion, boolean isPaid, int vutId, String checkIn, String checkOut) {
         
-        String newDayStatus = isPaid ? "paid" : "reserved";
-        String sqlUpdateReservation = "UPDATE reservations SET is_paid = ? WHERE id = ?";
-        String sqlUpdateDays = "UPDATE days SET status = ? WHERE vut_id = ? AND day_date BETWEEN ? AND date(?, '-1 day')";
+        DayStatus newDayStatus = DayStatus.occupied(isPaid);
+        String sqlUpdateReservation = "UPDATE reservations SET is_paid = ?, version = version + 1 WHERE id = ? AND version = ?";
+        String sqlUpdateDays = "UPDATE days SET status = ?, version = version + 1 WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
 
         try {
-            
-            conn.setAutoCommit(false);
-            
-            try (PreparedStatement pstmtRes = conn.prepareStatement(sqlUpdateReservation)) {
-                pstmtRes.setBoolean(1, isPaid);
-                pstmtRes.setInt(2, reservationId);
-                pstmtRes.executeUpdate();
-            }
-            
-            try (PreparedStatement pstmtDays = conn.prepareStatement(sqlUpdateDays)) {
-                pstmtDays.setString(1, newDayStatus);
-                pstmtDays.setInt(2, vutId);
-                pstmtDays.setString(3, checkIn);
-                pstmtDays.setString(4, checkOut);
-                pstmtDays.executeUpdate();
-            }
-            
-            conn.commit();
-            return true;
+
+            boolean updated = Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmtRes = c.prepareStatement(sqlUpdateReservation)) {
+                    pstmtRes.setBoolean(1, isPaid);
+                    pstmtRes.setInt(2, reservationId);
+                    pstmtRes.setInt(3, expectedVersion);
+                    if (pstmtRes.executeUpdate() == 0) return false;
+                }
+
+                try (PreparedStatement pstmtDays = c.prepareStatement(sqlUpdateDays)) {
+                    pstmtDays.setInt(1, newDayStatus.code());
+                    pstmtDays.setInt(2, vutId);
+                    pstmtDays.setString(3, checkIn);
+                    pstmtDays.setString(4, checkOut);
+                    pstmtDays.executeUpdate();
+                }
+
+                ChangeLog.record(c, ChangeLog.RESERVATIONS, vutId, reservationId, ChangeLog.Operation.UPDATE);
+                ChangeLog.recordDays(c, vutId, checkIn, checkOut);
+
+                MonthlyStats.refreshStay(c, vutId, checkIn, checkOut);
+
+                return true;
+            });
+
+            if (!updated) return reservation_conflict(reservationId, vutId);
+
+            reservationIndex.update(reservationId, r -> new ReservationInfo(
+                r.id(), r.guestName(), r.guestDni(), r.guestEmail(), r.guestPhone(),
+                r.checkIn(), r.checkOut(), r.pax(), isPaid, r.hasCheckin(), r.hasCheckout(), expectedVersion + 1
+            ));
+
+            return UpdateResult.updated(expectedVersion + 1);
 
         } catch (SQLException e) {
-            
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            
             System.err.println("[error] Payment status update failed: " + e.getMessage());
-            
-            return false;
-
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+            return UpdateResult.failed();
         }
     }
 
     /**
      * Modifica los datos principales de una reserva existente.
      * * Actualiza tanto la información del huésped como el estado de los días afectados.
-     * * @return true si la actualización fue exitosa.
+     * * Control optimista: igual que en update_reservation_payment_status, los cambios solo se
+     * aplican si la reserva sigue en 'expectedVersion'; si no, se devuelve CONFLICT sin sobrescribir
+     * lo que guardó el otro puesto.
+     * * @return UPDATED con la nueva versión, CONFLICT con la versión actual, NOT_FOUND o FAILED.
      */
-    public boolean update_reservation_details(int reservationId, int vutId, String name, String dni, String email, String phone, int pax, boolean isPaid, String checkIn, String checkOut) {
+    public UpdateResult update_reservation_details(int reservationId, int expectedVersion, int vutId, String name, String dni, String email, String phone, int pax, boolean isPaid, String checkIn, String checkOut) {
 
-        String newDayStatus = isPaid ? "paid" : "reserved";
-        String sqlUpdateReservation = "UPDATE reservations SET guest_name = ?, guest_dni = ?, guest_email = ?, guest_phone = ?, pax_count = ?, is_paid = ? WHERE id = ?";
-        String sqlUpdateDays = "UPDATE days SET status = ? WHERE vut_id = ? AND day_date BETWEEN ? AND date(?, '-1 day')";
+        DayStatus newDayStatus = DayStatus.occupied(isPaid);
+        String sqlUpdateReservation = "UPDATE reservations SET guest_name = ?, guest_dni = ?, guest_email = ?, guest_phone = ?, pax_count = ?, is_paid = ?, version = version + 1 WHERE id = ? AND version = ?";
+        String sqlUpdateDays = "UPDATE days SET status = ?, version = version + 1 WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
 
         try {
 
-            conn.setAutoCommit(false);
-
-            try (PreparedStatement pstmtRes = conn.prepareStatement(sqlUpdateReservation)) {
-                pstmtRes.setString(1, name);
-                pstmtRes.setString(2, dni);
-                pstmtRes.setString(3, email);
-                pstmtRes.setString(4, phone);
-                pstmtRes.setInt(5, pax);
-                pstmtRes.setBoolean(6, isPaid);
-                pstmtRes.setInt(7, reservationId);
-                pstmtRes.executeUpdate();
-            }
+            boolean updated = Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmtRes = c.prepareStatement(sqlUpdateReservation)) {
+                    pstmtRes.setString(1, name);
+                    pstmtRes.setString(2, dni);
+                    pstmtRes.setString(3, email);
+                    pstmtRes.setString(4, phone);
+                    pstmtRes.setInt(5, pax);
+                    pstmtRes.setBoolean(6, isPaid);
+                    pstmtRes.setInt(7, reservationId);
+                    pstmtRes.setInt(8, expectedVersion);
+                    if (pstmtRes.executeUpdate() == 0) return false;
+                }
 
-            try (PreparedStatement pstmtDays = conn.prepareStatement(sqlUpdateDays)) {
-                pstmtDays.setString(1, newDayStatus);
-                pstmtDays.setInt(2, vutId);
-                pstmtDays.setString(3, checkIn);
-                pstmtDays.setString(4, checkOut);
-                pstmtDays.executeUpdate();
-            }
+                try (PreparedStatement pstmtDays = c.prepareStatement(sqlUpdateDays)) {
+                    pstmtDays.setInt(1, newDayStatus.code());
+                    pstmtDays.setInt(2, vutId);
+                    pstmtDays.setString(3, checkIn);
+                    pstmtDays.setString(4, checkOut);
+                    pstmtDays.executeUpdate();
+                }
 
-            conn.commit();
+                ChangeLog.record(c, ChangeLog.RESERVATIONS, vutId, reservationId, ChangeLog.Operation.UPDATE);
+                ChangeLog.recordDays(c, vutId, checkIn, checkOut);
 
-            return true;
+                MonthlyStats.refreshStay(c, vutId, checkIn, checkOut);
+                GuestProfiles.recordHolder(c, reservationId, dni);
 
-        } catch (SQLException e) {
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
+                return true;
+            });
+
+            if (!updated) return reservation_conflict(reservationId, vutId);
 
+            reservationIndex.update(reservationId, r -> new ReservationInfo(
+                r.id(), name, dni, email, phone,
+                r.checkIn(), r.checkOut(), pax, isPaid, r.hasCheckin(), r.hasCheckout(), expectedVersion + 1
+            ));
+
+            return UpdateResult.updated(expectedVersion + 1);
+
+        } catch (SQLException e) {
             System.err.println("[error] Update reservation failed: " + e.getMessage());
-            return false;
+            return UpdateResult.failed();
+        }
+    }
 
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
+    /**
+     * Resuelve una actualización condicional que no afectó a ninguna fila.
+     * * Lee la versión actual de la reserva (CONFLICT) o detecta que se borró (NOT_FOUND), y descarta
+     * el índice en memoria de la vivienda, que está desfasado respecto a la base de datos.
+     */
+    private UpdateResult reservation_conflict(int reservationId, int vutId) throws SQLException {
+
+        reservationIndex.invalidate(vutId);
+
+        try (PreparedStatement pstmt = conn.prepareStatement("SELECT version FROM reservations WHERE id = ?")) {
+            pstmt.setInt(1, reservationId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) return UpdateResult.notFound();
+                System.out.println("[info] Reservation " + reservationId + " was modified concurrently (version " + rs.getInt(1) + ").");
+                return UpdateResult.conflict(rs.getInt(1));
             }
         }
     }
@@ -679,89 +880,50 @@ public class DatabaseService {
      */
     public boolean delete_reservation(int reservationId, int vutId, String checkIn, String checkOut) {
         String sqlDeleteRes = "DELETE FROM reservations WHERE id = ?";
-        String sqlFreeDays = "UPDATE days SET status = 'free' WHERE vut_id = ? AND day_date BETWEEN ? AND date(?, '-1 day')";
+        String sqlFreeDays = "UPDATE days SET status = " + DayStatus.FREE.code() + ", version = version + 1 WHERE vut_id = ? AND day_date >= ? AND day_date < ?";
 
         try {
-            
-            conn.setAutoCommit(false);
-            
-            try (PreparedStatement pstmtDays = conn.prepareStatement(sqlFreeDays)) {
-                pstmtDays.setInt(1, vutId);
-                pstmtDays.setString(2, checkIn);
-                pstmtDays.setString(3, checkOut);
-                pstmtDays.executeUpdate();
-            }
-            
-            try (PreparedStatement pstmtRes = conn.prepareStatement(sqlDeleteRes)) {
-                pstmtRes.setInt(1, reservationId);
-                if (pstmtRes.executeUpdate() == 0) throw new SQLException("Reservation not found.");
-            }
-            
-            conn.commit();
+
+            Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmtDays = c.prepareStatement(sqlFreeDays)) {
+                    pstmtDays.setInt(1, vutId);
+                    pstmtDays.setString(2, checkIn);
+                    pstmtDays.setString(3, checkOut);
+                    pstmtDays.executeUpdate();
+                }
+
+                try (PreparedStatement pstmtRes = c.prepareStatement(sqlDeleteRes)) {
+                    pstmtRes.setInt(1, reservationId);
+                    if (pstmtRes.executeUpdate() == 0) throw new SQLException("Reservation not found.");
+                }
+
+                ChangeLog.record(c, ChangeLog.RESERVATIONS, vutId, reservationId, ChangeLog.Operation.DELETE);
+                ChangeLog.recordDays(c, vutId, checkIn, checkOut);
+
+                MonthlyStats.refreshStay(c, vutId, checkIn, checkOut);
+                MonthlyStats.refreshNationality(c, vutId, java.time.YearMonth.from(LocalDate.parse(checkIn)));
+
+                return null;
+            });
+
+            reservationIndex.remove(reservationId);
+            IcalExportService.invalidate(vutId);
             return true;
 
         } catch (SQLException e) {
-            
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            
             System.err.println("[error] Delete reservation failed: " + e.getMessage());
             return false;
-
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
     /**
      * Busca una reserva cuyo día de salida coincida con la fecha dada.
      * * Útil para identificar operaciones de Check-out pendientes.
+     * * Se resuelve contra el índice en memoria (ReservationIndex).
      */
     public ReservationInfo get_reservation_by_checkout_date(int vutId, Date date) {
-        
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-        String formattedDate = sdf.format(date);
-
-        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout " +
-            "FROM reservations " +
-            "WHERE vut_id = ? AND check_out_date = ?";
-
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, vutId);
-            pstmt.setString(2, formattedDate);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    return new ReservationInfo(
-                        rs.getInt("id"),
-                        rs.getString("guest_name"),
-                        rs.getString("guest_dni"),
-                        rs.getString("guest_email"),
-                        rs.getString("guest_phone"),
-                        rs.getString("check_in_date"),
-                        rs.getString("check_out_date"),
-                        rs.getInt("pax_count"),
-                        rs.getBoolean("is_paid"),
-                        rs.getBoolean("has_checkin"),
-                        rs.getBoolean("has_checkout")
-                    );
-                }
-            }
-
-        } catch (SQLException e) {
-            System.err.println("[error] Error getting checkout reservation: " + e.getMessage());
-        }
-        
-        return null;
-
+        return reservationIndex.findByCheckout(conn, vutId, toLocalDate(date));
     }
 
     /**
@@ -769,7 +931,7 @@ public class DatabaseService {
      */
     public ReservationInfo get_reservation_by_id(int reservationId) {
         
-        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout " +
+        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout, version " +
             "FROM reservations WHERE id = ?";
         
             try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
@@ -789,7 +951,8 @@ public class DatabaseService {
                     rs.getInt("pax_count"),
                     rs.getBoolean("is_paid"),
                     rs.getBoolean("has_checkin"),
-                    rs.getBoolean("has_checkout")
+                    rs.getBoolean("has_checkout"),
+                    rs.getInt("version")
                 );
             }
 
@@ -806,30 +969,51 @@ public class DatabaseService {
      * @return ID del registro en la tabla 'checkins'.
      */
     public int get_or_create_checkin_id(int reservationId) {
-        
-        String sqlSelect = "SELECT id FROM checkins WHERE reservation_id = ?";
-        String sqlInsert = "INSERT INTO checkins (reservation_id, signed_at) VALUES (?, datetime('now'))";
 
         try {
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlSelect)) {
-                pstmt.setInt(1, reservationId);
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) return rs.getInt("id");
-            }
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlInsert, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setInt(1, reservationId);
-                pstmt.executeUpdate();
-                ResultSet rs = pstmt.getGeneratedKeys();
-                if (rs.next()) return rs.getInt(1);
-            }
+            return Transactions.run(conn, c -> CheckinUnitOfWork.checkinId(c, reservationId, true));
+        } catch (SQLException e) {
+            System.err.println("[error] Error getting/creating checkin ID: " + e.getMessage());
+        }
         
+        return -1;
+    }
+
+    /**
+     * Abre el parte de entrada de una reserva para editarlo en memoria (ver CheckinUnitOfWork).
+     * * No escribe nada: el registro de 'checkins' se crea al guardar con commit_checkin.
+     * @return La unidad de trabajo con los huéspedes ya guardados (vacía si falla la lectura).
+     */
+    public CheckinUnitOfWork begin_checkin(int reservationId) {
+
+        try {
+            return CheckinUnitOfWork.load(conn, reservationId);
+        } catch (SQLException e) {
+            System.err.println("[error] Error loading checkin: " + e.getMessage());
+            return new CheckinUnitOfWork(reservationId);
+        }
+    }
+
+    /**
+     * Guarda en una sola transacción el parte de entrada completo: check-in, huéspedes (por lotes)
+     * y, si los tiene, los datos de pago que lo cierran.
+     * * Si algo falla no queda nada escrito y la unidad de trabajo sigue intacta para reintentar.
+     * @return ID del registro en 'checkins', o -1 si no se pudo guardar.
+     */
+    public int commit_checkin(CheckinUnitOfWork work) {
+
+        try {
+
+            int checkinId = Transactions.run(conn, work::commit);
+
+            if (work.payment() != null) mark_checked_in(work.reservationId());
+
+            return checkinId;
+
         } catch (SQLException e) {
-            System.err.println("[error] Error getting/creating checkin ID: " + e.getMessage());
+            System.err.println("[error] Error committing checkin: " + e.getMessage());
+            return -1;
         }
-        
-        return -1;
     }
 
     /**
@@ -840,103 +1024,82 @@ public class DatabaseService {
         
         String cardExpiry, String paymentDate, boolean rulesAccepted, boolean gdprAccepted) {
 
-        String sqlUpdateCheckin = "UPDATE checkins SET payment_method = ?, payment_identifier = ?, payment_holder = ?, card_expiry_date = ?, payment_date = ?, rules_accepted = ?, gdpr_accepted = ? WHERE id = ?";
-        String sqlUpdateReservation = "UPDATE reservations SET has_checkin = 1 WHERE id = (SELECT reservation_id FROM checkins WHERE id = ?)";
+        CheckinUnitOfWork.Payment payment = new CheckinUnitOfWork.Payment(paymentMethod, paymentIdentifier, paymentHolderName,
+            cardExpiry, paymentDate, rulesAccepted, gdprAccepted);
 
         try {
-            
-            conn.setAutoCommit(false);
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlUpdateCheckin)) {
-                pstmt.setString(1, paymentMethod);
-                pstmt.setString(2, paymentIdentifier);
-                pstmt.setString(3, paymentHolderName);
-                pstmt.setString(4, cardExpiry);
-                pstmt.setString(5, paymentDate);
-                pstmt.setBoolean(6, rulesAccepted);
-                pstmt.setBoolean(7, gdprAccepted);
-                pstmt.setInt(8, checkinId);
-                pstmt.executeUpdate();
-            }
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlUpdateReservation)) {
-                pstmt.setInt(1, checkinId);
-                pstmt.executeUpdate();
-            }
-            
-            conn.commit();
-            
+
+            int reservationId = Transactions.run(conn, c -> CheckinUnitOfWork.finalize(c, checkinId, payment));
+            mark_checked_in(reservationId);
             return true;
 
         } catch (SQLException e) {
-            
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-            
             System.err.println("[error] Error finalizing checkin: " + e.getMessage());
             return false;
-
-        } finally {
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
         }
     }
 
+    /**
+     * Refleja en el índice en memoria el cierre del check-in de una reserva.
+     */
+    private void mark_checked_in(int reservationId) {
+        reservationIndex.update(reservationId, r -> new ReservationInfo(
+            r.id(), r.guestName(), r.guestDni(), r.guestEmail(), r.guestPhone(),
+            r.checkIn(), r.checkOut(), r.pax(), r.isPaid(), true, r.hasCheckout(), r.version() + 1
+        ));
+    }
+
     /**
      * Registra el Check-out (salida) de los huéspedes.
      * * Guarda hora real de salida, estado de llaves y reporte de daños.
+     * * Solo una vez por reserva: si ya tiene la salida registrada no escribe nada y devuelve false.
      */
     public boolean register_checkout(int reservationId, String exitTime, boolean keysReturned, boolean damageDetected, String damageDesc) {
 
-        String sqlInsert = "INSERT INTO checkouts (reservation_id, actual_exit_time, keys_returned, damage_detected, damage_description, created_at) VALUES (?, ?, ?, ?, ?, datetime('now'))";
-        String sqlUpdate = "UPDATE reservations SET has_checkout = 1 WHERE id = ?";
+        String sqlInsert = "INSERT INTO checkouts (reservation_id, actual_exit_time, keys_returned, damage_detected, damage_description, created_at) VALUES (?, ?, ?, ?, ?, ?)";
+        String sqlUpdate = "UPDATE reservations SET has_checkout = 1, version = version + 1 WHERE id = ? AND has_checkout = 0";
 
         try {
-            conn.setAutoCommit(false);
-
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlInsert)) {
-                pstmt.setInt(1, reservationId);
-                pstmt.setString(2, exitTime);
-                pstmt.setBoolean(3, keysReturned);
-                pstmt.setBoolean(4, damageDetected);
-                pstmt.setString(5, damageDesc);
-                pstmt.executeUpdate();
-            }
 
-            try (PreparedStatement pstmt = conn.prepareStatement(sqlUpdate)) {
-                pstmt.setInt(1, reservationId);
-                pstmt.executeUpdate();
+            boolean registered = Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmt = c.prepareStatement(sqlUpdate)) {
+                    pstmt.setInt(1, reservationId);
+                    if (pstmt.executeUpdate() == 0) return false;
+                }
+
+                try (PreparedStatement pstmt = c.prepareStatement(sqlInsert)) {
+                    pstmt.setInt(1, reservationId);
+                    pstmt.setString(2, exitTime);
+                    pstmt.setBoolean(3, keysReturned);
+                    pstmt.setBoolean(4, damageDetected);
+                    pstmt.setString(5, damageDesc);
+                    pstmt.setString(6, utcTimestamp());
+                    pstmt.executeUpdate();
+                }
+
+                ChangeLog.recordReservation(c, reservationId, ChangeLog.Operation.UPDATE);
+
+                return true;
+            });
+
+            if (!registered) {
+                System.out.println("[info] Reservation " + reservationId + " is already checked out (or does not exist).");
+                return false;
             }
 
-            conn.commit();
             System.out.println("[info] Checkout registrado para reserva ID: " + reservationId);
 
+            reservationIndex.update(reservationId, r -> new ReservationInfo(
+                r.id(), r.guestName(), r.guestDni(), r.guestEmail(), r.guestPhone(),
+                r.checkIn(), r.checkOut(), r.pax(), r.isPaid(), r.hasCheckin(), true, r.version() + 1
+            ));
+
             return true;
 
         } catch (SQLException e) {
-
-            try {
-                conn.rollback();
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
             System.err.println("[error] Error registrando checkout: " + e.getMessage());
             return false;
-
-        } finally {
-
-            try {
-                conn.setAutoCommit(true);
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-            }
-
         }
     }
 
@@ -955,29 +1118,43 @@ public class DatabaseService {
             "address_country, phone, email, is_minor, guardian_id) " +
             "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, checkinId);
-            pstmt.setString(2, fullname);
-            pstmt.setString(3, surname1);
-            pstmt.setString(4, surname2);
-            pstmt.setString(5, sex);
-            pstmt.setString(6, birthDate);
-            pstmt.setString(7, nationality);
-            pstmt.setString(8, docType);
-            pstmt.setString(9, docNumber);
-            pstmt.setString(10, supportNumber);
-            pstmt.setString(11, address);
-            pstmt.setString(12, city);
-            pstmt.setString(13, country);
-            pstmt.setString(14, phone);
-            pstmt.setString(15, email);
-            pstmt.setBoolean(16, isMinor);
-            
-            if (guardianId != null && guardianId > 0) pstmt.setInt(17, guardianId);
-            else pstmt.setNull(17, java.sql.Types.INTEGER);
+        try {
 
-            return pstmt.executeUpdate() > 0;
+            return Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmt = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+                    pstmt.setInt(1, checkinId);
+                    pstmt.setString(2, fullname);
+                    pstmt.setString(3, surname1);
+                    pstmt.setString(4, surname2);
+                    pstmt.setString(5, sex);
+                    pstmt.setString(6, birthDate);
+                    pstmt.setString(7, nationality);
+                    pstmt.setString(8, docType);
+                    pstmt.setString(9, docNumber);
+                    pstmt.setString(10, supportNumber);
+                    pstmt.setString(11, address);
+                    pstmt.setString(12, city);
+                    pstmt.setString(13, country);
+                    pstmt.setString(14, phone);
+                    pstmt.setString(15, email);
+                    pstmt.setBoolean(16, isMinor);
+
+                    if (guardianId != null && guardianId > 0) pstmt.setInt(17, guardianId);
+                    else pstmt.setNull(17, java.sql.Types.INTEGER);
+
+                    boolean inserted = pstmt.executeUpdate() > 0;
+                    if (inserted) {
+                        MonthlyStats.refreshNationalityForCheckin(c, checkinId);
+                        try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                            if (rs.next()) GuestProfiles.recordGuest(c, rs.getInt(1), docNumber);
+                        }
+                    }
+
+                    return inserted;
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("[error] Error adding guest: " + e.getMessage());
@@ -1097,29 +1274,43 @@ public class DatabaseService {
         String country, String phone, String email, boolean isMinor, Integer guardianId) {
         String sql = "UPDATE guests SET fullname=?, surname1=?, surname2=?, sex=?, birth_date=?, nationality=?, id_document_type=?, id_document_number=?, id_support_number=?, address_full=?, address_municipality=?, address_country=?, phone=?, email=?, is_minor=?, guardian_id=? WHERE id=?";
         
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setString(1, fullname);
-            pstmt.setString(2, surname1);
-            pstmt.setString(3, surname2);
-            pstmt.setString(4, sex);
-            pstmt.setString(5, birthDate);
-            pstmt.setString(6, nationality);
-            pstmt.setString(7, docType);
-            pstmt.setString(8, docNumber);
-            pstmt.setString(9, supportNumber);
-            pstmt.setString(10, address);
-            pstmt.setString(11, city);
-            pstmt.setString(12, country);
-            pstmt.setString(13, phone);
-            pstmt.setString(14, email);
-            pstmt.setBoolean(15, isMinor);
-            
-            if (guardianId != null && guardianId > 0) pstmt.setInt(16, guardianId);
-            else pstmt.setNull(16, java.sql.Types.INTEGER);
-            
-            pstmt.setInt(17, guestId);
-            return pstmt.executeUpdate() > 0;
+        try {
+
+            return Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmt = c.prepareStatement(sql)) {
+
+                    pstmt.setString(1, fullname);
+                    pstmt.setString(2, surname1);
+                    pstmt.setString(3, surname2);
+                    pstmt.setString(4, sex);
+                    pstmt.setString(5, birthDate);
+                    pstmt.setString(6, nationality);
+                    pstmt.setString(7, docType);
+                    pstmt.setString(8, docNumber);
+                    pstmt.setString(9, supportNumber);
+                    pstmt.setString(10, address);
+                    pstmt.setString(11, city);
+                    pstmt.setString(12, country);
+                    pstmt.setString(13, phone);
+                    pstmt.setString(14, email);
+                    pstmt.setBoolean(15, isMinor);
+
+                    if (guardianId != null && guardianId > 0) pstmt.setInt(16, guardianId);
+                    else pstmt.setNull(16, java.sql.Types.INTEGER);
+
+                    pstmt.setInt(17, guestId);
+
+                    boolean updated = pstmt.executeUpdate() > 0;
+                    if (updated) {
+                        int checkinId = guest_checkin_id(c, guestId);
+                        if (checkinId > 0) MonthlyStats.refreshNationalityForCheckin(c, checkinId);
+                        GuestProfiles.recordGuest(c, guestId, docNumber);
+                    }
+
+                    return updated;
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("[error] Error updating guest: " + e.getMessage());
@@ -1127,16 +1318,44 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * Devuelve el check-in al que pertenece un huésped, o -1 si no existe.
+     */
+    private static int guest_checkin_id(Connection c, int guestId) throws SQLException {
+
+        try (PreparedStatement pstmt = c.prepareStatement("SELECT checkin_id FROM guests WHERE id = ?")) {
+            pstmt.setInt(1, guestId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) return rs.getInt(1);
+            }
+        }
+
+        return -1;
+    }
+
     /**
      * Elimina un huésped de la base de datos.
      */
     public boolean delete_guest(int guestId) {
         
         String sql = "DELETE FROM guests WHERE id = ?";
-        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-            pstmt.setInt(1, guestId);
-            return pstmt.executeUpdate() > 0;
+
+        try {
+
+            return Transactions.run(conn, c -> {
+
+                int checkinId = guest_checkin_id(c, guestId);
+
+                try (PreparedStatement pstmt = c.prepareStatement(sql)) {
+
+                    pstmt.setInt(1, guestId);
+
+                    boolean deleted = pstmt.executeUpdate() > 0;
+                    if (deleted && checkinId > 0) MonthlyStats.refreshNationalityForCheckin(c, checkinId);
+
+                    return deleted;
+                }
+            });
 
         } catch (SQLException e) {
             System.err.println("[error] Error deleting guest: " + e.getMessage());
@@ -1144,98 +1363,147 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * Ficha del huésped habitual con ese documento (datos de su última estancia), para autocompletar
+     * los formularios. Ver GuestProfiles.
+     * * @return La ficha, o null si no existe o falla la consulta.
+     */
+    public GuestProfile find_guest_profile(String document) {
+        try {
+            return GuestProfiles.find(conn, document);
+        } catch (SQLException e) {
+            System.err.println("[error] Error loading guest profile: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Busca huéspedes (titulares de reservas y huéspedes registrados, activos y archivados) por nombre,
+     * documento, email o teléfono. Cada palabra se busca como prefijo; ver GuestSearch.
+     * * @param text Texto a buscar (se ignoran los textos de menos de GuestSearch.MIN_QUERY_LENGTH letras).
+     * @param limit Número máximo de reservas a devolver.
+     * @return Una coincidencia por reserva, de la más relevante a la menos.
+     */
+    public List < GuestSearchResult > search_guests(String text, int limit) {
+        try {
+            return GuestSearch.search(conn, text, limit);
+        } catch (SQLException e) {
+            System.err.println("[error] Error searching guests: " + e.getMessage());
+            return new ArrayList < > ();
+        }
+    }
+
     /**
      * Establece precios y temporadas para un rango de fechas (Bulk Update).
-     * * Utiliza 'UPSERT' (INSERT OR UPDATE) para crear los días si no existen o actualizarlos si ya están.
+     * * Utiliza 'UPSERT' (INSERT OR UPDATE, según el dialecto activo) para crear los días si no existen o actualizarlos si ya están.
      * * Fuerza 'is_synced = 0' para que el sincronizador de Google actualice estos cambios.
      * * No sobrescribe días que ya estén reservados o pagados.
+     * * Los días archivados (ArchiveService) son de solo lectura: el rango se recorta a partir del primer
+     * día activo para no crear una segunda copia de un día que ya está en el archivo.
+     * * @param priceCents Precio por noche en céntimos (ver Money).
      */
-    public boolean update_price_range(int vutId, LocalDate startDate, LocalDate endDate, double price, String season) {
+    public boolean update_price_range(int vutId, LocalDate startDate, LocalDate endDate, long priceCents, Season season) {
+
+        if (startDate.isBefore(LocalDate.now())) {
+            try {
+                LocalDate archivedUntil = ArchiveService.archivedUntil(conn);
+                if (archivedUntil != null && startDate.isBefore(archivedUntil)) startDate = archivedUntil;
+            } catch (SQLException e) {
+                System.err.println("[error] Error reading archive boundary: " + e.getMessage());
+                return false;
+            }
+            if (startDate.isAfter(endDate)) {
+                System.err.println("[error] Price range is entirely archived (read-only).");
+                return false;
+            }
+        }
         
-        String sql = "INSERT INTO days (vut_id, day_date, day_price, status, season, is_synced) " +
-            "VALUES (?, ?, ?, 'free', ?, 0) " +
-            "ON CONFLICT(vut_id, day_date) DO UPDATE SET " +
-            "day_price = excluded.day_price, " +
-            "season = excluded.season, " +
-            "is_synced = 0 " +
-            "WHERE status != 'reserved' AND status != 'paid'";
+        String sql = DatabaseManager.dialect().upsert("days",
+            new String[] { "vut_id", "day_date", "price_cents", "status", "season", "is_synced" },
+            new String[] { "vut_id", "day_date" },
+            new String[] { "price_cents", "season", "is_synced" },
+            "VALUES (?, ?, ?, " + DayStatus.FREE.code() + ", ?, 0)",
+            "days.status = " + DayStatus.FREE.code(),
+            "version");
+
+        LocalDate firstDate = startDate;
 
         try {
-            
-            conn.setAutoCommit(false);
-            
-            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            
-                long daysBetween = ChronoUnit.DAYS.between(startDate, endDate);
-            
-                for (int i = 0; i <= daysBetween; i++) {
-            
-                    String dateStr = startDate.plusDays(i).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            
-                    pstmt.setInt(1, vutId);
-                    pstmt.setString(2, dateStr);
-                    pstmt.setDouble(3, price);
-                    pstmt.setString(4, season);
-                    pstmt.addBatch();
 
+            Transactions.run(conn, c -> {
+
+                try (PreparedStatement pstmt = c.prepareStatement(sql)) {
+
+                    long daysBetween = ChronoUnit.DAYS.between(firstDate, endDate);
+
+                    for (int i = 0; i <= daysBetween; i++) {
+
+                        String dateStr = firstDate.plusDays(i).format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+
+                        pstmt.setInt(1, vutId);
+                        pstmt.setString(2, dateStr);
+                        pstmt.setLong(3, priceCents);
+                        pstmt.setInt(4, season.code());
+                        pstmt.addBatch();
+
+                    }
+
+                    pstmt.executeBatch();
                 }
-                
-                pstmt.executeBatch();
-                conn.commit();
 
-                return true;
+                ChangeLog.recordDays(c, vutId, firstDate.toString(), endDate.plusDays(1).toString());
+                MonthlyStats.refreshRange(c, vutId, firstDate, endDate);
 
-            } catch (SQLException e) {
-                conn.rollback();
-                System.err.println("[error] Batch update failed: " + e.getMessage());
-                return false;
-            } finally {
-                conn.setAutoCommit(true);
-            }
+                return null;
+            });
+
+            return true;
 
         } catch (SQLException e) {
-            System.err.println("[error] Transaction error: " + e.getMessage());
+            System.err.println("[error] Batch update failed: " + e.getMessage());
             return false;
         }
     }
 
     /**
-     * Calcula los ingresos mensuales (Confirmados).
+     * Calcula los ingresos mensuales (Confirmados), en céntimos.
+     * * Lee el agregado materializado en 'monthly_stats'.
      */
-    public double getMonthlyRevenue(int vutId, int month, int year) {
+    public long getMonthlyRevenueCents(int vutId, int month, int year) {
         
-        String dateFilter = String.format("%d-%02d%%", year, month);
-        String sql = "SELECT SUM(day_price) FROM days WHERE vut_id = ? AND day_date LIKE ? AND status = 'paid'";
+        String sql = "SELECT revenue_cents FROM monthly_stats WHERE vut_id = ? AND year = ? AND month = ?";
         
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, dateFilter);
+            pstmt.setInt(2, year);
+            pstmt.setInt(3, month);
 
             ResultSet rs = pstmt.executeQuery();
 
-            if (rs.next()) return rs.getDouble(1);
+            if (rs.next()) return rs.getLong(1);
 
         } catch (SQLException e) {
             System.err.println("[error] Error calculating revenue: " + e.getMessage());
         }
 
-        return 0.0;
+        return 0;
 
     }
 
     /**
      * Calcula el porcentaje de ocupación mensual.
+     * * Lee el agregado materializado en 'monthly_stats'.
      */
     public double getMonthlyOccupancy(int vutId, int month, int year) {
         
-        String dateFilter = String.format("%d-%02d%%", year, month);
-        String sql = "SELECT COUNT(*) FROM days WHERE vut_id = ? AND day_date LIKE ? AND (status = 'reserved' OR status = 'paid')";
+        String sql = "SELECT occupied_nights FROM monthly_stats WHERE vut_id = ? AND year = ? AND month = ?";
         
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, dateFilter);
+            pstmt.setInt(2, year);
+            pstmt.setInt(3, month);
             
             ResultSet rs = pstmt.executeQuery();
             
@@ -1296,24 +1564,23 @@ public class DatabaseService {
 
     /**
      * Obtiene datos agregados de ingresos por mes para un año completo.
-     * * @return Mapa (Mes -> Total Ingresos).
+     * * Lee como máximo 12 filas de 'monthly_stats'.
+     * * @return Ingresos en céntimos por mes (índice 0 = enero).
      */
-    public Map < Integer, Double > getYearlyRevenueData(int vutId, int year) {
+    public long[] getYearlyRevenueCents(int vutId, int year) {
         
-        Map < Integer, Double > data = new HashMap < > ();
-        for (int i = 1; i <= 12; i++) data.put(i, 0.0);
+        long[] data = new long[12];
         
-        String sql = "SELECT strftime('%m', day_date) as month, SUM(day_price) as total FROM days " +
-            "WHERE vut_id = ? AND strftime('%Y', day_date) = ? AND status = 'paid' GROUP BY month";
+        String sql = "SELECT month, revenue_cents FROM monthly_stats WHERE vut_id = ? AND year = ?";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, String.valueOf(year));
+            pstmt.setInt(2, year);
             
             ResultSet rs = pstmt.executeQuery();
             while (rs.next()) {
-                data.put(rs.getInt("month"), rs.getDouble("total"));
+                data[rs.getInt("month") - 1] = rs.getLong("revenue_cents");
             }
 
         } catch (SQLException e) {
@@ -1326,16 +1593,14 @@ public class DatabaseService {
 
     /**
      * Genera estadísticas de nacionalidad de los huéspedes históricos.
-     * * Realiza JOINS entre guests, checkins y reservations.
+     * * Suma los agregados mensuales de 'monthly_nationality_stats' en lugar de cruzar guests, checkins y reservations.
      */
     public Map < String, Integer > getNationalityStats(int vutId) {
 
         Map < String, Integer > data = new HashMap < > ();
 
-        String sql = "SELECT g.nationality, COUNT(*) as count FROM guests g " +
-            "JOIN checkins c ON g.checkin_id = c.id " +
-            "JOIN reservations r ON c.reservation_id = r.id " +
-            "WHERE r.vut_id = ? GROUP BY g.nationality ORDER BY count DESC LIMIT 10";
+        String sql = "SELECT nationality, SUM(guests) as count FROM monthly_nationality_stats " +
+            "WHERE vut_id = ? GROUP BY nationality ORDER BY count DESC LIMIT 10";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
@@ -1356,24 +1621,24 @@ public class DatabaseService {
 
     /**
      * Obtiene datos agregados de ocupación por mes para un año completo.
+     * * Lee como máximo 12 filas de 'monthly_stats'.
      */
     public Map < Integer, Double > getYearlyOccupancyStats(int vutId, int year) {
 
         Map < Integer, Double > data = new HashMap < > ();
         for (int i = 1; i <= 12; i++) data.put(i, 0.0);
 
-        String sql = "SELECT strftime('%m', day_date) as month, COUNT(*) as occupied FROM days " +
-            "WHERE vut_id = ? AND strftime('%Y', day_date) = ? AND (status = 'reserved' OR status = 'paid') GROUP BY month";
+        String sql = "SELECT month, occupied_nights FROM monthly_stats WHERE vut_id = ? AND year = ?";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, String.valueOf(year));
+            pstmt.setInt(2, year);
 
             ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                int occupied = rs.getInt("occupied");
+                int occupied = rs.getInt("occupied_nights");
                 int totalDays = java.time.YearMonth.of(year, rs.getInt("month")).lengthOfMonth();
                 data.put(rs.getInt("month"), ((double) occupied / totalDays) * 100.0);
             }
@@ -1385,6 +1650,92 @@ public class DatabaseService {
         return data;
     }
 
+    /**
+     * Obtiene todas las métricas del panel de control para una vivienda y un año en una única consulta.
+     * * Pasos de implementación:
+     * - Une (UNION ALL) las filas mensuales de 'monthly_stats' del año con el top 10 histórico
+     * de nacionalidades de 'monthly_nationality_stats', distinguiendo cada fila por la columna 'kind'.
+     * - Vuelca el resultado en arrays primitivos; los totales y porcentajes se derivan de ellos
+     * sin volver a consultar la base de datos.
+     * * @return Informe anual (con todos los meses a cero si la consulta falla).
+     */
+    public YearlyReport getYearlyReport(int vutId, int year) {
+
+        long[] revenue = new long[12];
+        int[] occupied = new int[12];
+        int[] paid = new int[12];
+        List < String > nationalities = new ArrayList < > ();
+        List < Integer > guests = new ArrayList < > ();
+
+        String sql = "SELECT 'M' AS kind, month, NULL AS nationality, revenue_cents, occupied_nights AS amount, paid_nights " +
+            "FROM monthly_stats WHERE vut_id = ? AND year = ? " +
+            "UNION ALL " +
+            "SELECT * FROM (SELECT 'N' AS kind, 0 AS month, nationality, 0 AS revenue_cents, SUM(guests) AS total, 0 AS paid_nights FROM monthly_nationality_stats " +
+            "WHERE vut_id = ? GROUP BY nationality ORDER BY total DESC LIMIT 10)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, vutId);
+            pstmt.setInt(2, year);
+            pstmt.setInt(3, vutId);
+
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                if ("M".equals(rs.getString(1))) {
+                    int index = rs.getInt(2) - 1;
+                    revenue[index] = rs.getLong(4);
+                    occupied[index] = rs.getInt(5);
+                    paid[index] = rs.getInt(6);
+                } else {
+                    nationalities.add(rs.getString(3));
+                    guests.add(rs.getInt(5));
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error fetching yearly report: " + e.getMessage());
+            return YearlyReport.empty(vutId, year);
+        }
+
+        return new YearlyReport(
+            vutId, year, revenue, occupied, paid,
+            nationalities.toArray(new String[0]),
+            guests.stream().mapToInt(Integer::intValue).toArray()
+        );
+    }
+
+    /**
+     * Obtiene la distribución de nacionalidades de una vivienda en un periodo concreto.
+     * * Suma los agregados de 'monthly_nationality_stats' entre dos meses (1-12, ambos inclusive) del año.
+     * * @return Mapa ordenado (Nacionalidad -> Huéspedes) de mayor a menor.
+     */
+    public Map < String, Integer > getNationalityMix(int vutId, int year, int fromMonth, int toMonth) {
+
+        Map < String, Integer > data = new LinkedHashMap < > ();
+
+        String sql = "SELECT nationality, SUM(guests) as count FROM monthly_nationality_stats " +
+            "WHERE vut_id = ? AND year = ? AND month BETWEEN ? AND ? GROUP BY nationality ORDER BY count DESC";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, vutId);
+            pstmt.setInt(2, year);
+            pstmt.setInt(3, fromMonth);
+            pstmt.setInt(4, toMonth);
+            ResultSet rs = pstmt.executeQuery();
+
+            while (rs.next()) {
+                data.put(rs.getString("nationality"), rs.getInt("count"));
+            }
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error fetching nationality mix: " + e.getMessage());
+        }
+
+        return data;
+    }
+
     /**
      * Actualiza las credenciales y configuración de Google Calendar.
      */
@@ -1428,7 +1779,9 @@ public class DatabaseService {
 
     /**
      * Obtiene la lista de días futuros que han cambiado localmente y necesitan enviarse a Google.
-     * * Realiza un LEFT JOIN con reservas para enriquecer el evento con el nombre del huésped.
+     * * Los días se leen ordenados por vivienda y fecha, y el nombre del huésped se obtiene cruzando
+     * cada bloque de días con el índice de reservas en un único barrido (merge), en lugar de un
+     * JOIN por rango contra 'reservations' para cada día.
      * * @return Lista de DaySyncData listos para procesar.
      */
     public List < DaySyncData > getUnsyncedFutureDays() {
@@ -1436,32 +1789,62 @@ public class DatabaseService {
         List < DaySyncData > list = new ArrayList < > ();
 
         String sql = """
-        SELECT d.vut_id, d.day_date, d.day_price, d.status, d.season, d.google_event_id, r.guest_name
-        FROM days d
-        LEFT JOIN reservations r ON d.vut_id = r.vut_id
-        AND d.day_date >= r.check_in_date
-        AND d.day_date < r.check_out_date
-        WHERE d.is_synced = 0 AND d.day_date >= date('now')
+        SELECT vut_id, day_date, price_cents, status, season, google_event_id, version
+        FROM days
+        WHERE is_synced = 0 AND day_date >= ?
+        ORDER BY vut_id, day_date
         """;
 
-        try (Statement stmt = conn.createStatement();
+        List < DaySyncData > pending = new ArrayList < > ();
 
-            ResultSet rs = stmt.executeQuery(sql)) {
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setString(1, LocalDate.now().toString());
+            ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
-                list.add(new DaySyncData(
+                pending.add(new DaySyncData(
                     rs.getInt("vut_id"),
                     rs.getString("day_date"),
-                    rs.getDouble("day_price"),
-                    rs.getString("status"),
-                    rs.getString("season"),
+                    rs.getLong("price_cents"),
+                    DayStatus.fromCode(rs.getInt("status")),
+                    Season.fromCode(rs.getInt("season")),
                     rs.getString("google_event_id"),
-                    rs.getString("guest_name")
+                    null,
+                    rs.getInt("version")
                 ));
             }
 
         } catch (SQLException e) {
             System.err.println("[error] Error fetching unsynced days: " + e.getMessage());
+            return list;
+        }
+
+        int blockStart = 0;
+
+        while (blockStart < pending.size()) {
+
+            int vutId = pending.get(blockStart).vutId();
+            int blockEnd = blockStart;
+            while (blockEnd < pending.size() && pending.get(blockEnd).vutId() == vutId) blockEnd++;
+
+            long[] epochDays = new long[blockEnd - blockStart];
+            for (int i = blockStart; i < blockEnd; i++) {
+                epochDays[i - blockStart] = LocalDate.parse(pending.get(i).date()).toEpochDay();
+            }
+
+            ReservationInfo[] covering = reservationIndex.mergeCovering(conn, vutId, epochDays);
+
+            for (int i = blockStart; i < blockEnd; i++) {
+                DaySyncData day = pending.get(i);
+                ReservationInfo res = covering[i - blockStart];
+                list.add(new DaySyncData(
+                    day.vutId(), day.date(), day.priceCents(), day.status(), day.season(), day.googleEventId(),
+                    res != null ? res.guestName() : null, day.version()
+                ));
+            }
+
+            blockStart = blockEnd;
         }
 
         return list;
@@ -1469,25 +1852,51 @@ public class DatabaseService {
 
     /**
      * Confirma que un día ha sido sincronizado guardando el ID del evento remoto.
+     * * Solo se marca si el día sigue en la versión que se leyó en getUnsyncedFutureDays: si alguien
+     * lo modificó mientras se enviaba a Google, queda pendiente y se reenvía en la siguiente pasada
+     * (en lugar de darlo por sincronizado con datos antiguos). No incrementa la versión, ya que
+     * 'is_synced' y 'google_event_id' solo los escribe el sincronizador.
+     * * @return false si el día cambió entretanto o hubo un error.
      */
-    public void markDayAsSynced(String date, String googleEventId) {
+    public boolean markDayAsSynced(DaySyncData day, String googleEventId) {
 
-        String sql = "UPDATE days SET is_synced = 1, google_event_id = ? WHERE day_date = ?";
+        String sql = "UPDATE days SET is_synced = 1, google_event_id = ? WHERE vut_id = ? AND day_date = ? AND version = ?";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setString(1, googleEventId);
-            pstmt.setString(2, date);
-            pstmt.executeUpdate();
+            pstmt.setInt(2, day.vutId());
+            pstmt.setString(3, day.date());
+            pstmt.setInt(4, day.version());
+            return pstmt.executeUpdate() > 0;
 
         } catch (SQLException e) {
             System.err.println("[error] Error marking day as synced: " + e.getMessage());
+            return false;
         }
     }
 
     /**
      * Obtiene las operaciones de Check-in/Out pendientes de sincronizar.
+     * * Carga completa (todas las reservas vigentes): solo se usa la primera vez, cuando el consumidor
+     * todavía no tiene cursor en el registro de cambios.
      */
     public List < OperationSyncData > getOperationsToSync() {
+        return queryOperations("", List.of());
+    }
+
+    /**
+     * Igual que getOperationsToSync(), pero limitado a las reservas indicadas (las que aparecen en el
+     * registro de cambios desde el último ciclo). Las reservas borradas o ya pasadas se omiten.
+     */
+    public List < OperationSyncData > getOperationsToSync(java.util.Collection < Integer > reservationIds) {
+
+        if (reservationIds.isEmpty()) return new ArrayList < > ();
+
+        String placeholders = String.join(", ", java.util.Collections.nCopies(reservationIds.size(), "?"));
+        return queryOperations(" AND id IN (" + placeholders + ")", reservationIds);
+    }
+
+    private List < OperationSyncData > queryOperations(String filter, java.util.Collection < Integer > reservationIds) {
 
         List < OperationSyncData > list = new ArrayList < > ();
 
@@ -1496,12 +1905,15 @@ public class DatabaseService {
         has_checkin, has_checkout,
         google_event_in_id, google_event_out_id
         FROM reservations
-        WHERE check_out_date >= date('now', '-1 day')
-        """;
+        WHERE check_out_date >= ?
+        """ + filter;
 
-        try (Statement stmt = conn.createStatement();
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
-            ResultSet rs = stmt.executeQuery(sql)) {
+            pstmt.setString(1, LocalDate.now().minusDays(1).toString());
+            int index = 2;
+            for (int id : reservationIds) pstmt.setInt(index++, id);
+            ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
                 list.add(new OperationSyncData(
@@ -1524,6 +1936,8 @@ public class DatabaseService {
 
     /**
      * Guarda los IDs de los eventos de Google Calendar (Check-in y Check-out) en la reserva local.
+     * * Son columnas propias del sincronizador: no se comprueba ni incrementa la versión de la
+     * reserva, para no invalidar las ediciones abiertas en la interfaz.
      */
     public void updateReservationEventIds(int reservationId, String eventInId, String eventOutId) {
 
@@ -1541,41 +1955,91 @@ public class DatabaseService {
     }
 
     /**
-     * Calcula los ingresos anuales totales para reportes.
+     * Cursor de un consumidor del registro de cambios (ChangeLog), o -1 si aún no tiene.
+     */
+    public long get_change_cursor(String consumer) {
+        try {
+            return ChangeLog.cursor(conn, consumer);
+        } catch (SQLException e) {
+            System.err.println("[error] Error reading change cursor: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Última secuencia del registro de cambios (punto de partida tras una carga completa).
+     */
+    public long get_change_head() {
+        try {
+            return ChangeLog.head(conn);
+        } catch (SQLException e) {
+            System.err.println("[error] Error reading change log head: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Cambios posteriores al cursor de un consumidor (como máximo 'limit').
+     */
+    public ChangeLog.Batch get_changes(String consumer, int limit) {
+        try {
+            return ChangeLog.read(conn, consumer, limit);
+        } catch (SQLException e) {
+            System.err.println("[error] Error reading change log: " + e.getMessage());
+            return new ChangeLog.Batch(List.of(), Math.max(get_change_cursor(consumer), 0));
+        }
+    }
+
+    /**
+     * Confirma que un consumidor ha procesado los cambios hasta 'seq' y compacta el registro.
+     */
+    public boolean advance_change_cursor(String consumer, long seq) {
+        try {
+            ChangeLog.advance(conn, consumer, seq);
+            ChangeLog.compact(conn);
+            return true;
+        } catch (SQLException e) {
+            System.err.println("[error] Error advancing change cursor: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Calcula los ingresos anuales totales para reportes, en céntimos.
+     * * Suma (en enteros, sin error de redondeo) los 12 agregados mensuales de 'monthly_stats'.
      */
-    public double getTotalYearlyRevenue(int vutId, int year) {
+    public long getTotalYearlyRevenueCents(int vutId, int year) {
 
-        String yearStr = String.valueOf(year);
-        String sql = "SELECT SUM(day_price) FROM days WHERE vut_id = ? AND strftime('%Y', day_date) = ? AND status = 'paid'";
+        String sql = "SELECT SUM(revenue_cents) FROM monthly_stats WHERE vut_id = ? AND year = ?";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, yearStr);
+            pstmt.setInt(2, year);
 
             ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) return rs.getDouble(1);
+            if (rs.next()) return rs.getLong(1);
 
         } catch (SQLException e) {
             System.err.println("[error] Error calculating yearly revenue: " + e.getMessage());
         }
 
-        return 0.0;
+        return 0;
 
     }
 
     /**
      * Calcula el porcentaje de ocupación anual global.
+     * * Suma los 12 agregados mensuales de 'monthly_stats'.
      */
     public double getYearlyOccupancyPercentage(int vutId, int year) {
 
-        String yearStr = String.valueOf(year);
-        String sql = "SELECT COUNT(*) FROM days WHERE vut_id = ? AND strftime('%Y', day_date) = ? AND (status = 'reserved' OR status = 'paid')";
+        String sql = "SELECT SUM(occupied_nights) FROM monthly_stats WHERE vut_id = ? AND year = ?";
 
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
 
             pstmt.setInt(1, vutId);
-            pstmt.setString(2, yearStr);
+            pstmt.setInt(2, year);
 
             ResultSet rs = pstmt.executeQuery();
 
@@ -1700,4 +2164,27 @@ public class DatabaseService {
         }
     }
 
+    /**
+     * Marca de tiempo actual en UTC con el formato de texto de la base de datos ('yyyy-MM-dd HH:mm:ss').
+     */
+    private static String utcTimestamp() {
+        return LocalDateTime.now(ZoneOffset.UTC).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+    }
+
+    /**
+     * Origen de los días para una consulta que empieza en 'from': las fechas pasadas pueden estar
+     * archivadas y se leen de la vista de unión; de hoy en adelante basta la tabla activa.
+     */
+    private static String days_source(LocalDate from) {
+        return from.isBefore(LocalDate.now()) ? "all_days" : "days";
+    }
+
+    /**
+     * Convierte una fecha de java.util (o java.sql) a LocalDate en la zona horaria del sistema.
+     */
+    private static LocalDate toLocalDate(Date date) {
+        if (date instanceof java.sql.Date sqlDate) return sqlDate.toLocalDate();
+        return date.toInstant().atZone(java.time.ZoneId.systemDefault()).toLocalDate();
+    }
+
 }
\ No newline at end of file
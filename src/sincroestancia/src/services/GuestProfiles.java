@@ -0,0 +1,269 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.Transactions;
+import sincroestancia.src.models.GuestProfile;
+
+/**
+ * Fichas de huéspedes habituales ('guest_profiles'), una por número de documento.
+ * * 'guests' guarda una fila por huésped y check-in, así que un cliente que repite aparece tantas veces
+ * como estancias. La ficha reúne los datos de su última estancia para rellenar los formularios
+ * (RegisterDay, GuestFormPanel) con una sola consulta por la clave única del documento:
+ * - Al guardar un huésped del check-in, su ficha se crea o se sobrescribe si la estancia no es anterior
+ * a la última registrada, y la fila de 'guests' queda enlazada ('profile_id').
+ * - Al guardar una reserva, se crea la ficha del titular si no existía (solo nombre y contacto).
+ * * Los documentos se normalizan (mayúsculas, sin espacios, guiones, puntos ni barras) igual en Java y
+ * en SQL, para que "12.345.678-z" y "12345678Z" sean la misma ficha.
+ * * Las fichas consultadas se guardan en una caché LRU en memoria; se descartan al modificarlas y
+ * cuando otro puesto escribe (ChangeLogFollower).
+ * * Los huéspedes anteriores a las fichas (también los archivados) se enlazan una sola vez, en segundo
+ * plano y por lotes (startBackfill).
+ * * Todos los métodos usan la conexión recibida para ejecutarse dentro de la transacción del llamante.
+ * * @author Carlos Padilla Labella
+ */
+public final class GuestProfiles {
+
+    /** Longitud mínima (normalizada) de un documento para buscar su ficha mientras se teclea. */
+    public static final int MIN_DOCUMENT_LENGTH = 6;
+
+    private static final int CACHE_SIZE = 1_024;
+    private static final int BACKFILL_BATCH = 500;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static final String COLUMNS = "document_number, fullname, surname1, surname2, sex, birth_date, nationality, " +
+        "id_document_type, id_support_number, address_full, address_municipality, address_country, phone, email, last_stay_date";
+
+    private static final String SQL_FIND = "SELECT " + COLUMNS + " FROM guest_profiles WHERE document_number = ?";
+
+    private static final String SQL_RECORD_HOLDER = DatabaseManager.dialect().upsert("guest_profiles",
+        new String[] { "document_number", "fullname", "phone", "email", "last_stay_date", "updated_at" },
+        new String[] { "document_number" },
+        new String[0],
+        "SELECT " + normalized("guest_dni") + ", guest_name, guest_phone, guest_email, check_in_date, CAST(? AS VARCHAR(19)) " +
+        "FROM reservations WHERE id = ? AND " + normalized("guest_dni") + " <> ''",
+        null);
+
+    private static final String SQL_RECORD_GUEST = recordGuestSql("");
+    private static final String SQL_RECORD_ARCHIVED_GUEST = recordGuestSql(DatabaseArchive.SCHEMA + ".");
+
+    private static final Map<String, GuestProfile> CACHE = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, GuestProfile> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    private GuestProfiles() {}
+
+    /**
+     * Normaliza un número de documento para usarlo como clave de la ficha.
+     */
+    public static String normalize(String document) {
+        return document == null ? "" : document.replaceAll("[ \\-./]", "").toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Busca la ficha de un documento (primero en la caché).
+     * * @return La ficha, o null si el documento no ha estado nunca alojado.
+     */
+    public static GuestProfile find(Connection conn, String document) throws SQLException {
+
+        String key = normalize(document);
+        if (key.isEmpty()) return null;
+
+        synchronized (CACHE) {
+            GuestProfile cached = CACHE.get(key);
+            if (cached != null) return cached;
+        }
+
+        GuestProfile profile = null;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FIND)) {
+            pstmt.setString(1, key);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    profile = new GuestProfile(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                        rs.getString(5), rs.getString(6), rs.getString(7), rs.getString(8), rs.getString(9),
+                        rs.getString(10), rs.getString(11), rs.getString(12), rs.getString(13), rs.getString(14),
+                        rs.getString(15));
+                }
+            }
+        }
+
+        if (profile != null) {
+            synchronized (CACHE) {
+                CACHE.put(key, profile);
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Crea la ficha del titular de una reserva si su documento todavía no tiene una.
+     */
+    public static void recordHolder(Connection conn, int reservationId, String document) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_RECORD_HOLDER)) {
+            pstmt.setString(1, LocalDateTime.now().format(TIMESTAMP));
+            pstmt.setInt(2, reservationId);
+            pstmt.executeUpdate();
+        }
+
+        evict(document);
+    }
+
+    /**
+     * Actualiza la ficha con los datos de un huésped del check-in (si su estancia no es anterior a la
+     * última de la ficha) y enlaza el huésped con ella.
+     */
+    public static void recordGuest(Connection conn, int guestId, String document) throws SQLException {
+        record(conn, SQL_RECORD_GUEST, "", guestId);
+        evict(document);
+    }
+
+    /**
+     * Enlaza con su ficha, por lotes, los huéspedes activos y archivados que aún no la tienen.
+     * * Se avanza por id, de modo que los huéspedes sin documento válido (que no pueden enlazarse) no
+     * se vuelven a procesar en la misma pasada.
+     * * @return Número de huéspedes procesados.
+     */
+    public static int linkPending(Connection conn) throws SQLException {
+
+        int processed = linkPending(conn, SQL_RECORD_GUEST, "") + linkPending(conn, SQL_RECORD_ARCHIVED_GUEST, DatabaseArchive.SCHEMA + ".");
+
+        if (processed > 0) clearCache();
+
+        return processed;
+    }
+
+    /**
+     * Lanza en segundo plano, con su propia conexión, el enlace de los huéspedes existentes.
+     */
+    public static void startBackfill() {
+
+        Thread thread = new Thread(() -> {
+
+            long start = System.currentTimeMillis();
+
+            try (Connection conn = DatabaseManager.provider().open()) {
+                int processed = linkPending(conn);
+                if (processed > 0) {
+                    System.out.println("[info] Guest profiles linked for " + processed + " guests in " + (System.currentTimeMillis() - start) + " ms.");
+                }
+            } catch (SQLException e) {
+                System.err.println("[error] Guest profile backfill failed: " + e.getMessage());
+            }
+
+        }, "guest-profiles");
+
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Vacía la caché de fichas (otro puesto puede haberlas modificado).
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static int linkPending(Connection conn, String recordSql, String schema) throws SQLException {
+
+        int processed = 0;
+        int after = 0;
+
+        while (true) {
+
+            List<Integer> ids = new ArrayList<>();
+
+            try (PreparedStatement pstmt = conn.prepareStatement(
+                    "SELECT id FROM " + schema + "guests WHERE profile_id IS NULL AND id > ? ORDER BY id LIMIT " + BACKFILL_BATCH)) {
+                pstmt.setInt(1, after);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) ids.add(rs.getInt(1));
+                }
+            }
+
+            if (ids.isEmpty()) return processed;
+
+            Transactions.run(conn, c -> {
+                for (int id : ids) record(c, recordSql, schema, id);
+                return null;
+            });
+
+            processed += ids.size();
+            after = ids.get(ids.size() - 1);
+        }
+    }
+
+    private static void record(Connection conn, String recordSql, String schema, int guestId) throws SQLException {
+
+        try (PreparedStatement pstmt = conn.prepareStatement(recordSql)) {
+            pstmt.setString(1, LocalDateTime.now().format(TIMESTAMP));
+            pstmt.setInt(2, guestId);
+            pstmt.setInt(3, guestId);
+            pstmt.executeUpdate();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement("UPDATE " + schema + "guests SET profile_id = " +
+                "(SELECT p.id FROM guest_profiles p WHERE p.document_number = " + normalized(schema + "guests.id_document_number") + ") WHERE id = ?")) {
+            pstmt.setInt(1, guestId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    private static void evict(String document) {
+        synchronized (CACHE) {
+            CACHE.remove(normalize(document));
+        }
+    }
+
+    /**
+     * Upsert de la ficha a partir de un huésped de 'guests' (o de su copia archivada, según 'schema').
+     */
+    private static String recordGuestSql(String schema) {
+
+        String stay = "SELECT r.check_in_date FROM " + schema + "guests g JOIN " + schema + "checkins c ON c.id = g.checkin_id " +
+            "JOIN " + schema + "reservations r ON r.id = c.reservation_id";
+
+        String[] columns = (COLUMNS + ", updated_at").split(", ");
+        String[] updates = new String[columns.length - 1];
+        System.arraycopy(columns, 1, updates, 0, updates.length);
+
+        return DatabaseManager.dialect().upsert("guest_profiles",
+            columns,
+            new String[] { "document_number" },
+            updates,
+            "SELECT " + normalized("g.id_document_number") + ", g.fullname, g.surname1, g.surname2, g.sex, g.birth_date, " +
+            "g.nationality, g.id_document_type, g.id_support_number, g.address_full, g.address_municipality, " +
+            "g.address_country, g.phone, g.email, r.check_in_date, CAST(? AS VARCHAR(19)) " +
+            "FROM " + schema + "guests g JOIN " + schema + "checkins c ON c.id = g.checkin_id " +
+            "JOIN " + schema + "reservations r ON r.id = c.reservation_id " +
+            "WHERE g.id = ? AND " + normalized("g.id_document_number") + " <> ''",
+            "(guest_profiles.last_stay_date IS NULL OR guest_profiles.last_stay_date <= (" + stay + " WHERE g.id = ?))");
+    }
+
+    /**
+     * Expresión SQL equivalente a normalize().
+     */
+    private static String normalized(String column) {
+        return "UPPER(REPLACE(REPLACE(REPLACE(REPLACE(" + column + ", ' ', ''), '-', ''), '.', ''), '/', ''))";
+    }
+}
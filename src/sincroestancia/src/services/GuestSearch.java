@@ -0,0 +1,233 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.GuestSearchResult;
+
+/**
+ * Búsqueda de huéspedes por nombre, documento, email o teléfono.
+ * * En SQLite se consulta el índice FTS5 'guest_search' (SqliteDialect), que los disparadores mantienen
+ * al día con cada alta, cambio o baja de 'reservations' y 'guests'. Cada palabra del texto se busca como
+ * prefijo ("gonz" encuentra "González") y todas deben aparecer; los resultados se ordenan por relevancia
+ * (bm25, con más peso en el nombre y el documento; si hay muchas, entre las más recientes) y se
+ * agrupan por reserva.
+ * * El archivado borra las filas activas (y sus entradas del índice, por los disparadores): indexArchived
+ * vuelve a añadir las archivadas para que los huéspedes antiguos se sigan encontrando.
+ * * Otros motores (H2) no tienen FTS5: se recorre con LIKE la unión de tablas activas y archivadas.
+ * * Todos los métodos usan la conexión recibida para ejecutarse dentro de la transacción del llamante.
+ * * @author Carlos Padilla Labella
+ */
+public final class GuestSearch {
+
+    /** Longitud mínima del texto para lanzar una búsqueda (el índice guarda prefijos de 2 y 3 letras). */
+    public static final int MIN_QUERY_LENGTH = 2;
+
+    /**
+     * Coincidencias más recientes que se puntúan. Un prefijo corto ("ma") coincide con decenas de miles
+     * de filas y puntuarlas todas cuesta más que los 20 ms de margen al teclear; con más texto quedan
+     * pocas coincidencias y se puntúan todas.
+     */
+    private static final int RANKED_CANDIDATES = 1_000;
+
+    /** Filas del índice que se leen por cada resultado pedido (titular y huéspedes de una misma reserva). */
+    private static final int ROWS_PER_RESULT = 4;
+
+    /** Letras con tilde (en minúscula) y su equivalente sin ella, para la búsqueda con LIKE. */
+    private static final String ACCENTED = "áàäâãéèëêíìïîóòöôõúùüûñçý";
+    private static final String UNACCENTED = "aaaaaeeeeiiiiooooouuuuncy";
+
+    private static final String SQL_SEARCH_FTS =
+        "SELECT s.name, s.document, s.email, s.phone, s.reservation_id, " +
+        "COALESCE(r.vut_id, a.vut_id), COALESCE(r.check_in_date, a.check_in_date), " +
+        "COALESCE(r.check_out_date, a.check_out_date), r.id IS NULL " +
+        "FROM (SELECT name, document, email, phone, reservation_id, score FROM " +
+        "      (SELECT name, document, email, phone, reservation_id, bm25(guest_search, 4.0, 3.0, 1.0, 1.0) AS score " +
+        "       FROM guest_search WHERE guest_search MATCH ? ORDER BY rowid DESC LIMIT " + RANKED_CANDIDATES + ") " +
+        "      ORDER BY score LIMIT ?) s " +
+        "LEFT JOIN reservations r ON r.id = s.reservation_id " +
+        "LEFT JOIN " + DatabaseArchive.archived("reservations") + " a ON a.id = s.reservation_id " +
+        "WHERE r.id IS NOT NULL OR a.id IS NOT NULL " +
+        "ORDER BY s.score";
+
+    private static final String SQL_HOLDERS =
+        "SELECT guest_name AS name, guest_dni AS document, guest_email AS email, guest_phone AS phone, " +
+        "id AS reservation_id, vut_id, check_in_date, check_out_date, %2$s AS archived, " +
+        "TRANSLATE(LOWER(COALESCE(guest_name, '') || ' ' || COALESCE(guest_dni, '') || ' ' || " +
+        "COALESCE(guest_email, '') || ' ' || COALESCE(guest_phone, '')), '" + ACCENTED + "', '" + UNACCENTED + "') AS haystack " +
+        "FROM %1$sreservations";
+
+    private static final String SQL_GUESTS =
+        "SELECT g.fullname || ' ' || g.surname1 || COALESCE(' ' || g.surname2, '') AS name, " +
+        "g.id_document_number AS document, g.email AS email, g.phone AS phone, " +
+        "r.id AS reservation_id, r.vut_id, r.check_in_date, r.check_out_date, %2$s AS archived, " +
+        "TRANSLATE(LOWER(g.fullname || ' ' || g.surname1 || ' ' || COALESCE(g.surname2, '') || ' ' || " +
+        "COALESCE(g.id_document_number, '') || ' ' || COALESCE(g.email, '') || ' ' || COALESCE(g.phone, '')), " +
+        "'" + ACCENTED + "', '" + UNACCENTED + "') AS haystack " +
+        "FROM %1$sguests g JOIN %1$scheckins c ON c.id = g.checkin_id JOIN %1$sreservations r ON r.id = c.reservation_id";
+
+    private static final String SQL_INDEX_ARCHIVED_RESERVATIONS =
+        "INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id) " +
+        "SELECT r.id * 2, r.guest_name, r.guest_dni, r.guest_email, r.guest_phone, r.id " +
+        "FROM " + DatabaseArchive.archived("reservations") + " r " +
+        "WHERE NOT EXISTS (SELECT 1 FROM guest_search s WHERE s.rowid = r.id * 2)";
+
+    private static final String SQL_INDEX_ARCHIVED_GUESTS =
+        "INSERT INTO guest_search (rowid, name, document, email, phone, reservation_id) " +
+        "SELECT g.id * 2 + 1, g.fullname || ' ' || g.surname1 || COALESCE(' ' || g.surname2, ''), " +
+        "g.id_document_number, g.email, g.phone, c.reservation_id " +
+        "FROM " + DatabaseArchive.archived("guests") + " g " +
+        "JOIN " + DatabaseArchive.archived("checkins") + " c ON c.id = g.checkin_id " +
+        "WHERE NOT EXISTS (SELECT 1 FROM guest_search s WHERE s.rowid = g.id * 2 + 1)";
+
+    private static final String SQL_FORGET_ARCHIVED =
+        "DELETE FROM guest_search WHERE reservation_id IN " +
+        "(SELECT id FROM " + DatabaseArchive.archived("reservations") + " WHERE vut_id = ?)";
+
+    private GuestSearch() {}
+
+    /**
+     * Busca huéspedes cuyos datos contengan todas las palabras del texto (como prefijo, sin distinguir
+     * mayúsculas ni tildes).
+     * * @param text Texto tecleado por el usuario.
+     * @param limit Número máximo de reservas distintas a devolver.
+     * @return Un resultado por reserva, del más relevante al menos; vacío si el texto es demasiado corto.
+     */
+    public static List<GuestSearchResult> search(Connection conn, String text, int limit) throws SQLException {
+
+        List<String> terms = terms(text);
+        if (terms.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        Map<Integer, GuestSearchResult> results = new LinkedHashMap<>();
+
+        if (DatabaseManager.dialect().hasSearchIndex()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(SQL_SEARCH_FTS)) {
+                pstmt.setString(1, matchExpression(terms));
+                pstmt.setInt(2, limit * ROWS_PER_RESULT);
+                collect(pstmt, results, limit);
+            }
+        } else {
+            try (PreparedStatement pstmt = conn.prepareStatement(likeQuery(terms.size()))) {
+                int i = 1;
+                for (String term : terms) pstmt.setString(i++, "%" + term + "%");
+                pstmt.setInt(i, limit * ROWS_PER_RESULT);
+                collect(pstmt, results, limit);
+            }
+        }
+
+        return new ArrayList<>(results.values());
+    }
+
+    /**
+     * Añade al índice las reservas y huéspedes archivados que no están en él.
+     * * Se invoca en la misma transacción que mueve las filas al archivo (los disparadores de borrado
+     * acaban de quitarlas del índice).
+     * * @return Número de filas añadidas al índice.
+     */
+    public static int indexArchived(Connection conn) throws SQLException {
+
+        if (!DatabaseManager.dialect().hasSearchIndex()) return 0;
+
+        try (Statement stmt = conn.createStatement()) {
+            return stmt.executeUpdate(SQL_INDEX_ARCHIVED_RESERVATIONS) + stmt.executeUpdate(SQL_INDEX_ARCHIVED_GUESTS);
+        }
+    }
+
+    /**
+     * Quita del índice las reservas archivadas de una vivienda (y sus huéspedes), antes de borrarlas
+     * del archivo. Las activas las quitan los disparadores.
+     */
+    public static void forgetArchived(Connection conn, int vutId) throws SQLException {
+
+        if (!DatabaseManager.dialect().hasSearchIndex()) return;
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_FORGET_ARCHIVED)) {
+            pstmt.setInt(1, vutId);
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Palabras del texto en minúsculas y sin tildes (solo letras y dígitos, así que no pueden alterar la sintaxis de
+     * la consulta); se descartan las de una sola letra salvo que sean lo único escrito.
+     */
+    private static List<String> terms(String text) {
+
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.strip().length() < MIN_QUERY_LENGTH) return terms;
+
+        String folded = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() >= MIN_QUERY_LENGTH) terms.add(word);
+        }
+
+        return terms;
+    }
+
+    /**
+     * Expresión MATCH de FTS5: cada palabra entre comillas y como prefijo, todas obligatorias.
+     */
+    private static String matchExpression(List<String> terms) {
+        StringBuilder match = new StringBuilder();
+        for (String term : terms) {
+            if (match.length() > 0) match.append(" AND ");
+            match.append('"').append(term).append("\"*");
+        }
+        return match.toString();
+    }
+
+    /**
+     * Consulta LIKE sobre titulares y huéspedes, activos y archivados, para los motores sin FTS5.
+     */
+    private static String likeQuery(int terms) {
+
+        String archive = DatabaseArchive.SCHEMA + ".";
+
+        StringBuilder sql = new StringBuilder("SELECT name, document, email, phone, reservation_id, vut_id, ")
+            .append("check_in_date, check_out_date, archived FROM (")
+            .append(String.format(SQL_HOLDERS, "", "FALSE")).append(" UNION ALL ")
+            .append(String.format(SQL_HOLDERS, archive, "TRUE")).append(" UNION ALL ")
+            .append(String.format(SQL_GUESTS, "", "FALSE")).append(" UNION ALL ")
+            .append(String.format(SQL_GUESTS, archive, "TRUE"))
+            .append(") hits WHERE ");
+
+        for (int i = 0; i < terms; i++) {
+            if (i > 0) sql.append(" AND ");
+            sql.append("haystack LIKE ?");
+        }
+
+        return sql.append(" ORDER BY check_in_date DESC LIMIT ?").toString();
+    }
+
+    private static void collect(PreparedStatement pstmt, Map<Integer, GuestSearchResult> results, int limit) throws SQLException {
+
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next() && results.size() < limit) {
+                int reservationId = rs.getInt(5);
+                results.putIfAbsent(reservationId, new GuestSearchResult(
+                    reservationId,
+                    rs.getInt(6),
+                    rs.getString(1),
+                    rs.getString(2),
+                    rs.getString(3),
+                    rs.getString(4),
+                    rs.getString(7),
+                    rs.getString(8),
+                    rs.getBoolean(9)
+                ));
+            }
+        }
+    }
+}
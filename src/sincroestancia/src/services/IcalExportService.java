@@ -0,0 +1,236 @@
+package sincroestancia.src.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.DayStatus;
+
+/**
+ * Generador del calendario de disponibilidad (.ics) de cada vivienda, para que las OTAs bloqueen
+ * las fechas ocupadas.
+ * * Cada reserva se publica como un VEVENT de día completo y los días ocupados que no pertenecen a
+ * ninguna reserva se agrupan en bloques. No se publica ningún dato del huésped.
+ * * El calendario renderizado se guarda en caché por vivienda junto con su ETag (hash del contenido),
+ * de modo que los sondeos repetidos de las OTAs no tocan la base de datos. La caché se invalida
+ * con {@link #invalidate(int)} tras cada escritura que cambia la disponibilidad de la vivienda.
+ * * Cada renderizado abre su propia conexión: se ejecuta en los hilos del servidor HTTP y, sobre la
+ * conexión compartida, leería (y dejaría en caché) los cambios sin confirmar de una transacción abierta
+ * en otro hilo, que seguirían publicados aunque esta se deshiciera.
+ * * @author Carlos Padilla Labella
+ */
+public class IcalExportService {
+
+    /** Días hacia atrás que se siguen publicando (estancias recién terminadas). */
+    private static final int PAST_DAYS = 30;
+
+    private static final DateTimeFormatter ICAL_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+    private static final DateTimeFormatter ICAL_STAMP = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+    private static final DateTimeFormatter DB_TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private static IcalExportService instance;
+
+    /**
+     * Calendario ya renderizado.
+     * * @param body Contenido .ics en UTF-8.
+     * @param etag ETag entrecomillado, estable mientras el contenido no cambie.
+     */
+    public record RenderedFeed(byte[] body, String etag) {}
+
+    private final Map<Integer, RenderedFeed> cache = new ConcurrentHashMap<>();
+    private final IntFunction<String> renderer;
+
+    /**
+     * Crea un servicio con un generador alternativo (p.ej. en pruebas de carga).
+     * * @param renderer Función (ID de vivienda -> contenido .ics) o null si la vivienda no existe.
+     */
+    public IcalExportService(IntFunction<String> renderer) {
+        this.renderer = renderer;
+    }
+
+    private IcalExportService() {
+        this.renderer = this::renderCalendar;
+    }
+
+    /**
+     * Obtiene la instancia que genera los calendarios a partir de la base de datos.
+     */
+    public static synchronized IcalExportService getInstance() {
+        if (instance == null) {
+            instance = new IcalExportService();
+        }
+        return instance;
+    }
+
+    /**
+     * Descarta el calendario en caché de una vivienda.
+     * * Se invoca tras confirmar (commit) cualquier escritura que cambia su disponibilidad.
+     */
+    public static void invalidate(int vutId) {
+        IcalExportService current = instance;
+        if (current != null) current.cache.remove(vutId);
+    }
+
+    /**
+     * Devuelve el calendario de una vivienda, generándolo solo si no está en caché.
+     * * Las peticiones simultáneas sobre una vivienda sin caché esperan a un único renderizado.
+     * * @return El calendario o null si la vivienda no existe o no se pudo generar.
+     */
+    public RenderedFeed getFeed(int vutId) {
+        return cache.computeIfAbsent(vutId, id -> {
+            String body = renderer.apply(id);
+            return body == null ? null : new RenderedFeed(body.getBytes(StandardCharsets.UTF_8), etagOf(body));
+        });
+    }
+
+    /**
+     * Genera el .ics de una vivienda a partir de 'reservations' y 'days'.
+     * * Pasos de implementación:
+     * - Recupera el nombre de la vivienda (null si no existe).
+     * - Publica cada reserva que termina dentro del horizonte como un evento [entrada, salida).
+     * - Recorre los días ocupados en orden y agrupa en bloques los que no cubre ninguna reserva.
+     * - DTSTAMP se deriva de datos persistidos, por lo que el contenido (y su ETag) es estable.
+     */
+    private String renderCalendar(int vutId) {
+
+        LocalDate horizon = LocalDate.now().minusDays(PAST_DAYS);
+
+        try (Connection conn = DatabaseManager.provider().open()) {
+
+            String vutName = null;
+            try (PreparedStatement pstmt = conn.prepareStatement("SELECT name FROM vuts WHERE id = ?")) {
+                pstmt.setInt(1, vutId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) vutName = rs.getString(1);
+                }
+            }
+
+            if (vutName == null) return null;
+
+            StringBuilder ics = new StringBuilder(4096);
+            ics.append("BEGIN:VCALENDAR\r\n")
+                .append("VERSION:2.0\r\n")
+                .append("PRODID:-//SincroEstancia//Disponibilidad//ES\r\n")
+                .append("CALSCALE:GREGORIAN\r\n")
+                .append("METHOD:PUBLISH\r\n")
+                .append("X-WR-CALNAME:").append(escape(vutName)).append("\r\n");
+
+            List<long[]> stays = new ArrayList<>();
+            String sqlReservations = "SELECT id, check_in_date, check_out_date, created_at FROM reservations " +
+                "WHERE vut_id = ? AND check_out_date >= ? ORDER BY check_in_date";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlReservations)) {
+                pstmt.setInt(1, vutId);
+                pstmt.setString(2, horizon.toString());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        LocalDate checkIn = LocalDate.parse(rs.getString("check_in_date"));
+                        LocalDate checkOut = LocalDate.parse(rs.getString("check_out_date"));
+                        if (!checkOut.isAfter(checkIn)) continue;
+
+                        appendEvent(ics, "reservation-" + rs.getInt("id"), checkIn, checkOut, "Reservado", stamp(rs.getString("created_at"), checkIn));
+                        stays.add(new long[]{checkIn.toEpochDay(), checkOut.toEpochDay()});
+                    }
+                }
+            }
+
+            String sqlDays = "SELECT day_date FROM days WHERE vut_id = ? AND day_date >= ? AND status <> " + DayStatus.FREE.code() + " ORDER BY day_date";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sqlDays)) {
+                pstmt.setInt(1, vutId);
+                pstmt.setString(2, horizon.toString());
+                try (ResultSet rs = pstmt.executeQuery()) {
+
+                    int stay = 0;
+                    long maxEnd = Long.MIN_VALUE;
+                    long blockStart = -1, blockEnd = -1;
+
+                    while (rs.next()) {
+
+                        long day = LocalDate.parse(rs.getString(1)).toEpochDay();
+
+                        while (stay < stays.size() && stays.get(stay)[0] <= day) {
+                            maxEnd = Math.max(maxEnd, stays.get(stay)[1]);
+                            stay++;
+                        }
+                        if (day < maxEnd) continue;
+
+                        if (blockStart >= 0 && day == blockEnd) {
+                            blockEnd++;
+                            continue;
+                        }
+
+                        if (blockStart >= 0) appendBlock(ics, vutId, blockStart, blockEnd);
+                        blockStart = day;
+                        blockEnd = day + 1;
+                    }
+
+                    if (blockStart >= 0) appendBlock(ics, vutId, blockStart, blockEnd);
+                }
+            }
+
+            return ics.append("END:VCALENDAR\r\n").toString();
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error rendering iCal feed for VUT " + vutId + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void appendBlock(StringBuilder ics, int vutId, long startDay, long endDay) {
+        LocalDate start = LocalDate.ofEpochDay(startDay);
+        appendEvent(ics, "block-" + vutId + "-" + start, start, LocalDate.ofEpochDay(endDay), "No disponible", start.format(ICAL_DATE) + "T000000Z");
+    }
+
+    private void appendEvent(StringBuilder ics, String uid, LocalDate start, LocalDate end, String summary, String stamp) {
+        ics.append("BEGIN:VEVENT\r\n")
+            .append("UID:").append(uid).append("@sincroestancia\r\n")
+            .append("DTSTAMP:").append(stamp).append("\r\n")
+            .append("DTSTART;VALUE=DATE:").append(start.format(ICAL_DATE)).append("\r\n")
+            .append("DTEND;VALUE=DATE:").append(end.format(ICAL_DATE)).append("\r\n")
+            .append("SUMMARY:").append(summary).append("\r\n")
+            .append("TRANSP:OPAQUE\r\n")
+            .append("END:VEVENT\r\n");
+    }
+
+    /**
+     * Convierte 'created_at' (hora local) a un DTSTAMP en UTC; si no es válido se usa la fecha de entrada.
+     */
+    private String stamp(String createdAt, LocalDate fallback) {
+        try {
+            return LocalDateTime.parse(createdAt, DB_TIMESTAMP).atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneOffset.UTC).format(ICAL_STAMP);
+        } catch (Exception e) {
+            return fallback.format(ICAL_DATE) + "T000000Z";
+        }
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace(";", "\\;").replace(",", "\\,").replace("\n", "\\n");
+    }
+
+    private static String etagOf(String body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body.getBytes(StandardCharsets.UTF_8));
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            return "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package sincroestancia.src.services;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import sincroestancia.src.services.IcalExportService.RenderedFeed;
+
+/**
+ * Servidor HTTP embebido que publica el calendario de disponibilidad de cada vivienda.
+ * * Ruta: GET/HEAD /ical/{idVivienda}.ics
+ * * Cada petición se atiende en un hilo virtual y el contenido sale de la caché de IcalExportService.
+ * Si la cabecera 'If-None-Match' coincide con el ETag actual se responde 304 sin cuerpo, que es
+ * el caso habitual de los sondeos periódicos de las OTAs.
+ * * @author Carlos Padilla Labella
+ */
+public class IcalFeedServer {
+
+    /** Puerto por defecto (se puede cambiar con -Dsincroestancia.ical.port). */
+    public static final int DEFAULT_PORT = 8085;
+
+    private static final Pattern FEED_PATH = Pattern.compile("^/ical/(\\d+)\\.ics$");
+
+    private static IcalFeedServer instance;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final IcalExportService exportService;
+
+    /**
+     * @param port Puerto de escucha (0 para uno libre cualquiera).
+     * @param exportService Origen de los calendarios.
+     */
+    public IcalFeedServer(int port, IcalExportService exportService) throws IOException {
+        this.exportService = exportService;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/ical/", this::handle);
+    }
+
+    /**
+     * Arranca el servidor de la aplicación con el generador sobre la base de datos.
+     * * Si el puerto está ocupado se registra el error y la aplicación continúa sin publicar calendarios.
+     */
+    public static synchronized void startDefault() {
+
+        if (instance != null) return;
+
+        int port = Integer.getInteger("sincroestancia.ical.port", DEFAULT_PORT);
+
+        try {
+            instance = new IcalFeedServer(port, IcalExportService.getInstance());
+            instance.start();
+            System.out.println("[info] iCal feeds available at http://localhost:" + instance.getPort() + "/ical/{vut}.ics");
+        } catch (IOException e) {
+            System.err.println("[error] Could not start iCal feed server on port " + port + ": " + e.getMessage());
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Atiende una petición de calendario.
+     * * Respuestas: 200 (calendario), 304 (sin cambios), 404 (vivienda inexistente), 405 (método no soportado).
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+
+            if (!head && !"GET".equals(method)) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            Matcher matcher = FEED_PATH.matcher(exchange.getRequestURI().getPath());
+            RenderedFeed feed = null;
+
+            if (matcher.matches()) {
+                try {
+                    feed = exportService.getFeed(Integer.parseInt(matcher.group(1)));
+                } catch (NumberFormatException e) {
+                    feed = null;
+                }
+            }
+
+            if (feed == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("ETag", feed.etag());
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+
+            if (matchesEtag(exchange.getRequestHeaders().getFirst("If-None-Match"), feed.etag())) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/calendar; charset=utf-8");
+
+            if (head) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, feed.body().length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(feed.body());
+            }
+        }
+    }
+
+    /**
+     * Comprueba la cabecera If-None-Match (admite '*' y listas separadas por comas).
+     */
+    private static boolean matchesEtag(String header, String etag) {
+
+        if (header == null) return false;
+
+        for (String candidate : header.split(",")) {
+            String value = candidate.trim();
+            if (value.startsWith("W/")) value = value.substring(2);
+            if (value.equals("*") || value.equals(etag)) return true;
+        }
+
+        return false;
+    }
+}
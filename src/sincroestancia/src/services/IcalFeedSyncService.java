@@ -0,0 +1,628 @@
+package sincroestancia.src.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.IcalFeed;
+import sincroestancia.src.models.DayStatus;
+import sincroestancia.src.utils.IcalParser;
+import sincroestancia.src.utils.IcalParser.IcalEvent;
+
+/**
+ * Importación incremental de los calendarios iCal que exportan las OTAs (Airbnb, Booking...).
+ * * Cada vivienda puede tener varios feeds (URL http/https, 'file:' o ruta local). En cada sincronización:
+ * - La descarga es condicional (If-None-Match / If-Modified-Since). Si el feed no ha cambiado
+ * (304, o mismo tamaño y fecha en archivos locales) no se lee ni se toca la base de datos.
+ * - El calendario se lee en streaming y cada VEVENT se compara con la huella guardada en
+ * 'ical_feed_events' (UID + SEQUENCE + fechas).
+ * - Solo se aplican las diferencias: altas, cambios de fechas y bajas (eventos cancelados o
+ * que ya no aparecen), todas en una única transacción.
+ * * Implementa el patrón Singleton (como SyncManager) para que solo exista un planificador activo.
+ * * @author Carlos Padilla Labella
+ */
+public class IcalFeedSyncService {
+
+    /** Intervalo entre sondeos automáticos de todos los feeds. */
+    private static final long POLL_MINUTES = 15;
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private static final String SQL_UPSERT_EVENT = DatabaseManager.dialect().upsert("ical_feed_events",
+        new String[] { "feed_id", "uid", "sequence", "check_in_date", "check_out_date", "reservation_id" },
+        new String[] { "feed_id", "uid" },
+        new String[] { "sequence", "check_in_date", "check_out_date", "reservation_id" },
+        "VALUES (?, ?, ?, ?, ?, ?)",
+        null);
+
+    private static IcalFeedSyncService instance;
+
+    /**
+     * Resultado de la sincronización de un feed.
+     * * @param notModified true si el feed no había cambiado desde la última descarga.
+     * @param conflicts Eventos que no se han podido aplicar por solaparse con otras reservas.
+     * @param error Mensaje de error o null si la sincronización terminó correctamente.
+     */
+    public record SyncResult(int feedId, boolean notModified, int added, int updated, int removed, int conflicts, String error) {
+
+        public boolean hasChanges() {
+            return added + updated + removed > 0;
+        }
+
+        public String summary() {
+            if (error != null) return "Error: " + error;
+            if (notModified) return "Sin cambios";
+            return added + " nuevas, " + updated + " modificadas, " + removed + " eliminadas, " + conflicts + " en conflicto";
+        }
+    }
+
+    /**
+     * Huella de un evento ya importado.
+     */
+    private record KnownEvent(int sequence, String checkIn, String checkOut, Integer reservationId) {}
+
+    /**
+     * Contenido descargado de un feed junto con sus nuevos validadores.
+     */
+    private record FeedSource(Reader reader, String etag, String lastModified) {}
+
+    private final Connection conn;
+    private final ReservationIndex reservationIndex = ReservationIndex.getInstance();
+    private final HttpClient httpClient;
+    private ScheduledExecutorService scheduler;
+
+    private IcalFeedSyncService() {
+        this.conn = DatabaseManager.get_connection();
+        this.httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(15))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+    }
+
+    /**
+     * Obtiene la instancia única del servicio.
+     */
+    public static synchronized IcalFeedSyncService getInstance() {
+        if (instance == null) {
+            instance = new IcalFeedSyncService();
+        }
+        return instance;
+    }
+
+    /**
+     * Inicia el sondeo periódico de todos los feeds (cada {@link #POLL_MINUTES} minutos).
+     * * Si el planificador ya está corriendo, no hace nada.
+     */
+    public synchronized void start() {
+        if (scheduler != null) return;
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleWithFixedDelay(this::syncAll, 1, POLL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Detiene el sondeo periódico.
+     */
+    public synchronized void stop() {
+        if (scheduler == null) return;
+        scheduler.shutdownNow();
+        scheduler = null;
+    }
+
+    /**
+     * Obtiene los feeds configurados para una vivienda.
+     */
+    public List<IcalFeed> getFeeds(int vutId) {
+        return loadFeeds(conn, "SELECT * FROM ical_feeds WHERE vut_id = ? ORDER BY id", vutId);
+    }
+
+    /**
+     * Registra un nuevo feed para una vivienda.
+     * * @return ID del feed o -1 si hubo un error.
+     */
+    public int addFeed(int vutId, String name, String url) {
+
+        String sql = "INSERT INTO ical_feeds (vut_id, name, url) VALUES (?, ?, ?)";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setInt(1, vutId);
+            pstmt.setString(2, name);
+            pstmt.setString(3, url);
+            pstmt.executeUpdate();
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        } catch (SQLException e) {
+            System.err.println("[error] Error adding iCal feed: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * Elimina un feed y sus huellas. Las reservas ya importadas se conservan.
+     */
+    public synchronized boolean deleteFeed(int feedId) {
+
+        try (PreparedStatement events = conn.prepareStatement("DELETE FROM ical_feed_events WHERE feed_id = ?");
+            PreparedStatement feed = conn.prepareStatement("DELETE FROM ical_feeds WHERE id = ?")) {
+            events.setInt(1, feedId);
+            events.executeUpdate();
+            feed.setInt(1, feedId);
+            return feed.executeUpdate() > 0;
+        } catch (SQLException e) {
+            System.err.println("[error] Error deleting iCal feed: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Elimina los feeds de una vivienda (al borrarla).
+     */
+    public static void clearVut(Connection conn, int vutId) throws SQLException {
+        try (PreparedStatement events = conn.prepareStatement("DELETE FROM ical_feed_events WHERE feed_id IN (SELECT id FROM ical_feeds WHERE vut_id = ?)");
+            PreparedStatement feeds = conn.prepareStatement("DELETE FROM ical_feeds WHERE vut_id = ?")) {
+            events.setInt(1, vutId);
+            events.executeUpdate();
+            feeds.setInt(1, vutId);
+            feeds.executeUpdate();
+        }
+    }
+
+    /**
+     * Sincroniza todos los feeds de todas las viviendas (tarea del planificador).
+     * * Usa una conexión propia durante toda la pasada (como ChangeLogFollower), para que su
+     * transacción no se mezcle con lo que otros hilos hagan sobre la conexión compartida.
+     */
+    public synchronized List<SyncResult> syncAll() {
+
+        List<SyncResult> results = new ArrayList<>();
+
+        try (Connection own = DatabaseManager.provider().open()) {
+
+            for (IcalFeed feed : loadFeeds(own, "SELECT * FROM ical_feeds ORDER BY id", -1)) {
+                SyncResult result = sync(own, feed);
+                if (result.error() != null || result.hasChanges()) {
+                    System.out.println("[info] iCal feed '" + feed.name() + "': " + result.summary());
+                }
+                results.add(result);
+            }
+
+        } catch (SQLException e) {
+            System.err.println("[error] iCal sync could not open its connection: " + e.getMessage());
+        }
+
+        return results;
+    }
+
+    /**
+     * Sincroniza un feed con una conexión propia.
+     */
+    public synchronized SyncResult sync(IcalFeed feed) {
+
+        try (Connection own = DatabaseManager.provider().open()) {
+            return sync(own, feed);
+        } catch (SQLException e) {
+            System.err.println("[error] iCal sync could not open its connection: " + e.getMessage());
+            return new SyncResult(feed.id(), false, 0, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * Sincroniza un feed.
+     * * Pasos de implementación:
+     * - Descarga condicional; si no hay cambios solo se actualiza la fecha de la última comprobación.
+     * - Carga las huellas conocidas del feed y recorre el calendario en streaming, quedándose
+     * únicamente con los eventos nuevos o modificados y con los UID vistos.
+     * - Solo si el calendario se ha leído completo se calculan las bajas (UID conocidos no vistos).
+     * - Aplica las diferencias y los nuevos validadores en una transacción.
+     */
+    private SyncResult sync(Connection conn, IcalFeed feed) {
+
+        String now = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+
+        Map<String, KnownEvent> known;
+        List<IcalEvent> upserts = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        FeedSource source;
+
+        try {
+
+            source = open(feed);
+
+            if (source == null) {
+                updateFeedState(conn, feed.id(), feed.etag(), feed.lastModified(), now);
+                return new SyncResult(feed.id(), true, 0, 0, 0, 0, null);
+            }
+
+            known = loadKnownEvents(conn, feed.id());
+
+            try (IcalParser parser = new IcalParser(source.reader())) {
+
+                IcalEvent event;
+                while ((event = parser.next()) != null) {
+
+                    if (event.uid() == null || event.checkIn() == null || event.isCancelled()) continue;
+                    if (!event.checkOut().isAfter(event.checkIn())) continue;
+                    if (!seen.add(event.uid())) continue;
+
+                    KnownEvent previous = known.get(event.uid());
+                    if (previous == null || previous.reservationId() == null || previous.sequence() != event.sequence()
+                            || !previous.checkIn().equals(event.checkIn().toString())
+                            || !previous.checkOut().equals(event.checkOut().toString())) {
+                        upserts.add(event);
+                    }
+                }
+            }
+
+        } catch (IOException | SQLException e) {
+            System.err.println("[error] Error reading iCal feed '" + feed.name() + "': " + e.getMessage());
+            return new SyncResult(feed.id(), false, 0, 0, 0, 0, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return new SyncResult(feed.id(), false, 0, 0, 0, 0, "Interrumpido");
+        }
+
+        List<String> removals = new ArrayList<>();
+        for (String uid : known.keySet()) {
+            if (!seen.contains(uid)) removals.add(uid);
+        }
+
+        try {
+            SyncResult result = apply(conn, feed, known, upserts, removals);
+            updateFeedState(conn, feed.id(), source.etag(), source.lastModified(), now);
+            return result;
+        } catch (SQLException e) {
+            System.err.println("[error] Error applying iCal feed '" + feed.name() + "': " + e.getMessage());
+            return new SyncResult(feed.id(), false, 0, 0, 0, 0, e.getMessage());
+        }
+    }
+
+    /**
+     * Abre el feed de forma condicional.
+     * * - http/https: envía If-None-Match / If-Modified-Since con los validadores guardados.
+     * - Archivo local ('file:' o ruta): usa tamaño y fecha de modificación como ETag.
+     * * @return El contenido y sus validadores, o null si no ha cambiado.
+     */
+    private FeedSource open(IcalFeed feed) throws IOException, InterruptedException {
+
+        String url = feed.url().trim();
+
+        if (url.startsWith("http://") || url.startsWith("https://")) {
+
+            HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofSeconds(30))
+                .GET();
+
+            if (feed.etag() != null) request.header("If-None-Match", feed.etag());
+            if (feed.lastModified() != null) request.header("If-Modified-Since", feed.lastModified());
+
+            HttpResponse<InputStream> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+            if (response.statusCode() == 304) {
+                response.body().close();
+                return null;
+            }
+
+            if (response.statusCode() != 200) {
+                response.body().close();
+                throw new IOException("HTTP " + response.statusCode());
+            }
+
+            Reader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8));
+            return new FeedSource(reader,
+                response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null));
+        }
+
+        Path path = url.startsWith("file:") ? Path.of(URI.create(url)) : Path.of(url);
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+
+        String etag = "\"" + attributes.size() + "-" + attributes.lastModifiedTime().toMillis() + "\"";
+        if (etag.equals(feed.etag())) return null;
+
+        String lastModified = HTTP_DATE.format(attributes.lastModifiedTime().toInstant().atZone(ZoneOffset.UTC));
+        return new FeedSource(Files.newBufferedReader(path, StandardCharsets.UTF_8), etag, lastModified);
+    }
+
+    /**
+     * Aplica las altas, cambios y bajas de un feed en una única transacción.
+     * * Un evento que se solapa con otra reserva o con días ocupados se cuenta como conflicto y no
+     * modifica el calendario; se vuelve a intentar en la siguiente descarga con cambios.
+     * * Las bajas no eliminan reservas en las que ya se ha hecho el check-in.
+     * * Los cambios de fechas se aplican solo si la reserva sigue en la versión leída; si otro puesto
+     * la modificó entretanto se deshace todo y el feed se reintenta (no se guarda su ETag).
+     */
+    private SyncResult apply(Connection conn, IcalFeed feed, Map<String, KnownEvent> known, List<IcalEvent> upserts, List<String> removals) throws SQLException {
+
+        if (upserts.isEmpty() && removals.isEmpty()) {
+            return new SyncResult(feed.id(), false, 0, 0, 0, 0, null);
+        }
+
+        int vutId = feed.vutId();
+        int added = 0, updated = 0, removed = 0, conflicts = 0;
+        LocalDate min = null, max = null;
+
+        String createdAt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+
+        try {
+
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement selectReservation = conn.prepareStatement("SELECT check_in_date, check_out_date, is_paid, has_checkin, version FROM reservations WHERE id = ?");
+                PreparedStatement countOverlapping = conn.prepareStatement("SELECT COUNT(*) FROM reservations WHERE vut_id = ? AND check_in_date < ? AND check_out_date > ? AND id <> ?");
+                PreparedStatement countOccupied = conn.prepareStatement("SELECT COUNT(*) FROM days WHERE vut_id = ? AND day_date >= ? AND day_date < ? AND status <> " + DayStatus.FREE.code() + " AND NOT (day_date >= ? AND day_date < ?)");
+                PreparedStatement insertReservation = conn.prepareStatement("INSERT INTO reservations (vut_id, guest_name, guest_dni, check_in_date, check_out_date, pax_count, is_paid, created_at, has_checkout) VALUES (?, ?, '', ?, ?, 1, 0, ?, 0)", Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement updateReservation = conn.prepareStatement("UPDATE reservations SET guest_name = ?, check_in_date = ?, check_out_date = ?, version = version + 1 WHERE id = ? AND version = ?");
+                PreparedStatement deleteReservation = conn.prepareStatement("DELETE FROM reservations WHERE id = ?");
+                PreparedStatement setDays = conn.prepareStatement("UPDATE days SET status = ?, is_synced = 0, version = version + 1 WHERE vut_id = ? AND day_date >= ? AND day_date < ?");
+                PreparedStatement upsertEvent = conn.prepareStatement(SQL_UPSERT_EVENT);
+                PreparedStatement deleteEvent = conn.prepareStatement("DELETE FROM ical_feed_events WHERE feed_id = ? AND uid = ?")) {
+
+                for (String uid : removals) {
+
+                    KnownEvent event = known.get(uid);
+
+                    if (event.reservationId() != null) {
+                        selectReservation.setInt(1, event.reservationId());
+                        try (ResultSet rs = selectReservation.executeQuery()) {
+                            if (rs.next() && !rs.getBoolean("has_checkin")) {
+                                LocalDate in = LocalDate.parse(rs.getString("check_in_date"));
+                                LocalDate out = LocalDate.parse(rs.getString("check_out_date"));
+                                setDayRange(conn, setDays, vutId, DayStatus.FREE, in, out);
+                                deleteReservation.setInt(1, event.reservationId());
+                                deleteReservation.executeUpdate();
+                                ChangeLog.record(conn, ChangeLog.RESERVATIONS, vutId, event.reservationId(), ChangeLog.Operation.DELETE);
+                                min = earliest(min, in);
+                                max = latest(max, out);
+                                removed++;
+                            }
+                        }
+                    }
+
+                    deleteEvent.setInt(1, feed.id());
+                    deleteEvent.setString(2, uid);
+                    deleteEvent.executeUpdate();
+                }
+
+                for (IcalEvent event : upserts) {
+
+                    String guestName = event.summary() == null || event.summary().isBlank() ? feed.name() : feed.name() + " - " + event.summary().trim();
+                    KnownEvent previous = known.get(event.uid());
+
+                    LocalDate oldIn = null, oldOut = null;
+                    boolean paid = false;
+                    int version = 0;
+
+                    if (previous != null && previous.reservationId() != null) {
+                        selectReservation.setInt(1, previous.reservationId());
+                        try (ResultSet rs = selectReservation.executeQuery()) {
+                            if (rs.next()) {
+                                oldIn = LocalDate.parse(rs.getString("check_in_date"));
+                                oldOut = LocalDate.parse(rs.getString("check_out_date"));
+                                paid = rs.getBoolean("is_paid");
+                                version = rs.getInt("version");
+                            }
+                        }
+                    }
+
+                    int reservationId = oldIn != null ? previous.reservationId() : -1;
+
+                    if (hasConflict(countOverlapping, countOccupied, vutId, reservationId, event.checkIn(), event.checkOut(), oldIn, oldOut)) {
+                        System.err.println("[error] iCal event " + event.uid() + " (" + event.checkIn() + " - " + event.checkOut() + ") overlaps an existing booking.");
+                        if (previous == null) bindEvent(upsertEvent, feed.id(), event, null).executeUpdate();
+                        conflicts++;
+                        continue;
+                    }
+
+                    if (reservationId > 0) {
+
+                        updateReservation.setString(1, guestName);
+                        updateReservation.setString(2, event.checkIn().toString());
+                        updateReservation.setString(3, event.checkOut().toString());
+                        updateReservation.setInt(4, reservationId);
+                        updateReservation.setInt(5, version);
+
+                        if (updateReservation.executeUpdate() == 0) {
+                            throw new SQLException("Reservation " + reservationId + " was modified concurrently; feed will be retried.");
+                        }
+
+                        setDayRange(conn, setDays, vutId, DayStatus.FREE, oldIn, oldOut);
+                        ChangeLog.record(conn, ChangeLog.RESERVATIONS, vutId, reservationId, ChangeLog.Operation.UPDATE);
+
+                        min = earliest(min, oldIn);
+                        max = latest(max, oldOut);
+                        updated++;
+
+                    } else {
+
+                        insertReservation.setInt(1, vutId);
+                        insertReservation.setString(2, guestName);
+                        insertReservation.setString(3, event.checkIn().toString());
+                        insertReservation.setString(4, event.checkOut().toString());
+                        insertReservation.setString(5, createdAt);
+                        insertReservation.executeUpdate();
+
+                        try (ResultSet rs = insertReservation.getGeneratedKeys()) {
+                            if (!rs.next()) throw new SQLException("Reservation insert failed.");
+                            reservationId = rs.getInt(1);
+                        }
+
+                        ChangeLog.record(conn, ChangeLog.RESERVATIONS, vutId, reservationId, ChangeLog.Operation.INSERT);
+
+                        added++;
+                    }
+
+                    setDayRange(conn, setDays, vutId, DayStatus.occupied(paid), event.checkIn(), event.checkOut());
+                    bindEvent(upsertEvent, feed.id(), event, reservationId).executeUpdate();
+
+                    min = earliest(min, event.checkIn());
+                    max = latest(max, event.checkOut());
+                }
+            }
+
+            if (min != null) MonthlyStats.refreshRange(conn, vutId, min, max.minusDays(1));
+
+            conn.commit();
+
+            if (added + updated + removed > 0) {
+                reservationIndex.invalidate(vutId);
+                IcalExportService.invalidate(vutId);
+            }
+
+            return new SyncResult(feed.id(), false, added, updated, removed, conflicts, null);
+
+        } catch (SQLException e) {
+
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+
+            throw e;
+
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Comprueba si el rango [checkIn, checkOut) choca con otra reserva o con días ocupados,
+     * ignorando la propia reserva y los días de su rango anterior.
+     */
+    private boolean hasConflict(PreparedStatement countOverlapping, PreparedStatement countOccupied, int vutId, int reservationId,
+            LocalDate checkIn, LocalDate checkOut, LocalDate oldIn, LocalDate oldOut) throws SQLException {
+
+        countOverlapping.setInt(1, vutId);
+        countOverlapping.setString(2, checkOut.toString());
+        countOverlapping.setString(3, checkIn.toString());
+        countOverlapping.setInt(4, reservationId);
+        try (ResultSet rs = countOverlapping.executeQuery()) {
+            if (rs.next() && rs.getInt(1) > 0) return true;
+        }
+
+        countOccupied.setInt(1, vutId);
+        countOccupied.setString(2, checkIn.toString());
+        countOccupied.setString(3, checkOut.toString());
+        countOccupied.setString(4, oldIn != null ? oldIn.toString() : "");
+        countOccupied.setString(5, oldOut != null ? oldOut.toString() : "");
+        try (ResultSet rs = countOccupied.executeQuery()) {
+            return rs.next() && rs.getInt(1) > 0;
+        }
+    }
+
+    private void setDayRange(Connection conn, PreparedStatement setDays, int vutId, DayStatus status, LocalDate from, LocalDate toExclusive) throws SQLException {
+        setDays.setInt(1, status.code());
+        setDays.setInt(2, vutId);
+        setDays.setString(3, from.toString());
+        setDays.setString(4, toExclusive.toString());
+        setDays.executeUpdate();
+        ChangeLog.recordDays(conn, vutId, from.toString(), toExclusive.toString());
+    }
+
+    private PreparedStatement bindEvent(PreparedStatement upsertEvent, int feedId, IcalEvent event, Integer reservationId) throws SQLException {
+        upsertEvent.setInt(1, feedId);
+        upsertEvent.setString(2, event.uid());
+        upsertEvent.setInt(3, event.sequence());
+        upsertEvent.setString(4, event.checkIn().toString());
+        upsertEvent.setString(5, event.checkOut().toString());
+        upsertEvent.setObject(6, reservationId);
+        return upsertEvent;
+    }
+
+    private Map<String, KnownEvent> loadKnownEvents(Connection conn, int feedId) throws SQLException {
+
+        Map<String, KnownEvent> known = new HashMap<>();
+        String sql = "SELECT uid, sequence, check_in_date, check_out_date, reservation_id FROM ical_feed_events WHERE feed_id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, feedId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    int reservationId = rs.getInt("reservation_id");
+                    Integer linked = rs.wasNull() ? null : reservationId;
+                    known.put(rs.getString("uid"), new KnownEvent(rs.getInt("sequence"), rs.getString("check_in_date"),
+                        rs.getString("check_out_date"), linked));
+                }
+            }
+        }
+
+        return known;
+    }
+
+    private List<IcalFeed> loadFeeds(Connection conn, String sql, int vutId) {
+
+        List<IcalFeed> feeds = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            if (vutId >= 0) pstmt.setInt(1, vutId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    feeds.add(new IcalFeed(rs.getInt("id"), rs.getInt("vut_id"), rs.getString("name"), rs.getString("url"),
+                        rs.getString("etag"), rs.getString("last_modified"), rs.getString("last_sync")));
+                }
+            }
+        } catch (SQLException e) {
+            System.err.println("[error] Error loading iCal feeds: " + e.getMessage());
+        }
+
+        return feeds;
+    }
+
+    private void updateFeedState(Connection conn, int feedId, String etag, String lastModified, String lastSync) {
+
+        String sql = "UPDATE ical_feeds SET etag = ?, last_modified = ?, last_sync = ? WHERE id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setString(1, etag);
+            pstmt.setString(2, lastModified);
+            pstmt.setString(3, lastSync);
+            pstmt.setInt(4, feedId);
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            System.err.println("[error] Error updating iCal feed state: " + e.getMessage());
+        }
+    }
+
+    private static LocalDate earliest(LocalDate current, LocalDate candidate) {
+        return current == null || candidate.isBefore(current) ? candidate : current;
+    }
+
+    private static LocalDate latest(LocalDate current, LocalDate candidate) {
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
+}
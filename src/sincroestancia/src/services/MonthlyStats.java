@@ -0,0 +1,197 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.concurrent.atomic.AtomicLong;
+
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.DayStatus;
+
+/**
+ * Mantenimiento de los agregados mensuales materializados ('monthly_stats' y 'monthly_nationality_stats').
+ * * Las pantallas de informes leían y agregaban todas las filas de 'days' en cada refresco. Ahora leen
+ * como máximo 12 filas por año, y son las operaciones de escritura de DatabaseService las que
+ * mantienen los agregados al día.
+ * * El mantenimiento es incremental: solo se recalculan los meses afectados por la escritura, y cada
+ * recálculo lee como mucho 31 filas de 'days' a través de su clave primaria (vut_id, day_date).
+ * * Los recálculos incluyen lo archivado (ArchiveService): un mes que cruza el corte del archivado
+ * mantiene la parte ya archivada. Los días se leen de la vista de unión 'all_days' por su clave; las
+ * nacionalidades consultan por separado las tablas activas y las archivadas, porque unir las vistas
+ * 'all_guests'/'all_checkins' recorría ambas tablas enteras en cada escritura.
+ * * Todos los métodos usan la conexión recibida para ejecutarse dentro de la transacción del llamante.
+ * * @author Carlos Padilla Labella
+ */
+public final class MonthlyStats {
+
+    private static final String SQL_REFRESH_MONTH = DatabaseManager.dialect().upsert("monthly_stats",
+        new String[] { "vut_id", "year", "month", "revenue_cents", "occupied_nights", "paid_nights" },
+        new String[] { "vut_id", "year", "month" },
+        new String[] { "revenue_cents", "occupied_nights", "paid_nights" },
+        "SELECT CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER), " +
+        "COALESCE(SUM(CASE WHEN status = " + DayStatus.PAID.code() + " THEN price_cents END), 0), " +
+        "COALESCE(SUM(CASE WHEN status <> " + DayStatus.FREE.code() + " THEN 1 ELSE 0 END), 0), " +
+        "COALESCE(SUM(CASE WHEN status = " + DayStatus.PAID.code() + " THEN 1 ELSE 0 END), 0) " +
+        "FROM all_days WHERE vut_id = ? AND day_date >= ? AND day_date < ?",
+        null);
+
+    private static final String SQL_CLEAR_NATIONALITY =
+        "DELETE FROM monthly_nationality_stats WHERE vut_id = ? AND year = ? AND month = ?";
+
+    private static final String SQL_REFRESH_NATIONALITY =
+        "INSERT INTO monthly_nationality_stats (vut_id, year, month, nationality, guests) " +
+        "SELECT CAST(? AS INTEGER), CAST(? AS INTEGER), CAST(? AS INTEGER), nationality, SUM(total) FROM (" +
+        nationalityCounts("guests", "checkins", "reservations") + " UNION ALL " +
+        nationalityCounts(DatabaseArchive.archived("guests"), DatabaseArchive.archived("checkins"), DatabaseArchive.archived("reservations")) +
+        ") counts GROUP BY nationality";
+
+    /** Se incrementa en cada recálculo para que las pantallas puedan detectar que sus datos cacheados han caducado. */
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    private MonthlyStats() {}
+
+    /**
+     * Versión actual de los agregados (cambia tras cualquier escritura que los recalcule).
+     */
+    public static long version() {
+        return VERSION.get();
+    }
+
+    /**
+     * Marca los agregados como modificados sin recalcular nada (los recalculó otro proceso).
+     */
+    static void touch() {
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * Recalcula los meses que cubre el rango de fechas [from, to] (ambos inclusive).
+     */
+    public static void refreshRange(Connection conn, int vutId, LocalDate from, LocalDate to) throws SQLException {
+
+        if (to.isBefore(from)) return;
+
+        VERSION.incrementAndGet();
+
+        YearMonth month = YearMonth.from(from);
+        YearMonth last = YearMonth.from(to);
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_REFRESH_MONTH)) {
+            while (!month.isAfter(last)) {
+                bindMonth(pstmt, vutId, month);
+                pstmt.addBatch();
+                month = month.plusMonths(1);
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Recalcula los meses ocupados por una estancia [checkIn, checkOut) en formato yyyy-MM-dd.
+     */
+    public static void refreshStay(Connection conn, int vutId, String checkIn, String checkOut) throws SQLException {
+        LocalDate start = LocalDate.parse(checkIn);
+        LocalDate end = LocalDate.parse(checkOut).minusDays(1);
+        refreshRange(conn, vutId, start, end.isBefore(start) ? start : end);
+    }
+
+    /**
+     * Recalcula la distribución de nacionalidades del mes de entrada de una reserva.
+     * * Se invoca tras añadir, editar o borrar huéspedes de su check-in.
+     */
+    public static void refreshNationalityForReservation(Connection conn, int reservationId) throws SQLException {
+
+        String sql = "SELECT vut_id, check_in_date FROM reservations WHERE id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, reservationId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    refreshNationality(conn, rs.getInt("vut_id"), YearMonth.from(LocalDate.parse(rs.getString("check_in_date"))));
+                }
+            }
+        }
+    }
+
+    /**
+     * Igual que {@link #refreshNationalityForReservation}, pero partiendo del ID de check-in.
+     */
+    public static void refreshNationalityForCheckin(Connection conn, int checkinId) throws SQLException {
+
+        String sql = "SELECT reservation_id FROM checkins WHERE id = ?";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, checkinId);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    refreshNationalityForReservation(conn, rs.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Recalcula la distribución de nacionalidades de un mes concreto de una vivienda.
+     */
+    public static void refreshNationality(Connection conn, int vutId, YearMonth month) throws SQLException {
+
+        VERSION.incrementAndGet();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_CLEAR_NATIONALITY)) {
+            pstmt.setInt(1, vutId);
+            pstmt.setInt(2, month.getYear());
+            pstmt.setInt(3, month.getMonthValue());
+            pstmt.executeUpdate();
+        }
+
+        try (PreparedStatement pstmt = conn.prepareStatement(SQL_REFRESH_NATIONALITY)) {
+            bindMonth(pstmt, vutId, month);
+            pstmt.setInt(7, vutId);
+            pstmt.setString(8, month.atDay(1).toString());
+            pstmt.setString(9, month.plusMonths(1).atDay(1).toString());
+            pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Elimina todos los agregados de una vivienda (al borrarla).
+     */
+    public static void clearVut(Connection conn, int vutId) throws SQLException {
+        VERSION.incrementAndGet();
+        for (String table : new String[] { "monthly_stats", "monthly_nationality_stats" }) {
+            try (PreparedStatement pstmt = conn.prepareStatement("DELETE FROM " + table + " WHERE vut_id = ?")) {
+                pstmt.setInt(1, vutId);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    /**
+     * Huéspedes por nacionalidad de las reservas de una vivienda con entrada en [?, ?) sobre un juego de
+     * tablas (activas o archivadas). Cada unión se resuelve por índice: reservas por (vut_id, check_in_date),
+     * check-ins por reservation_id y huéspedes por checkin_id.
+     */
+    private static String nationalityCounts(String guests, String checkins, String reservations) {
+        return "SELECT g.nationality AS nationality, COUNT(*) AS total FROM " + guests + " g " +
+            "JOIN " + checkins + " c ON g.checkin_id = c.id " +
+            "JOIN " + reservations + " r ON c.reservation_id = r.id " +
+            "WHERE r.vut_id = ? AND r.check_in_date >= ? AND r.check_in_date < ? " +
+            "GROUP BY g.nationality";
+    }
+
+    /**
+     * Rellena los parámetros comunes (vut, año, mes, vut, desde, hasta) de las sentencias de recálculo.
+     */
+    private static void bindMonth(PreparedStatement pstmt, int vutId, YearMonth month) throws SQLException {
+        pstmt.setInt(1, vutId);
+        pstmt.setInt(2, month.getYear());
+        pstmt.setInt(3, month.getMonthValue());
+        pstmt.setInt(4, vutId);
+        pstmt.setString(5, month.atDay(1).toString());
+        pstmt.setString(6, month.plusMonths(1).atDay(1).toString());
+    }
+}
@@ -7,21 +7,41 @@ import org.openpdf.text.Image;
 import org.openpdf.text.PageSize;
 import org.openpdf.text.Paragraph;
 import org.openpdf.text.Phrase;
+import org.openpdf.text.Rectangle;
 import org.openpdf.text.pdf.DefaultFontMapper;
 import org.openpdf.text.pdf.PdfContentByte;
+import org.openpdf.text.pdf.PdfImportedPage;
 import org.openpdf.text.pdf.PdfPCell;
 import org.openpdf.text.pdf.PdfPTable;
-import org.openpdf.text.pdf.PdfTemplate;
+import org.openpdf.text.pdf.PdfReader;
 import org.openpdf.text.pdf.PdfWriter;
 
 import java.awt.Graphics2D;
 import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.jfree.chart.JFreeChart;
+import org.jfree.chart.event.ChartChangeListener;
+
+import sincroestancia.src.models.Money;
+import sincroestancia.src.models.YearlyReport;
 
 /**
  * Servicio encargado de la generación y exportación de informes en formato PDF.
@@ -29,6 +49,13 @@ import org.jfree.chart.JFreeChart;
  * JFreeChart para renderizar gráficos estadísticos directamente dentro del reporte.
  * * Este servicio produce documentos estandarizados con portada, resumen de métricas
  * (KPIs) y análisis visual.
+ * * Rendimiento:
+ * - El dibujo de los gráficos está separado del ensamblado del documento: cada gráfico se renderiza
+ * en paralelo a un PDF vectorial de una página en memoria, que después se importa como plantilla.
+ * - Los gráficos renderizados se cachean por instancia de JFreeChart y se invalidan en cuanto el
+ * gráfico (o su dataset) cambia, por lo que exportar de nuevo el mismo informe no vuelve a dibujarlos.
+ * - El mapeador de fuentes es único y compartido, y la portada ya procesada se cachea por vivienda
+ * (se invalida desde DatabaseService.update_vut).
  * * @author Carlos Padilla Labella
  */
 public class PdfReportService {
@@ -38,6 +65,32 @@ public class PdfReportService {
     private static final org.openpdf.text.Font TEXT_FONT = FontFactory.getFont(FontFactory.HELVETICA, 12);
     private static final org.openpdf.text.Font HEADER_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 12);
 
+    private static final int CHART_WIDTH = 500;
+    private static final int CHART_HEIGHT = 300;
+
+    private static final DefaultFontMapper FONT_MAPPER = new DefaultFontMapper();
+
+    /** Gráficos ya renderizados (PDF de una página) por instancia; las claves son débiles. */
+    private static final Map<JFreeChart, byte[]> RENDER_CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Descarta el render cacheado de un gráfico en cuanto este (o su dataset) cambia. */
+    private static final ChartChangeListener INVALIDATE_RENDER = event -> {
+        Object chart = event.getChart() != null ? event.getChart() : event.getSource();
+        RENDER_CACHE.remove(chart);
+    };
+
+    /** Portadas ya cargadas por ID de vivienda. */
+    private static final Map<Integer, CachedCover> COVER_CACHE = new ConcurrentHashMap<>();
+
+    private record CachedCover(String path, Image image) {}
+
+    /**
+     * Descarta la portada cacheada de una vivienda (al editarla o borrarla).
+     */
+    public static void invalidateCover(int vutId) {
+        COVER_CACHE.remove(vutId);
+    }
+
     /**
      * Genera un informe PDF completo guardándolo en la ruta especificada.
      * * Pasos de implementación:
@@ -46,8 +99,8 @@ public class PdfReportService {
      * para que ajuste al ancho de página y la inserta al inicio.
      * - Añade metadatos del informe: Título de la vivienda, periodo analizado y fecha de generación.
      * - Crea una tabla (PdfPTable) para estructurar los datos estadísticos (KPIs) en formato Clave-Valor.
-     * - Renderizado de Gráficos: Itera sobre la lista de objetos JFreeChart. Para cada uno, crea un
-     * 'PdfTemplate' (lienzo vectorial) y utiliza un objeto Graphics2D para dibujar el gráfico.
+     * - Renderizado de Gráficos: Cada JFreeChart se dibuja en paralelo (o se toma de la caché) en un
+     * PDF vectorial de una página, que se importa en el documento como plantilla.
      * Esto asegura que los gráficos no pierdan calidad al hacer zoom en el PDF.
      * * @param filePath Ruta absoluta donde se guardará el archivo .pdf resultante.
      * @param vutName Nombre de la vivienda para el título.
@@ -58,17 +111,35 @@ public class PdfReportService {
      * @return true si el PDF se generó correctamente, false si ocurrió algún error de E/S o de librería.
      */
     public boolean generateReport(String filePath, String vutName, String monthYear, String coverPath, Map<String, String> stats, List<JFreeChart> charts) {
+        return writeReport(filePath, -1, vutName, monthYear, coverPath, stats, charts);
+    }
+
+    /**
+     * Implementación común de los informes.
+     * * Lanza el renderizado de los gráficos en segundo plano antes de empezar el documento, de modo
+     * que se solapa con la escritura de la portada y la tabla de métricas.
+     * * @param vutId ID de la vivienda para cachear la portada, o -1 para no cachearla.
+     */
+    private boolean writeReport(String filePath, int vutId, String vutName, String monthYear, String coverPath, Map<String, String> stats, List<JFreeChart> charts) {
         
         Document document = new Document(PageSize.A4);
 
-        try {
-            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(filePath));
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            List<Future<byte[]>> rendered = new ArrayList<>();
+            if (charts != null) {
+                for (JFreeChart chart : charts) {
+                    rendered.add(executor.submit(() -> renderChart(chart)));
+                }
+            }
+
+            PdfWriter writer = PdfWriter.getInstance(document, new BufferedOutputStream(new FileOutputStream(filePath)));
             document.open();
 
             if (coverPath != null && !coverPath.isEmpty()) {
                 try {
                     
-                    Image cover = Image.getInstance(coverPath);
+                    Image cover = loadCover(vutId, coverPath);
                     float maxWidth = document.getPageSize().getWidth() - document.leftMargin() - document.rightMargin();
                     
                     if (cover.getWidth() > maxWidth) {
@@ -113,27 +184,22 @@ public class PdfReportService {
             document.add(table);
             document.add(new Paragraph(" ", TEXT_FONT));
 
-            if (charts != null && !charts.isEmpty()) {
+            if (!rendered.isEmpty()) {
                 document.add(new Paragraph("Análisis Gráfico", SUBTITLE_FONT));
                 document.add(new Paragraph(" ", TEXT_FONT));
-                
-                int width = 500;
-                int height = 300;
 
-                for (JFreeChart chart : charts) {
-                    PdfContentByte contentByte = writer.getDirectContent();
-                    PdfTemplate template = contentByte.createTemplate(width, height);
+                for (Future<byte[]> future : rendered) {
                     
-                    Graphics2D g2d = template.createGraphics(width, height, new DefaultFontMapper());
-                    Rectangle2D r2d = new Rectangle2D.Double(0, 0, width, height);
+                    PdfReader reader = new PdfReader(future.get());
+                    PdfImportedPage page = writer.getImportedPage(reader, 1);
                     
-                    chart.draw(g2d, r2d);
-                    g2d.dispose();
-                    
-                    Image chartImage = Image.getInstance(template);
+                    Image chartImage = Image.getInstance(page);
                     chartImage.setAlignment(Element.ALIGN_CENTER);
                     chartImage.setSpacingAfter(15);
                     document.add(chartImage);
+
+                    writer.freeReader(reader);
+                    reader.close();
                 }
             }
 
@@ -142,10 +208,91 @@ public class PdfReportService {
 
         } catch (Exception e) {
             e.printStackTrace();
+            if (document.isOpen()) {
+                try {
+                    document.close();
+                } catch (Exception ex) {
+                    System.err.println("[error] Could not close PDF report: " + ex.getMessage());
+                }
+            }
             return false;
         }
     }
 
+    /**
+     * Renderiza un gráfico a un PDF vectorial de una sola página en memoria.
+     * * Cada render usa su propio PdfWriter, por lo que pueden ejecutarse en paralelo.
+     * El resultado se cachea hasta que el gráfico notifica un cambio.
+     */
+    private static byte[] renderChart(JFreeChart chart) throws Exception {
+
+        byte[] cached = RENDER_CACHE.get(chart);
+        if (cached != null) return cached;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Document page = new Document(new Rectangle(CHART_WIDTH, CHART_HEIGHT), 0, 0, 0, 0);
+        PdfWriter writer = PdfWriter.getInstance(page, out);
+        page.open();
+
+        PdfContentByte contentByte = writer.getDirectContent();
+        Graphics2D g2d = contentByte.createGraphics(CHART_WIDTH, CHART_HEIGHT, FONT_MAPPER);
+        chart.draw(g2d, new Rectangle2D.Double(0, 0, CHART_WIDTH, CHART_HEIGHT));
+        g2d.dispose();
+
+        page.close();
+
+        byte[] bytes = out.toByteArray();
+
+        chart.removeChangeListener(INVALIDATE_RENDER);
+        chart.addChangeListener(INVALIDATE_RENDER);
+        RENDER_CACHE.put(chart, bytes);
+
+        return bytes;
+    }
+
+    /**
+     * Obtiene la portada de una vivienda, leyéndola de disco solo la primera vez.
+     * * Devuelve siempre una copia para que el escalado de un informe no afecte al siguiente.
+     */
+    private static Image loadCover(int vutId, String coverPath) throws Exception {
+
+        if (vutId < 0) return Image.getInstance(coverPath);
+
+        CachedCover cached = COVER_CACHE.get(vutId);
+        if (cached == null || !cached.path().equals(coverPath)) {
+            cached = new CachedCover(coverPath, Image.getInstance(coverPath));
+            COVER_CACHE.put(vutId, cached);
+        }
+
+        return Image.getInstance(cached.image());
+    }
+
+    /**
+     * Genera el informe anual de una vivienda a partir de un {@link YearlyReport}.
+     * * Construye la tabla de métricas (totales, ocupación, noches y desglose mensual) directamente
+     * desde los arrays del informe y delega en {@link #generateReport(String, String, String, String, Map, List)}.
+     * * @param report Métricas anuales ya calculadas (una única consulta).
+     * @return true si el PDF se generó correctamente.
+     */
+    public boolean generateReport(String filePath, String vutName, String coverPath, YearlyReport report, List<JFreeChart> charts) {
+
+        Map<String, String> stats = new LinkedHashMap<>();
+        stats.put("Nombre del VUT", vutName);
+        stats.put("Año", String.valueOf(report.getYear()));
+        stats.put("Ingresos anuales totales", "€ " + Money.format(report.getTotalRevenueCents()));
+        stats.put("Ocupación media", String.format("%.1f%%", report.getYearlyOccupancy()));
+        stats.put("Noches ocupadas", String.valueOf(report.getTotalOccupiedNights()));
+
+        for (int month = 1; month <= 12; month++) {
+            String name = Month.of(month).getDisplayName(TextStyle.FULL, new Locale("es", "ES"));
+            stats.put(name, "€ " + Money.format(report.getRevenueCents(month)) + String.format("  ·  %.1f%%", report.getOccupancy(month)));
+        }
+
+        stats.put("Generado el", LocalDate.now().toString());
+
+        return writeReport(filePath, report.getVutId(), vutName, "Reporte Anual " + report.getYear(), coverPath, stats, charts);
+    }
+
     /**
      * Método auxiliar para añadir celdas a la tabla de estadísticas con el estilo correcto.
      * * Aplica padding, alineación y un color de fondo gris claro si la celda es una cabecera (Key).
@@ -0,0 +1,413 @@
+package sincroestancia.src.services;
+
+import org.openpdf.text.Document;
+import org.openpdf.text.Element;
+import org.openpdf.text.FontFactory;
+import org.openpdf.text.Image;
+import org.openpdf.text.PageSize;
+import org.openpdf.text.Paragraph;
+import org.openpdf.text.Phrase;
+import org.openpdf.text.pdf.DefaultFontMapper;
+import org.openpdf.text.pdf.PdfPCell;
+import org.openpdf.text.pdf.PdfPTable;
+import org.openpdf.text.pdf.PdfTemplate;
+import org.openpdf.text.pdf.PdfWriter;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.time.Month;
+import java.time.format.TextStyle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.plot.CategoryPlot;
+import org.jfree.chart.plot.PlotOrientation;
+import org.jfree.chart.renderer.category.BarRenderer;
+import org.jfree.data.category.DefaultCategoryDataset;
+
+import sincroestancia.src.database.ConnectionPool;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.Money;
+import sincroestancia.src.models.VutItem;
+import sincroestancia.src.models.YearlyReport;
+
+/**
+ * Servicio de generación del informe consolidado de cartera (todas las viviendas en un único PDF).
+ * * Contenido del informe:
+ * - Portada con los totales de la cartera, una fila por vivienda y la mezcla global de nacionalidades.
+ * - Una página por vivienda con sus KPIs, el desglose mensual, sus nacionalidades y un gráfico de ingresos.
+ * * Funcionamiento:
+ * - Los resúmenes por vivienda se calculan en paralelo, cada hilo con su propia conexión de un
+ * ConnectionPool (la conexión compartida serializaría las consultas). Cada resumen es pequeño
+ * (arrays de 12 posiciones), por lo que pueden mantenerse todos en memoria.
+ * - Los gráficos (la parte pesada) se construyen en paralelo con una ventana de anticipación
+ * limitada, y cada página se escribe y se libera antes de pedir el siguiente gráfico, de forma que
+ * la memoria se mantiene estable aunque haya cientos de viviendas.
+ * - El documento se ensambla de forma secuencial, ya que PdfWriter no admite escrituras concurrentes.
+ * * @author Carlos Padilla Labella
+ */
+public class PortfolioReportService {
+
+    /** Número máximo de gráficos construidos por adelantado mientras se escribe la página actual. */
+    private static final int LOOK_AHEAD = 8;
+
+    /** Conexiones (y hilos) con los que se calculan los resúmenes por vivienda. */
+    private static final int SUMMARY_CONNECTIONS = 4;
+
+    private static final int CHART_WIDTH = 500;
+    private static final int CHART_HEIGHT = 260;
+
+    private static final Locale LOCALE_ES = new Locale("es", "ES");
+
+    private static final org.openpdf.text.Font TITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 18);
+    private static final org.openpdf.text.Font SUBTITLE_FONT = FontFactory.getFont(FontFactory.HELVETICA, 14, org.openpdf.text.Font.BOLD);
+    private static final org.openpdf.text.Font TEXT_FONT = FontFactory.getFont(FontFactory.HELVETICA, 11);
+    private static final org.openpdf.text.Font HEADER_FONT = FontFactory.getFont(FontFactory.HELVETICA_BOLD, 11);
+
+    /**
+     * Resumen de una vivienda para el periodo del informe.
+     */
+    public record PropertySummary(VutItem vut, YearlyReport report, Map<String, Integer> nationalities) {}
+
+    private final DatabaseService dbService;
+
+    public PortfolioReportService() {
+        this.dbService = new DatabaseService();
+    }
+
+    /**
+     * Genera el informe de cartera de un año completo o de uno de sus trimestres.
+     * * Pasos de implementación:
+     * - Calcula en paralelo el resumen de cada vivienda (informe anual + nacionalidades del periodo),
+     * con conexiones propias.
+     * - Escribe la portada con los totales agregados de la cartera.
+     * - Escribe una página por vivienda, construyendo los gráficos por adelantado en segundo plano.
+     * * @param filePath Ruta absoluta del .pdf resultante.
+     * @param year Año del informe.
+     * @param quarter Trimestre (1-4) o 0 para el año completo.
+     * @param progress Receptor opcional del progreso (0-100). Puede ser null.
+     * @return true si el PDF se generó correctamente.
+     */
+    public boolean generateReport(String filePath, int year, int quarter, IntConsumer progress) {
+
+        int fromMonth = quarter == 0 ? 1 : (quarter - 1) * 3 + 1;
+        int toMonth = quarter == 0 ? 12 : fromMonth + 2;
+        String period = quarter == 0 ? "Año " + year : "T" + quarter + " " + year;
+
+        List<VutItem> vuts = dbService.get_all_vuts();
+        Document document = new Document(PageSize.A4);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+
+            List<PropertySummary> summaries = collectSummaries(executor, vuts, year, fromMonth, toMonth, progress);
+
+            PdfWriter writer = PdfWriter.getInstance(document, new BufferedOutputStream(new FileOutputStream(filePath)));
+            document.open();
+
+            writeSummaryPage(document, summaries, period, fromMonth, toMonth);
+
+            DefaultFontMapper fontMapper = new DefaultFontMapper();
+            Deque<Future<JFreeChart>> pending = new ArrayDeque<>();
+            int next = 0;
+
+            for (int i = 0; i < summaries.size(); i++) {
+
+                while (next < summaries.size() && next < i + LOOK_AHEAD) {
+                    PropertySummary summary = summaries.get(next++);
+                    pending.add(executor.submit(() -> createRevenueChart(summary, fromMonth, toMonth)));
+                }
+
+                writePropertyPage(document, writer, fontMapper, summaries.get(i), pending.poll().get(), period, fromMonth, toMonth);
+                report(progress, 40 + (60 * (i + 1)) / summaries.size());
+            }
+
+            document.close();
+            return true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("[error] Portfolio report interrupted.");
+            return false;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        } finally {
+            if (document.isOpen()) {
+                try {
+                    document.close();
+                } catch (Exception e) {
+                    System.err.println("[error] Could not close portfolio report: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Calcula en paralelo el resumen de cada vivienda, conservando el orden de entrada.
+     * * Abre un pool de hasta SUMMARY_CONNECTIONS conexiones y lanza un hilo por conexión; cada hilo
+     * toma la siguiente vivienda pendiente y la consulta con su propio DatabaseService.
+     */
+    private List<PropertySummary> collectSummaries(ExecutorService executor, List<VutItem> vuts, int year,
+            int fromMonth, int toMonth, IntConsumer progress) throws Exception {
+
+        if (vuts.isEmpty()) return new ArrayList<>();
+
+        PropertySummary[] summaries = new PropertySummary[vuts.size()];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        try (ConnectionPool pool = DatabaseManager.open_pool(Math.min(SUMMARY_CONNECTIONS, vuts.size()))) {
+
+            if (pool == null) throw new SQLException("Could not open connections for the portfolio report.");
+
+            List<Future<?>> workers = new ArrayList<>(pool.size());
+
+            for (int w = 0; w < pool.size(); w++) {
+                workers.add(executor.submit(() -> {
+                    try (ConnectionPool.Lease lease = pool.borrow()) {
+                        DatabaseService db = new DatabaseService(lease.connection());
+                        for (int i = next.getAndIncrement(); i < summaries.length; i = next.getAndIncrement()) {
+                            VutItem vut = vuts.get(i);
+                            summaries[i] = new PropertySummary(
+                                vut,
+                                db.getYearlyReport(vut.getId(), year),
+                                db.getNationalityMix(vut.getId(), year, fromMonth, toMonth)
+                            );
+                            synchronized (done) {
+                                report(progress, (40 * done.incrementAndGet()) / summaries.length);
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> worker : workers) worker.get();
+        }
+
+        return new ArrayList<>(List.of(summaries));
+    }
+
+    /**
+     * Escribe la portada del informe: totales de la cartera, tabla de viviendas y nacionalidades.
+     */
+    private void writeSummaryPage(Document document, List<PropertySummary> summaries, String period, int fromMonth, int toMonth) throws Exception {
+
+        long revenue = 0;
+        int occupied = 0;
+        int availableNights = 0;
+        Map<String, Integer> nationalities = new LinkedHashMap<>();
+
+        for (PropertySummary summary : summaries) {
+            revenue = Money.add(revenue, summary.report().getRevenueCents(fromMonth, toMonth));
+            occupied += summary.report().getOccupiedNights(fromMonth, toMonth);
+            availableNights += summary.report().getDays(fromMonth, toMonth);
+            summary.nationalities().forEach((country, guests) -> nationalities.merge(country, guests, Integer::sum));
+        }
+
+        Paragraph title = new Paragraph("Informe de cartera", TITLE_FONT);
+        title.setAlignment(Element.ALIGN_CENTER);
+        document.add(title);
+
+        Paragraph subtitle = new Paragraph("Periodo: " + period, SUBTITLE_FONT);
+        subtitle.setAlignment(Element.ALIGN_CENTER);
+        subtitle.setSpacingAfter(20);
+        document.add(subtitle);
+
+        document.add(new Paragraph("Fecha de reporte: " + new SimpleDateFormat("dd/MM/yyyy").format(new Date()), TEXT_FONT));
+        document.add(new Paragraph(" ", TEXT_FONT));
+
+        PdfPTable totals = new PdfPTable(2);
+        totals.setWidthPercentage(100);
+        addRow(totals, "Viviendas", String.valueOf(summaries.size()));
+        addRow(totals, "Ingresos totales", "€ " + Money.format(revenue));
+        addRow(totals, "Noches ocupadas", String.valueOf(occupied));
+        addRow(totals, "Ocupación media de la cartera", String.format("%.1f%%", availableNights > 0 ? occupied * 100.0 / availableNights : 0.0));
+        document.add(totals);
+
+        document.add(new Paragraph(" ", TEXT_FONT));
+        document.add(new Paragraph("Viviendas", SUBTITLE_FONT));
+        document.add(new Paragraph(" ", TEXT_FONT));
+
+        PdfPTable properties = new PdfPTable(new float[] { 4, 2, 2, 2 });
+        properties.setWidthPercentage(100);
+        properties.setHeaderRows(1);
+        addCell(properties, "Vivienda", true);
+        addCell(properties, "Ingresos", true);
+        addCell(properties, "Ocupación", true);
+        addCell(properties, "Noches", true);
+
+        for (PropertySummary summary : summaries) {
+            YearlyReport report = summary.report();
+            addCell(properties, summary.vut().getName(), false);
+            addCell(properties, "€ " + Money.format(report.getRevenueCents(fromMonth, toMonth)), false);
+            addCell(properties, String.format("%.1f%%", report.getOccupancy(fromMonth, toMonth)), false);
+            addCell(properties, String.valueOf(report.getOccupiedNights(fromMonth, toMonth)), false);
+        }
+
+        document.add(properties);
+
+        if (!nationalities.isEmpty()) {
+            document.add(new Paragraph(" ", TEXT_FONT));
+            document.add(new Paragraph("Procedencia de los huéspedes", SUBTITLE_FONT));
+            document.add(new Paragraph(" ", TEXT_FONT));
+            document.add(createNationalityTable(nationalities, 15));
+        }
+    }
+
+    /**
+     * Escribe la página de una vivienda y dibuja su gráfico en una plantilla vectorial.
+     */
+    private void writePropertyPage(Document document, PdfWriter writer, DefaultFontMapper fontMapper, PropertySummary summary,
+            JFreeChart chart, String period, int fromMonth, int toMonth) throws Exception {
+
+        YearlyReport report = summary.report();
+
+        document.newPage();
+
+        Paragraph title = new Paragraph(summary.vut().getName(), TITLE_FONT);
+        title.setAlignment(Element.ALIGN_CENTER);
+        document.add(title);
+
+        Paragraph subtitle = new Paragraph("Periodo: " + period, SUBTITLE_FONT);
+        subtitle.setAlignment(Element.ALIGN_CENTER);
+        subtitle.setSpacingAfter(15);
+        document.add(subtitle);
+
+        PdfPTable kpis = new PdfPTable(2);
+        kpis.setWidthPercentage(100);
+        addRow(kpis, "Ingresos", "€ " + Money.format(report.getRevenueCents(fromMonth, toMonth)));
+        addRow(kpis, "Ocupación", String.format("%.1f%%", report.getOccupancy(fromMonth, toMonth)));
+        addRow(kpis, "Noches ocupadas", String.valueOf(report.getOccupiedNights(fromMonth, toMonth)));
+        addRow(kpis, "Noches pagadas", String.valueOf(report.getPaidNights(fromMonth, toMonth)));
+        document.add(kpis);
+
+        document.add(new Paragraph(" ", TEXT_FONT));
+
+        PdfPTable months = new PdfPTable(3);
+        months.setWidthPercentage(100);
+        addCell(months, "Mes", true);
+        addCell(months, "Ingresos", true);
+        addCell(months, "Ocupación", true);
+
+        for (int month = fromMonth; month <= toMonth; month++) {
+            addCell(months, Month.of(month).getDisplayName(TextStyle.FULL, LOCALE_ES), false);
+            addCell(months, "€ " + Money.format(report.getRevenueCents(month)), false);
+            addCell(months, String.format("%.1f%%", report.getOccupancy(month)), false);
+        }
+
+        document.add(months);
+
+        if (!summary.nationalities().isEmpty()) {
+            document.add(new Paragraph(" ", TEXT_FONT));
+            document.add(createNationalityTable(summary.nationalities(), 5));
+        }
+
+        document.add(new Paragraph(" ", TEXT_FONT));
+
+        PdfTemplate template = writer.getDirectContent().createTemplate(CHART_WIDTH, CHART_HEIGHT);
+        Graphics2D g2d = template.createGraphics(CHART_WIDTH, CHART_HEIGHT, fontMapper);
+        chart.draw(g2d, new Rectangle2D.Double(0, 0, CHART_WIDTH, CHART_HEIGHT));
+        g2d.dispose();
+
+        Image chartImage = Image.getInstance(template);
+        chartImage.setAlignment(Element.ALIGN_CENTER);
+        document.add(chartImage);
+    }
+
+    /**
+     * Construye el gráfico de barras de ingresos mensuales de una vivienda (se ejecuta en segundo plano).
+     */
+    private JFreeChart createRevenueChart(PropertySummary summary, int fromMonth, int toMonth) {
+
+        DefaultCategoryDataset dataset = new DefaultCategoryDataset();
+
+        for (int month = fromMonth; month <= toMonth; month++) {
+            dataset.addValue(Money.toEuros(summary.report().getRevenueCents(month)), "Ingresos", Month.of(month).getDisplayName(TextStyle.SHORT, LOCALE_ES));
+        }
+
+        JFreeChart chart = ChartFactory.createBarChart(
+            "Ingresos mensuales", "Mes", "Cantidad (€)",
+            dataset, PlotOrientation.VERTICAL, false, false, false
+        );
+
+        CategoryPlot plot = chart.getCategoryPlot();
+        plot.setBackgroundPaint(Color.WHITE);
+        plot.setRangeGridlinePaint(Color.LIGHT_GRAY);
+
+        BarRenderer renderer = (BarRenderer) plot.getRenderer();
+        renderer.setSeriesPaint(0, new Color(46, 204, 113));
+
+        return chart;
+    }
+
+    /**
+     * Tabla (Nacionalidad, Huéspedes, %) con las primeras 'limit' entradas de mayor a menor.
+     */
+    private PdfPTable createNationalityTable(Map<String, Integer> nationalities, int limit) {
+
+        int total = nationalities.values().stream().mapToInt(Integer::intValue).sum();
+
+        PdfPTable table = new PdfPTable(3);
+        table.setWidthPercentage(100);
+        addCell(table, "Nacionalidad", true);
+        addCell(table, "Huéspedes", true);
+        addCell(table, "%", true);
+
+        nationalities.entrySet().stream()
+            .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+            .limit(limit)
+            .forEach(entry -> {
+                addCell(table, entry.getKey(), false);
+                addCell(table, String.valueOf(entry.getValue()), false);
+                addCell(table, String.format("%.1f%%", total > 0 ? entry.getValue() * 100.0 / total : 0.0), false);
+            });
+
+        return table;
+    }
+
+    private void addRow(PdfPTable table, String key, String value) {
+        addCell(table, key, true);
+        addCell(table, value, false);
+    }
+
+    /**
+     * Añade una celda con el mismo estilo que las tablas de PdfReportService.
+     */
+    private void addCell(PdfPTable table, String text, boolean isHeader) {
+
+        PdfPCell cell = new PdfPCell(new Phrase(text, isHeader ? HEADER_FONT : TEXT_FONT));
+
+        cell.setPadding(6);
+        cell.setHorizontalAlignment(Element.ALIGN_LEFT);
+        cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+
+        if (isHeader) {
+            cell.setBackgroundColor(Color.LIGHT_GRAY);
+        }
+
+        table.addCell(cell);
+    }
+
+    private static void report(IntConsumer progress, int value) {
+        if (progress != null) progress.accept(value);
+    }
+}
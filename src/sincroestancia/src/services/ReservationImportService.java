@@ -0,0 +1,451 @@
+package sincroestancia.src.services;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.models.DayStatus;
+import sincroestancia.src.models.ReservationInfo;
+import sincroestancia.src.utils.CsvReader;
+import sincroestancia.src.utils.IcalParser;
+import sincroestancia.src.utils.IcalParser.IcalEvent;
+
+/**
+ * Servicio de importación masiva de reservas desde CSV o iCalendar (.ics).
+ * * Pensado para migrar el histórico desde otro PMS. El origen se lee en streaming y cada fila
+ * pasa por el mismo pipeline:
+ * - Validación de campos (nombre, fechas, número de huéspedes).
+ * - Validación contra la disponibilidad: solapes con reservas existentes (ReservationIndex),
+ * solapes con filas anteriores del mismo archivo y días ya ocupados en 'days'.
+ * - Escritura por bloques de {@link #CHUNK_SIZE} reservas en una única transacción cada uno
+ * (inserciones con sentencia reutilizada y actualización de 'days' por lotes).
+ * * En modo simulación (dry-run) se valida todo el archivo pero no se escribe nada.
+ * * Las filas rechazadas se devuelven en un informe con su número de línea y el motivo.
+ * * @author Carlos Padilla Labella
+ */
+public class ReservationImportService {
+
+    /** Reservas escritas por transacción. */
+    private static final int CHUNK_SIZE = 500;
+
+    /** Número máximo de errores detallados que se conservan en el informe. */
+    private static final int MAX_ERRORS = 1000;
+
+    /**
+     * Error de una fila concreta del archivo de origen.
+     */
+    public record RowError(int line, String message) {}
+
+    /**
+     * Resultado de una importación (o de una simulación).
+     */
+    public static final class ImportReport {
+
+        private final boolean dryRun;
+        private int rows;
+        private int imported;
+        private int rejected;
+        private final List<RowError> errors = new ArrayList<>();
+
+        private ImportReport(boolean dryRun) {
+            this.dryRun = dryRun;
+        }
+
+        private void reject(int line, String message) {
+            rejected++;
+            if (errors.size() < MAX_ERRORS) errors.add(new RowError(line, message));
+        }
+
+        public boolean isDryRun() { return dryRun; }
+        public int getRows() { return rows; }
+        public int getImported() { return imported; }
+        public int getRejected() { return rejected; }
+        public List<RowError> getErrors() { return Collections.unmodifiableList(errors); }
+
+        /**
+         * Resumen de una línea (p.ej. "1200 filas: 1180 importadas, 20 rechazadas").
+         */
+        public String summary() {
+            return rows + " filas: " + imported + (dryRun ? " válidas" : " importadas") + ", " + rejected + " rechazadas";
+        }
+    }
+
+    private record Candidate(int line, String name, String dni, String email, String phone,
+            LocalDate checkIn, LocalDate checkOut, int pax, boolean paid) {}
+
+    private final ReservationIndex reservationIndex = ReservationIndex.getInstance();
+
+    /**
+     * Importa reservas desde un CSV con cabecera.
+     * * Columnas reconocidas (sin distinguir mayúsculas): guest_name, guest_dni, guest_email,
+     * guest_phone, check_in_date, check_out_date (yyyy-MM-dd), pax_count, is_paid.
+     * Son obligatorias guest_name, check_in_date y check_out_date. El separador (',' o ';')
+     * se detecta a partir de la cabecera.
+     * * @param vutId Vivienda destino.
+     * @param source Origen de datos.
+     * @param dryRun true para validar sin escribir.
+     */
+    public ImportReport importCsv(int vutId, Reader source, boolean dryRun) {
+
+        ImportReport report = new ImportReport(dryRun);
+        BufferedReader buffered = source instanceof BufferedReader b ? b : new BufferedReader(source);
+
+        try (Connection conn = DatabaseManager.provider().open();
+            CsvReader csv = new CsvReader(buffered, detectSeparator(buffered))) {
+
+            Importer importer = new Importer(conn, vutId, report);
+
+            String[] header = csv.next();
+            if (header == null) return report;
+
+            Map<String, Integer> columns = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                columns.put(header[i].trim().toLowerCase(Locale.ROOT), i);
+            }
+
+            for (String required : new String[] { "guest_name", "check_in_date", "check_out_date" }) {
+                if (!columns.containsKey(required)) {
+                    report.reject(1, "Falta la columna obligatoria '" + required + "'");
+                    return report;
+                }
+            }
+
+            String[] record;
+            while ((record = csv.next()) != null) {
+
+                if (record.length == 1 && record[0].isBlank()) continue;
+
+                report.rows++;
+                int line = csv.getRecordLine();
+
+                try {
+                    importer.accept(new Candidate(
+                        line,
+                        field(record, columns, "guest_name"),
+                        field(record, columns, "guest_dni"),
+                        field(record, columns, "guest_email"),
+                        field(record, columns, "guest_phone"),
+                        LocalDate.parse(field(record, columns, "check_in_date")),
+                        LocalDate.parse(field(record, columns, "check_out_date")),
+                        parsePax(field(record, columns, "pax_count")),
+                        parseBoolean(field(record, columns, "is_paid"))
+                    ));
+                } catch (DateTimeParseException | NullPointerException e) {
+                    report.reject(line, "Fecha no válida (se espera yyyy-MM-dd)");
+                } catch (NumberFormatException e) {
+                    report.reject(line, "Número de huéspedes no válido");
+                }
+            }
+
+            importer.flush();
+
+        } catch (IOException e) {
+            System.err.println("[error] Error reading CSV import: " + e.getMessage());
+            report.reject(0, "Error de lectura: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("[error] Import could not open its connection: " + e.getMessage());
+            report.reject(0, "Error de base de datos: " + e.getMessage());
+        }
+
+        return report;
+    }
+
+    /**
+     * Importa reservas desde un calendario iCalendar (.ics).
+     * * Cada VEVENT se convierte en una reserva: SUMMARY como nombre, DTSTART como entrada y
+     * DTEND como salida. Los eventos cancelados se ignoran.
+     */
+    public ImportReport importIcal(int vutId, Reader source, boolean dryRun) {
+
+        ImportReport report = new ImportReport(dryRun);
+
+        try (Connection conn = DatabaseManager.provider().open();
+            IcalParser parser = new IcalParser(source)) {
+
+            Importer importer = new Importer(conn, vutId, report);
+
+            IcalEvent event;
+            while ((event = parser.next()) != null) {
+
+                if (event.isCancelled()) continue;
+
+                report.rows++;
+
+                if (event.checkIn() == null || event.checkOut() == null) {
+                    report.reject(event.line(), "Evento sin fechas válidas (DTSTART/DTEND)");
+                    continue;
+                }
+
+                String name = event.summary() == null || event.summary().isBlank() ? "Reserva iCal" : event.summary().trim();
+                importer.accept(new Candidate(event.line(), name, "", null, null, event.checkIn(), event.checkOut(), 1, false));
+            }
+
+            importer.flush();
+
+        } catch (IOException e) {
+            System.err.println("[error] Error reading iCal import: " + e.getMessage());
+            report.reject(0, "Error de lectura: " + e.getMessage());
+        } catch (SQLException e) {
+            System.err.println("[error] Import could not open its connection: " + e.getMessage());
+            report.reject(0, "Error de base de datos: " + e.getMessage());
+        }
+
+        return report;
+    }
+
+    /**
+     * Valida las filas y las acumula en bloques que se escriben en una transacción cada uno.
+     * * Trabaja con una conexión propia de la importación (se ejecuta en un SwingWorker), para que
+     * sus transacciones no se mezclen con lo que otros hilos hagan sobre la conexión compartida.
+     */
+    private final class Importer {
+
+        private final Connection conn;
+        private final int vutId;
+        private final ImportReport report;
+        private final List<Candidate> chunk = new ArrayList<>(CHUNK_SIZE);
+
+        /** Intervalos [entrada, salida) en días epoch aceptados en esta importación (no se solapan entre sí). */
+        private final TreeMap<Long, Long> accepted = new TreeMap<>();
+
+        private Importer(Connection conn, int vutId, ImportReport report) {
+            this.conn = conn;
+            this.vutId = vutId;
+            this.report = report;
+        }
+
+        void accept(Candidate candidate) {
+
+            String error = validate(candidate);
+            if (error != null) {
+                report.reject(candidate.line(), error);
+                return;
+            }
+
+            accepted.put(candidate.checkIn().toEpochDay(), candidate.checkOut().toEpochDay());
+
+            if (report.isDryRun()) {
+                report.imported++;
+                return;
+            }
+
+            chunk.add(candidate);
+            if (chunk.size() >= CHUNK_SIZE) flush();
+        }
+
+        void flush() {
+
+            if (chunk.isEmpty()) return;
+
+            try {
+                writeChunk(conn, vutId, chunk);
+                report.imported += chunk.size();
+            } catch (SQLException e) {
+                System.err.println("[error] Import chunk failed: " + e.getMessage());
+                for (Candidate candidate : chunk) {
+                    report.reject(candidate.line(), "Error al guardar: " + e.getMessage());
+                }
+            }
+
+            chunk.clear();
+        }
+
+        private String validate(Candidate c) {
+
+            if (c.name() == null || c.name().isBlank()) return "Falta el nombre del huésped";
+            if (!c.checkOut().isAfter(c.checkIn())) return "La salida debe ser posterior a la entrada";
+            if (c.pax() < 1) return "El número de huéspedes debe ser al menos 1";
+
+            long start = c.checkIn().toEpochDay();
+            long end = c.checkOut().toEpochDay();
+
+            Map.Entry<Long, Long> previous = accepted.lowerEntry(end);
+            if (previous != null && previous.getValue() > start) {
+                return "Se solapa con otra fila del archivo (" + LocalDate.ofEpochDay(previous.getKey()) + ")";
+            }
+
+            List<ReservationInfo> overlapping = reservationIndex.findOverlapping(conn, vutId, c.checkIn(), c.checkOut());
+            if (!overlapping.isEmpty()) {
+                ReservationInfo existing = overlapping.get(0);
+                return "Se solapa con la reserva #" + existing.id() + " (" + existing.guestName() + ")";
+            }
+
+            try {
+                if (countOccupiedDays(c.checkIn(), c.checkOut()) > 0) {
+                    return "Hay días ya ocupados en el calendario";
+                }
+            } catch (SQLException e) {
+                System.err.println("[error] Error checking availability: " + e.getMessage());
+                return "No se pudo comprobar la disponibilidad: " + e.getMessage();
+            }
+
+            return null;
+        }
+
+        private int countOccupiedDays(LocalDate from, LocalDate toExclusive) throws SQLException {
+
+            String sql = "SELECT COUNT(*) FROM days WHERE vut_id = ? AND day_date >= ? AND day_date < ? AND status <> " + DayStatus.FREE.code();
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setInt(1, vutId);
+                pstmt.setString(2, from.toString());
+                pstmt.setString(3, toExclusive.toString());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe un bloque de reservas ya validadas en una única transacción.
+     * * Pasos de implementación:
+     * - Inserta cada reserva reutilizando la misma sentencia preparada (recuperando su ID).
+     * - Marca en un único lote todos los días ocupados del bloque.
+     * - Recalcula una sola vez los agregados mensuales que cubre el bloque.
+     * - Tras el commit, añade las reservas al índice en memoria.
+     */
+    private void writeChunk(Connection conn, int vutId, List<Candidate> chunk) throws SQLException {
+
+        String createdAt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+
+        String sqlInsertReservation = "INSERT INTO reservations (vut_id, guest_name, guest_dni, guest_email, guest_phone, " +
+            "check_in_date, check_out_date, pax_count, is_paid, created_at, has_checkout) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)";
+
+        String sqlUpdateDays = "UPDATE days SET status = ?, is_synced = 0, version = version + 1 WHERE vut_id = ? AND day_date = ?";
+
+        List<ReservationInfo> inserted = new ArrayList<>(chunk.size());
+        LocalDate min = chunk.get(0).checkIn();
+        LocalDate max = chunk.get(0).checkOut();
+
+        try {
+
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement pstmtReservation = conn.prepareStatement(sqlInsertReservation, Statement.RETURN_GENERATED_KEYS);
+                PreparedStatement pstmtUpdateDays = conn.prepareStatement(sqlUpdateDays)) {
+
+                for (Candidate c : chunk) {
+
+                    pstmtReservation.setInt(1, vutId);
+                    pstmtReservation.setString(2, c.name());
+                    pstmtReservation.setString(3, c.dni() == null ? "" : c.dni());
+                    pstmtReservation.setString(4, c.email());
+                    pstmtReservation.setString(5, c.phone());
+                    pstmtReservation.setString(6, c.checkIn().toString());
+                    pstmtReservation.setString(7, c.checkOut().toString());
+                    pstmtReservation.setInt(8, c.pax());
+                    pstmtReservation.setBoolean(9, c.paid());
+                    pstmtReservation.setString(10, createdAt);
+                    pstmtReservation.executeUpdate();
+
+                    try (ResultSet rs = pstmtReservation.getGeneratedKeys()) {
+                        if (rs.next()) {
+                            inserted.add(new ReservationInfo(rs.getInt(1), c.name(), c.dni(), c.email(), c.phone(),
+                                c.checkIn().toString(), c.checkOut().toString(), c.pax(), c.paid(), false, false, 0));
+                            ChangeLog.record(conn, ChangeLog.RESERVATIONS, vutId, rs.getInt(1), ChangeLog.Operation.INSERT);
+                        }
+                    }
+
+                    ChangeLog.recordDays(conn, vutId, c.checkIn().toString(), c.checkOut().toString());
+
+                    DayStatus status = DayStatus.occupied(c.paid());
+                    for (LocalDate day = c.checkIn(); day.isBefore(c.checkOut()); day = day.plusDays(1)) {
+                        pstmtUpdateDays.setInt(1, status.code());
+                        pstmtUpdateDays.setInt(2, vutId);
+                        pstmtUpdateDays.setString(3, day.toString());
+                        pstmtUpdateDays.addBatch();
+                    }
+
+                    if (c.checkIn().isBefore(min)) min = c.checkIn();
+                    if (c.checkOut().isAfter(max)) max = c.checkOut();
+                }
+
+                pstmtUpdateDays.executeBatch();
+            }
+
+            MonthlyStats.refreshRange(conn, vutId, min, max.minusDays(1));
+
+            conn.commit();
+
+            if (inserted.size() == chunk.size()) {
+                reservationIndex.putAll(vutId, inserted);
+            } else {
+                reservationIndex.invalidate(vutId);
+            }
+
+            IcalExportService.invalidate(vutId);
+
+        } catch (SQLException e) {
+
+            try {
+                conn.rollback();
+            } catch (SQLException ex) {
+                ex.printStackTrace();
+            }
+
+            throw e;
+
+        } finally {
+            try {
+                conn.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Detecta el separador del CSV (',' o ';') contando sus apariciones en la cabecera.
+     */
+    private static char detectSeparator(BufferedReader reader) throws IOException {
+
+        reader.mark(64 * 1024);
+        String header = reader.readLine();
+        reader.reset();
+
+        if (header == null) return ',';
+
+        long semicolons = header.chars().filter(ch -> ch == ';').count();
+        long commas = header.chars().filter(ch -> ch == ',').count();
+
+        return semicolons > commas ? ';' : ',';
+    }
+
+    private static String field(String[] record, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= record.length) return null;
+        String value = record[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static int parsePax(String value) {
+        return value == null ? 1 : Integer.parseInt(value);
+    }
+
+    private static boolean parseBoolean(String value) {
+        if (value == null) return false;
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "1", "true", "yes", "si", "sí", "paid" -> true;
+            default -> false;
+        };
+    }
+}
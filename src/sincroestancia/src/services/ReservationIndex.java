@@ -0,0 +1,345 @@
+package sincroestancia.src.services;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import sincroestancia.src.models.ReservationInfo;
+
+/**
+ * Índice en memoria de las reservas de cada vivienda, organizado como un árbol de intervalos aplanado.
+ * * Las consultas del calendario ("¿qué reserva cubre este día?", "¿quién sale hoy?") y el cruce de la
+ * sincronización se resolvían con predicados de rango sobre 'reservations' que SQLite no puede indexar
+ * (date(check_out_date, '-1 day')). Este índice las resuelve sin SQL.
+ * * Estructura por vivienda:
+ * - Intervalos [check_in, check_out) ordenados por fecha de entrada (en días epoch).
+ * - Un array aumentado con el máximo 'check_out' acumulado, que permite cortar la búsqueda
+ * hacia atrás en cuanto ningún intervalo anterior puede alcanzar la fecha consultada.
+ * * Cada vivienda se carga de forma perezosa la primera vez que se consulta y se mantiene
+ * actualizada desde las operaciones de escritura de DatabaseService (copy-on-write), por lo que
+ * las lecturas no necesitan bloqueo.
+ * * @author Carlos Padilla Labella
+ */
+public final class ReservationIndex {
+
+    private static final ReservationIndex INSTANCE = new ReservationIndex();
+
+    private final Map<Integer, VutIntervals> byVut = new ConcurrentHashMap<>();
+    private final Map<Integer, Integer> vutByReservation = new ConcurrentHashMap<>();
+
+    private ReservationIndex() {}
+
+    /**
+     * Obtiene la instancia compartida del índice.
+     * * Es única para toda la aplicación porque cada panel crea su propio DatabaseService.
+     */
+    public static ReservationIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Devuelve la reserva que ocupa la noche indicada (check_in <= fecha < check_out).
+     * * @return La reserva o null si el día está libre.
+     */
+    public ReservationInfo findCovering(Connection conn, int vutId, LocalDate date) {
+        return forVut(conn, vutId).covering(date.toEpochDay());
+    }
+
+    /**
+     * Devuelve la reserva cuya fecha de salida coincide con el día indicado.
+     */
+    public ReservationInfo findByCheckout(Connection conn, int vutId, LocalDate date) {
+        return forVut(conn, vutId).checkingOut(date.toEpochDay());
+    }
+
+    /**
+     * Devuelve las reservas que se solapan con el rango [from, toExclusive), ordenadas por entrada.
+     */
+    public List<ReservationInfo> findOverlapping(Connection conn, int vutId, LocalDate from, LocalDate toExclusive) {
+        return forVut(conn, vutId).overlapping(from.toEpochDay(), toExclusive.toEpochDay());
+    }
+
+    /**
+     * Cruza una lista de días (ordenada ascendentemente) con las reservas de la vivienda
+     * mediante un barrido único (merge), sin una consulta por día.
+     * * @param sortedEpochDays Días en formato epoch, en orden ascendente.
+     * @return Array alineado con la entrada; cada posición contiene la reserva que cubre ese día o null.
+     */
+    public ReservationInfo[] mergeCovering(Connection conn, int vutId, long[] sortedEpochDays) {
+        return forVut(conn, vutId).merge(sortedEpochDays);
+    }
+
+    /**
+     * Añade o reemplaza una reserva en el índice de su vivienda.
+     * * Si la vivienda aún no se ha cargado no se hace nada: la primera lectura la cargará completa.
+     */
+    public void put(int vutId, ReservationInfo info) {
+        vutByReservation.put(info.id(), vutId);
+        byVut.computeIfPresent(vutId, (id, current) -> current.with(info));
+    }
+
+    /**
+     * Igual que {@link #put}, pero reconstruye el índice de la vivienda una sola vez para todo el
+     * lote (importaciones masivas).
+     */
+    public void putAll(int vutId, List<ReservationInfo> infos) {
+        if (infos.isEmpty()) return;
+        for (ReservationInfo info : infos) vutByReservation.put(info.id(), vutId);
+        byVut.computeIfPresent(vutId, (id, current) -> current.withAll(infos));
+    }
+
+    /**
+     * Aplica una modificación a una reserva ya indexada (pago, check-in, check-out...).
+     */
+    public void update(int reservationId, UnaryOperator<ReservationInfo> change) {
+        Integer vutId = vutByReservation.get(reservationId);
+        if (vutId == null) return;
+
+        byVut.computeIfPresent(vutId, (id, current) -> {
+            ReservationInfo existing = current.byId(reservationId);
+            return existing == null ? current : current.with(change.apply(existing));
+        });
+    }
+
+    /**
+     * Elimina una reserva del índice.
+     */
+    public void remove(int reservationId) {
+        Integer vutId = vutByReservation.remove(reservationId);
+        if (vutId == null) return;
+        byVut.computeIfPresent(vutId, (id, current) -> current.without(reservationId));
+    }
+
+    /**
+     * Descarta el índice de una vivienda para que se recargue en la siguiente consulta.
+     */
+    public void invalidate(int vutId) {
+        byVut.remove(vutId);
+        vutByReservation.values().removeIf(id -> id == vutId);
+    }
+
+    /**
+     * Obtiene (cargando si es necesario) los intervalos de una vivienda.
+     * * Si la carga falla se responde como si no hubiera reservas, pero no se guarda nada en el
+     * índice: la siguiente consulta vuelve a intentarlo.
+     */
+    private VutIntervals forVut(Connection conn, int vutId) {
+        VutIntervals intervals = byVut.computeIfAbsent(vutId, id -> load(conn, id));
+        return intervals != null ? intervals : VutIntervals.EMPTY;
+    }
+
+    /**
+     * Carga todas las reservas de una vivienda en una única consulta ordenada.
+     * * @return Los intervalos, o null si la consulta ha fallado.
+     */
+    private VutIntervals load(Connection conn, int vutId) {
+
+        List<ReservationInfo> list = new ArrayList<>();
+        String sql = "SELECT id, guest_name, guest_dni, guest_email, guest_phone, check_in_date, check_out_date, pax_count, is_paid, has_checkin, has_checkout, version " +
+            "FROM reservations WHERE vut_id = ? ORDER BY check_in_date ASC";
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+
+            pstmt.setInt(1, vutId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    ReservationInfo info = new ReservationInfo(
+                        rs.getInt("id"),
+                        rs.getString("guest_name"),
+                        rs.getString("guest_dni"),
+                        rs.getString("guest_email"),
+                        rs.getString("guest_phone"),
+                        rs.getString("check_in_date"),
+                        rs.getString("check_out_date"),
+                        rs.getInt("pax_count"),
+                        rs.getBoolean("is_paid"),
+                        rs.getBoolean("has_checkin"),
+                        rs.getBoolean("has_checkout"),
+                        rs.getInt("version")
+                    );
+                    list.add(info);
+                }
+            }
+
+        } catch (SQLException e) {
+            System.err.println("[error] Error loading reservation index for VUT " + vutId + ": " + e.getMessage());
+            return null;
+        }
+
+        for (ReservationInfo info : list) vutByReservation.put(info.id(), vutId);
+
+        return VutIntervals.of(list);
+    }
+
+    /**
+     * Instantánea inmutable de los intervalos de una vivienda.
+     * * Los arrays son paralelos: start/end en días epoch, maxEnd es el máximo de 'end' en [0..i].
+     */
+    private static final class VutIntervals {
+
+        static final VutIntervals EMPTY = of(List.of());
+
+        private final long[] start;
+        private final long[] end;
+        private final long[] maxEnd;
+        private final ReservationInfo[] items;
+
+        private VutIntervals(long[] start, long[] end, ReservationInfo[] items) {
+            this.start = start;
+            this.end = end;
+            this.items = items;
+            this.maxEnd = new long[end.length];
+            long max = Long.MIN_VALUE;
+            for (int i = 0; i < end.length; i++) {
+                max = Math.max(max, end[i]);
+                maxEnd[i] = max;
+            }
+        }
+
+        static VutIntervals of(List<ReservationInfo> list) {
+
+            List<ReservationInfo> valid = new ArrayList<>(list.size());
+            for (ReservationInfo info : list) {
+                try {
+                    LocalDate.parse(info.checkIn());
+                    LocalDate.parse(info.checkOut());
+                    valid.add(info);
+                } catch (Exception e) {
+                    System.err.println("[error] Skipping reservation " + info.id() + " with invalid dates in index.");
+                }
+            }
+
+            valid.sort(Comparator.comparing(ReservationInfo::checkIn));
+
+            int n = valid.size();
+            long[] start = new long[n];
+            long[] end = new long[n];
+            ReservationInfo[] items = valid.toArray(new ReservationInfo[0]);
+
+            for (int i = 0; i < n; i++) {
+                start[i] = LocalDate.parse(items[i].checkIn()).toEpochDay();
+                end[i] = LocalDate.parse(items[i].checkOut()).toEpochDay();
+            }
+
+            return new VutIntervals(start, end, items);
+        }
+
+        VutIntervals with(ReservationInfo info) {
+            return withAll(List.of(info));
+        }
+
+        VutIntervals withAll(List<ReservationInfo> infos) {
+            Set<Integer> replaced = new HashSet<>();
+            for (ReservationInfo info : infos) replaced.add(info.id());
+
+            List<ReservationInfo> list = new ArrayList<>(items.length + infos.size());
+            for (ReservationInfo item : items) {
+                if (!replaced.contains(item.id())) list.add(item);
+            }
+            list.addAll(infos);
+            return of(list);
+        }
+
+        VutIntervals without(int reservationId) {
+            List<ReservationInfo> list = new ArrayList<>(items.length);
+            for (ReservationInfo item : items) {
+                if (item.id() != reservationId) list.add(item);
+            }
+            return of(list);
+        }
+
+        ReservationInfo byId(int reservationId) {
+            for (ReservationInfo item : items) {
+                if (item.id() == reservationId) return item;
+            }
+            return null;
+        }
+
+        /**
+         * Índice del último intervalo cuya entrada es <= day, o -1.
+         */
+        private int lastStartingAtOrBefore(long day) {
+            int lo = 0, hi = start.length - 1, found = -1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start[mid] <= day) {
+                    found = mid;
+                    lo = mid + 1;
+                } else {
+                    hi = mid - 1;
+                }
+            }
+            return found;
+        }
+
+        ReservationInfo covering(long day) {
+            for (int i = lastStartingAtOrBefore(day); i >= 0 && maxEnd[i] > day; i--) {
+                if (end[i] > day) return items[i];
+            }
+            return null;
+        }
+
+        ReservationInfo checkingOut(long day) {
+            for (int i = lastStartingAtOrBefore(day - 1); i >= 0 && maxEnd[i] >= day; i--) {
+                if (end[i] == day) return items[i];
+            }
+            return null;
+        }
+
+        List<ReservationInfo> overlapping(long from, long toExclusive) {
+            List<ReservationInfo> result = new ArrayList<>();
+            for (int i = lastStartingAtOrBefore(toExclusive - 1); i >= 0 && maxEnd[i] > from; i--) {
+                if (end[i] > from) result.add(items[i]);
+            }
+            Collections.reverse(result);
+            return result;
+        }
+
+        /**
+         * Barrido único sobre días ordenados: mantiene los intervalos activos (ya empezados y
+         * no terminados) y avanza el puntero de entradas de forma monótona.
+         */
+        ReservationInfo[] merge(long[] days) {
+
+            ReservationInfo[] result = new ReservationInfo[days.length];
+            int[] active = new int[Math.max(1, items.length)];
+            int activeCount = 0;
+            int next = 0;
+
+            for (int d = 0; d < days.length; d++) {
+
+                long day = days[d];
+
+                while (next < start.length && start[next] <= day) {
+                    active[activeCount++] = next++;
+                }
+
+                int kept = 0;
+                ReservationInfo match = null;
+                for (int a = 0; a < activeCount; a++) {
+                    int i = active[a];
+                    if (end[i] > day) {
+                        active[kept++] = i;
+                        match = items[i];
+                    }
+                }
+                activeCount = kept;
+                result[d] = match;
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,548 @@
+package sincroestancia.src.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import sincroestancia.src.database.ConnectionPool;
+import sincroestancia.src.models.FullDayInfo;
+import sincroestancia.src.models.Money;
+import sincroestancia.src.models.Season;
+import sincroestancia.src.models.ReservationInfo;
+import sincroestancia.src.models.UpdateResult;
+import sincroestancia.src.models.VutItem;
+
+/**
+ * API REST (JSON) sobre DatabaseService para el modo sin interfaz gráfica.
+ * * Pensada para que el personal de limpieza consulte y registre entradas/salidas desde el móvil.
+ * Cada petición se atiende en un hilo virtual con su propia conexión, prestada por un ConnectionPool,
+ * de modo que las transacciones de peticiones simultáneas no se mezclan.
+ * * Autenticación: POST /api/login devuelve un token que el resto de rutas exige en la cabecera
+ * 'Authorization: Bearer {token}'. Los cambios de precios requieren un usuario 'admin'.
+ * * Es HTTP sin cifrar con acceso a datos personales de los huéspedes: por defecto solo escucha en
+ * 127.0.0.1 (para publicarla detrás de un proxy con TLS). Para escuchar en otra interfaz hay que
+ * indicarla expresamente con -Dsincroestancia.api.host (p.ej. 0.0.0.0 para todas).
+ * * Rutas:
+ * - POST /api/login                            {username, password}
+ * - GET  /api/vuts
+ * - GET  /api/vuts/{id}/days?from=&to=          Disponibilidad y precio por día [from, to).
+ * - PUT  /api/vuts/{id}/prices                  {from, to, price, season} (rango incluido).
+ * - GET  /api/vuts/{id}/reservations?from=&to=
+ * - POST /api/vuts/{id}/reservations            {name, dni, email, phone, checkIn, checkOut, pax, paid}
+ * - GET  /api/vuts/{id}/movements               Próximas entradas y salidas.
+ * - GET  /api/reservations/{id}
+ * - POST /api/reservations/{id}/checkin         {paymentMethod, paymentIdentifier, paymentHolder, cardExpiry, paymentDate, rulesAccepted, gdprAccepted}
+ * - POST /api/reservations/{id}/checkout        {exitTime, keysReturned, damageDetected, damageDescription}
+ * * @author Carlos Padilla Labella
+ */
+public class RestApiServer {
+
+    /** Puerto por defecto (se puede cambiar con -Dsincroestancia.api.port). */
+    public static final int DEFAULT_PORT = 8086;
+
+    /** Interfaz de escucha por defecto (se puede cambiar con -Dsincroestancia.api.host). */
+    public static final String DEFAULT_HOST = "127.0.0.1";
+
+    /** Conexiones del pool por defecto (se puede cambiar con -Dsincroestancia.api.pool). */
+    public static final int DEFAULT_POOL_SIZE = 8;
+
+    /** Vigencia de un token de sesión. */
+    private static final long SESSION_TTL_MS = 12L * 60 * 60 * 1000;
+
+    /** Días devueltos por /days cuando no se indica 'to'. */
+    private static final int DEFAULT_RANGE_DAYS = 31;
+
+    /** Rango máximo aceptado en consultas por fechas. */
+    private static final int MAX_RANGE_DAYS = 366;
+
+    private static final Gson GSON = new GsonBuilder().serializeNulls().create();
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Error de la API con su código HTTP; se devuelve como {"error": mensaje}.
+     */
+    private static final class ApiException extends Exception {
+
+        private final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object handle(Call call) throws ApiException;
+    }
+
+    /**
+     * @param open true si la ruta no requiere token.
+     */
+    private record Route(String method, Pattern path, boolean open, Handler handler) {}
+
+    private record Session(Map<String, Object> user, long expiresAt) {}
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ConnectionPool pool;
+    private final List<Route> routes = new ArrayList<>();
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * @param port Puerto de escucha (0 para uno libre cualquiera).
+     * @param pool Pool del que cada petición toma su conexión.
+     */
+    public RestApiServer(int port, ConnectionPool pool) throws IOException {
+
+        String host = System.getProperty("sincroestancia.api.host", DEFAULT_HOST);
+        InetSocketAddress address = new InetSocketAddress(host, port);
+
+        if (!address.getAddress().isLoopbackAddress()) {
+            System.out.println("[info] REST API listening on " + host + ": reachable from other machines without TLS.");
+        }
+
+        this.pool = pool;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(address, 0);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/", this::dispatch);
+        registerRoutes();
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void registerRoutes() {
+        route("POST", "/api/login", true, this::login);
+        route("GET", "/api/vuts", false, this::listVuts);
+        route("GET", "/api/vuts/(\\d+)/days", false, this::listDays);
+        route("PUT", "/api/vuts/(\\d+)/prices", false, this::updatePrices);
+        route("GET", "/api/vuts/(\\d+)/reservations", false, this::listReservations);
+        route("POST", "/api/vuts/(\\d+)/reservations", false, this::createReservation);
+        route("GET", "/api/vuts/(\\d+)/movements", false, this::listMovements);
+        route("GET", "/api/reservations/(\\d+)", false, this::getReservation);
+        route("POST", "/api/reservations/(\\d+)/checkin", false, this::checkin);
+        route("POST", "/api/reservations/(\\d+)/checkout", false, this::checkout);
+    }
+
+    private void route(String method, String path, boolean open, Handler handler) {
+        routes.add(new Route(method, Pattern.compile("^" + path + "$"), open, handler));
+    }
+
+    /**
+     * Resuelve la ruta, valida el token, presta una conexión y serializa la respuesta.
+     * * Respuestas: 200 (JSON), 400 (petición inválida), 401 (sin sesión), 403 (sin permisos),
+     * 404 (ruta o recurso inexistente), 405 (método no soportado), 409 (fechas ocupadas o salida ya
+     * registrada), 503 (pool agotado).
+     */
+    private void dispatch(HttpExchange exchange) throws IOException {
+
+        try (exchange) {
+
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            boolean pathKnown = false;
+
+            try {
+
+                for (Route route : routes) {
+
+                    Matcher matcher = route.path().matcher(path);
+                    if (!matcher.matches()) continue;
+
+                    pathKnown = true;
+                    if (!route.method().equals(method)) continue;
+
+                    Map<String, Object> user = route.open() ? null : authenticate(exchange);
+
+                    try (ConnectionPool.Lease lease = pool.borrow()) {
+                        Call call = new Call(exchange, matcher, new DatabaseService(lease.connection()), user);
+                        send(exchange, 200, route.handler().handle(call));
+                    }
+                    return;
+                }
+
+                throw pathKnown ? new ApiException(405, "Method not allowed") : new ApiException(404, "Not found");
+
+            } catch (ApiException e) {
+                send(exchange, e.status, Map.of("error", e.getMessage()));
+            } catch (SQLException e) {
+                System.err.println("[error] REST API could not get a connection: " + e.getMessage());
+                send(exchange, 503, Map.of("error", "Server busy"));
+            } catch (RuntimeException e) {
+                System.err.println("[error] REST API error on " + method + " " + path + ": " + e.getMessage());
+                send(exchange, 500, Map.of("error", "Internal error"));
+            }
+        }
+    }
+
+    private Map<String, Object> authenticate(HttpExchange exchange) throws ApiException {
+
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new ApiException(401, "Missing bearer token");
+        }
+
+        String token = header.substring(7).trim();
+        Session session = sessions.get(token);
+
+        if (session == null || session.expiresAt() < System.currentTimeMillis()) {
+            if (session != null) sessions.remove(token);
+            throw new ApiException(401, "Invalid or expired token");
+        }
+
+        return session.user();
+    }
+
+    private static void send(HttpExchange exchange, int status, Object payload) throws IOException {
+
+        byte[] body = GSON.toJson(payload).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /* ---------------------------------------------------------------- */
+    /* Rutas                                                            */
+    /* ---------------------------------------------------------------- */
+
+    private Object login(Call call) throws ApiException {
+
+        JsonObject body = call.body();
+        Map<String, Object> user = call.db.login(call.requiredString(body, "username"), call.requiredString(body, "password"));
+
+        if (user == null) throw new ApiException(401, "Invalid credentials");
+
+        byte[] raw = new byte[32];
+        RANDOM.nextBytes(raw);
+        String token = HexFormat.of().formatHex(raw);
+
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(s -> s.expiresAt() < now);
+        sessions.put(token, new Session(user, now + SESSION_TTL_MS));
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", token);
+        response.put("username", user.get("username"));
+        response.put("type", user.get("type"));
+        return response;
+    }
+
+    /**
+     * Lista las viviendas sin exponer la clave de API ni la imagen de portada.
+     */
+    private Object listVuts(Call call) {
+
+        List<Map<String, Object>> vuts = new ArrayList<>();
+
+        for (VutItem vut : call.db.get_all_vuts()) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", vut.getId());
+            item.put("name", vut.getName());
+            vuts.add(item);
+        }
+
+        return vuts;
+    }
+
+    private Object listDays(Call call) throws ApiException {
+
+        int vutId = call.requireVut(1);
+        LocalDate from = call.dateQuery("from", LocalDate.now());
+        LocalDate to = call.dateQuery("to", from.plusDays(DEFAULT_RANGE_DAYS));
+        call.checkRange(from, to);
+
+        List<Map<String, Object>> days = new ArrayList<>();
+
+        for (Map.Entry<String, FullDayInfo> entry : call.db.get_days_in_range(vutId, from, to).entrySet()) {
+            Map<String, Object> day = new LinkedHashMap<>();
+            day.put("date", entry.getKey());
+            day.put("status", entry.getValue().status().key());
+            day.put("season", entry.getValue().season().key());
+            day.put("price", Money.toEuros(entry.getValue().priceCents()));
+            days.add(day);
+        }
+
+        return days;
+    }
+
+    private Object updatePrices(Call call) throws ApiException {
+
+        if (!"admin".equals(call.user.get("type"))) throw new ApiException(403, "Only administrators can change prices");
+
+        int vutId = call.requireVut(1);
+        JsonObject body = call.body();
+        LocalDate from = call.parseDate(call.requiredString(body, "from"));
+        LocalDate to = call.parseDate(call.requiredString(body, "to"));
+        call.checkRange(from, to.plusDays(1));
+
+        long priceCents;
+        try {
+            priceCents = Money.parse(call.requiredNumber(body, "price").toString());
+        } catch (NumberFormatException e) {
+            throw new ApiException(400, "'price' must be an amount in euros with at most two decimals");
+        }
+        if (priceCents < 0) throw new ApiException(400, "'price' must not be negative");
+
+        Season season;
+        try {
+            season = Season.fromKey(call.requiredString(body, "season"));
+        } catch (IllegalArgumentException e) {
+            throw new ApiException(400, "'season' must be one of 'low', 'average' or 'high'");
+        }
+
+        if (!call.db.update_price_range(vutId, from, to, priceCents, season)) {
+            throw new ApiException(400, "Prices could not be updated");
+        }
+
+        return Map.of("updated", true);
+    }
+
+    private Object listReservations(Call call) throws ApiException {
+
+        int vutId = call.requireVut(1);
+        LocalDate from = call.dateQuery("from", LocalDate.now());
+        LocalDate to = call.dateQuery("to", from.plusDays(DEFAULT_RANGE_DAYS));
+        call.checkRange(from, to);
+
+        return call.db.get_reservations_overlapping(vutId, from, to);
+    }
+
+    private Object createReservation(Call call) throws ApiException {
+
+        int vutId = call.requireVut(1);
+        JsonObject body = call.body();
+
+        LocalDate checkIn = call.parseDate(call.requiredString(body, "checkIn"));
+        LocalDate checkOut = call.parseDate(call.requiredString(body, "checkOut"));
+        if (!checkOut.isAfter(checkIn)) throw new ApiException(400, "'checkOut' must be after 'checkIn'");
+        call.checkRange(checkIn, checkOut);
+
+        int pax = call.requiredNumber(body, "pax").intValue();
+        if (pax < 1) throw new ApiException(400, "'pax' must be at least 1");
+
+        UpdateResult result = call.db.create_reservation(vutId, call.requiredString(body, "name"),
+            call.optionalString(body, "dni"), call.optionalString(body, "email"), call.optionalString(body, "phone"),
+            checkIn.toString(), checkOut.toString(), pax, call.optionalBoolean(body, "paid"));
+
+        if (result.isConflict()) throw new ApiException(409, "Dates overlap an existing reservation");
+        if (!result.isUpdated()) throw new ApiException(400, "Reservation could not be created");
+
+        return Map.of("created", true);
+    }
+
+    private Object listMovements(Call call) throws ApiException {
+        return call.db.getUpcomingMovements(call.requireVut(1));
+    }
+
+    private Object getReservation(Call call) throws ApiException {
+        return call.requireReservation(1);
+    }
+
+    private Object checkin(Call call) throws ApiException {
+
+        ReservationInfo reservation = call.requireReservation(1);
+        JsonObject body = call.body();
+
+        CheckinUnitOfWork work = new CheckinUnitOfWork(reservation.id());
+        work.setPayment(new CheckinUnitOfWork.Payment(call.optionalString(body, "paymentMethod"),
+            call.optionalString(body, "paymentIdentifier"), call.optionalString(body, "paymentHolder"),
+            call.optionalString(body, "cardExpiry"), call.optionalString(body, "paymentDate"),
+            call.optionalBoolean(body, "rulesAccepted"), call.optionalBoolean(body, "gdprAccepted")));
+
+        int checkinId = call.db.commit_checkin(work);
+        if (checkinId < 0) throw new ApiException(400, "Check-in could not be completed");
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("checkinId", checkinId);
+        response.put("reservationId", reservation.id());
+        return response;
+    }
+
+    private Object checkout(Call call) throws ApiException {
+
+        ReservationInfo reservation = call.requireReservation(1);
+        if (reservation.hasCheckout()) throw new ApiException(409, "Reservation already checked out");
+
+        JsonObject body = call.body();
+
+        boolean done = call.db.register_checkout(reservation.id(), call.requiredString(body, "exitTime"),
+            call.optionalBoolean(body, "keysReturned"), call.optionalBoolean(body, "damageDetected"),
+            call.optionalString(body, "damageDescription"));
+
+        if (!done) {
+            // Otra petición simultánea pudo registrarla después de la comprobación anterior
+            if (call.requireReservation(1).hasCheckout()) throw new ApiException(409, "Reservation already checked out");
+            throw new ApiException(400, "Check-out could not be registered");
+        }
+
+        return Map.of("reservationId", reservation.id());
+    }
+
+    /* ---------------------------------------------------------------- */
+    /* Petición en curso                                                */
+    /* ---------------------------------------------------------------- */
+
+    /**
+     * Datos de una petición: parámetros de ruta y consulta, cuerpo JSON y conexión prestada.
+     */
+    private static final class Call {
+
+        private final HttpExchange exchange;
+        private final Matcher matcher;
+        private final DatabaseService db;
+        private final Map<String, Object> user;
+        private Map<String, String> query;
+
+        Call(HttpExchange exchange, Matcher matcher, DatabaseService db, Map<String, Object> user) {
+            this.exchange = exchange;
+            this.matcher = matcher;
+            this.db = db;
+            this.user = user;
+        }
+
+        int requireVut(int group) throws ApiException {
+            int vutId = pathId(group);
+            if (db.get_vut_details_by_id(vutId) == null) throw new ApiException(404, "VUT " + vutId + " not found");
+            return vutId;
+        }
+
+        ReservationInfo requireReservation(int group) throws ApiException {
+            int reservationId = pathId(group);
+            ReservationInfo reservation = db.get_reservation_by_id(reservationId);
+            if (reservation == null) throw new ApiException(404, "Reservation " + reservationId + " not found");
+            return reservation;
+        }
+
+        private int pathId(int group) throws ApiException {
+            try {
+                return Integer.parseInt(matcher.group(group));
+            } catch (NumberFormatException e) {
+                throw new ApiException(404, "Not found");
+            }
+        }
+
+        JsonObject body() throws ApiException {
+
+            try (InputStream in = exchange.getRequestBody()) {
+                JsonElement json = JsonParser.parseString(new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                if (!json.isJsonObject()) throw new ApiException(400, "Request body must be a JSON object");
+                return json.getAsJsonObject();
+            } catch (IOException | JsonParseException e) {
+                throw new ApiException(400, "Invalid JSON body");
+            }
+        }
+
+        String requiredString(JsonObject body, String field) throws ApiException {
+            String value = optionalString(body, field);
+            if (value == null || value.isBlank()) throw new ApiException(400, "'" + field + "' is required");
+            return value;
+        }
+
+        String optionalString(JsonObject body, String field) throws ApiException {
+            JsonElement value = body.get(field);
+            if (value == null || value.isJsonNull()) return null;
+            if (!value.isJsonPrimitive()) throw new ApiException(400, "'" + field + "' must be a string");
+            return value.getAsString();
+        }
+
+        Number requiredNumber(JsonObject body, String field) throws ApiException {
+            JsonElement value = body.get(field);
+            if (value == null || !value.isJsonPrimitive() || !value.getAsJsonPrimitive().isNumber()) {
+                throw new ApiException(400, "'" + field + "' must be a number");
+            }
+            return value.getAsNumber();
+        }
+
+        boolean optionalBoolean(JsonObject body, String field) throws ApiException {
+            JsonElement value = body.get(field);
+            if (value == null || value.isJsonNull()) return false;
+            if (!value.isJsonPrimitive() || !value.getAsJsonPrimitive().isBoolean()) {
+                throw new ApiException(400, "'" + field + "' must be a boolean");
+            }
+            return value.getAsBoolean();
+        }
+
+        LocalDate dateQuery(String name, LocalDate fallback) throws ApiException {
+            String value = query().get(name);
+            return value == null || value.isBlank() ? fallback : parseDate(value);
+        }
+
+        LocalDate parseDate(String value) throws ApiException {
+            try {
+                return LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                throw new ApiException(400, "Invalid date '" + value + "' (expected YYYY-MM-DD)");
+            }
+        }
+
+        void checkRange(LocalDate from, LocalDate toExclusive) throws ApiException {
+            if (!toExclusive.isAfter(from)) throw new ApiException(400, "Empty date range");
+            if (from.plusDays(MAX_RANGE_DAYS).isBefore(toExclusive)) {
+                throw new ApiException(400, "Date range longer than " + MAX_RANGE_DAYS + " days");
+            }
+        }
+
+        private Map<String, String> query() {
+
+            if (query != null) return query;
+
+            query = new HashMap<>();
+            String raw = exchange.getRequestURI().getRawQuery();
+            if (raw == null) return query;
+
+            for (String pair : raw.split("&")) {
+                int eq = pair.indexOf('=');
+                if (eq <= 0) continue;
+                query.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+
+            return query;
+        }
+    }
+}
@@ -5,7 +5,9 @@ import com.google.api.services.calendar.model.Event;
 import com.google.api.services.calendar.model.EventDateTime;
 
 import sincroestancia.src.models.DaySyncData;
+import sincroestancia.src.models.Money;
 import sincroestancia.src.models.OperationSyncData;
+import sincroestancia.src.models.Season;
 
 import java.util.List;
 import java.util.Map;
@@ -26,6 +28,10 @@ import javax.swing.SwingUtilities;
  */
 public class SyncManager {
 
+    /** Consumidor del registro de cambios para los eventos de check-in/out. */
+    static final String OPERATIONS_CONSUMER = "google.operations";
+    private static final int CHANGE_BATCH_SIZE = 500;
+
     private static SyncManager instance;
     private final ScheduledExecutorService scheduler;
     private final DatabaseService dbService;
@@ -170,18 +176,21 @@ public class SyncManager {
             String title;
             
             if (day.guestName() != null) {
-                title = String.format("[%s] %s - %.0f€", day.status().toUpperCase(), day.guestName(), day.price());
+                title = String.format("[%s] %s - %d€", day.status().name(), day.guestName(), Money.roundedEuros(day.priceCents()));
             } else {
-                title = String.format("[%s] - %.0f€", day.status().toUpperCase(), day.price());
+                title = String.format("[%s] - %d€", day.status().name(), Money.roundedEuros(day.priceCents()));
             }
             
-            String desc = "Status: " + day.status() + "\nPrice: " + day.price();
+            String desc = "Status: " + day.status().key() + "\nPrice: " + Money.format(day.priceCents());
             String colorId = getColorIdBySeason(day.season());
             String newId = upsertEvent(day.date(), day.googleEventId(), title, desc, colorId);
             
             if (newId != null) {
-                dbService.markDayAsSynced(day.date(), newId);
-                count++;
+                if (dbService.markDayAsSynced(day, newId)) {
+                    count++;
+                } else {
+                    System.out.println("[Sync] Día " + day.date() + " modificado durante la sincronización; se reenviará.");
+                }
             }
         }
         return count;
@@ -192,12 +201,27 @@ public class SyncManager {
      * * Genera eventos visuales distintos para entrada (➡) y salida (⬅).
      * * Cambia el color y el icono cuando la operación se marca como completada ([✓]).
      * * Actualiza los IDs de eventos en la tabla de reservas para mantener el enlace.
+     * * Solo procesa las reservas que aparecen en el registro de cambios (ChangeLog) desde el último
+     * ciclo, en lugar de reenviar todas las vigentes cada 30 segundos. La primera vez (sin cursor) hace
+     * una carga completa. Si algún evento falla el cursor no avanza y el lote se repite en el siguiente ciclo.
      * * @return Número de operaciones sincronizadas.
      */
     private int syncOperations() {
 
         int count = 0;
-        List<OperationSyncData> ops = dbService.getOperationsToSync();
+        boolean complete = true;
+        long processedUpTo;
+        List<OperationSyncData> ops;
+
+        if (dbService.get_change_cursor(OPERATIONS_CONSUMER) < 0) {
+            processedUpTo = dbService.get_change_head();
+            ops = dbService.getOperationsToSync();
+        } else {
+            ChangeLog.Batch changes = dbService.get_changes(OPERATIONS_CONSUMER, CHANGE_BATCH_SIZE);
+            if (changes.isEmpty()) return 0;
+            processedUpTo = changes.lastSeq();
+            ops = dbService.getOperationsToSync(changes.keys(ChangeLog.RESERVATIONS));
+        }
 
         for (OperationSyncData op : ops) {
             
@@ -211,6 +235,8 @@ public class SyncManager {
             
             String newOutId = upsertEvent(op.checkOutDate(), op.eventOutId(), outTitle, outDesc, outColor);
 
+            if (newInId == null || newOutId == null) complete = false;
+
             if (newInId != null || newOutId != null) {
 
                 String saveIn = (newInId != null) ? newInId : op.eventInId();
@@ -221,6 +247,8 @@ public class SyncManager {
             }
         }
 
+        if (complete) dbService.advance_change_cursor(OPERATIONS_CONSUMER, processedUpTo);
+
         return count;
     }
 
@@ -273,19 +301,18 @@ public class SyncManager {
      * - Low -> 10 (Verde Albahaca)
      * - Average -> 6 (Naranja Mandarina)
      * - High -> 11 (Rojo Tomate)
-     * - Default -> 8 (Gris Grafito)
-     * * @param season Nombre de la temporada ('low', 'average', 'high').
+     * - Sin temporada -> 8 (Gris Grafito)
+     * * @param season Temporada del día.
      * @return String con el ID numérico del color.
      */
-    private String getColorIdBySeason(String season) {
+    private String getColorIdBySeason(Season season) {
         
         if (season == null) return "8"; 
         
-        return switch (season.toLowerCase()) {
-            case "low" -> "10";
-            case "average" -> "6";
-            case "high" -> "11";
-            default -> "8";
+        return switch (season) {
+            case LOW -> "10";
+            case AVERAGE -> "6";
+            case HIGH -> "11";
         };
 
     }
@@ -0,0 +1,107 @@
+package sincroestancia.src.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector CSV en streaming (RFC 4180).
+ * * Lee registro a registro sin cargar el archivo en memoria. Soporta campos entre comillas
+ * con comas, comillas dobles escapadas ("") y saltos de línea dentro del campo, así como
+ * finales de línea LF o CRLF.
+ * * @author Carlos Padilla Labella
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char separator;
+    private int lineNumber = 1;
+    private int recordLine = 1;
+    private int pushback = -2;
+
+    /**
+     * @param reader Origen de datos (se recomienda un BufferedReader).
+     * @param separator Separador de campos (',' o ';').
+     */
+    public CsvReader(Reader reader, char separator) {
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * Lee el siguiente registro.
+     * * @return Campos del registro o null al llegar al final del archivo.
+     */
+    public String[] next() throws IOException {
+
+        int ch = read();
+        if (ch == -1) return null;
+
+        recordLine = lineNumber;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        while (true) {
+
+            if (quoted) {
+                if (ch == -1) {
+                    throw new IOException("Unterminated quoted field starting at line " + recordLine);
+                } else if (ch == '"') {
+                    int nextCh = read();
+                    if (nextCh == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        ch = nextCh;
+                        continue;
+                    }
+                } else {
+                    if (ch == '\n') lineNumber++;
+                    field.append((char) ch);
+                }
+            } else if (ch == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (ch == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (ch == '\r' || ch == '\n' || ch == -1) {
+                if (ch == '\r') {
+                    int nextCh = read();
+                    if (nextCh != '\n') pushback = nextCh;
+                }
+                if (ch != -1) lineNumber++;
+                fields.add(field.toString());
+                return fields.toArray(new String[0]);
+            } else {
+                field.append((char) ch);
+            }
+
+            ch = read();
+        }
+    }
+
+    /**
+     * Número de línea (1..n) en el que empieza el último registro leído.
+     */
+    public int getRecordLine() {
+        return recordLine;
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int ch = pushback;
+            pushback = -2;
+            return ch;
+        }
+        return reader.read();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
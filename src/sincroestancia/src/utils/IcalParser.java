@@ -0,0 +1,166 @@
+package sincroestancia.src.utils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Lector en streaming de calendarios iCalendar (RFC 5545), limitado a los eventos (VEVENT).
+ * * Devuelve los eventos de uno en uno, sin construir el calendario completo en memoria, por lo
+ * que sirve tanto para importaciones masivas como para los feeds de las OTAs (Airbnb, Booking...).
+ * * Soporta:
+ * - Líneas plegadas (continuación con espacio o tabulador).
+ * - Parámetros de propiedad (p.ej. 'DTSTART;VALUE=DATE:20250101').
+ * - Fechas en formato DATE (yyyyMMdd) y DATE-TIME (yyyyMMddTHHmmss[Z]); solo se conserva el día.
+ * - Texto escapado (\\n, \\, \\; \\\\).
+ * * @author Carlos Padilla Labella
+ */
+public class IcalParser implements Closeable {
+
+    private static final DateTimeFormatter BASIC_DATE = DateTimeFormatter.BASIC_ISO_DATE;
+
+    /**
+     * Evento leído de un calendario.
+     * * 'checkOut' es la fecha DTEND (exclusiva), que coincide con el día de salida de una reserva.
+     */
+    public record IcalEvent(String uid, int sequence, String summary, String description, String status,
+            LocalDate checkIn, LocalDate checkOut, String lastModified, int line) {
+
+        public boolean isCancelled() {
+            return "CANCELLED".equalsIgnoreCase(status);
+        }
+    }
+
+    private final BufferedReader reader;
+    private String pending;
+    private int lineNumber = 0;
+
+    public IcalParser(Reader reader) {
+        this.reader = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader);
+    }
+
+    /**
+     * Lee el siguiente VEVENT del calendario.
+     * * Los eventos sin UID o sin DTSTART se devuelven igualmente (con null) para que el llamante
+     * pueda informarlos como filas erróneas.
+     * * @return El evento o null al llegar al final.
+     */
+    public IcalEvent next() throws IOException {
+
+        String line;
+        boolean inEvent = false;
+        int eventLine = 0;
+
+        String uid = null, summary = null, description = null, status = null, lastModified = null;
+        int sequence = 0;
+        LocalDate start = null, end = null;
+
+        while ((line = readUnfolded()) != null) {
+
+            if (!inEvent) {
+                if (line.equalsIgnoreCase("BEGIN:VEVENT")) {
+                    inEvent = true;
+                    eventLine = pending != null ? lineNumber - 1 : lineNumber;
+                }
+                continue;
+            }
+
+            if (line.equalsIgnoreCase("END:VEVENT")) {
+                if (start != null && end == null) end = start.plusDays(1);
+                return new IcalEvent(uid, sequence, summary, description, status, start, end, lastModified, eventLine);
+            }
+
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+
+            String head = line.substring(0, colon);
+            String value = line.substring(colon + 1);
+            int semicolon = head.indexOf(';');
+            String name = (semicolon < 0 ? head : head.substring(0, semicolon)).toUpperCase();
+
+            switch (name) {
+                case "UID" -> uid = value.trim();
+                case "SEQUENCE" -> sequence = parseInt(value);
+                case "SUMMARY" -> summary = unescape(value);
+                case "DESCRIPTION" -> description = unescape(value);
+                case "STATUS" -> status = value.trim();
+                case "LAST-MODIFIED" -> lastModified = value.trim();
+                case "DTSTART" -> start = parseDate(value);
+                case "DTEND" -> end = parseDate(value);
+                default -> { }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Lee una línea lógica, uniendo las líneas de continuación (plegado RFC 5545).
+     */
+    private String readUnfolded() throws IOException {
+
+        String line = pending != null ? pending : nextPhysical();
+        pending = null;
+        if (line == null) return null;
+
+        StringBuilder sb = null;
+        String next;
+
+        while ((next = nextPhysical()) != null && !next.isEmpty() && (next.charAt(0) == ' ' || next.charAt(0) == '\t')) {
+            if (sb == null) sb = new StringBuilder(line);
+            sb.append(next, 1, next.length());
+        }
+
+        pending = next;
+        return sb == null ? line : sb.toString();
+    }
+
+    private String nextPhysical() throws IOException {
+        String line = reader.readLine();
+        if (line != null) lineNumber++;
+        return line;
+    }
+
+    private static LocalDate parseDate(String value) {
+        String v = value.trim();
+        if (v.length() < 8) return null;
+        try {
+            return LocalDate.parse(v.substring(0, 8), BASIC_DATE);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String unescape(String value) {
+
+        if (value.indexOf('\\') < 0) return value;
+
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char ch = value.charAt(i);
+            if (ch == '\\' && i + 1 < value.length()) {
+                char nextCh = value.charAt(++i);
+                sb.append(nextCh == 'n' || nextCh == 'N' ? '\n' : nextCh);
+            } else {
+                sb.append(ch);
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
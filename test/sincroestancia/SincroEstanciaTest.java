@@ -2,6 +2,7 @@
 package sincroestancia;
 
 import org.junit.Test;
+import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.FixMethodOrder;
 import org.junit.runners.MethodSorters;
@@ -11,7 +12,27 @@ import java.util.Map;
 import java.sql.Date;
 
 import sincroestancia.src.models.*; 
+import sincroestancia.src.services.ArchiveService;
+import sincroestancia.src.services.BackupService;
+import sincroestancia.src.services.CheckinUnitOfWork;
+import sincroestancia.src.services.ChangeLog;
+import sincroestancia.src.services.ChangeLogFollower;
+import sincroestancia.src.services.DataExportService;
 import sincroestancia.src.services.DatabaseService;
+import sincroestancia.src.services.GuestProfiles;
+import sincroestancia.src.services.IcalExportService;
+import sincroestancia.src.services.IcalFeedServer;
+import sincroestancia.src.services.IcalFeedSyncService;
+import sincroestancia.src.services.MonthlyStats;
+import sincroestancia.src.services.PortfolioReportService;
+import sincroestancia.src.services.ReservationImportService;
+import sincroestancia.src.services.ReservationIndex;
+import sincroestancia.src.services.RestApiServer;
+import sincroestancia.src.database.ConnectionPool;
+import sincroestancia.src.database.DatabaseArchive;
+import sincroestancia.src.database.DatabaseManager;
+import sincroestancia.src.database.QueryStats;
+import sincroestancia.src.database.Transactions;
 
 /**
  *
@@ -22,11 +43,35 @@ public class SincroEstanciaTest {
     
     private static DatabaseService dbService;
     private static int createdVutId;
+    private static java.nio.file.Path testHome;
     
     @BeforeClass
-    public static void setup() {
+    public static void setup() throws java.io.IOException {
+
+        // Base de datos desechable: las pruebas restauran copias, archivan y marcan días sin sincronizar,
+        // así que nunca deben tocar la del usuario. DatabaseManager fija su carpeta a partir de 'user.home' al cargarse.
+        testHome = java.nio.file.Files.createTempDirectory("sincroestancia-test");
+        System.setProperty("user.home", testHome.toString());
+        System.clearProperty("sincroestancia.db.url");
+        System.clearProperty("sincroestancia.backup.dir");
+
         dbService = new DatabaseService();
-        System.out.println("Iniciando batería de pruebas...");
+        if (!DatabaseManager.get_data_dir().startsWith(testHome.toString())) {
+            throw new IllegalStateException("Test database outside the temporary folder: " + DatabaseManager.get_data_dir());
+        }
+        System.out.println("Iniciando batería de pruebas en " + testHome);
+    }
+
+    @AfterClass
+    public static void tearDown() throws java.io.IOException {
+
+        DatabaseManager.disconnect();
+
+        try (java.util.stream.Stream<java.nio.file.Path> files = java.nio.file.Files.walk(testHome)) {
+            for (java.nio.file.Path file : files.sorted(java.util.Comparator.reverseOrder()).toList()) {
+                java.nio.file.Files.deleteIfExists(file);
+            }
+        }
     }
     
     @Test
@@ -42,10 +87,20 @@ public class SincroEstanciaTest {
     @Test
     public void test02_DayInfoRecord() {
         System.out.println("[U02] Verificando Record DayInfo...");
-        DayInfo day = new DayInfo("high", "reserved");
+        DayInfo day = new DayInfo(Season.HIGH, DayStatus.RESERVED);
         
-        assertEquals("high", day.season());
-        assertEquals("reserved", day.status());
+        assertEquals(Season.HIGH, day.season());
+        assertEquals(DayStatus.RESERVED, day.status());
+        assertTrue(day.status().isOccupied());
+
+        for (DayStatus status : DayStatus.values()) {
+            assertEquals(status, DayStatus.fromCode(status.code()));
+            assertEquals(status, DayStatus.fromKey(status.key().toUpperCase()));
+        }
+        for (Season season : Season.values()) {
+            assertEquals(season, Season.fromCode(season.code()));
+            assertEquals(season, Season.fromKey(season.key()));
+        }
     }
 
     @Test
@@ -90,7 +145,7 @@ public class SincroEstanciaTest {
     @Test
     public void test07_GetMonthData() {
         System.out.println("[U07] Obteniendo calendario...");
-        Map<Integer, DayInfo> data = dbService.get_month_data(createdVutId, 2025, 12); 
+        MonthSnapshot data = dbService.get_month_data(createdVutId, 2025, 12); 
         assertNotNull(data);
     }
 
@@ -110,7 +165,7 @@ public class SincroEstanciaTest {
         java.time.LocalDate inicio = java.time.LocalDate.parse(checkIn);
         java.time.LocalDate fin = java.time.LocalDate.parse(checkOut);
         
-        dbService.update_price_range(createdVutId, inicio, fin, 100.0, "high");
+        dbService.update_price_range(createdVutId, inicio, fin, 10000, Season.HIGH);
         
         boolean resOk = dbService.register_reservation(
             createdVutId, "User Test", "11111111H", "email@test.com", "600123123", 
@@ -122,7 +177,7 @@ public class SincroEstanciaTest {
         FullDayInfo infoDia = dbService.get_full_day_details(createdVutId, fecha);
         
         assertNotNull("El día 1 de agosto debería existir en DB tras inicializarlo", infoDia);
-        assertEquals("El estado debería haber cambiado a 'paid'", "paid", infoDia.status());
+        assertEquals("El estado debería haber cambiado a 'paid'", DayStatus.PAID, infoDia.status());
     }
 
     @Test
@@ -151,7 +206,7 @@ public class SincroEstanciaTest {
         java.time.LocalDate inicio = java.time.LocalDate.parse(checkIn);
         java.time.LocalDate fin = java.time.LocalDate.parse(checkOut);
         
-        dbService.update_price_range(localVutId, inicio, fin, 100.0, "high");
+        dbService.update_price_range(localVutId, inicio, fin, 10000, Season.HIGH);
 
         boolean resSuccess = dbService.register_reservation(
             localVutId, 
@@ -171,9 +226,1826 @@ public class SincroEstanciaTest {
         FullDayInfo dayInfo = dbService.get_full_day_details(localVutId, dateCheck);
         
         assertNotNull("La información del día 2025-06-01 debería existir", dayInfo);
-        assertEquals("El estado del día debería ser 'paid'", "paid", dayInfo.status());
+        assertEquals("El estado del día debería ser 'paid'", DayStatus.PAID, dayInfo.status());
 
         dbService.delete_vut(localVutId);
     }
+
+    @Test
+    public void test12_IcalFeedServerLoad() throws Exception {
+
+        System.out.println("[U12] Sondeos concurrentes al feed iCal (caché + ETag)...");
+
+        java.util.concurrent.atomic.AtomicInteger renders = new java.util.concurrent.atomic.AtomicInteger();
+        IcalExportService exportService = new IcalExportService(vutId -> {
+            renders.incrementAndGet();
+            return vutId == 1 ? "BEGIN:VCALENDAR\r\nVERSION:2.0\r\nEND:VCALENDAR\r\n" : null;
+        });
+
+        IcalFeedServer server = new IcalFeedServer(0, exportService);
+        server.start();
+
+        try {
+
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            java.net.URI uri = java.net.URI.create("http://localhost:" + server.getPort() + "/ical/1.ics");
+
+            java.net.http.HttpResponse<String> first = client.send(java.net.http.HttpRequest.newBuilder(uri).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, first.statusCode());
+            String etag = first.headers().firstValue("ETag").orElse(null);
+            assertNotNull("La respuesta debe incluir ETag", etag);
+
+            int polls = 400;
+            java.util.concurrent.atomic.AtomicInteger notModified = new java.util.concurrent.atomic.AtomicInteger();
+            java.util.concurrent.atomic.AtomicInteger ok = new java.util.concurrent.atomic.AtomicInteger();
+            long start = System.nanoTime();
+
+            try (java.util.concurrent.ExecutorService pollers = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < polls; i++) {
+                    boolean conditional = i % 2 == 0;
+                    pollers.submit(() -> {
+                        java.net.http.HttpRequest.Builder request = java.net.http.HttpRequest.newBuilder(uri);
+                        if (conditional) request.header("If-None-Match", etag);
+                        int status = client.send(request.build(), java.net.http.HttpResponse.BodyHandlers.discarding()).statusCode();
+                        (status == 304 ? notModified : ok).incrementAndGet();
+                        return status;
+                    });
+                }
+            }
+
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+            System.out.println("[U12] " + polls + " sondeos en " + elapsedMs + " ms (" + notModified.get() + " x 304)");
+
+            assertEquals("Los sondeos condicionales deben responder 304", polls / 2, notModified.get());
+            assertEquals(polls / 2, ok.get());
+            assertEquals("Todo debe servirse desde la caché", 1, renders.get());
+
+            java.net.http.HttpResponse<Void> missing = client.send(java.net.http.HttpRequest.newBuilder(
+                java.net.URI.create("http://localhost:" + server.getPort() + "/ical/2.ics")).build(),
+                java.net.http.HttpResponse.BodyHandlers.discarding());
+            assertEquals(404, missing.statusCode());
+
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void test13_RestApiThroughput() throws Exception {
+
+        System.out.println("[U13] Carga concurrente sobre la API REST (modo sin interfaz)...");
+
+        String username = "junit_api_" + System.nanoTime();
+        assertTrue(dbService.registerUser(username, "junit-pass", "user"));
+        int localVutId = dbService.register_vut("API Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, java.time.LocalDate.parse("2025-09-01"), java.time.LocalDate.parse("2025-09-30"), 8000, Season.AVERAGE);
+
+        ConnectionPool pool = DatabaseManager.open_pool(4);
+        assertNotNull("No se pudo abrir el pool de conexiones", pool);
+        RestApiServer server = new RestApiServer(0, pool);
+        server.start();
+
+        try {
+
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            String base = "http://localhost:" + server.getPort() + "/api";
+
+            java.net.http.HttpResponse<String> login = client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/login"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"junit-pass\"}")).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, login.statusCode());
+            String token = com.google.gson.JsonParser.parseString(login.body()).getAsJsonObject().get("token").getAsString();
+
+            java.net.URI daysUri = java.net.URI.create(base + "/vuts/" + localVutId + "/days?from=2025-09-01&to=2025-10-01");
+
+            java.net.http.HttpResponse<String> days = client.send(java.net.http.HttpRequest.newBuilder(daysUri)
+                .header("Authorization", "Bearer " + token).build(), java.net.http.HttpResponse.BodyHandlers.ofString());
+            assertEquals(200, days.statusCode());
+            assertEquals(30, com.google.gson.JsonParser.parseString(days.body()).getAsJsonArray().size());
+
+            assertEquals("Sin token debe responder 401", 401, client.send(java.net.http.HttpRequest.newBuilder(daysUri).build(),
+                java.net.http.HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            int requests = 1000;
+            java.util.concurrent.atomic.AtomicInteger ok = new java.util.concurrent.atomic.AtomicInteger();
+            long start = System.nanoTime();
+
+            try (java.util.concurrent.ExecutorService clients = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < requests; i++) {
+                    clients.submit(() -> {
+                        int status = client.send(java.net.http.HttpRequest.newBuilder(daysUri).header("Authorization", "Bearer " + token).build(),
+                            java.net.http.HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status == 200) ok.incrementAndGet();
+                        return status;
+                    });
+                }
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("[U13] %d peticiones en %.2f s (%.0f req/s, pool de %d conexiones)%n", requests, seconds, requests / seconds, pool.size());
+
+            assertEquals("Todas las peticiones deben responder 200", requests, ok.get());
+
+        } finally {
+            server.stop();
+            pool.close();
+            dbService.delete_vut(localVutId);
+            for (Map<String, Object> user : dbService.getAllUsers()) {
+                if (username.equals(user.get("username"))) dbService.deleteUser((Integer) user.get("id"));
+            }
+        }
+    }
+
+    @Test
+    public void test14_ConcurrentBookingThroughput() throws Exception {
+
+        System.out.println("[U14] Reservas concurrentes desde varios puestos (" + DatabaseManager.dialect().name() + ")...");
+
+        int bookings = 200;
+        java.time.LocalDate start = java.time.LocalDate.parse("2027-01-01");
+        int localVutId = dbService.register_vut("Concurrency Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(bookings * 2L), 7500, Season.LOW);
+
+        ConnectionPool pool = DatabaseManager.open_pool(4);
+        assertNotNull("No se pudo abrir el pool de conexiones", pool);
+
+        try {
+
+            java.util.concurrent.atomic.AtomicInteger ok = new java.util.concurrent.atomic.AtomicInteger();
+            long begin = System.nanoTime();
+
+            try (java.util.concurrent.ExecutorService seats = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < bookings; i++) {
+                    java.time.LocalDate checkIn = start.plusDays(i * 2L);
+                    seats.submit(() -> {
+                        try (ConnectionPool.Lease lease = pool.borrow()) {
+                            DatabaseService seat = new DatabaseService(lease.connection());
+                            if (seat.register_reservation(localVutId, "Guest", "00000000T", null, null,
+                                    checkIn.toString(), checkIn.plusDays(2).toString(), 2, false)) {
+                                ok.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    });
+                }
+            }
+
+            double seconds = (System.nanoTime() - begin) / 1e9;
+            System.out.printf("[U14] %d reservas en %.2f s (%.0f reservas/s, pool de %d conexiones)%n", bookings, seconds, bookings / seconds, pool.size());
+
+            assertEquals("Todas las reservas deben confirmarse", bookings, ok.get());
+            assertEquals(bookings, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(bookings * 2L)).size());
+
+        } finally {
+            pool.close();
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test15_OptimisticConcurrency() {
+
+        System.out.println("[U15] Control de concurrencia optimista en reservas y días...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2030-03-01");
+        int localVutId = dbService.register_vut("Version Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(9), 8000, Season.LOW);
+
+        try {
+
+            assertTrue(dbService.register_reservation(localVutId, "Ana", "11111111H", null, null, "2030-03-02", "2030-03-05", 2, false));
+
+            ReservationInfo deskA = dbService.get_reservations_overlapping(localVutId, start, start.plusDays(10)).get(0);
+            ReservationInfo deskB = dbService.get_reservation_by_id(deskA.id());
+            assertEquals(deskA.version(), deskB.version());
+
+            UpdateResult first = dbService.update_reservation_details(deskA.id(), deskA.version(), localVutId, "Ana María", "11111111H",
+                null, null, 3, false, "2030-03-02", "2030-03-05");
+            assertTrue(first.isUpdated());
+            assertEquals(deskA.version() + 1, first.version());
+
+            UpdateResult stale = dbService.update_reservation_payment_status(deskB.id(), deskB.version(), true, localVutId, "2030-03-02", "2030-03-05");
+            assertTrue("Una versión obsoleta no debe sobrescribir la reserva", stale.isConflict());
+            assertEquals(first.version(), stale.version());
+
+            ReservationInfo current = dbService.get_reservation_by_id(deskA.id());
+            assertEquals("Ana María", current.guestName());
+            assertFalse(current.isPaid());
+
+            UpdateResult retry = dbService.update_reservation_payment_status(current.id(), current.version(), true, localVutId, "2030-03-02", "2030-03-05");
+            assertTrue(retry.isUpdated());
+            assertTrue(dbService.get_reservation_by_id(deskA.id()).isPaid());
+
+            assertEquals(UpdateResult.Status.NOT_FOUND,
+                dbService.update_reservation_payment_status(-1, 0, true, localVutId, "2030-03-02", "2030-03-05").status());
+
+            DaySyncData read = findUnsynced(localVutId, "2030-03-08");
+            dbService.update_price_range(localVutId, start.plusDays(7), start.plusDays(7), 9500, Season.HIGH);
+            assertFalse("Un día modificado durante el envío no debe marcarse como sincronizado", dbService.markDayAsSynced(read, "evt-stale"));
+
+            DaySyncData fresh = findUnsynced(localVutId, "2030-03-08");
+            assertEquals(9500, fresh.priceCents());
+            assertTrue(dbService.markDayAsSynced(fresh, "evt-1"));
+            assertNull(findUnsynced(localVutId, "2030-03-08"));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    private static DaySyncData findUnsynced(int vutId, String date) {
+        return dbService.getUnsyncedFutureDays().stream()
+            .filter(d -> d.vutId() == vutId && d.date().equals(date))
+            .findFirst().orElse(null);
+    }
+
+    @Test
+    public void test16_ChangeLog() throws Exception {
+
+        System.out.println("[U16] Registro de cambios: entradas transaccionales, cursores, seguimiento y compactación...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        java.time.LocalDate start = java.time.LocalDate.parse("2030-05-01");
+        int localVutId = dbService.register_vut("ChangeLog Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(9), 6000, Season.LOW);
+
+        try {
+
+            long head = ChangeLog.head(conn);
+            assertTrue(dbService.register_reservation(localVutId, "Luis", "22222222J", null, null, "2030-05-03", "2030-05-06", 2, false));
+
+            ChangeLog.Batch batch = ChangeLog.readAfter(conn, head, 100);
+            assertEquals(1, batch.keys(ChangeLog.RESERVATIONS).size());
+            assertEquals(3, batch.entries().stream().filter(e -> e.table().equals(ChangeLog.DAYS)).count());
+            assertEquals("insert", batch.entries().get(0).operation());
+
+            ReservationInfo res = dbService.get_reservation_by_id(batch.keys(ChangeLog.RESERVATIONS).iterator().next());
+            long afterInsert = ChangeLog.head(conn);
+            assertTrue(dbService.update_reservation_payment_status(res.id(), res.version() + 7, true, localVutId, "2030-05-03", "2030-05-06").isConflict());
+            assertEquals("Una transacción deshecha no debe dejar entradas", afterInsert, ChangeLog.head(conn));
+
+            String consumer = "test.consumer";
+            assertEquals(-1, dbService.get_change_cursor(consumer));
+            assertTrue(dbService.advance_change_cursor(consumer, afterInsert));
+            assertTrue(dbService.get_changes(consumer, 100).isEmpty());
+
+            assertTrue(dbService.update_reservation_payment_status(res.id(), res.version(), true, localVutId, "2030-05-03", "2030-05-06").isUpdated());
+            ChangeLog.Batch pending = dbService.get_changes(consumer, 100);
+            assertEquals(java.util.Set.of(res.id()), pending.keys(ChangeLog.RESERVATIONS));
+            assertTrue(dbService.advance_change_cursor(consumer, pending.lastSeq()));
+
+            ChangeLogFollower follower = ChangeLogFollower.getInstance();
+            follower.start();
+            follower.poll();
+            assertEquals("Los cambios propios no invalidan las cachés", 0, follower.poll());
+
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement(
+                    "INSERT INTO change_log (table_name, row_key, vut_id, operation, changed_at, origin) VALUES ('days', '2030-05-09', ?, 'update', ?, 'other-desk')")) {
+                pstmt.setInt(1, localVutId);
+                pstmt.setString(2, "2000-01-01 00:00:00");
+                pstmt.executeUpdate();
+            }
+            assertEquals("Un cambio de otro puesto invalida su vivienda", 1, follower.poll());
+            assertEquals(0, follower.poll());
+
+            long foreign = ChangeLog.head(conn);
+            assertTrue(dbService.advance_change_cursor(consumer, foreign));
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM change_log WHERE seq = ?")) {
+                pstmt.setLong(1, foreign);
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("La entrada antigua ya procesada debe compactarse", 0, rs.getInt(1));
+                }
+            }
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test17_OnlineBackupAndRestore() throws Exception {
+
+        BackupService backups = BackupService.getInstance();
+        org.junit.Assume.assumeTrue("Copias en caliente solo con SQLite", backups.isSupported());
+
+        System.out.println("[U17] Copia de seguridad en caliente y restauración a un instante...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2031-01-01");
+        int localVutId = dbService.register_vut("Backup Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(364), 9000, Season.AVERAGE);
+        for (int i = 0; i < 50; i++) {
+            java.time.LocalDate in = start.plusDays(i * 7L);
+            assertTrue(dbService.register_reservation(localVutId, "Guest " + i, "00000000T", null, null, in.toString(), in.plusDays(3).toString(), 2, i % 2 == 0));
+        }
+
+        try {
+
+            long[] idle = sampleMonthLatency(localVutId, 500, null);
+
+            java.util.concurrent.CompletableFuture<BackupService.BackupResult> running = java.util.concurrent.CompletableFuture.supplyAsync(() -> {
+                try {
+                    return backups.backupNow();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long[] during = sampleMonthLatency(localVutId, 500, running);
+            BackupService.BackupResult result = running.get();
+
+            System.out.printf("[U17] Copia: %d ms, %d páginas, %d bytes (%s)%n", result.durationMs(), result.pages(), result.bytes(), result.file().getFileName());
+            System.out.printf("[U17] Consulta de mes: p50 %.2f ms / p99 %.2f ms en reposo; p50 %.2f ms / p99 %.2f ms durante la copia (%d muestras)%n",
+                percentile(idle, 50), percentile(idle, 99), percentile(during, 50), percentile(during, 99), during.length);
+
+            assertTrue(java.nio.file.Files.exists(result.file()));
+            assertTrue(backups.listBackups().stream().anyMatch(b -> b.file().equals(result.file())));
+
+            assertTrue(dbService.register_reservation(localVutId, "Late", "00000000T", null, null, "2031-12-20", "2031-12-23", 2, false));
+            assertNotNull(backups.restoreTo(result.takenAt()));
+
+            assertTrue("La reserva posterior a la copia no debe existir tras restaurar",
+                dbService.get_reservations_overlapping(localVutId, java.time.LocalDate.parse("2031-12-20"), java.time.LocalDate.parse("2031-12-23")).isEmpty());
+            assertEquals(50, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(365)).size());
+            assertNull(backups.restoreTo(java.time.Instant.parse("2000-01-01T00:00:00Z")));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test21_DayStatusCodes() throws Exception {
+
+        System.out.println("[U21] Estados y temporadas guardados como códigos...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        int localVutId = dbService.register_vut("Codes Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2032-04-01"), java.time.LocalDate.parse("2032-04-10"), 6500, Season.HIGH);
+            assertTrue(dbService.register_reservation(localVutId, "Code Guest", "X5566778K", null, null, "2032-04-03", "2032-04-05", 2, true));
+
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT status, season FROM days WHERE vut_id = ? AND day_date = ?")) {
+                pstmt.setInt(1, localVutId);
+                pstmt.setString(2, "2032-04-03");
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertTrue("El estado se guarda como número", rs.getObject(1) instanceof Number);
+                    assertEquals(DayStatus.PAID.code(), rs.getInt(1));
+                    assertEquals(Season.HIGH.code(), rs.getInt(2));
+                }
+            }
+
+            FullDayInfo free = dbService.get_full_day_details(localVutId, Date.valueOf("2032-04-08"));
+            assertEquals(DayStatus.FREE, free.status());
+            assertEquals(Season.HIGH, dbService.get_day_season(localVutId, Date.valueOf("2032-04-08")));
+
+            // Un día ocupado conserva la temporada al cambiar el precio del rango
+            assertTrue(dbService.update_price_range(localVutId, java.time.LocalDate.parse("2032-04-01"), java.time.LocalDate.parse("2032-04-10"), 4000, Season.LOW));
+            assertEquals(Season.HIGH, dbService.get_day_season(localVutId, Date.valueOf("2032-04-04")));
+            assertEquals(Season.LOW, dbService.get_day_season(localVutId, Date.valueOf("2032-04-08")));
+
+            // Códigos fuera de rango rechazados por la tabla
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE days SET status = 7 WHERE vut_id = " + localVutId + " AND day_date = '2032-04-08'");
+                fail("El CHECK debería rechazar códigos desconocidos");
+            } catch (java.sql.SQLException expected) {
+                // esperado
+            }
+
+            // La exportación sigue mostrando los nombres
+            java.nio.file.Path export = java.nio.file.Files.createTempFile("days", ".csv");
+            assertEquals(10, new DataExportService().export(DataExportService.Table.DAYS,
+                new DataExportService.ExportOptions(DataExportService.Format.CSV, false, localVutId, null, null), export));
+            String csv = java.nio.file.Files.readString(export);
+            java.nio.file.Files.deleteIfExists(export);
+            assertTrue(csv.contains("paid"));
+            assertTrue(csv.contains("high"));
+            assertFalse(csv.contains("reserved"));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test22_MonthSnapshot() throws Exception {
+
+        System.out.println("[U22] Fotografías mensuales del calendario...");
+
+        int localVutId = dbService.register_vut("Snapshot Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2033-01-30"), java.time.LocalDate.parse("2033-02-28"), 7250, Season.AVERAGE);
+            assertTrue(dbService.register_reservation(localVutId, "Snap Guest", "W1234567T", null, null, "2033-01-31", "2033-02-03", 2, false));
+
+            MonthSnapshot january = dbService.get_month_data(localVutId, 2033, 0);
+            assertEquals(2, january.recordedDays());
+            assertFalse(january.has(29));
+            assertNull(january.status(29));
+            assertEquals(MonthSnapshot.NONE, january.statusCode(29));
+            assertEquals(DayStatus.FREE, january.status(30));
+            assertEquals(DayStatus.RESERVED, january.status(31));
+            assertEquals(Season.AVERAGE, january.season(31));
+            assertEquals(7250, january.priceCents(31));
+            assertEquals(1 << 30, january.occupiedMask());
+
+            MonthSnapshot february = dbService.get_month_data(localVutId, 2033, 1);
+            assertEquals(28, february.recordedDays());
+            assertEquals(0b11, february.occupiedMask());
+            assertEquals(2, february.occupiedNights());
+            assertFalse(february.isOccupied(3));
+            assertFalse("Días fuera del mes", february.has(32));
+
+            MonthSnapshot[] year = dbService.get_year_data(localVutId, 2033);
+            assertEquals(12, year.length);
+            assertEquals(january.occupiedMask(), year[0].occupiedMask());
+            assertEquals(february.recordedMask(), year[1].recordedMask());
+            assertEquals(1, year[1].month());
+            assertEquals(0, year[11].recordedDays());
+
+            assertEquals(0, dbService.get_month_data(localVutId, 2033, 12).recordedDays());
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test23_MoneyInCents() throws Exception {
+
+        System.out.println("[U23] Importes en céntimos...");
+
+        assertEquals(7250, Money.parse("72,5"));
+        assertEquals(10, Money.parse(" 0.10 "));
+        assertEquals(73, Money.roundedEuros(7250));
+        assertEquals("-0.05", Money.format(-5, java.util.Locale.ROOT));
+        assertEquals("1234,50", Money.format(123450, java.util.Locale.forLanguageTag("es-ES")));
+        try {
+            Money.parse("1.005");
+            fail("Más de dos decimales");
+        } catch (NumberFormatException expected) {
+            // esperado
+        }
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2034-01-01");
+        int localVutId = dbService.register_vut("Money Vut", "path", "url", "key");
+
+        try {
+
+            for (int i = 0; i < 365; i++) {
+                java.time.LocalDate day = start.plusDays(i);
+                dbService.update_price_range(localVutId, day, day, 3333 + (i * 37L) % 1000, Season.AVERAGE);
+            }
+            for (int i = 0; i < 364; i += 2) {
+                java.time.LocalDate in = start.plusDays(i);
+                assertTrue(dbService.register_reservation(localVutId, "Money " + i, "V0000000" + (i % 10), null, null, in.toString(), in.plusDays(2).toString(), 2, i % 4 == 0));
+            }
+
+            // Totales de referencia leídos día a día: en céntimos y como la antigua suma de doubles
+            long exact = 0;
+            double asDoubles = 0;
+            for (MonthSnapshot month : dbService.get_year_data(localVutId, 2034)) {
+                for (int day = 1; day <= MonthSnapshot.MAX_DAYS; day++) {
+                    if (month.status(day) == DayStatus.PAID) {
+                        exact += month.priceCents(day);
+                        asDoubles += month.priceCents(day) / 100.0;
+                    }
+                }
+            }
+
+            YearlyReport report = dbService.getYearlyReport(localVutId, 2034);
+            assertEquals(exact, report.getTotalRevenueCents());
+            assertEquals(exact, dbService.getTotalYearlyRevenueCents(localVutId, 2034));
+            assertEquals(exact, Money.sum(dbService.getYearlyRevenueCents(localVutId, 2034)));
+            assertEquals(report.getRevenueCents(3), dbService.getMonthlyRevenueCents(localVutId, 3, 2034));
+            assertEquals("Coincide con el total en doubles redondeado", Math.round(asDoubles * 100), exact);
+            System.out.printf("[U23] Ingresos %s € (suma en doubles: desvío de %.3e céntimos)%n", Money.format(exact), Math.abs(asDoubles * 100 - exact));
+
+            // Microbenchmark del camino agregado: recálculo del año y lectura del informe
+            java.sql.Connection conn = DatabaseManager.get_connection();
+            long[] refresh = new long[50];
+            long[] read = new long[500];
+            for (int i = 0; i < refresh.length; i++) {
+                long t0 = System.nanoTime();
+                MonthlyStats.refreshRange(conn, localVutId, start, start.plusDays(364));
+                refresh[i] = System.nanoTime() - t0;
+            }
+            for (int i = 0; i < read.length; i++) {
+                long t0 = System.nanoTime();
+                dbService.getYearlyReport(localVutId, 2034).getTotalRevenueCents();
+                read[i] = System.nanoTime() - t0;
+            }
+            java.util.Arrays.sort(refresh);
+            java.util.Arrays.sort(read);
+            System.out.printf("[U23] Recálculo anual: p50 %.2f ms / p99 %.2f ms; informe anual: p50 %.3f ms / p99 %.3f ms%n",
+                percentile(refresh, 50), percentile(refresh, 99), percentile(read, 50), percentile(read, 99));
+            assertEquals(exact, dbService.getTotalYearlyRevenueCents(localVutId, 2034));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test24_CheckinUnitOfWork() throws Exception {
+
+        System.out.println("[U24] Check-in en una sola transacción...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2035-03-01");
+        int localVutId = dbService.register_vut("Checkin Vut", "path", "url", "key");
+        java.sql.Connection conn = DatabaseManager.get_connection();
+
+        try {
+
+            dbService.update_price_range(localVutId, start, start.plusDays(120), 9000, Season.AVERAGE);
+            assertTrue(dbService.register_reservation(localVutId, "Family", "W1111111A", null, null, "2035-03-01", "2035-03-05", 3, true));
+            int reservationId = dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2035-03-02")).id();
+
+            CheckinUnitOfWork work = dbService.begin_checkin(reservationId);
+            assertEquals(0, work.guestCount());
+
+            int mother = work.addGuest(guest("Marta", "W2222222B", "ES", false, null));
+            int father = work.addGuest(guest("Jorge", "W3333333C", "PT", false, null));
+            int child = work.addGuest(guest(null, "W4444444D", "ES", true, mother));
+            assertTrue("Ids provisionales negativos y distintos de -1", mother < -1 && father < -1 && child < -1);
+            assertEquals(2, work.adults().size());
+            assertEquals(0, countCheckinRows(conn, "checkins", reservationId));
+
+            // Un huésped inválido (sin nombre) aborta todo: ni check-in ni huéspedes a medias
+            work.setPayment(new CheckinUnitOfWork.Payment("Tarjeta", "4242", "Marta (W2222222B)", "12/36", "01/03/2035", true, true));
+            assertEquals(-1, dbService.commit_checkin(work));
+            assertEquals(0, countCheckinRows(conn, "checkins", reservationId));
+            assertEquals(0, countCheckinRows(conn, "guests", reservationId));
+            assertFalse(dbService.get_reservation_by_id(reservationId).hasCheckin());
+
+            work.updateGuest(child, guest("Leo", "W4444444D", "ES", true, mother));
+            int checkinId = dbService.commit_checkin(work);
+            assertTrue(checkinId > 0);
+            assertEquals(3, countCheckinRows(conn, "guests", reservationId));
+            assertTrue(dbService.get_reservation_by_id(reservationId).hasCheckin());
+
+            // Reabrir: ids reales, tutor enlazado al id definitivo de la madre
+            CheckinUnitOfWork stored = dbService.begin_checkin(reservationId);
+            Map<Integer, String> names = new java.util.HashMap<>();
+            for (GuestData g : stored.guests()) names.put(g.id(), g.fullname());
+            assertEquals(3, names.size());
+            int motherId = -1, fatherId = -1, childId = -1;
+            for (Map.Entry<Integer, String> e : names.entrySet()) {
+                assertTrue(e.getKey() > 0);
+                if (e.getValue().startsWith("Marta")) motherId = e.getKey();
+                if (e.getValue().startsWith("Jorge")) fatherId = e.getKey();
+                if (e.getValue().startsWith("Leo")) childId = e.getKey();
+            }
+            assertEquals(motherId, stored.guestDetails(childId).get("guardianId"));
+
+            // Cambios sobre un parte guardado: borrar, editar y añadir en la misma transacción
+            stored.removeGuest(fatherId);
+            Map<String, Object> edited = stored.guestDetails(motherId);
+            edited.put("nationality", "FR");
+            stored.updateGuest(motherId, edited);
+            stored.addGuest(guest("Abuela", "W5555555E", "IT", false, null));
+            assertEquals(checkinId, dbService.commit_checkin(stored));
+
+            assertEquals(3, countCheckinRows(conn, "guests", reservationId));
+            Map<String, Object> mother2 = dbService.get_guest_details(motherId);
+            assertEquals("FR", mother2.get("nationality"));
+            assertNull(dbService.get_guest_details(fatherId));
+
+            // Coste: check-in por pasos (una confirmación por escritura) frente a la unidad de trabajo
+            int rounds = 20;
+            long piecemeal = 0, unitOfWork = 0;
+            for (int i = 0; i < rounds; i++) {
+                java.time.LocalDate in = start.plusDays(10 + i * 4);
+                assertTrue(dbService.register_reservation(localVutId, "Bench " + i, "BENCH" + i, null, null, in.toString(), in.plusDays(2).toString(), 4, true));
+                int id = dbService.get_reservation_details_for_day(localVutId, Date.valueOf(in)).id();
+
+                long t0 = System.nanoTime();
+                if (i % 2 == 0) {
+                    int cid = dbService.get_or_create_checkin_id(id);
+                    for (int g = 0; g < 4; g++) {
+                        assertTrue(dbService.add_guest(cid, "Bench" + g, "Uno", null, "M", "01/01/1990", "ES", "DNI", "B" + i + "X" + g,
+                            null, null, null, null, null, null, false, null));
+                    }
+                    assertTrue(dbService.finalize_checkin(cid, "Efectivo", "-", "Bench0", null, "01/01/2035", true, true));
+                    piecemeal += System.nanoTime() - t0;
+                } else {
+                    CheckinUnitOfWork bench = dbService.begin_checkin(id);
+                    for (int g = 0; g < 4; g++) bench.addGuest(guest("Bench" + g, "B" + i + "X" + g, "ES", false, null));
+                    bench.setPayment(new CheckinUnitOfWork.Payment("Efectivo", "-", "Bench0", null, "01/01/2035", true, true));
+                    assertTrue(dbService.commit_checkin(bench) > 0);
+                    unitOfWork += System.nanoTime() - t0;
+                }
+            }
+            System.out.printf("[U24] Check-in de 4 huéspedes: por pasos %.2f ms, unidad de trabajo %.2f ms%n",
+                piecemeal / 1e6 / (rounds / 2), unitOfWork / 1e6 / (rounds / 2));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test25_QueryStats() throws Exception {
+
+        System.out.println("[U25] Estadísticas de consultas...");
+
+        QueryStats stats = QueryStats.getInstance();
+        assertTrue(stats.isEnabled());
+        stats.reset();
+
+        long threshold = stats.getSlowThresholdMs();
+        int localVutId = dbService.register_vut("Stats Vut", "path", "url", "key");
+
+        try {
+
+            java.time.LocalDate start = java.time.LocalDate.parse("2036-03-01");
+            dbService.update_price_range(localVutId, start, start.plusDays(30), 8000, Season.AVERAGE);
+            for (int i = 0; i < 50; i++) dbService.get_month_data(localVutId, 2036, 2);
+
+            // Literales concatenados: una sola plantilla con '?' en lugar de dos
+            java.sql.Connection conn = DatabaseManager.get_connection();
+            for (int id : new int[] {localVutId, localVutId + 100000}) {
+                try (java.sql.Statement stmt = conn.createStatement();
+                     java.sql.ResultSet rs = stmt.executeQuery("SELECT name FROM vuts WHERE id = " + id + " AND name <> 'x'")) {
+                    while (rs.next()) rs.getString(1);
+                }
+            }
+
+            QueryStats.Snapshot literal = find(stats, "SELECT name FROM vuts WHERE id = ? AND name <> ?");
+            assertEquals(2, literal.calls());
+            assertEquals(1, literal.rows());
+            assertEquals(0, literal.edtCalls());
+
+            QueryStats.Snapshot month = stats.snapshot().stream().filter(s -> s.calls() >= 50 && s.sql().contains("day_of_month")).findFirst().orElseThrow();
+            assertTrue(month.p50Ms() <= month.p95Ms() && month.p95Ms() <= month.p99Ms());
+            assertTrue(month.rows() >= 50 * 31);
+            assertEquals(Thread.currentThread().getName(), month.lastThread());
+
+            // Errores: se cuentan y la excepción llega intacta al llamador
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.executeQuery("SELECT no_such_column FROM vuts");
+                fail("La columna no existe");
+            } catch (java.sql.SQLException expected) {
+                assertEquals(1, find(stats, "SELECT no_such_column FROM vuts").errors());
+            }
+
+            // Umbral 0: toda consulta es lenta y se guarda con su plan
+            stats.setSlowThresholdMs(0);
+            dbService.get_month_data(localVutId, 2036, 4);
+            QueryStats.SlowQuery slow = stats.slowQueries().stream().filter(q -> q.sql().contains("day_of_month")).findFirst().orElseThrow();
+            assertFalse(slow.plan(), slow.plan().startsWith("(plan no disponible") || slow.plan().startsWith("(sin plan"));
+            System.out.println("[U25] Plan de la consulta del mes:\n" + slow.plan());
+
+            // La conexión nativa sigue accesible para la copia de seguridad en caliente
+            if (DatabaseManager.dialect().name().equals("SQLite")) {
+                assertTrue(conn.isWrapperFor(org.sqlite.SQLiteConnection.class));
+            }
+
+            java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("query-stats");
+            java.nio.file.Path file = stats.dump(dir, "query-stats.txt");
+            String report = java.nio.file.Files.readString(file);
+            assertTrue(report.contains("SELECT name FROM vuts WHERE id = ? AND name <> ?"));
+            assertTrue(report.contains("Consultas lentas"));
+
+        } finally {
+            stats.setSlowThresholdMs(threshold);
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test26_IcalFeedImport() throws Exception {
+
+        System.out.println("[U26] Importación incremental de un feed iCal ('file:')...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2031-01-01");
+        int localVutId = dbService.register_vut("Feed Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(30), 9000, Season.LOW);
+
+        java.nio.file.Path ics = java.nio.file.Files.createTempFile(testHome, "feed", ".ics");
+        IcalFeedSyncService sync = IcalFeedSyncService.getInstance();
+
+        try {
+
+            writeFeed(ics, 1, "UID:a@ota\r\nDTSTART;VALUE=DATE:20310103\r\nDTEND;VALUE=DATE:20310105\r\nSUMMARY:Alba\r\n",
+                "UID:b@ota\r\nDTSTART;VALUE=DATE:20310110\r\nDTEND;VALUE=DATE:20310112\r\n");
+            int feedId = sync.addFeed(localVutId, "Airbnb", ics.toUri().toString());
+            assertTrue(feedId > 0);
+
+            IcalFeedSyncService.SyncResult first = sync.sync(sync.getFeeds(localVutId).get(0));
+            assertNull(first.error());
+            assertEquals("Altas", 2, first.added());
+            assertEquals(DayStatus.RESERVED, dbService.get_full_day_details(localVutId, Date.valueOf("2031-01-03")).status());
+            assertEquals("Airbnb - Alba", dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2031-01-04")).guestName());
+
+            IcalFeedSyncService.SyncResult unchanged = sync.sync(sync.getFeeds(localVutId).get(0));
+            assertTrue("Un feed sin cambios no se vuelve a leer", unchanged.notModified());
+            assertFalse(unchanged.hasChanges());
+
+            assertTrue(dbService.register_reservation(localVutId, "Directa", "11111111H", null, null, "2031-01-20", "2031-01-23", 2, true));
+
+            // 'a' cambia de fechas, 'b' desaparece y 'c' choca con la reserva directa
+            writeFeed(ics, 2, "UID:a@ota\r\nSEQUENCE:1\r\nDTSTART;VALUE=DATE:20310104\r\nDTEND;VALUE=DATE:20310107\r\nSUMMARY:Alba\r\n",
+                "UID:c@ota\r\nDTSTART;VALUE=DATE:20310121\r\nDTEND;VALUE=DATE:20310124\r\n");
+
+            IcalFeedSyncService.SyncResult second = sync.sync(sync.getFeeds(localVutId).get(0));
+            assertNull(second.error());
+            assertEquals("Altas", 0, second.added());
+            assertEquals("Cambios", 1, second.updated());
+            assertEquals("Bajas", 1, second.removed());
+            assertEquals("Conflictos", 1, second.conflicts());
+            assertEquals(DayStatus.FREE, dbService.get_full_day_details(localVutId, Date.valueOf("2031-01-03")).status());
+            assertEquals(DayStatus.RESERVED, dbService.get_full_day_details(localVutId, Date.valueOf("2031-01-06")).status());
+            assertEquals(DayStatus.FREE, dbService.get_full_day_details(localVutId, Date.valueOf("2031-01-10")).status());
+            assertEquals("Directa", dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2031-01-21")).guestName());
+
+            // Al liberar el hueco, el evento en conflicto se importa en la siguiente descarga
+            ReservationInfo direct = dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2031-01-21"));
+            assertTrue(dbService.delete_reservation(direct.id(), localVutId, "2031-01-20", "2031-01-23"));
+            writeFeed(ics, 3, "UID:a@ota\r\nSEQUENCE:1\r\nDTSTART;VALUE=DATE:20310104\r\nDTEND;VALUE=DATE:20310107\r\nSUMMARY:Alba\r\n",
+                "UID:c@ota\r\nDTSTART;VALUE=DATE:20310121\r\nDTEND;VALUE=DATE:20310124\r\n");
+
+            IcalFeedSyncService.SyncResult retry = sync.sync(sync.getFeeds(localVutId).get(0));
+            assertNull(retry.error());
+            assertEquals("El evento en conflicto debe reintentarse", 1, retry.added());
+            assertEquals(0, retry.updated());
+            assertEquals(0, retry.conflicts());
+            assertEquals(2, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(31)).size());
+
+        } finally {
+            for (var feed : sync.getFeeds(localVutId)) sync.deleteFeed(feed.id());
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    /**
+     * Escribe un calendario con los eventos dados y fija su fecha de modificación ('version' segundos
+     * tras 2030-01-01), para que el ETag de archivo cambie aunque el tamaño sea el mismo.
+     */
+    private static void writeFeed(java.nio.file.Path ics, int version, String... events) throws java.io.IOException {
+        StringBuilder text = new StringBuilder("BEGIN:VCALENDAR\r\nVERSION:2.0\r\n");
+        for (String event : events) text.append("BEGIN:VEVENT\r\n").append(event).append("END:VEVENT\r\n");
+        text.append("END:VCALENDAR\r\n");
+        java.nio.file.Files.writeString(ics, text);
+        java.nio.file.Files.setLastModifiedTime(ics, java.nio.file.attribute.FileTime.from(
+            java.time.Instant.parse("2030-01-01T00:00:00Z").plusSeconds(version)));
+    }
+
+    @Test
+    public void test27_ReservationImport() throws Exception {
+
+        System.out.println("[U27] Importación masiva de reservas desde CSV...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2031-03-01");
+        int localVutId = dbService.register_vut("Import Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(30), 9000, Season.LOW);
+
+        try {
+
+            assertTrue(dbService.register_reservation(localVutId, "Existente", "11111111H", null, null, "2031-03-20", "2031-03-22", 2, true));
+
+            String csv = "guest_name;check_in_date;check_out_date;pax_count;is_paid\n"
+                + "Ana;2031-03-02;2031-03-04;2;si\n"
+                + "Luis;2031-03-05;2031-03-08;3;no\n"
+                + "Solapa archivo;2031-03-07;2031-03-09;2;no\n"
+                + "Solapa reserva;2031-03-21;2031-03-23;2;no\n"
+                + "Fecha mala;03/10/2031;2031-03-12;2;no\n"
+                + "Al revés;2031-03-15;2031-03-14;2;no\n";
+
+            ReservationImportService importer = new ReservationImportService();
+
+            ReservationImportService.ImportReport dryRun = importer.importCsv(localVutId, new java.io.StringReader(csv), true);
+            assertEquals(6, dryRun.getRows());
+            assertEquals(2, dryRun.getImported());
+            assertEquals(4, dryRun.getRejected());
+            assertEquals("La simulación no escribe", 1, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(31)).size());
+
+            ReservationImportService.ImportReport report = importer.importCsv(localVutId, new java.io.StringReader(csv), false);
+            assertEquals(2, report.getImported());
+            assertEquals(4, report.getRejected());
+            assertEquals(java.util.List.of(4, 5, 6, 7), report.getErrors().stream().map(ReservationImportService.RowError::line).toList());
+
+            assertEquals(3, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(31)).size());
+            assertEquals(DayStatus.PAID, dbService.get_full_day_details(localVutId, Date.valueOf("2031-03-03")).status());
+            assertEquals(DayStatus.RESERVED, dbService.get_full_day_details(localVutId, Date.valueOf("2031-03-07")).status());
+            assertEquals(DayStatus.FREE, dbService.get_full_day_details(localVutId, Date.valueOf("2031-03-08")).status());
+            assertEquals("Luis", dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2031-03-06")).guestName());
+
+            ReservationImportService.ImportReport again = importer.importCsv(localVutId, new java.io.StringReader(csv), false);
+            assertEquals("Reimportar el mismo archivo no duplica reservas", 0, again.getImported());
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test28_ReservationIndex() throws Exception {
+
+        System.out.println("[U28] Índice de reservas en memoria...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2031-05-01");
+        int localVutId = dbService.register_vut("Index Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(30), 9000, Season.LOW);
+        ReservationIndex index = ReservationIndex.getInstance();
+
+        try {
+
+            assertTrue(dbService.register_reservation(localVutId, "Primera", "11111111H", null, null, "2031-05-02", "2031-05-05", 2, true));
+            assertTrue(dbService.register_reservation(localVutId, "Larga", "22222222J", null, null, "2031-05-05", "2031-05-15", 2, false));
+            assertTrue(dbService.register_reservation(localVutId, "Última", "33333333P", null, null, "2031-05-20", "2031-05-21", 1, false));
+            index.invalidate(localVutId);
+
+            // Una carga fallida no debe quedarse en el índice como "sin reservas"
+            java.sql.Connection closed = DatabaseManager.provider().open();
+            closed.close();
+            assertTrue(index.findOverlapping(closed, localVutId, start, start.plusDays(31)).isEmpty());
+
+            java.sql.Connection conn = DatabaseManager.get_connection();
+            assertEquals(3, index.findOverlapping(conn, localVutId, start, start.plusDays(31)).size());
+
+            assertNull(index.findCovering(conn, localVutId, java.time.LocalDate.parse("2031-05-01")));
+            assertEquals("Primera", index.findCovering(conn, localVutId, java.time.LocalDate.parse("2031-05-04")).guestName());
+            assertEquals("Larga", index.findCovering(conn, localVutId, java.time.LocalDate.parse("2031-05-05")).guestName());
+            assertEquals("Primera", index.findByCheckout(conn, localVutId, java.time.LocalDate.parse("2031-05-05")).guestName());
+            assertNull(index.findByCheckout(conn, localVutId, java.time.LocalDate.parse("2031-05-06")));
+            assertEquals(java.util.List.of("Larga", "Última"), index.findOverlapping(conn, localVutId,
+                java.time.LocalDate.parse("2031-05-10"), java.time.LocalDate.parse("2031-05-21")).stream().map(ReservationInfo::guestName).toList());
+
+            long[] days = new long[31];
+            for (int i = 0; i < days.length; i++) days[i] = start.plusDays(i).toEpochDay();
+            ReservationInfo[] merged = index.mergeCovering(conn, localVutId, days);
+            for (int i = 0; i < days.length; i++) {
+                ReservationInfo expected = index.findCovering(conn, localVutId, start.plusDays(i));
+                assertEquals("Día " + start.plusDays(i), expected == null ? null : expected.id(), merged[i] == null ? null : merged[i].id());
+            }
+
+            ReservationInfo last = index.findCovering(conn, localVutId, java.time.LocalDate.parse("2031-05-20"));
+            assertTrue(dbService.delete_reservation(last.id(), localVutId, "2031-05-20", "2031-05-21"));
+            assertNull("El índice se mantiene al borrar", index.findCovering(conn, localVutId, java.time.LocalDate.parse("2031-05-20")));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test29_TransactionOwnership() throws Exception {
+
+        System.out.println("[U29] Transacciones: anidadas en el mismo hilo, rechazadas desde otro...");
+
+        String name = "Tx Vut " + System.nanoTime();
+
+        try (java.sql.Connection conn = DatabaseManager.provider().open()) {
+
+            // Una llamada anidada se une a la transacción exterior y se deshace con ella
+            try {
+                Transactions.run(conn, c -> {
+                    Transactions.run(c, inner -> insertVut(inner, name));
+                    throw new java.sql.SQLException("fallo después del trabajo anidado");
+                });
+                fail("Se esperaba el error de la transacción exterior");
+            } catch (java.sql.SQLException expected) {
+                assertEquals("fallo después del trabajo anidado", expected.getMessage());
+            }
+            assertTrue(conn.getAutoCommit());
+            assertEquals(0, countVuts(conn, name));
+
+            // Otro hilo no puede unirse a una transacción abierta
+            java.util.concurrent.CountDownLatch opened = new java.util.concurrent.CountDownLatch(1);
+            java.util.concurrent.CountDownLatch checked = new java.util.concurrent.CountDownLatch(1);
+
+            java.util.concurrent.FutureTask<Integer> owner = new java.util.concurrent.FutureTask<>(() -> Transactions.run(conn, c -> {
+                int rows = insertVut(c, name);
+                opened.countDown();
+                try {
+                    checked.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return rows;
+            }));
+            new Thread(owner, "tx-owner").start();
+
+            assertTrue(opened.await(10, java.util.concurrent.TimeUnit.SECONDS));
+            try {
+                Transactions.run(conn, c -> insertVut(c, name));
+                fail("Un hilo no debe unirse a la transacción de otro");
+            } catch (java.sql.SQLException expected) {
+                // esperado
+            } finally {
+                checked.countDown();
+            }
+
+            assertEquals(Integer.valueOf(1), owner.get(10, java.util.concurrent.TimeUnit.SECONDS));
+            assertEquals("Solo se confirma la fila del hilo que abrió la transacción", 1, countVuts(conn, name));
+
+            // Una transacción abierta a mano tampoco se comparte
+            conn.setAutoCommit(false);
+            try {
+                Transactions.run(conn, c -> insertVut(c, name));
+                fail("No debe unirse a una transacción que no abrió Transactions.run");
+            } catch (java.sql.SQLException expected) {
+                // esperado
+            } finally {
+                conn.rollback();
+                conn.setAutoCommit(true);
+            }
+
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("DELETE FROM vuts WHERE name = ?")) {
+                pstmt.setString(1, name);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    private static int insertVut(java.sql.Connection conn, String name) throws java.sql.SQLException {
+        try (java.sql.PreparedStatement pstmt = conn.prepareStatement("INSERT INTO vuts (name, cover, url, apikey) VALUES (?, '', '', '')")) {
+            pstmt.setString(1, name);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    private static int countVuts(java.sql.Connection conn, String name) throws java.sql.SQLException {
+        try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM vuts WHERE name = ?")) {
+            pstmt.setString(1, name);
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    @Test
+    public void test30_PortfolioReport() throws Exception {
+
+        System.out.println("[U30] Informe de cartera con resúmenes en paralelo...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2031-07-01");
+        int[] vutIds = new int[6];
+        for (int i = 0; i < vutIds.length; i++) {
+            vutIds[i] = dbService.register_vut("Cartera " + i, "path", "url", "key");
+            dbService.update_price_range(vutIds[i], start, start.plusDays(30), 10000, Season.HIGH);
+            assertTrue(dbService.register_reservation(vutIds[i], "Cliente " + i, "11111111H", null, null,
+                start.plusDays(i).toString(), start.plusDays(i + 3).toString(), 2, true));
+        }
+
+        java.nio.file.Path pdf = testHome.resolve("cartera.pdf");
+        java.util.List<Integer> progress = java.util.Collections.synchronizedList(new java.util.ArrayList<>());
+
+        try {
+
+            assertTrue(new PortfolioReportService().generateReport(pdf.toString(), 2031, 3, progress::add));
+
+            assertTrue(java.nio.file.Files.size(pdf) > 0);
+            try (java.io.InputStream in = java.nio.file.Files.newInputStream(pdf)) {
+                assertEquals("%PDF", new String(in.readNBytes(4), java.nio.charset.StandardCharsets.US_ASCII));
+            }
+            assertEquals(Integer.valueOf(100), progress.get(progress.size() - 1));
+            for (int i = 1; i < progress.size(); i++) {
+                assertTrue("El progreso no retrocede", progress.get(i) >= progress.get(i - 1));
+            }
+
+        } finally {
+            for (int vutId : vutIds) dbService.delete_vut(vutId);
+        }
+    }
+
+    @Test
+    public void test31_MonthlyStats() throws Exception {
+
+        System.out.println("[U31] Agregados mensuales e informe anual tras cada escritura...");
+
+        int localVutId = dbService.register_vut("Stats Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2036-01-20"), java.time.LocalDate.parse("2036-01-31"), 5000, Season.LOW);
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2036-02-01"), java.time.LocalDate.parse("2036-03-10"), 6250, Season.AVERAGE);
+            assertStatsMatchDays(localVutId, 2036);
+
+            // Reserva que cruza el cambio de mes, sin pagar, y otra pagada
+            assertTrue(dbService.register_reservation(localVutId, "Cruce", "11111111H", null, null, "2036-01-30", "2036-02-03", 2, false));
+            assertTrue(dbService.register_reservation(localVutId, "Pagada", "22222222J", null, null, "2036-02-10", "2036-02-13", 2, true));
+            YearlyReport report = assertStatsMatchDays(localVutId, 2036);
+            assertEquals(2, report.getOccupiedNights(1));
+            assertEquals(5, report.getOccupiedNights(2));
+            assertEquals(3, report.getPaidNights(2));
+            assertEquals(3 * 6250, report.getRevenueCents(2));
+
+            ReservationInfo crossing = dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2036-01-30"));
+            assertTrue(dbService.update_reservation_payment_status(crossing.id(), crossing.version(), true, localVutId, "2036-01-30", "2036-02-03").isUpdated());
+            report = assertStatsMatchDays(localVutId, 2036);
+            assertEquals(2 * 5000, report.getRevenueCents(1));
+
+            crossing = dbService.get_reservation_by_id(crossing.id());
+            assertTrue(dbService.update_reservation_details(crossing.id(), crossing.version(), localVutId, "Cruce", "11111111H", null, null, 2, false,
+                "2036-01-30", "2036-02-03").isUpdated());
+            report = assertStatsMatchDays(localVutId, 2036);
+            assertEquals(2, report.getOccupiedNights(1));
+            assertEquals(0, report.getPaidNights(1));
+            assertEquals(0, report.getRevenueCents(1));
+
+            assertTrue(dbService.update_price_range(localVutId, java.time.LocalDate.parse("2036-02-01"), java.time.LocalDate.parse("2036-02-29"), 7000, Season.HIGH));
+            assertEquals("Los días ocupados conservan su precio", 3 * 6250, assertStatsMatchDays(localVutId, 2036).getRevenueCents(2));
+            assertEquals(7000, dbService.get_month_data(localVutId, 2036, 1).priceCents(20));
+
+            // Nacionalidades del check-in
+            ReservationInfo paid = dbService.get_reservation_details_for_day(localVutId, Date.valueOf("2036-02-10"));
+            CheckinUnitOfWork work = dbService.begin_checkin(paid.id());
+            work.addGuest(guest("Marie", "W5555555E", "FR", false, null));
+            work.addGuest(guest("Paul", "W6666666F", "FR", false, null));
+            work.setPayment(new CheckinUnitOfWork.Payment("Tarjeta", "4242", "Marie (W5555555E)", "12/38", "10/02/2036", true, true));
+            assertTrue(dbService.commit_checkin(work) > 0);
+            assertEquals(Map.of("FR", 2), dbService.getNationalityMix(localVutId, 2036, 2, 2));
+            assertTrue(dbService.getNationalityMix(localVutId, 2036, 3, 12).isEmpty());
+            report = assertStatsMatchDays(localVutId, 2036);
+            assertEquals(1, report.getNationalityCount());
+            assertEquals("FR", report.getNationality(0));
+            assertEquals(2, report.getNationalityGuests(0));
+
+            assertTrue(dbService.delete_reservation(crossing.id(), localVutId, "2036-01-30", "2036-02-03"));
+            report = assertStatsMatchDays(localVutId, 2036);
+            assertEquals(0, report.getOccupiedNights(1));
+            assertEquals(3, report.getOccupiedNights(2));
+            assertEquals(3 * 6250, report.getTotalRevenueCents());
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    /**
+     * Compara el informe anual (leído de los agregados) con el recuento día a día del calendario.
+     */
+    private static YearlyReport assertStatsMatchDays(int vutId, int year) {
+
+        YearlyReport report = dbService.getYearlyReport(vutId, year);
+        MonthSnapshot[] months = dbService.get_year_data(vutId, year);
+
+        for (int m = 0; m < 12; m++) {
+            long revenue = 0;
+            int occupied = 0, paid = 0;
+            for (int day = 1; day <= MonthSnapshot.MAX_DAYS; day++) {
+                DayStatus status = months[m].status(day);
+                if (status == null || status == DayStatus.FREE) continue;
+                occupied++;
+                if (status == DayStatus.PAID) {
+                    paid++;
+                    revenue += months[m].priceCents(day);
+                }
+            }
+            assertEquals("Noches ocupadas del mes " + (m + 1), occupied, report.getOccupiedNights(m + 1));
+            assertEquals("Noches pagadas del mes " + (m + 1), paid, report.getPaidNights(m + 1));
+            assertEquals("Ingresos del mes " + (m + 1), revenue, report.getRevenueCents(m + 1));
+        }
+
+        return report;
+    }
+
+    @Test
+    public void test32_DataExport() throws Exception {
+
+        System.out.println("[U32] Exportación de datos en CSV y JSON Lines...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2037-04-01");
+        int localVutId = dbService.register_vut("Export Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(29), 8000, Season.AVERAGE);
+        java.nio.file.Path directory = java.nio.file.Files.createTempDirectory(testHome, "export");
+
+        try {
+
+            assertTrue(dbService.register_reservation(localVutId, "Pérez, \"Pepe\"", "11111111H", null, null, "2037-04-02", "2037-04-04", 2, true));
+            assertTrue(dbService.register_reservation(localVutId, "Línea\nDoble", "22222222J", null, null, "2037-04-10", "2037-04-12", 2, false));
+            assertTrue(dbService.register_reservation(localVutId, "Fuera", "33333333P", null, null, "2037-04-20", "2037-04-22", 2, false));
+
+            DataExportService export = new DataExportService();
+
+            // CSV comprimido: comillas y saltos de línea según RFC 4180
+            java.nio.file.Path csvFile = directory.resolve("reservations.csv.gz");
+            assertEquals(3, export.export(DataExportService.Table.RESERVATIONS,
+                new DataExportService.ExportOptions(DataExportService.Format.CSV, true, localVutId, null, null), csvFile));
+            String csv;
+            try (java.io.InputStream in = new java.util.zip.GZIPInputStream(java.nio.file.Files.newInputStream(csvFile))) {
+                csv = new String(in.readAllBytes(), java.nio.charset.StandardCharsets.UTF_8);
+            }
+            assertTrue(csv.startsWith("id,vut_id,guest_name,"));
+            assertTrue(csv.contains(",\"Pérez, \"\"Pepe\"\"\","));
+            assertTrue(csv.contains(",\"Línea\nDoble\","));
+            assertEquals("Cabecera + 3 filas (el salto de línea del nombre va entre comillas)", 4, csv.split("\r\n").length);
+
+            // JSON Lines con filtro de fechas (por la entrada de la reserva) para varias tablas
+            Map<DataExportService.Table, Long> counts = export.exportAll(
+                java.util.EnumSet.of(DataExportService.Table.RESERVATIONS, DataExportService.Table.DAYS),
+                new DataExportService.ExportOptions(DataExportService.Format.JSONL, false, localVutId,
+                    java.time.LocalDate.parse("2037-04-01"), java.time.LocalDate.parse("2037-04-15")), directory);
+            assertEquals(Long.valueOf(2), counts.get(DataExportService.Table.RESERVATIONS));
+            assertEquals(Long.valueOf(15), counts.get(DataExportService.Table.DAYS));
+
+            java.util.List<String> lines = java.nio.file.Files.readAllLines(directory.resolve("reservations.jsonl"));
+            assertEquals(2, lines.size());
+            assertTrue(lines.get(0).startsWith("{\"id\":") && lines.get(0).endsWith("}"));
+            assertTrue(lines.get(0).contains("\"guest_name\":\"Pérez, \\\"Pepe\\\"\""));
+            assertTrue(lines.get(1).contains("\"guest_name\":\"Línea\\nDoble\""));
+            assertTrue(lines.get(0).contains("\"vut_id\":" + localVutId + ","));
+
+            java.util.List<String> days = java.nio.file.Files.readAllLines(directory.resolve("days.jsonl"));
+            assertEquals(15, days.size());
+            assertTrue(days.get(0).contains("\"day_date\":\"2037-04-01\""));
+            assertTrue(days.get(2).contains("\"status\":\"paid\""));
+            assertTrue(days.get(14).contains("\"day_date\":\"2037-04-15\""));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test33_RestApiConflicts() throws Exception {
+
+        System.out.println("[U33] API REST: solapes de fechas y salidas repetidas...");
+
+        String username = "junit_api_" + System.nanoTime();
+        assertTrue(dbService.registerUser(username, "junit-pass", "user"));
+        java.time.LocalDate start = java.time.LocalDate.parse("2038-06-01");
+        int localVutId = dbService.register_vut("API Conflict Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(29), 8000, Season.AVERAGE);
+
+        ConnectionPool pool = DatabaseManager.open_pool(4);
+        assertNotNull("No se pudo abrir el pool de conexiones", pool);
+        RestApiServer server = new RestApiServer(0, pool);
+        server.start();
+
+        try {
+
+            java.net.http.HttpClient client = java.net.http.HttpClient.newHttpClient();
+            String base = "http://127.0.0.1:" + server.getPort() + "/api";
+
+            java.net.http.HttpResponse<String> login = client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + "/login"))
+                .POST(java.net.http.HttpRequest.BodyPublishers.ofString("{\"username\":\"" + username + "\",\"password\":\"junit-pass\"}")).build(),
+                java.net.http.HttpResponse.BodyHandlers.ofString());
+            String token = com.google.gson.JsonParser.parseString(login.body()).getAsJsonObject().get("token").getAsString();
+
+            java.util.function.BiFunction<String, String, Integer> post = (path, json) -> {
+                try {
+                    return client.send(java.net.http.HttpRequest.newBuilder(java.net.URI.create(base + path))
+                        .header("Authorization", "Bearer " + token).POST(java.net.http.HttpRequest.BodyPublishers.ofString(json)).build(),
+                        java.net.http.HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            };
+
+            String reservations = "/vuts/" + localVutId + "/reservations";
+            assertEquals(200, (int) post.apply(reservations, "{\"dni\":\"00000000T\",\"name\":\"A\",\"checkIn\":\"2038-06-02\",\"checkOut\":\"2038-06-05\",\"pax\":2}"));
+            assertEquals("Solape con una reserva existente", 409, (int) post.apply(reservations,
+                "{\"dni\":\"00000000T\",\"name\":\"B\",\"checkIn\":\"2038-06-04\",\"checkOut\":\"2038-06-06\",\"pax\":2}"));
+
+            // Días ocupados sin reserva en el índice (p.ej. bloqueados por una OTA)
+            try (java.sql.Statement stmt = DatabaseManager.get_connection().createStatement()) {
+                assertEquals(1, stmt.executeUpdate("UPDATE days SET status = " + DayStatus.RESERVED.code() + " WHERE vut_id = " + localVutId + " AND day_date = '2038-06-10'"));
+            }
+            assertEquals("Solape con días ocupados", 409, (int) post.apply(reservations,
+                "{\"dni\":\"00000000T\",\"name\":\"C\",\"checkIn\":\"2038-06-09\",\"checkOut\":\"2038-06-11\",\"pax\":2}"));
+
+            assertEquals(1, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(30)).size());
+
+            // Salida repetida
+            ReservationInfo first = dbService.get_reservations_overlapping(localVutId, start, start.plusDays(5)).get(0);
+            String checkout = "/reservations/" + first.id() + "/checkout";
+            assertEquals(200, (int) post.apply(checkout, "{\"exitTime\":\"11:00\",\"keysReturned\":true}"));
+            assertEquals("La salida ya está registrada", 409, (int) post.apply(checkout, "{\"exitTime\":\"12:00\"}"));
+            assertFalse(dbService.register_checkout(first.id(), "12:00", true, false, null));
+
+            try (java.sql.PreparedStatement count = DatabaseManager.get_connection().prepareStatement("SELECT COUNT(*) FROM checkouts WHERE reservation_id = ?")) {
+                count.setInt(1, first.id());
+                try (java.sql.ResultSet rs = count.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("Una sola fila de salida", 1, rs.getInt(1));
+                }
+            }
+
+        } finally {
+            server.stop();
+            pool.close();
+            dbService.delete_vut(localVutId);
+            for (Map<String, Object> user : dbService.getAllUsers()) {
+                if (username.equals(user.get("username"))) dbService.deleteUser((Integer) user.get("id"));
+            }
+        }
+    }
+
+    @Test
+    public void test34_ConcurrentDesksSameNights() throws Exception {
+
+        System.out.println("[U34] Varios puestos reservando las mismas noches (" + DatabaseManager.dialect().name() + ")...");
+
+        java.time.LocalDate start = java.time.LocalDate.parse("2039-02-01");
+        int localVutId = dbService.register_vut("Same Nights Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(27), 7000, Season.LOW);
+
+        int desks = 8;
+        ConnectionPool pool = DatabaseManager.open_pool(4);
+        assertNotNull("No se pudo abrir el pool de conexiones", pool);
+
+        try {
+
+            for (int round = 0; round < 5; round++) {
+
+                java.time.LocalDate checkIn = start.plusDays(round * 5L);
+                java.util.concurrent.CountDownLatch go = new java.util.concurrent.CountDownLatch(1);
+                java.util.List<java.util.concurrent.Future<UpdateResult>> results = new java.util.ArrayList<>();
+
+                try (java.util.concurrent.ExecutorService seats = java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor()) {
+                    for (int i = 0; i < desks; i++) {
+                        // Cada puesto solapa con los demás en al menos una noche
+                        java.time.LocalDate in = checkIn.plusDays(i % 2);
+                        results.add(seats.submit(() -> {
+                            go.await();
+                            try (ConnectionPool.Lease lease = pool.borrow()) {
+                                return new DatabaseService(lease.connection()).create_reservation(localVutId, "Desk", "00000000T", null, null,
+                                    in.toString(), in.plusDays(3).toString(), 2, false);
+                            }
+                        }));
+                    }
+                    go.countDown();
+                }
+
+                int created = 0;
+                for (java.util.concurrent.Future<UpdateResult> result : results) {
+                    if (result.get().isUpdated()) created++;
+                    else assertTrue("Resultado inesperado: " + result.get(), result.get().isConflict());
+                }
+                assertEquals("Solo un puesto debe confirmar la ronda " + round, 1, created);
+            }
+
+            assertEquals(5, dbService.get_reservations_overlapping(localVutId, start, start.plusDays(28)).size());
+
+            // Los días ocupados cuadran con las reservas: ninguno pertenece a dos a la vez
+            int occupiedNights = 0;
+            for (FullDayInfo day : dbService.get_days_in_range(localVutId, start, start.plusDays(28)).values()) {
+                if (day.status() != DayStatus.FREE) occupiedNights++;
+            }
+            assertEquals(5 * 3, occupiedNights);
+
+        } finally {
+            pool.close();
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test35_DeleteVutAtomic() throws Exception {
+
+        System.out.println("[U35] Borrado de una vivienda en una sola transacción...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        int localVutId = dbService.register_vut("Delete Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, java.time.LocalDate.parse("2040-03-01"), java.time.LocalDate.parse("2040-03-31"), 8000, Season.AVERAGE);
+        assertTrue(dbService.register_reservation(localVutId, "Guest", "00000000T", null, null, "2040-03-10", "2040-03-12", 2, true));
+        assertTrue(IcalFeedSyncService.getInstance().addFeed(localVutId, "Airbnb", "https://example.invalid/" + localVutId + ".ics") > 0);
+
+        java.util.function.IntSupplier statsRows = () -> {
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM monthly_stats WHERE vut_id = ?")) {
+                pstmt.setInt(1, localVutId);
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getInt(1) : -1;
+                }
+            } catch (java.sql.SQLException e) {
+                throw new RuntimeException(e);
+            }
+        };
+
+        try {
+
+            assertTrue(statsRows.getAsInt() > 0);
+            assertFalse("Una vivienda inexistente no se borra", dbService.delete_vut(Integer.MAX_VALUE));
+
+            // Un fallo a mitad de la limpieza deshace también el borrado de la vivienda
+            if (DatabaseManager.dialect().name().equals("SQLite")) {
+                try (java.sql.Statement stmt = conn.createStatement()) {
+                    stmt.execute("CREATE TEMP TRIGGER junit_block_feed_delete BEFORE DELETE ON main.ical_feeds BEGIN SELECT RAISE(ABORT, 'blocked'); END");
+                }
+                try {
+                    assertFalse(dbService.delete_vut(localVutId));
+                } finally {
+                    try (java.sql.Statement stmt = conn.createStatement()) {
+                        stmt.execute("DROP TRIGGER junit_block_feed_delete");
+                    }
+                }
+                assertNotNull("La vivienda debe seguir existiendo", dbService.get_vut_details_by_id(localVutId));
+                assertTrue("Sus agregados deben seguir existiendo", statsRows.getAsInt() > 0);
+                assertEquals(1, IcalFeedSyncService.getInstance().getFeeds(localVutId).size());
+            }
+
+            assertTrue(dbService.delete_vut(localVutId));
+            assertNull(dbService.get_vut_details_by_id(localVutId));
+            assertEquals(0, statsRows.getAsInt());
+            assertTrue(IcalFeedSyncService.getInstance().getFeeds(localVutId).isEmpty());
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test36_IcalExportRenderer() throws Exception {
+
+        System.out.println("[U36] Calendario iCal generado desde la base de datos...");
+
+        java.time.LocalDate start = java.time.LocalDate.now().plusDays(10);
+        int localVutId = dbService.register_vut("Ical Export Vut", "path", "url", "key");
+        dbService.update_price_range(localVutId, start, start.plusDays(20), 9000, Season.AVERAGE);
+        IcalExportService export = IcalExportService.getInstance();
+        java.util.concurrent.ExecutorService poller = java.util.concurrent.Executors.newSingleThreadExecutor();
+
+        try {
+
+            IcalExportService.RenderedFeed empty = export.getFeed(localVutId);
+            assertNotNull(empty);
+            assertFalse(new String(empty.body(), java.nio.charset.StandardCharsets.UTF_8).contains("BEGIN:VEVENT"));
+            assertSame("Sin cambios se sirve la caché", empty, export.getFeed(localVutId));
+
+            // Una escritura confirmada invalida la caché
+            assertTrue(dbService.register_reservation(localVutId, "Guest", "00000000T", null, null, start.toString(), start.plusDays(3).toString(), 2, false));
+            IcalExportService.RenderedFeed booked = export.getFeed(localVutId);
+            assertNotEquals(empty.etag(), booked.etag());
+            String body = new String(booked.body(), java.nio.charset.StandardCharsets.UTF_8);
+            assertTrue(body.contains("DTSTART;VALUE=DATE:" + start.format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE)));
+            assertFalse("No se publican datos del huésped", body.contains("Guest"));
+
+            // Un sondeo durante una transacción abierta en otro hilo no ve (ni guarda) sus cambios
+            IcalExportService.invalidate(localVutId);
+            java.time.LocalDate phantom = start.plusDays(10);
+            java.sql.Connection conn = DatabaseManager.get_connection();
+            try {
+                Transactions.run(conn, c -> {
+                    try (java.sql.PreparedStatement pstmt = c.prepareStatement("INSERT INTO reservations (vut_id, guest_name, guest_dni, check_in_date, check_out_date, pax_count, is_paid, created_at, has_checkout) " +
+                            "VALUES (?, 'Phantom', '00000000T', ?, ?, 1, 0, '2020-01-01 00:00:00', 0)")) {
+                        pstmt.setInt(1, localVutId);
+                        pstmt.setString(2, phantom.toString());
+                        pstmt.setString(3, phantom.plusDays(2).toString());
+                        pstmt.executeUpdate();
+                    }
+                    try {
+                        IcalExportService.RenderedFeed during = poller.submit(() -> export.getFeed(localVutId)).get();
+                        assertEquals(booked.etag(), during.etag());
+                    } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                        throw new RuntimeException(e);
+                    }
+                    throw new java.sql.SQLException("rollback");
+                });
+                fail("La transacción debía deshacerse");
+            } catch (java.sql.SQLException e) {
+                assertEquals("rollback", e.getMessage());
+            }
+            assertEquals(booked.etag(), export.getFeed(localVutId).etag());
+
+        } finally {
+            poller.shutdown();
+            dbService.delete_vut(localVutId);
+        }
+    }
+
+    @Test
+    public void test37_SharedConnectionSerialized() throws Exception {
+
+        System.out.println("[U37] Conexión principal: las sentencias de otro hilo esperan a la transacción abierta...");
+
+        String rolledBack = "Shared Tx " + System.nanoTime();
+        String outside = rolledBack + " fuera";
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        java.util.concurrent.ExecutorService other = java.util.concurrent.Executors.newSingleThreadExecutor();
+
+        try {
+
+            java.util.concurrent.atomic.AtomicReference<java.util.concurrent.Future<Integer>> plain = new java.util.concurrent.atomic.AtomicReference<>();
+            try {
+                Transactions.run(conn, c -> {
+                    insertVut(c, rolledBack);
+                    plain.set(other.submit(() -> insertVut(conn, outside)));
+                    try {
+                        plain.get().get(500, java.util.concurrent.TimeUnit.MILLISECONDS);
+                        fail("La sentencia de otro hilo no debe entrar en la transacción abierta");
+                    } catch (java.util.concurrent.TimeoutException expected) {
+                        // esperado: espera al commit o rollback
+                    } catch (InterruptedException | java.util.concurrent.ExecutionException e) {
+                        throw new RuntimeException(e);
+                    }
+                    throw new java.sql.SQLException("rollback");
+                });
+                fail("La transacción debía deshacerse");
+            } catch (java.sql.SQLException e) {
+                assertEquals("rollback", e.getMessage());
+            }
+
+            assertEquals(Integer.valueOf(1), plain.get().get(10, java.util.concurrent.TimeUnit.SECONDS));
+            assertEquals("El rollback solo deshace la fila de su transacción", 0, countVuts(conn, rolledBack));
+            assertEquals(1, countVuts(conn, outside));
+
+            // Dos hilos que abren transacciones sobre la conexión principal se turnan en lugar de fallar
+            java.util.List<java.util.concurrent.Future<Integer>> turns = new java.util.ArrayList<>();
+            java.util.concurrent.ExecutorService desks = java.util.concurrent.Executors.newFixedThreadPool(4);
+            try {
+                for (int i = 0; i < 8; i++) {
+                    turns.add(desks.submit(() -> Transactions.run(conn, c -> insertVut(c, outside))));
+                }
+                for (java.util.concurrent.Future<Integer> turn : turns) {
+                    assertEquals(Integer.valueOf(1), turn.get(30, java.util.concurrent.TimeUnit.SECONDS));
+                }
+            } finally {
+                desks.shutdown();
+            }
+            assertEquals(9, countVuts(conn, outside));
+            assertTrue(conn.getAutoCommit());
+
+        } finally {
+            other.shutdown();
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("DELETE FROM vuts WHERE name IN (?, ?)")) {
+                pstmt.setString(1, rolledBack);
+                pstmt.setString(2, outside);
+                pstmt.executeUpdate();
+            }
+        }
+    }
+
+    @Test
+    public void test18_HotColdArchive() throws Exception {
+
+        System.out.println("[U18] Archivado de temporadas cerradas...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        int localVutId = dbService.register_vut("Archive Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2015-11-01"), java.time.LocalDate.parse("2016-01-10"), 10000, Season.AVERAGE);
+            assertTrue(dbService.register_reservation(localVutId, "Old Guest", "00000000T", null, null, "2015-12-10", "2015-12-14", 2, true));
+            assertTrue(dbService.register_reservation(localVutId, "Crossing Guest", "00000001R", null, null, "2015-12-30", "2016-01-03", 2, true));
+
+            int oldId = dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2015-12-11")).id();
+            int checkinId = dbService.get_or_create_checkin_id(oldId);
+            assertTrue(dbService.add_guest(checkinId, "Ana", "Ruiz", null, "F", "1990-01-01", "ES", "DNI", "12345678Z",
+                null, null, null, null, null, null, false, null));
+
+            YearlyReport before = dbService.getYearlyReport(localVutId, 2015);
+            assertEquals(6, before.getOccupiedNights(12));
+
+            ArchiveService.ArchiveResult result = ArchiveService.getInstance().archiveBefore(java.time.LocalDate.parse("2016-01-01"));
+            System.out.printf("[U18] Archivado hasta %s: %d reservas, %d días en %d ms%n", result.cutoff(), result.reservations(), result.days(), result.durationMs());
+
+            assertEquals("El corte no parte la reserva que lo cruza", java.time.LocalDate.parse("2015-12-30"), result.cutoff());
+            assertEquals("Solo se archivan los datos de esta prueba", 1, result.reservations());
+            assertEquals(59, result.days());
+            assertEquals(12, countRows(conn, "days", localVutId));
+            assertEquals(59, countRows(conn, DatabaseArchive.archived("days"), localVutId));
+            assertEquals(1, countRows(conn, DatabaseArchive.archived("reservations"), localVutId));
+            try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT g.fullname FROM all_guests g JOIN all_checkins c ON g.checkin_id = c.id WHERE c.reservation_id = ?")) {
+                pstmt.setInt(1, oldId);
+                try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("Ana", rs.getString(1));
+                }
+            }
+
+            // Lecturas históricas: calendario, detalle de reserva, exportación
+            MonthSnapshot november = dbService.get_month_data(localVutId, 2015, 10);
+            assertEquals(30, november.recordedDays());
+            assertEquals(DayStatus.PAID, dbService.get_month_data(localVutId, 2015, 11).status(10));
+            assertEquals("Old Guest", dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2015-12-11")).guestName());
+
+            java.nio.file.Path export = java.nio.file.Files.createTempFile("days", ".csv");
+            assertEquals(71, new DataExportService().export(DataExportService.Table.DAYS,
+                new DataExportService.ExportOptions(DataExportService.Format.CSV, false, localVutId, null, null), export));
+            java.nio.file.Files.deleteIfExists(export);
+
+            // Los días archivados son de solo lectura; un mes partido se recalcula sobre la vista de unión
+            assertFalse(dbService.update_price_range(localVutId, java.time.LocalDate.parse("2015-11-01"), java.time.LocalDate.parse("2015-11-10"), 5000, Season.LOW));
+            assertTrue(dbService.update_price_range(localVutId, java.time.LocalDate.parse("2015-12-20"), java.time.LocalDate.parse("2016-01-05"), 12000, Season.HIGH));
+            YearlyReport after = dbService.getYearlyReport(localVutId, 2015);
+            assertEquals(before.getOccupiedNights(12), after.getOccupiedNights(12));
+            assertEquals(before.getRevenueCents(12), after.getRevenueCents(12));
+            assertEquals(12, countRows(conn, "days", localVutId));
+
+            // Las nacionalidades del mes partido suman los huéspedes archivados y los activos
+            int crossingId = dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2015-12-31")).id();
+            assertTrue(dbService.add_guest(dbService.get_or_create_checkin_id(crossingId), "Luc", "Martin", null, "M", "1985-01-01", "FR", "PASSPORT", "FR123456",
+                null, null, null, null, null, null, false, null));
+            assertEquals(Map.of("ES", 1, "FR", 1), dbService.getNationalityMix(localVutId, 2015, 12, 12));
+
+            assertTrue("Una segunda pasada no mueve nada", ArchiveService.getInstance().archiveBefore(java.time.LocalDate.parse("2016-01-01")).isEmpty());
+            assertEquals(0, DatabaseArchive.remove_duplicates(conn));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+
+        assertEquals(0, countRows(conn, DatabaseArchive.archived("days"), localVutId));
+        assertEquals(0, countRows(conn, DatabaseArchive.archived("reservations"), localVutId));
+    }
+
+    @Test
+    public void test19_GuestSearch() throws Exception {
+
+        System.out.println("[U19] Búsqueda de huéspedes...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        int localVutId = dbService.register_vut("Search Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2014-06-01"), java.time.LocalDate.parse("2014-06-30"), 9000, Season.HIGH);
+            assertTrue(dbService.register_reservation(localVutId, "María José González", "44556677K", "mjose.gonzalez@example.com", "+34 611 223 344", "2014-06-10", "2014-06-15", 2, true));
+            assertTrue(dbService.register_reservation(localVutId, "Peter Smith", "X1234567L", "peter@example.org", "+44 7700 900123", "2030-05-10", "2030-05-12", 1, false));
+
+            ReservationInfo peter = dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2030-05-10"));
+            int checkinId = dbService.get_or_create_checkin_id(peter.id());
+            assertTrue(dbService.add_guest(checkinId, "Émile", "Durand", "Lefèvre", "M", "1985-03-02", "FR", "PASSPORT", "19FR00123",
+                null, null, null, null, "+33 6 12 34 56 78", "emile.durand@example.fr", false, null));
+
+            // Prefijos sin tildes ni mayúsculas, en nombre, documento, email y teléfono
+            assertEquals("María José González", dbService.search_guests("gonz", 10).get(0).name());
+            assertEquals("María José González", dbService.search_guests("Maria Gonzá", 10).get(0).name());
+            assertEquals("44556677K", dbService.search_guests("4455", 10).get(0).document());
+            assertEquals(peter.id(), dbService.search_guests("peter@exa", 10).get(0).reservationId());
+            assertEquals("Un huésped del check-in lleva a su reserva", peter.id(), dbService.search_guests("emile lefe", 10).get(0).reservationId());
+            assertEquals(1, dbService.search_guests("durand", 10).size());
+            assertTrue(dbService.search_guests("g", 10).isEmpty());
+            assertTrue(dbService.search_guests("gonz smith", 10).isEmpty());
+
+            // Los cambios y bajas se reflejan al momento
+            ReservationInfo current = dbService.get_reservation_by_id(peter.id());
+            assertTrue(dbService.update_reservation_details(peter.id(), current.version(), localVutId, "Peter Jones", "X1234567L",
+                "peter@example.org", null, 1, false, "2030-05-10", "2030-05-12").isUpdated());
+            assertTrue(dbService.search_guests("smith", 10).isEmpty());
+            assertEquals(peter.id(), dbService.search_guests("jones", 10).get(0).reservationId());
+            int guestId = dbService.get_guests_by_checkin(checkinId).get(0).id();
+            assertTrue(dbService.delete_guest(guestId));
+            assertTrue(dbService.search_guests("durand", 10).isEmpty());
+
+            // Las reservas archivadas se siguen encontrando
+            ArchiveService.getInstance().archiveBefore(java.time.LocalDate.parse("2015-01-01"));
+            assertEquals(1, countRows(conn, DatabaseArchive.archived("reservations"), localVutId));
+            GuestSearchResult archived = dbService.search_guests("gonzalez", 10).get(0);
+            assertTrue(archived.archived());
+            assertEquals(localVutId, archived.vutId());
+            assertEquals("2014-06-10", archived.checkIn());
+
+            if (DatabaseManager.dialect().hasSearchIndex()) {
+                searchLoad(conn, localVutId);
+            }
+
+        } finally {
+            dbService.delete_vut(localVutId);
+        }
+
+        assertTrue(dbService.search_guests("gonzalez", 10).isEmpty());
+    }
+
+    @Test
+    public void test20_GuestProfiles() throws Exception {
+
+        System.out.println("[U20] Fichas de huéspedes habituales...");
+
+        java.sql.Connection conn = DatabaseManager.get_connection();
+        int localVutId = dbService.register_vut("Profile Vut", "path", "url", "key");
+
+        try {
+
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2014-03-01"), java.time.LocalDate.parse("2014-03-31"), 7000, Season.LOW);
+            dbService.update_price_range(localVutId, java.time.LocalDate.parse("2031-02-01"), java.time.LocalDate.parse("2031-02-28"), 9000, Season.AVERAGE);
+
+            // La reserva crea la ficha del titular; el documento se normaliza
+            assertTrue(dbService.register_reservation(localVutId, "Lucía Martín", "z-9988.776/q", "lucia@example.com", "+34 600 111 222", "2031-02-01", "2031-02-04", 2, true));
+            GuestProfile holder = dbService.find_guest_profile("Z9988776Q");
+            assertNotNull(holder);
+            assertEquals("Lucía Martín", holder.displayName());
+            assertNull(holder.surname1());
+            assertSame("Segunda consulta desde la caché", holder, dbService.find_guest_profile("Z9988776-Q"));
+
+            // El check-in completa la ficha y enlaza al huésped
+            int recentId = dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2031-02-02")).id();
+            int recentCheckin = dbService.get_or_create_checkin_id(recentId);
+            assertTrue(dbService.add_guest(recentCheckin, "Lucía", "Martín", "Gil", "Mujer", "02/03/1988", "ES", "DNI", "Z9988776Q",
+                "ABC123", "Calle Mayor 1", "Sevilla", "España", "+34 600 111 222", "lucia@example.com", false, null));
+            GuestProfile full = dbService.find_guest_profile("Z9988776Q");
+            assertEquals("Gil", full.surname2());
+            assertEquals("Calle Mayor 1", full.address());
+            assertEquals("2031-02-01", full.lastStay());
+
+            // Una estancia anterior no sobrescribe los datos de la última
+            assertTrue(dbService.register_reservation(localVutId, "Lucía Martín", "Z9988776Q", null, null, "2014-03-10", "2014-03-12", 1, true));
+            int oldId = dbService.get_reservation_details_for_day(localVutId, java.sql.Date.valueOf("2014-03-10")).id();
+            int oldCheckin = dbService.get_or_create_checkin_id(oldId);
+            assertTrue(dbService.add_guest(oldCheckin, "Lucía", "Martín", "Gil", "Mujer", "02/03/1988", "ES", "DNI", "Z9988776Q",
+                null, "Calle Vieja 9", "Cádiz", "España", null, null, false, null));
+            assertEquals("Calle Mayor 1", dbService.find_guest_profile("Z9988776Q").address());
+            try (java.sql.Statement stmt = conn.createStatement();
+                 java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*), COUNT(DISTINCT profile_id), COUNT(profile_id) FROM guests WHERE id_document_number = 'Z9988776Q'")) {
+                assertTrue(rs.next());
+                assertEquals(2, rs.getInt(1));
+                assertEquals("Una sola ficha para las dos estancias", 1, rs.getInt(2));
+                assertEquals(2, rs.getInt(3));
+            }
+
+            // Enlace diferido de huéspedes anteriores a las fichas, también los archivados
+            assertTrue(dbService.add_guest(oldCheckin, "Pablo", "Ortega", null, "Hombre", "10/10/1990", "ES", "DNI", "Y1122334R",
+                null, null, null, null, null, null, false, null));
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE guests SET profile_id = NULL WHERE checkin_id IN (" + recentCheckin + ", " + oldCheckin + ")");
+                stmt.executeUpdate("DELETE FROM guest_profiles WHERE document_number IN ('Z9988776Q', 'Y1122334R')");
+            }
+            GuestProfiles.clearCache();
+            ArchiveService.getInstance().archiveBefore(java.time.LocalDate.parse("2015-01-01"));
+            assertNull(dbService.find_guest_profile("Y1122334R"));
+
+            assertTrue(GuestProfiles.linkPending(conn) >= 3);
+            assertEquals("Ortega", dbService.find_guest_profile("Y1122334R").surname1());
+            assertEquals("La estancia más reciente gana aunque se enlace la última", "Calle Mayor 1", dbService.find_guest_profile("Z9988776Q").address());
+            try (java.sql.Statement stmt = conn.createStatement();
+                 java.sql.ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + DatabaseArchive.archived("guests") + " WHERE profile_id IS NULL AND checkin_id = " + oldCheckin)) {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            }
+            assertEquals("Nada pendiente en la segunda pasada", 0, GuestProfiles.linkPending(conn));
+
+        } finally {
+            dbService.delete_vut(localVutId);
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM guest_profiles WHERE document_number IN ('Z9988776Q', 'Y1122334R')");
+            }
+            GuestProfiles.clearCache();
+        }
+    }
+
+    /**
+     * Carga 100.000 huéspedes (25.000 reservas con 4 huéspedes cada una) y mide búsquedas como las
+     * que lanza la caja de búsqueda mientras se escribe.
+     */
+    private static void searchLoad(java.sql.Connection conn, int vutId) throws java.sql.SQLException {
+
+        String[] names = { "Antonio", "Manuel", "José", "Francisco", "David", "Juan", "Javier", "Daniel", "Carlos", "Miguel",
+            "María", "Carmen", "Ana", "Isabel", "Laura", "Lucía", "Marta", "Elena", "Sara", "Paula", "John", "Emma", "Lukas", "Chloé" };
+        String[] surnames = { "García", "Rodríguez", "González", "Fernández", "López", "Martínez", "Sánchez", "Pérez", "Gómez", "Martín",
+            "Jiménez", "Ruiz", "Hernández", "Díaz", "Moreno", "Muñoz", "Álvarez", "Romero", "Alonso", "Gutiérrez", "Navarro", "Torres",
+            "Domínguez", "Vázquez", "Ramos", "Gil", "Ramírez", "Serrano", "Blanco", "Molina", "Smith", "Müller", "Dubois", "Rossi" };
+
+        java.util.Random random = new java.util.Random(42);
+        int reservations = 25_000;
+        int base = 1_000_000;
+        java.util.List<String> queries = new java.util.ArrayList<>();
+
+        long t0 = System.nanoTime();
+        conn.setAutoCommit(false);
+        try (java.sql.PreparedStatement res = conn.prepareStatement("INSERT INTO reservations (id, vut_id, guest_name, guest_dni, guest_email, guest_phone, " +
+                "check_in_date, check_out_date, pax_count, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, 4, '2040-01-01 00:00:00')");
+             java.sql.PreparedStatement chk = conn.prepareStatement("INSERT INTO checkins (id, reservation_id, signed_at) VALUES (?, ?, '2040-01-01 00:00:00')");
+             java.sql.PreparedStatement gst = conn.prepareStatement("INSERT INTO guests (checkin_id, fullname, surname1, surname2, sex, birth_date, " +
+                "nationality, id_document_type, id_document_number, phone, email) VALUES (?, ?, ?, ?, 'F', '1980-01-01', 'ES', 'DNI', ?, ?, ?)")) {
+
+            for (int i = 0; i < reservations; i++) {
+                int id = base + i;
+                java.time.LocalDate checkIn = java.time.LocalDate.parse("2040-01-01").plusDays(i % 3_000);
+                String holder = names[random.nextInt(names.length)] + " " + surnames[random.nextInt(surnames.length)];
+                res.setInt(1, id);
+                res.setInt(2, vutId);
+                res.setString(3, holder);
+                res.setString(4, String.format("%08dZ", random.nextInt(100_000_000)));
+                res.setString(5, "holder" + i + "@example.com");
+                res.setString(6, String.format("+34 6%08d", random.nextInt(100_000_000)));
+                res.setString(7, checkIn.toString());
+                res.setString(8, checkIn.plusDays(3).toString());
+                res.addBatch();
+                chk.setInt(1, id);
+                chk.setInt(2, id);
+                chk.addBatch();
+
+                for (int g = 0; g < 4; g++) {
+                    String name = names[random.nextInt(names.length)];
+                    String surname1 = surnames[random.nextInt(surnames.length)];
+                    String surname2 = surnames[random.nextInt(surnames.length)];
+                    String document = String.format("%08d%c", random.nextInt(100_000_000), (char) ('A' + random.nextInt(26)));
+                    String phone = String.format("6%08d", random.nextInt(100_000_000));
+                    gst.setInt(1, id);
+                    gst.setString(2, name);
+                    gst.setString(3, surname1);
+                    gst.setString(4, surname2);
+                    gst.setString(5, document);
+                    gst.setString(6, phone);
+                    gst.setString(7, (name + "." + surname1).toLowerCase() + g + "@mail.test");
+                    gst.addBatch();
+
+                    if (random.nextInt(100) == 0) {
+                        // Lo que se teclea: nombre incompleto, nombre y apellido a medias, DNI o teléfono parcial
+                        queries.add(surname1.substring(0, 2));
+                        queries.add(surname1.substring(0, Math.min(4, surname1.length())));
+                        queries.add(name.substring(0, 3) + " " + surname2.substring(0, 3));
+                        queries.add(name + " " + surname1 + " " + surname2);
+                        queries.add(document.substring(0, 5));
+                        queries.add(phone.substring(0, 6));
+                    }
+                }
+
+                if (i % 1_000 == 999) {
+                    res.executeBatch();
+                    chk.executeBatch();
+                    gst.executeBatch();
+                }
+            }
+            res.executeBatch();
+            chk.executeBatch();
+            gst.executeBatch();
+            conn.commit();
+        } finally {
+            conn.setAutoCommit(true);
+        }
+        System.out.printf("[U19] %d huéspedes indexados en %d ms%n", reservations * 4, (System.nanoTime() - t0) / 1_000_000);
+
+        try {
+
+            for (int i = 0; i < 50; i++) dbService.search_guests(queries.get(i % queries.size()), 10);
+
+            long[] times = new long[queries.size()];
+            for (int i = 0; i < queries.size(); i++) {
+                long start = System.nanoTime();
+                java.util.List<GuestSearchResult> results = dbService.search_guests(queries.get(i), 10);
+                times[i] = System.nanoTime() - start;
+                assertFalse("Sin resultados para '" + queries.get(i) + "'", results.isEmpty());
+            }
+            java.util.Arrays.sort(times);
+
+            System.out.printf("[U19] %d búsquedas: p50 %.2f ms, p99 %.2f ms, máx %.2f ms%n",
+                times.length, percentile(times, 50), percentile(times, 99), times[times.length - 1] / 1e6);
+            assertTrue("La búsqueda debe responder en menos de 20 ms", percentile(times, 99) < 20.0);
+
+        } finally {
+            try (java.sql.Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM guests WHERE checkin_id >= " + base);
+                stmt.executeUpdate("DELETE FROM checkins WHERE id >= " + base);
+                stmt.executeUpdate("DELETE FROM reservations WHERE id >= " + base);
+            }
+        }
+    }
+
+    private static int countCheckinRows(java.sql.Connection conn, String table, int reservationId) throws java.sql.SQLException {
+        String sql = table.equals("checkins")
+            ? "SELECT COUNT(*) FROM checkins WHERE reservation_id = ?"
+            : "SELECT COUNT(*) FROM guests g JOIN checkins c ON g.checkin_id = c.id WHERE c.reservation_id = ?";
+        try (java.sql.PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, reservationId);
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    private static Map<String, Object> guest(String fullname, String document, String nationality, boolean isMinor, Integer guardianId) {
+        Map<String, Object> data = new java.util.HashMap<>();
+        data.put("fullname", fullname);
+        data.put("surname1", "Prueba");
+        data.put("sex", "Mujer");
+        data.put("birthDate", isMinor ? "01/06/2025" : "01/06/1985");
+        data.put("nationality", nationality);
+        data.put("docType", "DNI");
+        data.put("docNumber", document);
+        data.put("isMinor", isMinor);
+        data.put("guardianId", guardianId);
+        return data;
+    }
+
+    private static QueryStats.Snapshot find(QueryStats stats, String sql) {
+        return stats.snapshot().stream().filter(s -> s.sql().equals(sql)).findFirst().orElseThrow(() -> new AssertionError("Sin estadísticas: " + sql));
+    }
+
+    private static int countRows(java.sql.Connection conn, String table, int vutId) throws java.sql.SQLException {
+        try (java.sql.PreparedStatement pstmt = conn.prepareStatement("SELECT COUNT(*) FROM " + table + " WHERE vut_id = ?")) {
+            pstmt.setInt(1, vutId);
+            try (java.sql.ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    /**
+     * Mide (en ms) la consulta del calendario mensual; si 'until' no es null, hasta que termine
+     * (con un mínimo de una muestra), y si no, 'samples' veces.
+     */
+    private static long[] sampleMonthLatency(int vutId, int samples, java.util.concurrent.Future<?> until) {
+        java.util.List<Long> times = new java.util.ArrayList<>();
+        do {
+            long t0 = System.nanoTime();
+            dbService.get_month_data(vutId, 2031, times.size() % 12);
+            times.add(System.nanoTime() - t0);
+        } while (until != null ? !until.isDone() : times.size() < samples);
+        return times.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static double percentile(long[] sortedNanos, int p) {
+        int index = Math.min(sortedNanos.length - 1, (int) Math.ceil(p / 100.0 * sortedNanos.length) - 1);
+        return sortedNanos[Math.max(index, 0)] / 1e6;
+    }
     
 }